@@ -0,0 +1,67 @@
+package me.seet.cannongame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// AudioCommandQueue.java
+// Bounded single-producer, single-consumer queue of play commands; each
+// command is packed into one long so neither side allocates, locks or
+// waits, and a full queue drops the command rather than blocking the
+// game thread
+public class AudioCommandQueue {
+    public static final long EMPTY = -1L;   // returned by poll when empty
+
+    private final long[] mCommands;    // ring buffer, a power of two long
+    private final int mMask;
+    private final AtomicLong mHead = new AtomicLong();  // next to read, consumer only
+    private final AtomicLong mTail = new AtomicLong();  // next to write, producer only
+
+    // creates a queue holding at least capacity commands
+    public AudioCommandQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        mCommands = new long[size];
+        mMask = size - 1;
+    }
+
+    // queues a sound to play; returns false if the queue is full. Only
+    // one thread may call this
+    public boolean offer(int sound, float volume, int priority) {
+        long tail = mTail.get();
+        if (tail - mHead.get() == mCommands.length)
+            return false;
+
+        mCommands[(int) tail & mMask] = pack(sound, volume, priority);
+        mTail.lazySet(tail + 1);   // publish the command after writing it
+        return true;
+    }
+
+    // takes the oldest command, or returns EMPTY. Only one thread may
+    // call this
+    public long poll() {
+        long head = mHead.get();
+        if (head == mTail.get())
+            return EMPTY;
+
+        long command = mCommands[(int) head & mMask];
+        mHead.lazySet(head + 1);   // free the slot after reading it
+        return command;
+    }
+
+    // sound and priority in 16 bits each, then the volume's float bits;
+    // the top bit stays clear so no command equals EMPTY
+    static long pack(int sound, float volume, int priority) {
+        return (long) (sound & 0x7fff) << 48 | (long) (priority & 0xffff) << 32
+                | (Float.floatToIntBits(volume) & 0xffffffffL);
+    }
+
+    public static int getSound(long command) {
+        return (int) (command >>> 48);
+    }
+
+    public static int getPriority(long command) {
+        return (short) (command >>> 32);
+    }
+
+    public static float getVolume(long command) {
+        return Float.intBitsToFloat((int) command);
+    }
+}
@@ -0,0 +1,124 @@
+package me.seet.cannongame;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// AudioMixer.java
+// Plays sound effects on its own thread through one streaming AudioTrack;
+// sounds are decoded from raw resources once, play requests arrive
+// through a lock-free queue, and a VoiceMixer sums up to VOICES of them
+// at a time so the game thread never waits on audio
+public class AudioMixer {
+    public static final String TAG = "AudioMixer";  // for logging errors
+    public static final int SAMPLE_RATE = 22050;    // rate of the game's sounds
+    public static final int VOICES = 8;     // sounds that can play at once
+    public static final int BLOCK_FRAMES = 256; // samples mixed per write, about 12 ms
+
+    private final Resources mResources;
+    private final int[] mResourceIds;   // raw WAVE resource for each sound
+    private final AudioCommandQueue mCommands = new AudioCommandQueue(64);
+    private final VoiceMixer mVoices = new VoiceMixer(VOICES);
+    private final Thread mThread;
+    private volatile boolean mRunning = true;
+    private volatile boolean mReady;    // sounds decoded and the track playing
+
+    // decodes the given raw resources and starts playing; sound numbers
+    // passed to play are indexes into resourceIds
+    public AudioMixer(Context context, int[] resourceIds) {
+        mResources = context.getResources();
+        mResourceIds = resourceIds.clone();
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mix();
+            }
+        }, TAG);
+        mThread.start();
+    }
+
+    // asks the mixer thread to play a sound at volume 0 to 1; higher
+    // priorities may replace lower ones when every voice is busy. Never
+    // blocks; requests made before the sounds are decoded or while the
+    // queue is full are dropped. Call from one thread only
+    public void play(int sound, float volume, int priority) {
+        if (mReady)
+            mCommands.offer(sound, volume, priority);
+    }
+
+    // stops the mixer thread and frees the AudioTrack
+    public void release() {
+        mRunning = false;
+        try {
+            mThread.join(); // at most one block of samples away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // body of the mixer thread
+    private void mix() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+        // decode every sound up front so playing one only copies samples
+        short[][] sounds = new short[mResourceIds.length][];
+        for (int i = 0; i < mResourceIds.length; i++) {
+            InputStream in = mResources.openRawResource(mResourceIds[i]);
+            try {
+                sounds[i] = WavDecoder.decode(in, SAMPLE_RATE);
+            } catch (IOException e) {
+                Log.e(TAG, "Can't decode sound " + i, e);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "Can't close sound " + i, e);
+                }
+            }
+        }
+        mVoices.setSounds(sounds);
+
+        // the smallest buffer that holds a couple of blocks keeps latency low
+        int bufferBytes = Math.max(AudioTrack.getMinBufferSize(SAMPLE_RATE,
+                        AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT),
+                BLOCK_FRAMES * 2 * 2);
+        AudioTrack track = new AudioTrack(AudioManager.STREAM_MUSIC, SAMPLE_RATE,
+                AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                bufferBytes, AudioTrack.MODE_STREAM);
+        if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+            Log.e(TAG, "Can't create AudioTrack");
+            track.release();
+            return;
+        }
+
+        short[] block = new short[BLOCK_FRAMES];
+        track.play();
+        mReady = true;
+
+        // stream continuously, silence included, so a new sound starts
+        // within one block instead of waiting for the track to restart;
+        // write blocks while the track's buffer is full, pacing the loop
+        while (mRunning) {
+            for (long command = mCommands.poll(); command != AudioCommandQueue.EMPTY;
+                 command = mCommands.poll()) {
+                mVoices.play(AudioCommandQueue.getSound(command),
+                        AudioCommandQueue.getVolume(command),
+                        AudioCommandQueue.getPriority(command));
+            }
+
+            mVoices.mix(block, BLOCK_FRAMES);
+            track.write(block, 0, BLOCK_FRAMES);
+        }
+
+        mReady = false;
+        track.stop();
+        track.release();
+    }
+}
@@ -0,0 +1,500 @@
+package me.seet.cannongame;
+
+// CannonGame.java
+// Game state and rules of the Cannon Game, free of Android types so it
+// runs on a plain JVM; CannonView advances it in fixed steps and draws it
+public class CannonGame {
+    // receives game events so the view can play sounds and show dialogs
+    public interface Listener {
+        void onCannonFired();   // a cannonball left the barrel
+        void onBlockerHit();    // the cannonball bounced off the blocker
+        void onTargetHit();     // the cannonball destroyed a target piece
+        void onGameOver(boolean won);   // all pieces hit or time ran out
+    }
+
+    // constants for game play
+    public static final int TARGET_PIECES = 7;  // sections in the target
+    public static final int TIME_LIMIT = 10;    // seconds at the start of a game
+    public static final int MISS_PENALTY = 2;  // seconds deducted on a miss
+    public static final int HIT_REWARD = 2;  // seconds added on a hit
+    public static final int MAX_PROJECTILES = 512;  // cannonballs in flight at once
+    public static final int RAPID_FIRE_TICKS = 6;  // steps between rapid-fire shots
+    public static final int BURST_SIZE = 5;  // cannonballs per burst
+    public static final double BURST_SPREAD = 0.05;  // radians between burst cannonballs
+
+    // how a touch fires the cannon
+    public enum FireMode {
+        SINGLE, // one cannonball at a time
+        RAPID,  // a cannonball every RAPID_FIRE_TICKS while touching
+        BURST   // a fan of BURST_SIZE cannonballs every RAPID_FIRE_TICKS while touching
+    }
+
+    private Listener mListener; // notified of game events, may be null
+    private FireMode mFireMode = FireMode.SINGLE;   // how a touch fires the cannon
+    private long mLastFireTick; // step at which the cannon last fired
+    private boolean mTriggerHeld;   // is the player still touching the screen?
+    private float mAimX;    // point the last touch aimed at
+    private float mAimY;
+    private boolean mBlockerHitThisStep;    // was the penalty already applied?
+
+    // variables for game play and tracking statistics
+    private boolean mGameOver; // is the game over?
+    private double mTimeLimit = TIME_LIMIT;   // seconds at the start of a game
+    private double mTimeLeft;  // time remaining in seconds
+    private int mShotsFired;    // shots the user has fired
+    private long mTicks;    // steps simulated since the game started
+    private double mTotalElapsedTime;    // elapsed seconds
+
+    // variables for the blockers and targets
+    private Level mLevel;   // blockers and targets being played
+    private int mLineWidth;  // width of the targets and blockers
+    private int mPiecesHit;   // number of target pieces hit in the level
+
+    // broadphase: every blocker and standing target piece is a segment
+    // in the spatial hash, rebuilt each step because they all move
+    private SpatialHash mSegmentHash;
+    private int[] mSegmentOwner = new int[0];   // index of the blocker or target
+    private int[] mSegmentPiece = new int[0];   // target piece, or -1 for a blocker
+    private int[] mCandidates = new int[0];     // segments returned by a query
+    private final Line mPiece = new Line();     // scratch Line for one target piece
+
+    // variables for the cannon and cannonballs
+    private final ProjectilePool mCannonballs;  // cannonballs in flight
+    private int mCannonballRadius;  // cannonball's radius
+    private int mCannonballSpeed;  // cannonball's speed
+    private int mCannonBaseRadius;  // cannon base's radius
+    private int mCannonLength;  // cannon barrel's length
+    private float mBarrelEndX;   // the endpoint of the cannon's barrel
+    private float mBarrelEndY;
+    private int mScreenWidth;
+    private int mScreenHeight;
+
+    public CannonGame() {
+        this(MAX_PROJECTILES);
+    }
+
+    // creates a game that can have up to maxProjectiles cannonballs in flight
+    public CannonGame(int maxProjectiles) {
+        mCannonballs = new ProjectilePool(maxProjectiles);
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    // sizes all game elements relative to the playing field
+    public void setSize(int w, int h) {
+        mScreenWidth = w;   // store the playing field's width
+        mScreenHeight = h;   // store the playing field's height
+        mCannonBaseRadius = h / 18;  // cannon base radius 1/18 screen height
+        mCannonLength = w / 8;  // cannon length 1/8 screen width
+
+        mCannonballRadius = w / 36;   // cannonball radius 1/36 screen width
+        mCannonballSpeed = w * 3 / 2;   // cannonball speed multiplier
+
+        mLineWidth = w / 24;    // target and blocker 1 / 24 screen width
+
+        // cells a little larger than a cannonball's path in one step
+        mSegmentHash = new SpatialHash(w, h, w / 12f);
+
+        // endpoint of the cannon's barrel initially points horizontally
+        mBarrelEndX = mCannonLength;
+        mBarrelEndY = h / 2;
+
+        setLevel(Level.createClassic(w, h));
+    }
+
+    // plays against the given blockers and targets from the next new game
+    public void setLevel(Level level) {
+        mLevel = level;
+
+        // room for a segment per blocker and target piece
+        int segments = level.getBlockers().length + level.getPieceCount();
+        if (mSegmentOwner.length < segments) {
+            mSegmentOwner = new int[segments];
+            mSegmentPiece = new int[segments];
+            mCandidates = new int[segments];
+        }
+    }
+
+    // seconds on the clock at the start of the next new game; an infinite
+    // limit never runs out, however many penalties are deducted
+    public void setTimeLimit(double seconds) {
+        mTimeLimit = seconds;
+    }
+
+    // reset all the game elements and start a new game
+    public void newGame() {
+        mLevel.reset();     // restore the blockers and target pieces
+        mPiecesHit = 0;   // no target pieces have been hit
+        mTimeLeft = mTimeLimit; // start the countdown, 10 seconds by default
+        mCannonballs.clear();    // no cannonballs on the screen
+        mShotsFired = 0;    // set the initial number of shots fired
+        mTicks = 0;     // no steps simulated yet
+        mLastFireTick = -RAPID_FIRE_TICKS;  // the cannon is ready to fire
+        mTriggerHeld = false;   // touches from the last game don't carry over
+        mTotalElapsedTime = 0.0;    // set the time elapsed to zero
+        mGameOver = false;  // the game is not over
+    }
+
+    // advances the game by exactly one FixedTimestep.STEP_SECONDS
+    public void step() {
+        if (mGameOver)
+            return;
+
+        // the automatic modes keep firing while the trigger is held, even
+        // if the finger doesn't move
+        if (mTriggerHeld && mFireMode != FireMode.SINGLE
+                && mTicks - mLastFireTick >= RAPID_FIRE_TICKS)
+            fireCannonball(mAimX, mAimY);
+
+        float interval = (float) FixedTimestep.STEP_SECONDS;
+
+        // remember the current positions for interpolated rendering
+        mCannonballs.savePositions();
+        mLevel.savePositions();
+
+        // nothing can collide while no cannonball is in flight
+        if (mCannonballs.size() > 0)
+            buildSegmentHash(interval);
+
+        // update every cannonball in flight; walk backwards so removing
+        // one moves an already updated cannonball into its slot
+        mBlockerHitThisStep = false;
+        for (int i = mCannonballs.size() - 1; i >= 0; i--) {
+            updateCannonball(i, interval);
+            if (mGameOver)
+                return;
+        }
+
+        // update the blockers' and targets' positions; each reverses
+        // direction when it hits the top or bottom
+        for (MovingLine blocker : mLevel.getBlockers())
+            blocker.step(mTicks, interval, mScreenHeight);
+        for (Target target : mLevel.getTargets())
+            target.step(mTicks, interval, mScreenHeight);
+
+        // count steps rather than summing intervals so the elapsed
+        // time never depends on how the steps were split into frames
+        ++mTicks;
+        mTotalElapsedTime = mTicks * FixedTimestep.STEP_SECONDS;
+        mTimeLeft -= FixedTimestep.STEP_SECONDS; // subtract from time left
+
+        // if the time reached zero
+        if (mTimeLeft <= 0.0) {
+            mTimeLeft = 0.0;
+            endGame(false);
+        }
+    }
+
+    // adds every blocker and standing target piece to the spatial hash,
+    // each with a box covering everywhere it will be during this step
+    private void buildSegmentHash(float interval) {
+        float halfWidth = mLineWidth / 2f;
+        mSegmentHash.clear();
+
+        MovingLine[] blockers = mLevel.getBlockers();
+        for (int b = 0; b < blockers.length; b++) {
+            int segment = addSegment(blockers[b].getLine(),
+                    blockers[b].getStepMove(mTicks, interval), halfWidth);
+            mSegmentOwner[segment] = b;
+            mSegmentPiece[segment] = -1;
+        }
+
+        Target[] targets = mLevel.getTargets();
+        for (int t = 0; t < targets.length; t++) {
+            Target target = targets[t];
+            float move = target.getStepMove(mTicks, interval);
+            for (int piece = 0; piece < target.getPieceCount(); piece++) {
+                if (target.isPieceHit(piece))
+                    continue;   // destroyed pieces can't be hit
+
+                target.getPiece(piece, mPiece);
+                int segment = addSegment(mPiece, move, halfWidth);
+                mSegmentOwner[segment] = t;
+                mSegmentPiece[segment] = piece;
+            }
+        }
+
+        mSegmentHash.build();
+    }
+
+    // adds the box swept by a line moving down by move and returns its segment
+    private int addSegment(Line line, float move, float halfWidth) {
+        float top = Math.min(line.getStartY(), line.getEndY());
+        float bottom = Math.max(line.getStartY(), line.getEndY());
+        return mSegmentHash.add(
+                Math.min(line.getStartX(), line.getEndX()) - halfWidth,
+                top + Math.min(move, 0) - halfWidth,
+                Math.max(line.getStartX(), line.getEndX()) + halfWidth,
+                bottom + Math.max(move, 0) + halfWidth);
+    }
+
+    // moves cannonball i through one step, resolving the first contact
+    // with a blocker or a target piece anywhere along its path
+    private void updateCannonball(int i, float interval) {
+        float x = mCannonballs.getX(i);
+        float y = mCannonballs.getY(i);
+        float velocityX = mCannonballs.getVelocityX(i);
+        float moveX = interval * velocityX;
+        float moveY = interval * mCannonballs.getVelocityY(i);
+        float halfWidth = mLineWidth / 2f;
+
+        // narrow the search to segments near the cannonball's path
+        int candidates = mSegmentHash.query(
+                Math.min(x, x + moveX) - mCannonballRadius,
+                Math.min(y, y + moveY) - mCannonballRadius,
+                Math.max(x, x + moveX) + mCannonballRadius,
+                Math.max(y, y + moveY) + mCannonballRadius,
+                mCandidates);
+
+        // find the segment the cannonball would touch first; ties go to
+        // the lowest segment so the result doesn't depend on query order
+        int hitSegment = -1;
+        float hitTime = SweptCollision.NO_IMPACT;
+        for (int c = 0; c < candidates; c++) {
+            int segment = mCandidates[c];
+            int piece = mSegmentPiece[segment];
+            Line line;
+            float lineMove;
+
+            if (piece < 0) {
+                MovingLine blocker = mLevel.getBlockers()[mSegmentOwner[segment]];
+                line = blocker.getLine();
+                lineMove = blocker.getStepMove(mTicks, interval);
+            }
+            else {
+                Target target = mLevel.getTargets()[mSegmentOwner[segment]];
+                if (target.isPieceHit(piece))
+                    continue;   // destroyed earlier in this step
+
+                target.getPiece(piece, mPiece);
+                line = mPiece;
+                lineMove = target.getStepMove(mTicks, interval);
+            }
+
+            float time = SweptCollision.timeOfImpact(x, y,
+                    moveX, moveY, mCannonballRadius, line, 0, lineMove, halfWidth);
+            if (time != SweptCollision.NO_IMPACT && (hitTime == SweptCollision.NO_IMPACT
+                    || time < hitTime || (time == hitTime && segment < hitSegment))) {
+                hitTime = time;
+                hitSegment = segment;
+            }
+        }
+
+        // check for collision with a blocker
+        if (hitSegment >= 0 && mSegmentPiece[hitSegment] < 0) {
+            // move to the point of contact, reverse the cannonball's
+            // direction and spend the rest of the step moving away
+            x += moveX * hitTime - moveX * (1 - hitTime);
+            y += moveY;
+            mCannonballs.setVelocity(i, -velocityX, mCannonballs.getVelocityY(i));
+
+            // cannonballs of one volley hitting together cost one penalty
+            if (!mBlockerHitThisStep) {
+                mBlockerHitThisStep = true;
+                mTimeLeft -= MISS_PENALTY; // penalize the user
+
+                if (mListener != null)
+                    mListener.onBlockerHit();
+            }
+        }
+        // check for cannonball collision with a target
+        else if (hitSegment >= 0) {
+            Target target = mLevel.getTargets()[mSegmentOwner[hitSegment]];
+            target.hitPiece(mSegmentPiece[hitSegment]); // section was hit
+            mCannonballs.remove(i);    // remove cannonball
+            mTimeLeft += HIT_REWARD;    // add reward to remaining time
+
+            if (mListener != null)
+                mListener.onTargetHit();
+
+            // if all pieces have been hit
+            if (++mPiecesHit == mLevel.getPieceCount())
+                endGame(true);
+            return;
+        }
+        else {
+            // update cannonball position
+            x += moveX;
+            y += moveY;
+        }
+
+        // check for collisions with left and right walls
+        // and with top and bottom walls
+        if (x + mCannonballRadius > mScreenWidth || x - mCannonballRadius < 0
+                || y + mCannonballRadius > mScreenHeight || y - mCannonballRadius < 0) {
+            mCannonballs.remove(i);    // remove cannonball from screen
+        }
+        else {
+            mCannonballs.setPosition(i, x, y);
+        }
+    }
+
+    // most steps a game of the given level can last: every hit adds
+    // HIT_REWARD seconds and nothing else adds time
+    public static int getMaxTicks(Level level) {
+        double seconds = TIME_LIMIT + HIT_REWARD * level.getPieceCount();
+        return (int) StrictMath.ceil(seconds / FixedTimestep.STEP_SECONDS) + 1;
+    }
+
+    // marks the game as over and tells the listener
+    private void endGame(boolean won) {
+        mGameOver = true;
+        if (mListener != null)
+            mListener.onGameOver(won);
+    }
+
+    // fires the cannon toward the given point as the fire mode allows and
+    // holds the trigger there until releaseTrigger
+    public void fireCannonball(float x, float y) {
+        if (mGameOver)
+            return; // touches after the game ended don't count
+
+        mTriggerHeld = true;
+        mAimX = x;
+        mAimY = y;
+
+        if (mFireMode == FireMode.SINGLE) {
+            if (mCannonballs.size() > 0) // if a cannonball is already on the screen
+                return; // do nothing
+        }
+        else if (mTicks - mLastFireTick < RAPID_FIRE_TICKS) {
+            return; // the cannon is still reloading
+        }
+
+        double angle = alignCannon(x, y);  // get the cannon barrel's angle
+
+        if (mFireMode == FireMode.BURST) {
+            // fan the burst out evenly around the barrel's angle
+            for (int i = 0; i < BURST_SIZE; i++)
+                launchCannonball(angle + (i - (BURST_SIZE - 1) / 2.0) * BURST_SPREAD);
+        }
+        else {
+            launchCannonball(angle);
+        }
+
+        mLastFireTick = mTicks;
+        if (mListener != null)
+            mListener.onCannonFired();
+    }
+
+    // the player lifted the finger; the automatic modes stop firing
+    public void releaseTrigger() {
+        mTriggerHeld = false;
+    }
+
+    public boolean isTriggerHeld() {
+        return mTriggerHeld;
+    }
+
+    // adds a cannonball leaving the barrel at the given angle
+    private void launchCannonball(double angle) {
+        // get the x-component of the total velocity; StrictMath keeps
+        // the result bit-identical on every device
+        float velocityX = (int) (mCannonballSpeed * StrictMath.sin(angle));
+
+        // get the y-component of the total velocity
+        float velocityY = (int) (-mCannonballSpeed * StrictMath.cos(angle));
+
+        // start the cannonball inside the cannon, centered vertically
+        if (mCannonballs.spawn(mCannonballRadius, mScreenHeight / 2, velocityX, velocityY) >= 0)
+            ++mShotsFired;  // increment shotsFired
+    }
+
+    // aligns the cannon toward the given point and returns its angle
+    public double alignCannon(float x, float y) {
+        // get the location of the touch in this view
+        int touchX = (int) x;
+        int touchY = (int) y;
+
+        // compute the touch's distance from center of the screen
+        // on the y-axis
+        double centerMinusY = (mScreenHeight / 2 - touchY);
+
+        double angle = 0; // initialize angle to 0
+
+        // calculate the angle the barrel makes with the horizontal
+        if (centerMinusY != 0)   // prevent division by 0
+            angle = StrictMath.atan((double) touchX / centerMinusY);
+
+        // if the touch is on the lower half of the screen
+        if (touchY > mScreenHeight / 2) {
+            angle += Math.PI; // adjust the angle
+        }
+
+        // calculate the endpoint of the cannon barrel
+        mBarrelEndX = (int) (mCannonLength * StrictMath.sin(angle));
+        mBarrelEndY = (int) (-mCannonLength * StrictMath.cos(angle) + mScreenHeight / 2);
+
+        return angle; // return the computed angle
+    }
+
+    public boolean isGameOver() {
+        return mGameOver;
+    }
+
+    public double getTimeLeft() {
+        return mTimeLeft;
+    }
+
+    public int getShotsFired() {
+        return mShotsFired;
+    }
+
+    public long getTicks() {
+        return mTicks;
+    }
+
+    public double getTotalElapsedTime() {
+        return mTotalElapsedTime;
+    }
+
+    public ProjectilePool getCannonballs() {
+        return mCannonballs;
+    }
+
+    public FireMode getFireMode() {
+        return mFireMode;
+    }
+
+    public void setFireMode(FireMode fireMode) {
+        mFireMode = fireMode;
+    }
+
+    public Level getLevel() {
+        return mLevel;
+    }
+
+    public int getCannonballRadius() {
+        return mCannonballRadius;
+    }
+
+    public int getCannonLength() {
+        return mCannonLength;
+    }
+
+    public int getCannonBaseRadius() {
+        return mCannonBaseRadius;
+    }
+
+    public float getBarrelEndX() {
+        return mBarrelEndX;
+    }
+
+    public float getBarrelEndY() {
+        return mBarrelEndY;
+    }
+
+    public int getLineWidth() {
+        return mLineWidth;
+    }
+
+    public int getWidth() {
+        return mScreenWidth;
+    }
+
+    public int getHeight() {
+        return mScreenHeight;
+    }
+}
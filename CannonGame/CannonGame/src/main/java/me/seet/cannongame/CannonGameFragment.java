@@ -7,10 +7,14 @@ import android.app.Fragment;
 import android.media.AudioManager;
 import android.os.Bundle;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 
 public class CannonGameFragment extends Fragment {
+    private static final int FIXED_FRAME_RATE = 30;    // frames per second when pacing at a fixed rate
     private CannonView mCanonView;  // custom view to display the game
     public CannonGameFragment() {
         // Required empty public constructor
@@ -23,11 +27,63 @@ public class CannonGameFragment extends Fragment {
         super.onCreateView(inflater, container, savedInstanceState);
         View view = inflater.inflate(R.layout.fragment_game, container, false);
 
+        setHasOptionsMenu(true);    // the menu selects the fire mode
+
         // get the CannonView
         mCanonView = (CannonView)view.findViewById(R.id.cannonView);
         return view;
     }
 
+    // display this fragment's menu items
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+        super.onCreateOptionsMenu(menu, inflater);
+        inflater.inflate(R.menu.cannon_game_menu, menu);
+    }
+
+    // handle choice from options menu
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        // switch based on the MenuItem id
+        switch (item.getItemId()) {
+            case R.id.singleShot:
+                mCanonView.setFireMode(CannonGame.FireMode.SINGLE);
+                break;
+            case R.id.rapidFire:
+                mCanonView.setFireMode(CannonGame.FireMode.RAPID);
+                break;
+            case R.id.burstFire:
+                mCanonView.setFireMode(CannonGame.FireMode.BURST);
+                break;
+            case R.id.vsyncPacing:
+                mCanonView.setFrameScheduler(new ChoreographerScheduler());
+                break;
+            case R.id.fixedRatePacing:
+                mCanonView.setFrameScheduler(new FixedRateScheduler(FIXED_FRAME_RATE));
+                break;
+            case R.id.unthrottledPacing:
+                mCanonView.setFrameScheduler(new UnthrottledScheduler());
+                break;
+            case R.id.glRendering:
+                item.setChecked(!item.isChecked()); // toggle GPU rendering
+                mCanonView.setGlRenderingEnabled(item.isChecked());
+                return true;    // consume the menu event
+            case R.id.partialRedraw:
+                item.setChecked(!item.isChecked()); // toggle partial redraw
+                mCanonView.setDirtyRectEnabled(item.isChecked());
+                return true;    // consume the menu event
+            case R.id.showFrameTimes:
+                item.setChecked(!item.isChecked()); // toggle the overlay
+                mCanonView.setProfilerOverlayVisible(item.isChecked());
+                return true;    // consume the menu event
+            default:
+                return super.onOptionsItemSelected(item);   // call super's method
+        }
+
+        item.setChecked(true);  // show the selected fire mode
+        return true;    // consume the menu event
+    }
+
     // set up volume control once Activity is created
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
@@ -7,19 +7,16 @@ import android.app.DialogFragment;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Point;
-import android.media.AudioManager;
-import android.media.SoundPool;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.util.AttributeSet;
 import android.util.Log;
-import android.util.SparseIntArray;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
+import java.text.DecimalFormatSymbols;
+
 /**
  * Created by dseet on 3/25/2014.
  */
@@ -30,65 +27,102 @@ public class CannonView extends SurfaceView
     private CannonThread mCannonThread; // controls the game loop
     private Activity mActivity;         // to display Game Over dialog in the GUI thread
     private boolean mDialogIsDisplayed = false;
+    private volatile FrameScheduler mFrameScheduler;    // paces the game loop
+    private FrameProfiler mProfiler;    // times the phases of each frame
+    private volatile boolean mProfilerOverlayVisible;   // draw the frame times?
+
+    // partial redraw: lock only the area moving elements covered in
+    // this frame or the previous one
+    private volatile boolean mDirtyRectEnabled;
+    private volatile boolean mFullRedraw = true;  // next frame redraws everything
+    private final Rect mDirtyRect = new Rect();  // area locked for this frame
+    private final Rect mCurrentBounds = new Rect();  // moving elements this frame
+    private final Rect mPreviousBounds = new Rect();  // moving elements last frame
+
+    private CannonGame mGame;   // game state, advanced by the CannonThread
+    private final InputRecording mRecording = new InputRecording(); // inputs of this game
+
+    // levels: the classic layout first, then generated ones that get
+    // harder; a won game moves on, a lost one replays the level
+    private static final long LEVEL_SEED = 1;   // same levels on every device
+    private LevelEngine mLevelEngine;   // created for each playing field size
+    private volatile boolean mLastGameWon;  // move on at the next new game?
+
+    // touches travel from the UI thread to the game thread through a
+    // lock-free queue and are applied at the start of the next step
+    private final TouchInputQueue mTouchQueue = new TouchInputQueue(32);
+    private final TouchInputQueue.Consumer mTouchConsumer = new TouchInputQueue.Consumer() {
+        @Override
+        public void onTouch(float x, float y, long timeNanos) {
+            // on the game thread, between two steps
+            mRecording.recordFire(mGame.getTicks(), x, y);
+            mGame.fireCannonball(x, y);
+        }
 
-    // constants for game play
-    public static final int TARGET_PIECES = 7;  // sections in the target
-    public static final int MISS_PENALTY = 2;  // seconds deducted on a miss
-    public static final int HIT_REWARD = 2;  // seconds added on a hit
-
-    // constants for game play and tracking statistics
-    private boolean mGameOver; // is the game over?
-    private double mTimeLeft;  // time remaining in seconds
-    private int mShotsFired;    // shots the user has fired
-    private double mTotalElapsedTime;    // elapsed seconds
-
-    // variable for the blocker and target
-    private Line mBlocker;       // start and end points of the blocker
-    private int mBlockerDistance;    // blocker distance from left
-    private int mBlockerBeginning;    // blocker top-edge distance from top
-    private int mBlockerEnd;    // blocker top-edge distance from bottom
-    private int mInitialBlockerVelocity;    // initial blocker speed multiplier
-    private float mBlockerVelocity; // blocker speed multiplier during game
-
-    private Line mTarget;   // start and end points of the target
-    private int mTargetDistance;    // target distance from left
-    private int mTargetBeginning;    // target distance from top
-    private double mPieceLength; // length of a target piece
-    private int mTargetEnd;     // target bottom's distance from top
-    private int mInitialTargetVelocity; // initial target speed multiplier
-    private float mTargetVelocity;  // target speed multiplier
-    private int mLineWidth;  // width of the target and blocker
-    private boolean[] mHitStates;   // is each target piece hit?
-    private int mTargetPiecesHit;   // number of target pieces hit (out of 7)
-
-    // variables for the cannon and cannonball
-    private Point mCannonball;  // cannonball image's upper-left corner
-    private int mCannonballVelocityX;    // cannonball's X velocity
-    private int mCannonballVelocityY;    // cannonball's Y velocity
-    private boolean mCannonballOnScreen;    // whether cannonball on the screen
-    private int mCannonballRadius;  // cannonball's radius
-    private int mCannonballSpeed;  // cannonball's speed
-    private int mCannonBaseRadius;  // cannon base's radius
-    private int mCannonLength;  // cannon barrel's length
-    private Point mBarrelEnd;   // the endpoint of the cannon's barrel
-    private int mScreenWidth;
-    private int mScreenHeight;
+        @Override
+        public void onRelease(long timeNanos) {
+            mRecording.recordRelease(mGame.getTicks());
+            mGame.releaseTrigger();     // the automatic modes stop firing
+        }
+    };
+    private final Line mLineFrame = new Line();  // blocker or target as drawn this frame
+    private HudText mTimeText;  // time remaining, formatted without allocating
+
+    // frame time overlay, rebuilt every PROFILER_REFRESH_FRAMES frames
+    private static final int PROFILER_REFRESH_FRAMES = 30;
+    private final FrameProfiler.Report mProfilerReport = new FrameProfiler.Report();
+    private final StringBuilder mOverlayBuilder = new StringBuilder(256);
+    private char[] mOverlayChars = new char[256];
+    private final int[] mOverlayLineEnds = new int[FrameProfiler.PHASE_COUNT + 1];
+    private int mOverlayFrames;  // frames drawn since the overlay was rebuilt
 
     // constants and variables for managing sounds
     private static final int TARGET_SOUND_ID = 0;
     private static final int CANNON_SOUND_ID = 1;
     private static final int BLOCKER_SOUND_ID = 2;
 
-    private SoundPool mSoundPool;   // plays sound effects
-    private SparseIntArray mSoundMap;   // maps IDs to SoundPool
+    // hits matter more than shots when every voice is busy
+    private static final int CANNON_SOUND_PRIORITY = 1;
+    private static final int BLOCKER_SOUND_PRIORITY = 2;
+    private static final int TARGET_SOUND_PRIORITY = 3;
+
+    private AudioMixer mAudioMixer; // plays sound effects
+
+    // draws each frame through the Canvas, or through OpenGL ES when
+    // enabled and available
+    private final GameDrawer mDrawer = new GameDrawer();
+    private final CanvasRenderer mCanvasRenderer = new CanvasRenderer();
+    private volatile boolean mGlRenderingEnabled;
+
+    // plays sounds and shows the Game Over dialog for events in the game
+    private final CannonGame.Listener mGameListener = new CannonGame.Listener() {
+        @Override
+        public void onCannonFired() {
+            // play cannon fired sound
+            mAudioMixer.play(CANNON_SOUND_ID, 1f, CANNON_SOUND_PRIORITY);
+        }
+
+        @Override
+        public void onBlockerHit() {
+            // play blocker sound
+            mAudioMixer.play(BLOCKER_SOUND_ID, 1f, BLOCKER_SOUND_PRIORITY);
+        }
 
-    // Paint variables used when drawing each item on the screen
-    private Paint mTextPaint;   // Paint used to draw text
-    private Paint mCannonballPaint;   // Paint used to draw the cannonball
-    private Paint mCannonPaint;   // Paint used to draw the cannon
-    private Paint mBlockerPaint;   // Paint used to draw the blocker
-    private Paint mTargetPaint;   // Paint used to draw the target
-    private Paint mBackgroundPaint;   // Paint used to clear the drawing area
+        @Override
+        public void onTargetHit() {
+            // play target hit sound
+            mAudioMixer.play(TARGET_SOUND_ID, 1f, TARGET_SOUND_PRIORITY);
+        }
+
+        @Override
+        public void onGameOver(boolean won) {
+            mLastGameWon = won;
+            Log.i(TAG, "Recorded " + mRecording.size() + " inputs in "
+                    + mGame.getTicks() + " steps");
+            mCannonThread.setRunning(false);    // terminate thread
+            showGameOverDialog(won ? R.string.win : R.string.lose);
+        }
+    };
 
     // public constructor
     public CannonView(Context context, AttributeSet attrs) {
@@ -99,77 +133,38 @@ public class CannonView extends SurfaceView
         // register SurfaceHolder.Callback listener
         getHolder().addCallback(this);
 
-        // initialize Lines and Point representing game items
-        mBlocker = new Line();  // create the blocker as a Line
-        mTarget = new Line();  // create the target as a Line
-        mCannonball = new Point(); // create the cannonball as a Point
-
-        // initialize hitStates as a boolean array
-        mHitStates = new boolean[TARGET_PIECES];
-
-        // initialize hitStates as a boolean array
-        mHitStates = new boolean[TARGET_PIECES];
-
-        // initialize SoundPool to play the app's three sound effects
-        mSoundPool = new SoundPool(1, AudioManager.STREAM_MUSIC,0);
-
-        // create Map of sounds and pre-load sounds
-        mSoundMap = new SparseIntArray(3);  // create new SparseIntArray
-        mSoundMap.put(TARGET_SOUND_ID, mSoundPool.load(context, R.raw.target_hit, 1));
-        mSoundMap.put(CANNON_SOUND_ID, mSoundPool.load(context, R.raw.cannon_fire, 1));
-        mSoundMap.put(BLOCKER_SOUND_ID, mSoundPool.load(context, R.raw.blocker_hit, 1));
-
-        // construct Paints for drawing text, cannonball, cannon,
-        // blocker and target; these are configured in method onSizeChanged
-        mTextPaint = new Paint();
-        mCannonPaint = new Paint();
-        mCannonballPaint = new Paint();
-        mBlockerPaint = new Paint();
-        mTargetPaint = new Paint();
-        mBackgroundPaint = new Paint();
+        // start each frame on a display vsync by default
+        mFrameScheduler = new ChoreographerScheduler();
+
+        // frames taking more than a display refresh count as dropped
+        float refreshRate = mActivity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        mProfiler = new FrameProfiler((long) (1e9 / refreshRate));
+
+        // create the game; it is sized in method onSizeChanged
+        mGame = new CannonGame();
+        mGame.setListener(mGameListener);
+
+        // initialize the mixer to play the app's three sound effects,
+        // indexed by the sound IDs
+        int[] sounds = new int[3];
+        sounds[TARGET_SOUND_ID] = R.raw.target_hit;
+        sounds[CANNON_SOUND_ID] = R.raw.cannon_fire;
+        sounds[BLOCKER_SOUND_ID] = R.raw.blocker_hit;
+        mAudioMixer = new AudioMixer(context, sounds);
+
+        // split the time format once instead of formatting every frame
+        mTimeText = new HudText(getResources().getString(R.string.time_remaining_format),
+                DecimalFormatSymbols.getInstance().getDecimalSeparator());
     }
 
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
-        mScreenWidth = w;   // store CannonView's width
-        mScreenHeight = h;   // store CannonView's height
-        mCannonBaseRadius = h / 18;  // cannon base radius 1/18 screen height
-        mCannonLength = w / 8;  // cannon length 1/8 screen width
-
-        mCannonballRadius = w / 36;   // cannonball radius 1/36 screen width
-        mCannonballSpeed = w * 3 / 2;   // cannonball speed multiplier
-
-        mLineWidth = w / 24;    // target and blocker 1 / 24 screen width
-
-        // configure instance variables related to the blocker
-        mBlockerDistance = w * 5 / 8;   // blocker 5/8 screen width from left
-        mBlockerBeginning = h / 8;   // distance from top 1/8 screen height
-        mBlockerEnd = h * 3 / 8;   // distance from top 3/8 screen height
-        mInitialBlockerVelocity = h / 2; // initial blocker speed multiplier
-        mBlocker.setStart(new Point(mBlockerDistance, mBlockerBeginning));
-        mBlocker.setEnd(new Point(mBlockerDistance, mBlockerEnd));
-
-        // configure instance variables related to the target
-        mTargetDistance = w * 7 / 8;    // target 7 / 8 screen width from left
-        mTargetBeginning = h / 8;   // distance from top 1/8 screen height
-        mTargetEnd = h * 7 / 8;   // distance from top 7/8 screen height
-        mPieceLength = (mTargetEnd - mTargetBeginning) / TARGET_PIECES;
-        mInitialTargetVelocity = -h / 4; // initial target speed multiplier
-        mTarget.setStart(new Point(mTargetDistance, mTargetBeginning));
-        mTarget.setEnd(new Point(mTargetDistance, mTargetEnd));
-
-        // endpoint of the cannon's barrel initially points horizontally
-        mBarrelEnd = new Point(mCannonLength, h / 2);
-
-        // configure Paint objects for drawing game elements
-        mTextPaint.setTextSize(w / 20); // text size 1/20 of screen width
-        mTextPaint.setAntiAlias(true);  // smoothes the text
-        mCannonballPaint.setStrokeWidth(mLineWidth * 1.5f); // set line thickness
-        mBlockerPaint.setStrokeWidth(mLineWidth); // set line thickness
-        mTargetPaint.setStrokeWidth(mLineWidth); // set line thickness
-        mBackgroundPaint.setColor(Color.WHITE); // set background color
+        mGame.setSize(w, h);    // size the game elements to this view
+        mLevelEngine = new LevelEngine(LEVEL_SEED, w, h);
+        mGame.setLevel(mLevelEngine.getCurrent());
+        mDrawer.setSize(w); // size the text for this view
 
         newGame();  // set up and start a new game
     }
@@ -182,124 +177,31 @@ public class CannonView extends SurfaceView
 
     // releases resources; called by CannonGame's onDestroy method
     public void releaseResources() {
-        mSoundPool.release();   // release all resources used by the SoundPool
-        mSoundPool = null;
+        mAudioMixer.release();   // stop the mixer thread and its AudioTrack
+        mAudioMixer = null;
     }
 
     // reset all the screen elements and start a new game
     private void newGame() {
-         // set the every element of hitStates to false--restores target pieces
-        for (int i = 0; i < TARGET_PIECES; i++) {
-            mHitStates[i] = false;
+        boolean restart = mGame.isGameOver();   // did the last game end?
+        synchronized (getHolder()) {
+            if (restart && mLastGameWon)
+                mGame.setLevel(mLevelEngine.advance()); // prepared while the last was played
+            // touches made after the last game ended, and any move waiting
+            // to be applied, mustn't fire in or be recorded for this one;
+            // the game thread only drains the queue under this lock
+            mTouchQueue.clear();
+            mGame.newGame();    // restore the target, blocker and clock
+            mRecording.start(mGame);    // record this game's inputs
         }
 
-        mTargetPiecesHit = 0;   // no target pieces have been hit
-        mBlockerVelocity = mInitialBlockerVelocity; // set initial velocity
-        mTargetVelocity = mInitialTargetVelocity; // set initial velocity
-        mTimeLeft = 10; // start the countdown at 10 seconds
-        mCannonballOnScreen = false;    // the cannonball is not on the screen
-        mShotsFired = 0;    // set the initial number of shots fired
-        mTotalElapsedTime = 0.0;    // set the time elapsed to zero
-
-        // set the start and end Points of the blocker and target
-        mBlocker.setStart(new Point(mBlockerDistance, mBlockerBeginning));
-        mBlocker.setEnd(new Point(mBlockerDistance, mBlockerEnd));
-        mTarget.setStart(new Point(mTargetDistance, mTargetBeginning));
-        mTarget.setEnd(new Point(mTargetDistance, mTargetEnd));
-
-        if(mGameOver)   // starting a new game after the last game ended
+        if(restart)   // starting a new game after the last game ended
         {
-            mGameOver = false;  // the game is not over
             mCannonThread = new CannonThread(getHolder());   // create thread
             mCannonThread.start();  // start the game loop thread
         }
     }
 
-    // called repeatedly by the CannonThread to update game elements
-    private void updatePositions(double elapsedTimeMs) {
-        double interval  = elapsedTimeMs / 1000.0; // convert to seconds
-        if(mCannonballOnScreen) // if there is currently a shot fired
-        {
-            // update cannonball position
-            mCannonball.x += interval * mCannonballVelocityX;
-            mCannonball.y += interval * mCannonballVelocityY;
-
-            // check for collision with blocker
-            if(mCannonball.x + mCannonballRadius > mBlockerDistance
-                && mCannonball.x - mCannonballRadius < mBlockerDistance
-                && mCannonball.y + mCannonballRadius > mBlocker.getStart().y
-                && mCannonball.y - mCannonballRadius < mBlocker.getEnd().y) {
-                mCannonballVelocityX *= -1; // reverse cannonball's direction
-                mTimeLeft -= MISS_PENALTY; // penalize the user
-
-                // play blocker sound
-                mSoundPool.play(mSoundMap.get(BLOCKER_SOUND_ID), 1, 1, 1, 0, 1f);
-            }
-            // check for collisions with left and right walls
-            else if(mCannonball.x + mCannonballRadius > mScreenWidth || mCannonball.x - mCannonballRadius < 0) {
-                mCannonballOnScreen = false;    // remove cannonball from screen
-            }
-            // check for collisions with top and bottom walls
-            else if(mCannonball.y + mCannonballRadius > mScreenHeight || mCannonball.y - mCannonballRadius < 0) {
-                mCannonballOnScreen = false;    // remove cannonball from screen
-            }
-            // check for cannonball collision with target
-            else if(mCannonball.x + mCannonballRadius > mTargetDistance
-                    && mCannonball.x - mCannonballRadius < mTargetDistance
-                    && mCannonball.y - mCannonballRadius > mTarget.getStart().y
-                    && mCannonball.x - mCannonballRadius < mTarget.getEnd().y) {
-                // determine target section number (0 is the top)
-                int section = (int)((mCannonball.y - mTarget.getStart().y) / mPieceLength);
-
-                // check if the piece hasn't been hit yet
-                if((section >= 0 && section < TARGET_PIECES) && !mHitStates[section]) {
-                    mHitStates[section] = true; // section was hit
-                    mCannonballOnScreen = false;    // remove cannonball
-                    mTimeLeft += HIT_REWARD;    // add reward to remaining time
-                    // play target hit sound
-                    mSoundPool.play(mSoundMap.get(TARGET_SOUND_ID), 1, 1, 1, 0, 1f);
-
-                    // if all pieces have been hit
-                    if(++mTargetPiecesHit == TARGET_PIECES) {
-                        mCannonThread.setRunning(false);    // terminate thread
-                        showGameOverDialog(R.string.win);   // show winning dialog
-                        mGameOver = true;
-                    }
-                }
-            }
-        }
-
-        // update the blocker's position
-        double blockerUpdate = interval * mBlockerVelocity;
-        mBlocker.getStart().y += blockerUpdate;
-        mBlocker.getEnd().y += blockerUpdate;
-
-        // update the target's position
-        double targetUpdate = interval * mTargetVelocity;
-        mTarget.getStart().y += targetUpdate;
-        mTarget.getEnd().y += targetUpdate;
-
-        // if the blocker hit the top or bottom, reverse direction
-        if(mBlocker.getStart().y < 0 || mBlocker.getEnd().y > mScreenHeight) {
-            mBlockerVelocity *= -1;
-        }
-
-        // if the target hit the top or bottom, reverse direction
-        if(mTarget.getStart().y < 0 || mTarget.getEnd().y > mScreenHeight) {
-            mTargetVelocity *= -1;
-        }
-
-        mTimeLeft -= interval; // subtract from time left
-
-        // if the time reached zero
-        if(mTimeLeft <= 0.0) {
-            mTimeLeft = 0.0;
-            mGameOver = true;   // the game is over
-            mCannonThread.setRunning(false);    // terminate thread
-            showGameOverDialog(R.string.lose);   // show the losing dialog
-        }
-    }
-
     // display an AlertDialog when the game ends
     private void showGameOverDialog(final int messageId) {
         // DialogFragment to display quiz stats and start new quiz
@@ -312,7 +214,8 @@ public class CannonView extends SurfaceView
                 builder.setTitle(getResources().getString(messageId));
 
                 // display number of shots fired and total time elapsed
-                builder.setMessage(getResources().getString(R.string.results_format, mShotsFired, mTotalElapsedTime));
+                builder.setMessage(getResources().getString(R.string.results_format,
+                        mGame.getShotsFired(), mGame.getTotalElapsedTime()));
                 builder.setPositiveButton(R.string.reset_game,
                         new DialogInterface.OnClickListener() {
                             // called when "Reset Game" Button is pressed
@@ -340,99 +243,174 @@ public class CannonView extends SurfaceView
         );
     }
 
-    // fires a cannonball
+    // fires a cannonball toward the touch point at the start of the next
+    // step; moves replace any move the game thread hasn't applied yet, and
+    // the automatic fire modes keep firing until the finger is lifted
     public void fireCannonball(MotionEvent event){
-        if(mCannonballOnScreen) // if a cannonball is already on the screen
-            return; // do nothing
-
-        double angle = alignCannon(event);  // get the cannon barrel's angle
-
-        // move the cannonball to be inside the cannon
-        mCannonball.x = mCannonballRadius;  // align x-coordinate with cannot
-        mCannonball.y = mScreenHeight / 2;  // centers ball vertically
-
-        // get the x-component of the total velocity
-        mCannonballVelocityX = (int)(mCannonballSpeed * Math.sin(angle));
-
-        // get the y-component of the total velocity
-        mCannonballVelocityY = (int)(-mCannonballSpeed * Math.cos(angle));
-        mCannonballOnScreen = true; // the cannonball is on the screen
-        ++mShotsFired;  // increment shotsFired
-
-        // play cannon fired sound
-        mSoundPool.play(mSoundMap.get(CANNON_SOUND_ID), 1, 1, 1, 0, 1f);
+        int action = event.getAction();
+        if (action == MotionEvent.ACTION_MOVE)
+            mTouchQueue.offerMove(event.getX(), event.getY(), System.nanoTime());
+        else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)
+            mTouchQueue.offerUp(System.nanoTime());
+        else
+            mTouchQueue.offerDown(event.getX(), event.getY(), System.nanoTime());
     }
 
-    // aligns the cannon in response to a user touch
-    private double alignCannon(MotionEvent event) {
-        // get the location of the touch in this view
-        Point touchPoint = new Point((int)event.getX(), (int)event.getY());
+    // selects how touches fire the cannon
+    public void setFireMode(CannonGame.FireMode fireMode) {
+        synchronized (getHolder()) {
+            mRecording.recordFireMode(mGame.getTicks(), fireMode);
+            mGame.setFireMode(fireMode);
+        }
+    }
 
-        // compute the touch's distance from center of the screen
-        // on the y-axis
-        double centerMinusY = (mScreenHeight / 2 - touchPoint.y);
+    // inputs and starting state of the current or last game, for replaying
+    // it with InputRecording.replay; read it while the game isn't running
+    public InputRecording getRecording() {
+        return mRecording;
+    }
 
-        double angle = 0; // initialize angle to 0
+    // selects when the game loop starts each frame
+    public void setFrameScheduler(FrameScheduler frameScheduler) {
+        mFrameScheduler = frameScheduler;
+    }
 
-        // calculate the angle the barrel makes with the horizontal
-        if(centerMinusY != 0)   // prevent division by 0
-            angle = Math.atan((double)touchPoint.x / centerMinusY);
+    // timing of the frames produced with the current scheduler
+    public FrameStats getFrameStats() {
+        return mFrameScheduler.getStats();
+    }
 
-        // if the touch is on the lower half of the screen
-        if(touchPoint.y > mScreenHeight / 2) {
-            angle += Math.PI; // adjust the angle
-        }
+    // times of the recent frames' phases; callable from any thread
+    public FrameProfiler getProfiler() {
+        return mProfiler;
+    }
 
-        // calculate the endpoint of the cannon barrel
-        mBarrelEnd.x = (int)(mCannonLength * Math.sin(angle));
-        mBarrelEnd.y = (int)(-mCannonLength * Math.cos(angle) + mScreenHeight / 2);
+    // shows or hides the frame time overlay
+    public void setProfilerOverlayVisible(boolean visible) {
+        mProfilerOverlayVisible = visible;
+        mOverlayFrames = PROFILER_REFRESH_FRAMES;   // rebuild on the next frame
+    }
 
-        return angle; // return the computed angle
+    // draws with OpenGL ES instead of the Canvas when the device allows;
+    // falls back to the Canvas if OpenGL ES can't be started
+    public void setGlRenderingEnabled(boolean enabled) {
+        mGlRenderingEnabled = enabled;
     }
 
-    // draws the game to the given Canvas
-    public void drawGameElements(Canvas canvas) {
-        // clear the background
-        canvas.drawRect(0, 0, canvas.getWidth(), canvas.getHeight(), mBackgroundPaint);
+    // locks only the changed area of the surface for each frame
+    public void setDirtyRectEnabled(boolean enabled) {
+        mDirtyRectEnabled = enabled;
+        mFullRedraw = true;
+    }
 
-        // display time remaining
-        canvas.drawText(getResources().getString(R.string.time_remaining_format, mTimeLeft), 30, 50, mTextPaint);
+    // returns the area to redraw: the bounds of every moving element now
+    // and in the previous frame, so elements are drawn at their new
+    // position and erased from their old one
+    private Rect computeDirtyRect(float alpha) {
+        Rect bounds = mCurrentBounds;
+        bounds.setEmpty();
+        int width = getWidth();
+        int screenHeight = mGame.getHeight();
+        int margin = mGame.getLineWidth() / 2 + 1;  // half a stroke, plus anti-aliasing
+
+        // time remaining and frame times
+        // (descenders reach well under half the text size below the baseline)
+        bounds.union(0, 0, width, (int) (GameDrawer.TEXT_Y + mDrawer.getTextSize() / 2) + 1);
+        if (mProfilerOverlayVisible)
+            bounds.union(0, 0, width,
+                    (int) mDrawer.getOverlayBottom(FrameProfiler.PHASE_COUNT + 1) + 1);
+
+        // cannon barrel and base
+        int reach = Math.max(mGame.getCannonLength(), mGame.getCannonBaseRadius()) + margin;
+        bounds.union(0, screenHeight / 2 - reach, reach, screenHeight / 2 + reach);
+
+        // cannonballs
+        ProjectilePool cannonballs = mGame.getCannonballs();
+        int radius = mGame.getCannonballRadius() + 1;
+        for (int i = 0; i < cannonballs.size(); i++) {
+            int x = (int) cannonballs.getX(i, alpha);
+            int y = (int) cannonballs.getY(i, alpha);
+            bounds.union(x - radius, y - radius, x + radius + 1, y + radius + 1);
+        }
 
-        // if a cannonball is currently on the screen, draw i
-        if(mCannonballOnScreen)
-            canvas.drawCircle(mCannonball.x, mCannonball.y, mCannonballRadius, mCannonballPaint);
+        // blockers and targets
+        Level level = mGame.getLevel();
+        for (MovingLine blocker : level.getBlockers())
+            unionLine(bounds, blocker, alpha, margin);
+        for (Target target : level.getTargets())
+            unionLine(bounds, target, alpha, margin);
 
-        // draw the cannon barrel
-        canvas.drawLine(0, mScreenHeight / 2, mBarrelEnd.x, mBarrelEnd.y, mCannonPaint);
+        if (mFullRedraw) {
+            mFullRedraw = false;
+            mDirtyRect.set(0, 0, width, getHeight());
+        }
+        else {
+            mDirtyRect.set(bounds);
+            mDirtyRect.union(mPreviousBounds);
+        }
 
-        // draw the cannon base
-        canvas.drawCircle(0, (int)mScreenHeight / 2, (int)mCannonBaseRadius, mCannonPaint);
+        mPreviousBounds.set(bounds);
+        return mDirtyRect;
+    }
 
-        // draw the blocker
-        canvas.drawLine(mBlocker.getStart().x, mBlocker.getStart().y, mBlocker.getEnd().x, mBlocker.getEnd().y, mBlockerPaint);
+    // adds a moving line's bounds, widened by margin, to bounds
+    private void unionLine(Rect bounds, MovingLine line, float alpha, int margin) {
+        line.interpolate(alpha, mLineFrame);
+        bounds.union(
+                (int) Math.min(mLineFrame.getStartX(), mLineFrame.getEndX()) - margin,
+                (int) Math.min(mLineFrame.getStartY(), mLineFrame.getEndY()) - margin,
+                (int) Math.max(mLineFrame.getStartX(), mLineFrame.getEndX()) + margin + 1,
+                (int) Math.max(mLineFrame.getStartY(), mLineFrame.getEndY()) + margin + 1);
+    }
 
-        Point currentPoint = new Point();   // start of current target section
+    // draws the game through the given renderer; alpha is the fraction
+    // of a step to interpolate moving elements by
+    public void drawGameElements(GameRenderer renderer, float alpha) {
+        char[] overlay = null;  // frame times, when visible
+        if (mProfilerOverlayVisible) {
+            if (++mOverlayFrames >= PROFILER_REFRESH_FRAMES) {
+                mOverlayFrames = 0;
+                buildProfilerOverlay();
+            }
+            overlay = mOverlayChars;
+        }
 
-        // initialize currentPoint to the starting point of the target
-        currentPoint.x = mTarget.getStart().x;
-        currentPoint.y = mTarget.getStart().y;
+        mDrawer.draw(renderer, mGame, alpha, mTimeText, overlay, mOverlayLineEnds);
+    }
 
-        // draw the target
-        for (int i = 0; i < TARGET_PIECES; i++) {
-              // if this target piece is not hit draw it
-            if(!mHitStates[i]) {
-                // alternate coloring the pieces
-                if(i % 2 != 0)
-                    mTargetPaint.setColor(Color.BLUE);
-                else
-                    mTargetPaint.setColor(Color.YELLOW);
+    // formats the latest profiler snapshot into mOverlayChars
+    private void buildProfilerOverlay() {
+        mProfiler.snapshot(mProfilerReport);
+        StringBuilder builder = mOverlayBuilder;
+        builder.setLength(0);
+
+        for (int phase = 0; phase < FrameProfiler.PHASE_COUNT; phase++) {
+            builder.append(FrameProfiler.getPhaseName(phase));
+            builder.append("  p50 ");
+            appendMillis(builder, mProfilerReport.getPercentile(phase, FrameProfiler.P50));
+            builder.append("  p95 ");
+            appendMillis(builder, mProfilerReport.getPercentile(phase, FrameProfiler.P95));
+            builder.append("  p99 ");
+            appendMillis(builder, mProfilerReport.getPercentile(phase, FrameProfiler.P99));
+            builder.append(" ms");
+            mOverlayLineEnds[phase] = builder.length();
+        }
+        builder.append("dropped ").append(mProfilerReport.getDroppedFrames());
+        builder.append(" of ").append(mProfilerReport.getTotalFrames());
+        mOverlayLineEnds[FrameProfiler.PHASE_COUNT] = builder.length();
 
-                canvas.drawLine(currentPoint.x, currentPoint.y, mTarget.getEnd().x, (int)(currentPoint.y + mPieceLength), mTargetPaint);
-            }
+        if (mOverlayChars.length < builder.length())
+            mOverlayChars = new char[builder.length() * 2];
+        builder.getChars(0, builder.length(), mOverlayChars, 0);
+    }
 
-            // move currentPoint to the start of the next piece
-            currentPoint.y += mPieceLength;
-        }
+    // appends nanoseconds as milliseconds with two decimals
+    private static void appendMillis(StringBuilder builder, long nanos) {
+        long hundredths = nanos / 10000;
+        builder.append(hundredths / 100).append('.');
+        if (hundredths % 100 < 10)
+            builder.append('0');
+        builder.append(hundredths % 100);
     }
 
     // called when surface is first created
@@ -448,7 +426,7 @@ public class CannonView extends SurfaceView
     // called when surface changes size
     @Override
     public void surfaceChanged(SurfaceHolder surfaceHolder, int i, int i2, int i3) {
-
+        mFullRedraw = true; // the new surface has nothing on it yet
     }
 
     // called when the surface is destroyed
@@ -473,8 +451,9 @@ public class CannonView extends SurfaceView
         // get int representing the type of action which caused this event
         int action = event.getAction();
 
-        // the user touched the screen or dragged along the screen
-        if(action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_MOVE) {
+        // the user touched the screen, dragged along it or lifted the finger
+        if(action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_MOVE
+                || action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
             fireCannonball(event);  // fire the cannonball toward the touch point
         }
         return true;
@@ -484,6 +463,7 @@ public class CannonView extends SurfaceView
     public class CannonThread extends Thread {
         private SurfaceHolder mSurfaceHolder;   // for manipulating canvas
         private boolean mThreadIsRunning = true;    // running by default
+        private final FixedTimestep mTimestep = new FixedTimestep(); // paces the simulation
 
         // initializes the surface holder
         public CannonThread(SurfaceHolder holder) {
@@ -501,29 +481,111 @@ public class CannonView extends SurfaceView
         @Override
         public void run() {
             Canvas canvas = null;
-            long previousFrameTime = System.currentTimeMillis();
+            GlRenderer glRenderer = null;   // set while drawing with OpenGL ES
+            FrameScheduler scheduler = mFrameScheduler;
+            scheduler.start();
+            mProfiler.reset();
+            mTimestep.reset(System.nanoTime());
+            long previousFrameStart = 0;    // for the frame interval
+            mFullRedraw = true;     // nothing has been drawn by this thread yet
+            synchronized (mSurfaceHolder) {
+                mRecording.resume();    // a paused game carries on
+            }
 
             while (mThreadIsRunning) {
-                try {
-                    // get Canvas for exclusive drawing from this thread
-                    canvas = mSurfaceHolder.lockCanvas(null);
-
-                    // lock the surfaceHolder for drawing
-                    synchronized (mSurfaceHolder) {
-                        long currentTime = System.currentTimeMillis();
-                        double elapsedTimeMs = currentTime - previousFrameTime;
-                        mTotalElapsedTime += elapsedTimeMs / 1000.0;
-                        updatePositions(elapsedTimeMs); // update game state
-                        drawGameElements(canvas);   // draw using the canvas
-                        previousFrameTime = currentTime; // update previous time
+                // switch schedulers if a different one was selected
+                if (scheduler != mFrameScheduler) {
+                    scheduler.stop();
+                    scheduler = mFrameScheduler;
+                    scheduler.start();
+                }
+
+                // switch renderers if the other one was selected
+                if (mGlRenderingEnabled && glRenderer == null) {
+                    glRenderer = new GlRenderer();
+                    if (!glRenderer.start(mSurfaceHolder.getSurface())) {
+                        Log.w(TAG, "OpenGL ES unavailable, drawing with the Canvas");
+                        glRenderer.stop();
+                        glRenderer = null;
+                        mGlRenderingEnabled = false;
                     }
-                } finally {
-                    // display canva's contents on the CannonView
-                    // and enable other threads to use the Canvas
-                    if(canvas != null)
-                        mSurfaceHolder.unlockCanvasAndPost(canvas);
                 }
+                else if (!mGlRenderingEnabled && glRenderer != null) {
+                    glRenderer.stop();  // lets the Canvas lock the surface again
+                    glRenderer = null;
+                    mFullRedraw = true;
+                }
+
+                // wait until it is time for the next frame
+                scheduler.awaitFrame();
+
+                // phase boundaries for the profiler
+                long frameStart = System.nanoTime();
+                long lockStart;
+                long drawStart = frameStart;
+                long drawEnd = frameStart;
+                Rect dirty = null;  // null locks the whole surface
+
+                // lock the surfaceHolder for updating
+                synchronized (mSurfaceHolder) {
+                    // run as many fixed steps as real time allows so the
+                    // outcome is the same at any frame rate
+                    int steps = mTimestep.advance(frameStart);
+                    for (int i = 0; i < steps && !mGame.isGameOver(); i++) {
+                        mTouchQueue.drain(mTouchConsumer);  // touches since the last step
+                        mGame.step();   // update game state
+                    }
+
+                    if (glRenderer != null)   // batch the frame while the state is locked
+                        drawGameElements(glRenderer.getBatch(), mTimestep.getAlpha());
+                    else if (mDirtyRectEnabled)
+                        dirty = computeDirtyRect(mTimestep.getAlpha());
+                }
+                lockStart = System.nanoTime();
+
+                if (glRenderer != null) {
+                    // upload the batch and draw it in one call, then wait
+                    // for the display to take it
+                    drawStart = lockStart;
+                    glRenderer.draw(getWidth(), getHeight());
+                    drawEnd = System.nanoTime();
+                    glRenderer.swapBuffers();
+                }
+                else {
+                    try {
+                        // get Canvas for exclusive drawing from this thread;
+                        // the canvas is clipped to the dirty area
+                        canvas = mSurfaceHolder.lockCanvas(dirty);
+                        drawStart = System.nanoTime();
+
+                        // lock the surfaceHolder for drawing
+                        synchronized (mSurfaceHolder) {
+                            mCanvasRenderer.setCanvas(canvas);
+                            drawGameElements(mCanvasRenderer, mTimestep.getAlpha());   // draw using the canvas
+                            drawEnd = System.nanoTime();
+                        }
+                    } finally {
+                        // display canva's contents on the CannonView
+                        // and enable other threads to use the Canvas
+                        if(canvas != null)
+                            mSurfaceHolder.unlockCanvasAndPost(canvas);
+                    }
+                }
+
+                long frameEnd = System.nanoTime();
+                mProfiler.record(lockStart - frameStart, drawEnd - drawStart,
+                        (drawStart - lockStart) + (frameEnd - drawEnd),
+                        previousFrameStart == 0 ? 0 : frameStart - previousFrameStart);
+                previousFrameStart = frameStart;
+            }
+
+            if (glRenderer != null)
+                glRenderer.stop();
+            synchronized (mSurfaceHolder) {
+                mRecording.finish(mGame.getTicks());    // in case the game was left
             }
+            scheduler.stop();
+            Log.i(TAG, "Frame stats: " + scheduler.getStats());
         }
     }
 
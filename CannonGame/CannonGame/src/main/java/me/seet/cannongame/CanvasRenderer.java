@@ -0,0 +1,66 @@
+package me.seet.cannongame;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import java.util.Arrays;
+
+// CanvasRenderer.java
+// Draws through a software Canvas from SurfaceHolder.lockCanvas; the
+// fallback whenever the GPU path isn't available
+public class CanvasRenderer implements GameRenderer {
+    private Canvas mCanvas; // canvas of the frame being drawn
+    private Paint[] mPaints = new Paint[0]; // by number, each set up once and never changed
+
+    // draws the next frame into canvas
+    public void setCanvas(Canvas canvas) {
+        mCanvas = canvas;
+    }
+
+    @Override
+    public void setShapePaint(int paint, int color, float width) {
+        Paint shapePaint = newPaint(paint, 0);
+        shapePaint.setColor(color);
+        shapePaint.setStrokeWidth(width);
+    }
+
+    @Override
+    public void setTextPaint(int paint, int color, float size) {
+        Paint textPaint = newPaint(paint, Paint.ANTI_ALIAS_FLAG);  // smoothes the text
+        textPaint.setColor(color);
+        textPaint.setTextSize(size);
+    }
+
+    // replaces paint number paint with a new Paint with the given flags
+    private Paint newPaint(int paint, int flags) {
+        if (paint >= mPaints.length)
+            mPaints = Arrays.copyOf(mPaints, paint + 1);
+        mPaints[paint] = new Paint(flags);
+        return mPaints[paint];
+    }
+
+    @Override
+    public void beginFrame(int color) {
+        mCanvas.drawColor(color);   // fills only the clip when partially redrawing
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float endX, float endY, int paint) {
+        mCanvas.drawLine(startX, startY, endX, endY, mPaints[paint]);
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, int paint) {
+        mCanvas.drawCircle(centerX, centerY, radius, mPaints[paint]);
+    }
+
+    @Override
+    public void drawText(char[] text, int start, int count, float x, float y, int paint) {
+        mCanvas.drawText(text, start, count, x, y, mPaints[paint]);
+    }
+
+    @Override
+    public void endFrame() {
+        mCanvas = null; // the canvas is only valid until it is posted
+    }
+}
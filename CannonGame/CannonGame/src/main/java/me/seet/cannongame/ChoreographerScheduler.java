@@ -0,0 +1,85 @@
+package me.seet.cannongame;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+// ChoreographerScheduler.java
+// Starts a frame on each display vsync: a Choreographer callback on the
+// main thread counts vsyncs and wakes the game loop, so the loop never
+// produces frames faster than the display shows them
+public class ChoreographerScheduler extends FrameScheduler
+    implements Choreographer.FrameCallback
+{
+    private static final long MAX_WAIT_MS = 100; // don't hang if vsyncs stop
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Object mLock = new Object();  // guards the vsync counts
+    private long mVsyncs;   // vsyncs seen by the main thread
+    private long mVsyncsUsed;   // vsyncs already turned into frames
+    private volatile boolean mActive;   // keep listening for vsyncs?
+
+    // (re)registers for vsync callbacks; runs on the main thread
+    private final Runnable mRegister = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer choreographer = Choreographer.getInstance();
+            choreographer.removeFrameCallback(ChoreographerScheduler.this);
+            if (mActive)
+                choreographer.postFrameCallback(ChoreographerScheduler.this);
+        }
+    };
+
+    @Override
+    protected void onStart() {
+        synchronized (mLock) {
+            mVsyncsUsed = mVsyncs;  // only wait for vsyncs from now on
+        }
+        mActive = true;
+        mMainHandler.post(mRegister);
+    }
+
+    @Override
+    protected void onStop() {
+        mActive = false;
+        mMainHandler.post(mRegister);   // removes the callback
+
+        synchronized (mLock) {
+            mLock.notifyAll();  // release a waiting game loop
+        }
+    }
+
+    // called on the main thread at each vsync
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        synchronized (mLock) {
+            ++mVsyncs;
+            mLock.notifyAll();
+        }
+
+        if (mActive)
+            Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    protected void waitForFrame() {
+        synchronized (mLock) {
+            long deadline = System.currentTimeMillis() + MAX_WAIT_MS;
+            while (mVsyncs == mVsyncsUsed && mActive) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    break;  // no vsync arrived; draw anyway
+
+                try {
+                    mLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            // frames missed while working are skipped, not made up
+            mVsyncsUsed = mVsyncs;
+        }
+    }
+}
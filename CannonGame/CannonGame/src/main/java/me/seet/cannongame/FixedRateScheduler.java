@@ -0,0 +1,36 @@
+package me.seet.cannongame;
+
+import java.util.concurrent.locks.LockSupport;
+
+// FixedRateScheduler.java
+// Starts frames at a fixed rate, parking the game loop between frames;
+// when a frame runs late the schedule restarts instead of catching up
+public class FixedRateScheduler extends FrameScheduler {
+    private final long mPeriodNanos;    // time between frame starts
+    private long mLastFrame;    // scheduled start of the previous frame
+
+    public FixedRateScheduler(int framesPerSecond) {
+        mPeriodNanos = 1000000000L / framesPerSecond;
+    }
+
+    @Override
+    protected void onStart() {
+        mLastFrame = System.nanoTime() - mPeriodNanos; // first frame at once
+    }
+
+    @Override
+    protected void waitForFrame() {
+        long deadline = mLastFrame + mPeriodNanos;
+        long remaining;
+
+        // parkNanos may return early, so park until the deadline passes
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted())
+                break;
+        }
+
+        long now = System.nanoTime();
+        mLastFrame = now - deadline > mPeriodNanos ? now : deadline;
+    }
+}
@@ -0,0 +1,44 @@
+package me.seet.cannongame;
+
+// FixedTimestep.java
+// Turns System.nanoTime readings into a whole number of fixed-length
+// simulation steps; leftover time stays in an accumulator and is exposed
+// as the interpolation factor used when rendering between two steps
+public class FixedTimestep {
+    public static final long STEP_NANOS = 1000000000L / 120; // 120 steps per second
+    public static final double STEP_SECONDS = STEP_NANOS / 1e9; // length of one step
+    public static final int MAX_STEPS_PER_FRAME = 30; // at most 1/4 second per frame
+
+    private long mPreviousTime; // nanoTime of the previous call to advance
+    private long mAccumulator;  // real time not yet consumed by steps
+
+    // starts measuring from the given time, discarding any leftover time
+    public void reset(long nowNanos) {
+        mPreviousTime = nowNanos;
+        mAccumulator = 0;
+    }
+
+    // returns the number of steps to simulate for the time since last call
+    public int advance(long nowNanos) {
+        long elapsed = nowNanos - mPreviousTime;
+        mPreviousTime = nowNanos;
+
+        if (elapsed > 0)
+            mAccumulator += elapsed;
+
+        long steps = mAccumulator / STEP_NANOS;
+        mAccumulator -= steps * STEP_NANOS;
+
+        // after a long stall drop the extra time instead of trying
+        // to catch up, which would only stall the next frame as well
+        if (steps > MAX_STEPS_PER_FRAME)
+            steps = MAX_STEPS_PER_FRAME;
+
+        return (int) steps;
+    }
+
+    // fraction of a step elapsed since the last simulated step, 0 to 1
+    public float getAlpha() {
+        return (float) mAccumulator / STEP_NANOS;
+    }
+}
@@ -0,0 +1,146 @@
+package me.seet.cannongame;
+
+import java.util.Arrays;
+
+// FrameProfiler.java
+// Records how long each phase of a frame took into a ring buffer of the
+// most recent frames and summarizes them as percentiles. One thread
+// records; any thread may read a snapshot without locking and without
+// slowing the recording thread down
+public class FrameProfiler {
+    // phases of a frame
+    public static final int UPDATE = 0; // simulation steps
+    public static final int DRAW = 1;   // drawGameElements
+    public static final int CANVAS_WAIT = 2;    // lockCanvas and unlockCanvasAndPost
+    public static final int FRAME = 3;  // start of one frame to start of the next
+    public static final int PHASE_COUNT = 4;
+    private static final String[] PHASE_NAMES = { "update", "draw", "canvas", "frame" };
+
+    // percentiles reported for each phase
+    public static final int P50 = 0;
+    public static final int P95 = 1;
+    public static final int P99 = 2;
+    private static final double[] PERCENTILES = { 0.50, 0.95, 0.99 };
+
+    public static final int CAPACITY = 256; // frames kept; a power of two
+
+    private final long[][] mSamples = new long[PHASE_COUNT][CAPACITY];
+    private final long mDroppedThresholdNanos;  // a longer frame missed a vsync
+    private volatile long mFramesRecorded;  // publishes the samples written
+    private volatile long mDroppedFrames;   // frames longer than the threshold
+
+    // frames longer than one and a half frameBudgetNanos count as dropped
+    public FrameProfiler(long frameBudgetNanos) {
+        mDroppedThresholdNanos = frameBudgetNanos * 3 / 2;
+    }
+
+    // records one frame's phase times in nanoseconds; recording thread only
+    public void record(long updateNanos, long drawNanos, long canvasWaitNanos, long frameNanos) {
+        long frame = mFramesRecorded;
+        int slot = (int) (frame & (CAPACITY - 1));
+        mSamples[UPDATE][slot] = updateNanos;
+        mSamples[DRAW][slot] = drawNanos;
+        mSamples[CANVAS_WAIT][slot] = canvasWaitNanos;
+        mSamples[FRAME][slot] = frameNanos;
+
+        if (frameNanos > mDroppedThresholdNanos)
+            mDroppedFrames = mDroppedFrames + 1;
+
+        mFramesRecorded = frame + 1;    // make the samples visible to readers
+    }
+
+    // forgets every recorded frame; recording thread only
+    public void reset() {
+        mFramesRecorded = 0;
+        mDroppedFrames = 0;
+    }
+
+    // fills report with percentiles over the most recent frames; safe on
+    // any thread and allocates nothing
+    public void snapshot(Report report) {
+        long end = mFramesRecorded;
+        int count = (int) Math.min(end, CAPACITY);
+        long first = end - count;
+
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            long[] scratch = report.mScratch[phase];
+            for (int i = 0; i < count; i++)
+                scratch[i] = mSamples[phase][(int) ((first + i) & (CAPACITY - 1))];
+        }
+
+        // the recorder may have overwritten the oldest frames while they
+        // were copied, including the frame it is writing now; skip them
+        long oldestIntact = mFramesRecorded + 1 - CAPACITY;
+        int skip = (int) Math.max(0, oldestIntact - first);
+        if (skip > count)
+            skip = count;
+
+        report.mFrames = count - skip;
+        report.mTotalFrames = end;
+        report.mDroppedFrames = mDroppedFrames;
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            long[] scratch = report.mScratch[phase];
+            Arrays.sort(scratch, skip, count);
+            for (int p = 0; p < PERCENTILES.length; p++)
+                report.mPercentiles[phase][p] =
+                        percentile(scratch, skip, count - skip, PERCENTILES[p]);
+        }
+    }
+
+    // nearest-rank percentile of a sorted range
+    private static long percentile(long[] sorted, int offset, int length, double fraction) {
+        if (length == 0)
+            return 0;
+
+        int rank = (int) Math.ceil(fraction * length);
+        return sorted[offset + Math.max(rank, 1) - 1];
+    }
+
+    // describes the most recent frames, one phase per line
+    public String dump() {
+        Report report = new Report();
+        snapshot(report);
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%d frames (%d in window), %d dropped%n",
+                report.getTotalFrames(), report.getFrames(), report.getDroppedFrames()));
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            builder.append(String.format("%-7s p50 %7.3f ms  p95 %7.3f ms  p99 %7.3f ms%n",
+                    PHASE_NAMES[phase],
+                    report.getPercentile(phase, P50) / 1e6,
+                    report.getPercentile(phase, P95) / 1e6,
+                    report.getPercentile(phase, P99) / 1e6));
+        }
+        return builder.toString();
+    }
+
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    // percentiles of the recent frames; reuse one Report to avoid allocating
+    public static class Report {
+        private final long[][] mScratch = new long[PHASE_COUNT][CAPACITY];
+        private final long[][] mPercentiles = new long[PHASE_COUNT][PERCENTILES.length];
+        private int mFrames;    // frames the percentiles cover
+        private long mTotalFrames;  // frames recorded since reset
+        private long mDroppedFrames;    // dropped frames since reset
+
+        // nanoseconds; percentile is P50, P95 or P99
+        public long getPercentile(int phase, int percentile) {
+            return mPercentiles[phase][percentile];
+        }
+
+        public int getFrames() {
+            return mFrames;
+        }
+
+        public long getTotalFrames() {
+            return mTotalFrames;
+        }
+
+        public long getDroppedFrames() {
+            return mDroppedFrames;
+        }
+    }
+}
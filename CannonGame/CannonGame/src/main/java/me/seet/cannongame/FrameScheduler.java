@@ -0,0 +1,47 @@
+package me.seet.cannongame;
+
+// FrameScheduler.java
+// Decides when the game loop starts its next frame and records in
+// FrameStats how each frame's time split between working and waiting.
+// All methods are called on the game loop's thread
+public abstract class FrameScheduler {
+    private final FrameStats mStats = new FrameStats();
+    private long mFrameStart;   // when the current frame began, 0 before the first
+
+    // called before the first frame
+    public final void start() {
+        mStats.reset();
+        mFrameStart = 0;
+        onStart();
+    }
+
+    // called after the last frame
+    public final void stop() {
+        onStop();
+    }
+
+    // blocks until the next frame should begin
+    public final void awaitFrame() {
+        long waitStart = System.nanoTime();
+        waitForFrame();
+        long now = System.nanoTime();
+
+        if (mFrameStart != 0)
+            mStats.record(now - mFrameStart, waitStart - mFrameStart, now - waitStart);
+        mFrameStart = now;
+    }
+
+    public FrameStats getStats() {
+        return mStats;
+    }
+
+    protected void onStart() {
+    }
+
+    protected void onStop() {
+    }
+
+    // returns when the next frame should begin; returns early if the
+    // thread is interrupted, leaving the interrupt flag set
+    protected abstract void waitForFrame();
+}
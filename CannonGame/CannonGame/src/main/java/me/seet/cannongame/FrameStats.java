@@ -0,0 +1,84 @@
+package me.seet.cannongame;
+
+// FrameStats.java
+// Running totals of how long frames take and how that time splits between
+// working (busy) and waiting for the next frame (idle); a high busy share
+// means more power drawn per frame. Written by one thread, readable by any
+public class FrameStats {
+    private volatile long mFrames;  // frames recorded
+    private volatile long mTotalFrameNanos;  // sum of frame intervals
+    private volatile long mTotalBusyNanos;  // time spent producing frames
+    private volatile long mTotalIdleNanos;  // time spent waiting for frames
+    private volatile long mMinFrameNanos;   // shortest frame interval
+    private volatile long mMaxFrameNanos;   // longest frame interval
+    private volatile long mLastFrameNanos;  // most recent frame interval
+
+    public FrameStats() {
+        reset();
+    }
+
+    // forgets every recorded frame
+    public void reset() {
+        mFrames = 0;
+        mTotalFrameNanos = 0;
+        mTotalBusyNanos = 0;
+        mTotalIdleNanos = 0;
+        mMinFrameNanos = Long.MAX_VALUE;
+        mMaxFrameNanos = 0;
+        mLastFrameNanos = 0;
+    }
+
+    // records one frame that lasted frameNanos, of which busyNanos were
+    // spent working and idleNanos waiting
+    public void record(long frameNanos, long busyNanos, long idleNanos) {
+        mFrames = mFrames + 1;
+        mTotalFrameNanos = mTotalFrameNanos + frameNanos;
+        mTotalBusyNanos = mTotalBusyNanos + busyNanos;
+        mTotalIdleNanos = mTotalIdleNanos + idleNanos;
+        if (frameNanos < mMinFrameNanos)
+            mMinFrameNanos = frameNanos;
+        if (frameNanos > mMaxFrameNanos)
+            mMaxFrameNanos = frameNanos;
+        mLastFrameNanos = frameNanos;
+    }
+
+    public long getFrames() {
+        return mFrames;
+    }
+
+    public long getMinFrameNanos() {
+        return mFrames == 0 ? 0 : mMinFrameNanos;
+    }
+
+    public long getMaxFrameNanos() {
+        return mMaxFrameNanos;
+    }
+
+    public long getLastFrameNanos() {
+        return mLastFrameNanos;
+    }
+
+    public long getAverageFrameNanos() {
+        long frames = mFrames;
+        return frames == 0 ? 0 : mTotalFrameNanos / frames;
+    }
+
+    // frames produced per second of wall-clock time
+    public double getFramesPerSecond() {
+        long total = mTotalFrameNanos;
+        return total == 0 ? 0 : mFrames * 1e9 / total;
+    }
+
+    // share of the time spent working rather than waiting, 0 to 1
+    public double getBusyFraction() {
+        long total = mTotalBusyNanos + mTotalIdleNanos;
+        return total == 0 ? 0 : (double) mTotalBusyNanos / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d frames, %.1f fps, avg %.2f ms, min %.2f ms, max %.2f ms, busy %.0f%%",
+                getFrames(), getFramesPerSecond(), getAverageFrameNanos() / 1e6,
+                getMinFrameNanos() / 1e6, getMaxFrameNanos() / 1e6, getBusyFraction() * 100);
+    }
+}
@@ -0,0 +1,141 @@
+package me.seet.cannongame;
+
+// GameDrawer.java
+// Draws a frame of a CannonGame through any GameRenderer, interpolating
+// the moving elements between the last two steps; free of Android types
+// so the whole frame can be produced on a plain JVM
+public class GameDrawer {
+    // colors of the game elements
+    public static final int BACKGROUND_COLOR = 0xFFFFFFFF;  // white
+    public static final int TEXT_COLOR = 0xFF000000;        // black
+    public static final int CANNON_COLOR = 0xFF000000;
+    public static final int CANNONBALL_COLOR = 0xFF000000;
+    public static final int BLOCKER_COLOR = 0xFF000000;
+    public static final int[] TARGET_COLORS = {0xFFFFFF00, 0xFF0000FF}; // yellow, blue
+    public static final int OVERLAY_COLOR = 0xFF444444;     // dark gray
+
+    // numbers of the paints each renderer is given
+    public static final int TEXT_PAINT = 0;         // time remaining
+    public static final int OVERLAY_PAINT = 1;      // frame times
+    public static final int CANNON_PAINT = 2;       // hairline barrel and base
+    public static final int CANNONBALL_PAINT = 3;
+    public static final int BLOCKER_PAINT = 4;
+    public static final int TARGET_PAINT = 5;       // one per TARGET_COLORS, alternating pieces
+
+    public static final float TEXT_X = 30;  // left of the time remaining
+    public static final float TEXT_Y = 50;  // baseline of the time remaining
+
+    private final Line mLineFrame = new Line();  // blocker or target as drawn this frame
+    private float mTextSize;    // time remaining
+    private float mOverlayTextSize; // frame times
+    private GameRenderer mPaintsRenderer;   // renderer given the current paints
+
+    // sizes the text for a playing field of the given width
+    public void setSize(int width) {
+        mTextSize = width / 20; // text size 1/20 of screen width
+        mOverlayTextSize = width / 40;  // frame times at half the text size
+        mPaintsRenderer = null; // paints are set up again on the next frame
+    }
+
+    // gives renderer every paint, sized for game
+    private void setPaints(GameRenderer renderer, CannonGame game) {
+        float lineWidth = game.getLineWidth();
+        renderer.setTextPaint(TEXT_PAINT, TEXT_COLOR, mTextSize);
+        renderer.setTextPaint(OVERLAY_PAINT, OVERLAY_COLOR, mOverlayTextSize);
+        renderer.setShapePaint(CANNON_PAINT, CANNON_COLOR, 0);  // a hairline as it has always been
+        renderer.setShapePaint(CANNONBALL_PAINT, CANNONBALL_COLOR, 0);
+        renderer.setShapePaint(BLOCKER_PAINT, BLOCKER_COLOR, lineWidth);
+        for (int i = 0; i < TARGET_COLORS.length; i++)
+            renderer.setShapePaint(TARGET_PAINT + i, TARGET_COLORS[i], lineWidth);
+    }
+
+    // draws the game and the time remaining; overlayChars holds the lines
+    // of the frame time overlay ending at overlayLineEnds, or is null to
+    // leave it out
+    public void draw(GameRenderer renderer, CannonGame game, float alpha, HudText timeText,
+                     char[] overlayChars, int[] overlayLineEnds) {
+        int screenHeight = game.getHeight();
+        if (renderer != mPaintsRenderer) {  // a new renderer or a new size
+            setPaints(renderer, game);
+            mPaintsRenderer = renderer;
+        }
+
+        // clear the background
+        renderer.beginFrame(BACKGROUND_COLOR);
+
+        // display time remaining
+        timeText.setValue(game.getTimeLeft());
+        renderer.drawText(timeText.getChars(), 0, timeText.length(), TEXT_X, TEXT_Y, TEXT_PAINT);
+
+        // draw every cannonball currently on the screen
+        ProjectilePool cannonballs = game.getCannonballs();
+        int cannonballRadius = game.getCannonballRadius();
+        for (int i = 0; i < cannonballs.size(); i++)
+            renderer.drawCircle(cannonballs.getX(i, alpha), cannonballs.getY(i, alpha),
+                    cannonballRadius, CANNONBALL_PAINT);
+
+        // draw the cannon barrel
+        renderer.drawLine(0, screenHeight / 2, game.getBarrelEndX(), game.getBarrelEndY(),
+                CANNON_PAINT);
+
+        // draw the cannon base
+        renderer.drawCircle(0, screenHeight / 2, game.getCannonBaseRadius(), CANNON_PAINT);
+
+        // draw the blockers
+        Level level = game.getLevel();
+        for (MovingLine blocker : level.getBlockers()) {
+            blocker.interpolate(alpha, mLineFrame);
+            renderer.drawLine(mLineFrame.getStartX(), mLineFrame.getStartY(),
+                    mLineFrame.getEndX(), mLineFrame.getEndY(), BLOCKER_PAINT);
+        }
+
+        // draw the targets
+        for (Target target : level.getTargets()) {
+            // start of current target section
+            target.interpolate(alpha, mLineFrame);
+            float pieceLength = target.getPieceLength();
+            float currentY = mLineFrame.getStartY();
+
+            for (int i = 0; i < target.getPieceCount(); i++) {
+                // if this target piece is not hit draw it, alternating
+                // coloring the pieces
+                if (!target.isPieceHit(i))
+                    renderer.drawLine(mLineFrame.getStartX(), currentY, mLineFrame.getEndX(),
+                            currentY + pieceLength, TARGET_PAINT + i % TARGET_COLORS.length);
+
+                // move currentY to the start of the next piece
+                currentY += pieceLength;
+            }
+        }
+
+        if (overlayChars != null)
+            drawOverlay(renderer, overlayChars, overlayLineEnds);
+
+        renderer.endFrame();
+    }
+
+    // draws the frame time lines below the time remaining
+    private void drawOverlay(GameRenderer renderer, char[] chars, int[] lineEnds) {
+        float lineHeight = getOverlayLineHeight();
+        float y = TEXT_Y + lineHeight * 1.5f;
+        int start = 0;
+        for (int end : lineEnds) {
+            renderer.drawText(chars, start, end - start, TEXT_X, y, OVERLAY_PAINT);
+            start = end;
+            y += lineHeight;
+        }
+    }
+
+    public float getTextSize() {
+        return mTextSize;
+    }
+
+    public float getOverlayLineHeight() {
+        return mOverlayTextSize * 1.2f;
+    }
+
+    // lowest point the frame time overlay with the given lines draws at
+    public float getOverlayBottom(int lines) {
+        return TEXT_Y + getOverlayLineHeight() * (1.5f + lines);
+    }
+}
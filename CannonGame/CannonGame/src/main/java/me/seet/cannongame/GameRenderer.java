@@ -0,0 +1,32 @@
+package me.seet.cannongame;
+
+// GameRenderer.java
+// The few drawing operations a frame of the Cannon Game needs, so the
+// game can be drawn through a Canvas or batched for the GPU. Shapes and
+// text are drawn with numbered paints set up once, not per frame, so a
+// renderer can keep a ready Paint for each; colors are ARGB ints as used
+// by android.graphics.Color
+public interface GameRenderer {
+    // sets up paint number paint for lines and circles of color; lines are
+    // width pixels thick with flat ends, and 0 draws a hairline
+    void setShapePaint(int paint, int color, float width);
+
+    // sets up paint number paint for text of color and size
+    void setTextPaint(int paint, int color, float size);
+
+    // starts a frame by filling the drawing area with color
+    void beginFrame(int color);
+
+    // draws a line with a shape paint
+    void drawLine(float startX, float startY, float endX, float endY, int paint);
+
+    // draws a filled circle with a shape paint
+    void drawCircle(float centerX, float centerY, float radius, int paint);
+
+    // draws count characters of text starting at start with a text paint,
+    // with the left end of the baseline at x, y
+    void drawText(char[] text, int start, int count, float x, float y, int paint);
+
+    // finishes the frame
+    void endFrame();
+}
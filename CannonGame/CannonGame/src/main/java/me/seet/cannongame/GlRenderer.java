@@ -0,0 +1,304 @@
+package me.seet.cannongame;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+import android.util.Log;
+import android.view.Surface;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+// GlRenderer.java
+// Draws frames with OpenGL ES 2.0 on the view's Surface: the game is
+// drawn into a VertexBatch, uploaded into one vertex buffer and drawn
+// with one call against a single atlas texture. All methods must be
+// called from the thread that called start
+public class GlRenderer {
+    public static final String TAG = "GlRenderer";  // for logging errors
+
+    private static final int ATLAS_SIZE = 512;  // pixels on each side of the atlas
+    private static final float GLYPH_SIZE = 48; // text size the glyphs are drawn at
+
+    private static final String VERTEX_SHADER =
+            "uniform vec2 u_scale;\n" +
+            "attribute vec2 a_position;\n" +
+            "attribute vec2 a_uv;\n" +
+            "attribute vec4 a_color;\n" +
+            "varying vec2 v_uv;\n" +
+            "varying vec4 v_color;\n" +
+            "void main() {\n" +
+            "    v_uv = a_uv;\n" +
+            "    v_color = a_color;\n" +
+            "    gl_Position = vec4(a_position * u_scale + vec2(-1.0, 1.0), 0.0, 1.0);\n" +
+            "}\n";
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "uniform sampler2D u_texture;\n" +
+            "varying vec2 v_uv;\n" +
+            "varying vec4 v_color;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = vec4(v_color.rgb, v_color.a * texture2D(u_texture, v_uv).a);\n" +
+            "}\n";
+
+    private final VertexBatch mBatch;
+    private Bitmap mAtlasBitmap;    // uploaded by start, then recycled
+
+    // EGL and GL objects, created by start
+    private EGLDisplay mDisplay;
+    private EGLContext mContext;
+    private EGLSurface mSurface;
+    private int mProgram;
+    private int mScaleLocation;
+    private int mPositionLocation;
+    private int mUvLocation;
+    private int mColorLocation;
+    private final int[] mTexture = new int[1];
+    private final int[] mVertexBuffer = new int[1];
+    private IntBuffer mVertices = IntBuffer.allocate(0);    // staging for uploads
+
+    // draws the atlas; the GL objects are created by start
+    public GlRenderer() {
+        TextureAtlas atlas = new TextureAtlas(GLYPH_SIZE);
+        mAtlasBitmap = drawAtlas(atlas);
+        mBatch = new VertexBatch(atlas);
+    }
+
+    // draws an opaque square, a disc and every glyph in white and records
+    // where each lies in atlas
+    private static Bitmap drawAtlas(TextureAtlas atlas) {
+        Bitmap bitmap = Bitmap.createBitmap(ATLAS_SIZE, ATLAS_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(0xFFFFFFFF);
+        float texel = 1f / ATLAS_SIZE;
+
+        // an opaque square, sampled from its middle for solid shapes
+        canvas.drawRect(0, 0, 4, 4, paint);
+        atlas.setSolid(2 * texel, 2 * texel);
+
+        // a disc stretched over every circle's bounding square
+        canvas.drawCircle(40, 40, 31.5f, paint);
+        atlas.setDisc(8 * texel, 8 * texel, 72 * texel, 72 * texel);
+
+        // glyphs in rows below the disc, each with a pixel of space around it
+        paint.setTextSize(GLYPH_SIZE);
+        Rect bounds = new Rect();
+        int x = 80;
+        int y = 2;
+        int rowHeight = 72;
+        for (char c = TextureAtlas.FIRST_CHAR; c <= TextureAtlas.LAST_CHAR; c++) {
+            String glyph = String.valueOf(c);
+            paint.getTextBounds(glyph, 0, 1, bounds);
+            int width = bounds.right - bounds.left;
+            int height = bounds.bottom - bounds.top;
+
+            if (x + width + 2 > ATLAS_SIZE) {   // next row
+                x = 2;
+                y += rowHeight + 2;
+                rowHeight = 0;
+            }
+            rowHeight = Math.max(rowHeight, height);
+
+            canvas.drawText(glyph, x - bounds.left, y - bounds.top, paint);
+            atlas.setGlyph(c, x * texel, y * texel, (x + width) * texel, (y + height) * texel,
+                    bounds.left, bounds.top, bounds.right, bounds.bottom,
+                    paint.measureText(glyph));
+            x += width + 2;
+        }
+        return bitmap;
+    }
+
+    // connects to surface and creates the shaders, texture and vertex
+    // buffer; returns false if OpenGL ES 2.0 isn't available, after which
+    // stop must still be called
+    public boolean start(Surface surface) {
+        mDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        if (mDisplay == null || !EGL14.eglInitialize(mDisplay, version, 0, version, 1))
+            return fail("eglInitialize");
+
+        int[] configAttributes = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                EGL14.EGL_NONE };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] configCount = new int[1];
+        if (!EGL14.eglChooseConfig(mDisplay, configAttributes, 0, configs, 0, 1, configCount, 0)
+                || configCount[0] == 0)
+            return fail("eglChooseConfig");
+
+        int[] contextAttributes = { EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE };
+        mContext = EGL14.eglCreateContext(mDisplay, configs[0], EGL14.EGL_NO_CONTEXT,
+                contextAttributes, 0);
+        if (mContext == null || mContext.equals(EGL14.EGL_NO_CONTEXT))
+            return fail("eglCreateContext");
+
+        mSurface = EGL14.eglCreateWindowSurface(mDisplay, configs[0], surface,
+                new int[] { EGL14.EGL_NONE }, 0);
+        if (mSurface == null || mSurface.equals(EGL14.EGL_NO_SURFACE))
+            return fail("eglCreateWindowSurface");
+
+        if (!EGL14.eglMakeCurrent(mDisplay, mSurface, mSurface, mContext))
+            return fail("eglMakeCurrent");
+
+        mProgram = createProgram();
+        if (mProgram == 0)
+            return false;
+        mScaleLocation = GLES20.glGetUniformLocation(mProgram, "u_scale");
+        mPositionLocation = GLES20.glGetAttribLocation(mProgram, "a_position");
+        mUvLocation = GLES20.glGetAttribLocation(mProgram, "a_uv");
+        mColorLocation = GLES20.glGetAttribLocation(mProgram, "a_color");
+
+        // the atlas is the only texture
+        GLES20.glGenTextures(1, mTexture, 0);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture[0]);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        if (mAtlasBitmap != null) {
+            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, mAtlasBitmap, 0);
+            mAtlasBitmap.recycle();
+            mAtlasBitmap = null;
+        }
+
+        GLES20.glGenBuffers(1, mVertexBuffer, 0);
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        return true;
+    }
+
+    private boolean fail(String call) {
+        Log.e(TAG, call + " failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        return false;
+    }
+
+    // compiles and links the shaders, returning 0 on failure
+    private static int createProgram() {
+        int vertexShader = compileShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
+        int fragmentShader = compileShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+        if (vertexShader == 0 || fragmentShader == 0)
+            return 0;
+
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glLinkProgram(program);
+        GLES20.glDeleteShader(vertexShader);    // freed along with the program
+        GLES20.glDeleteShader(fragmentShader);
+
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.e(TAG, "Can't link program: " + GLES20.glGetProgramInfoLog(program));
+            GLES20.glDeleteProgram(program);
+            return 0;
+        }
+        return program;
+    }
+
+    private static int compileShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.e(TAG, "Can't compile shader: " + GLES20.glGetShaderInfoLog(shader));
+            GLES20.glDeleteShader(shader);
+            return 0;
+        }
+        return shader;
+    }
+
+    // the batch to draw each frame into before calling draw
+    public VertexBatch getBatch() {
+        return mBatch;
+    }
+
+    // uploads the batch and draws it with one call
+    public void draw(int width, int height) {
+        int clearColor = mBatch.getClearColor();
+        GLES20.glViewport(0, 0, width, height);
+        GLES20.glClearColor(((clearColor >> 16) & 0xff) / 255f, ((clearColor >> 8) & 0xff) / 255f,
+                (clearColor & 0xff) / 255f, (clearColor >>> 24) / 255f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        int vertices = mBatch.getVertexCount();
+        if (vertices == 0)
+            return;
+
+        // stage the vertices in native memory, growing it only when needed
+        int ints = vertices * VertexBatch.INTS_PER_VERTEX;
+        if (mVertices.capacity() < ints) {
+            mVertices = ByteBuffer.allocateDirect(ints * 2 * 4)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        mVertices.clear();
+        mVertices.put(mBatch.getData(), 0, ints);
+        mVertices.position(0);
+
+        GLES20.glUseProgram(mProgram);
+        GLES20.glUniform2f(mScaleLocation, 2f / width, -2f / height);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertexBuffer[0]);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, ints * 4, mVertices, GLES20.GL_STREAM_DRAW);
+
+        int stride = VertexBatch.BYTES_PER_VERTEX;
+        GLES20.glEnableVertexAttribArray(mPositionLocation);
+        GLES20.glVertexAttribPointer(mPositionLocation, 2, GLES20.GL_FLOAT, false, stride, 0);
+        GLES20.glEnableVertexAttribArray(mUvLocation);
+        GLES20.glVertexAttribPointer(mUvLocation, 2, GLES20.GL_FLOAT, false, stride, 8);
+        GLES20.glEnableVertexAttribArray(mColorLocation);
+        GLES20.glVertexAttribPointer(mColorLocation, 4, GLES20.GL_UNSIGNED_BYTE, true, stride, 16);
+
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, vertices);
+    }
+
+    // shows the drawn frame; may wait for the display
+    public boolean swapBuffers() {
+        return EGL14.eglSwapBuffers(mDisplay, mSurface);
+    }
+
+    // frees every GL and EGL object and disconnects from the surface so
+    // the Canvas path can lock it again
+    public void stop() {
+        if (mDisplay == null)
+            return;
+
+        if (mContext != null && mSurface != null
+                && EGL14.eglMakeCurrent(mDisplay, mSurface, mSurface, mContext)) {
+            GLES20.glDeleteBuffers(1, mVertexBuffer, 0);
+            GLES20.glDeleteTextures(1, mTexture, 0);
+            if (mProgram != 0)
+                GLES20.glDeleteProgram(mProgram);
+        }
+
+        EGL14.eglMakeCurrent(mDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE,
+                EGL14.EGL_NO_CONTEXT);
+        if (mSurface != null)
+            EGL14.eglDestroySurface(mDisplay, mSurface);
+        if (mContext != null)
+            EGL14.eglDestroyContext(mDisplay, mContext);
+        EGL14.eglReleaseThread();
+        EGL14.eglTerminate(mDisplay);
+
+        mDisplay = null;
+        mContext = null;
+        mSurface = null;
+        mProgram = 0;
+    }
+}
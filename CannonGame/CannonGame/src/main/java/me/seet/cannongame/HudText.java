@@ -0,0 +1,71 @@
+package me.seet.cannongame;
+
+// HudText.java
+// Formats text such as "Time remaining: %.1f seconds" into a reused char
+// buffer so the HUD can be drawn every frame without creating Strings;
+// the text is only rebuilt when the displayed number changes
+public class HudText {
+    public static final String NUMBER_FORMAT = "%.1f";  // the supported placeholder
+    private static final int MAX_DIGITS = 20;   // enough for any long plus a sign
+
+    private final char[] mPrefix;   // text before the number
+    private final char[] mSuffix;   // text after the number
+    private final char mDecimalSeparator;
+    private final char[] mBuffer;   // the formatted text
+    private int mLength;    // characters used in mBuffer
+    private long mTenths = Long.MIN_VALUE;  // displayed value times ten
+
+    // format contains NUMBER_FORMAT once; text without it is shown as is
+    public HudText(String format, char decimalSeparator) {
+        int placeholder = format.indexOf(NUMBER_FORMAT);
+        if (placeholder < 0) {
+            mPrefix = format.toCharArray();
+            mSuffix = new char[0];
+        }
+        else {
+            mPrefix = format.substring(0, placeholder).toCharArray();
+            mSuffix = format.substring(placeholder + NUMBER_FORMAT.length()).toCharArray();
+        }
+
+        mDecimalSeparator = decimalSeparator;
+        mBuffer = new char[mPrefix.length + MAX_DIGITS + 1 + mSuffix.length];
+        System.arraycopy(mPrefix, 0, mBuffer, 0, mPrefix.length);
+        mLength = mPrefix.length;
+    }
+
+    // displays value rounded to one decimal place
+    public void setValue(double value) {
+        long tenths = Math.round(value * 10);
+        if (tenths == mTenths)
+            return; // the text would not change
+        mTenths = tenths;
+
+        // write the digits backwards into the end of the digit area
+        int end = mPrefix.length + MAX_DIGITS + 1;
+        int position = end;
+        long remaining = Math.abs(tenths);
+        mBuffer[--position] = (char) ('0' + remaining % 10);
+        mBuffer[--position] = mDecimalSeparator;
+        remaining /= 10;
+        do {
+            mBuffer[--position] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        if (tenths < 0)
+            mBuffer[--position] = '-';
+
+        // move the number next to the prefix and append the suffix
+        int digits = end - position;
+        System.arraycopy(mBuffer, position, mBuffer, mPrefix.length, digits);
+        System.arraycopy(mSuffix, 0, mBuffer, mPrefix.length + digits, mSuffix.length);
+        mLength = mPrefix.length + digits + mSuffix.length;
+    }
+
+    public char[] getChars() {
+        return mBuffer;
+    }
+
+    public int length() {
+        return mLength;
+    }
+}
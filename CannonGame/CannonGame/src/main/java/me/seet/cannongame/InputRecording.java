@@ -0,0 +1,218 @@
+package me.seet.cannongame;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// InputRecording.java
+// Captures a game's starting state and every input with the step it was
+// applied before, so the game can be replayed exactly and as fast as the
+// simulation runs; CannonGame never reads the clock, so the same inputs
+// at the same steps always give the same final state
+public class InputRecording {
+    private static final int FORMAT_VERSION = 3;    // first int of a saved recording
+
+    // kinds of recorded input
+    private static final byte FIRE = 0;         // fireCannonball toward x, y
+    private static final byte FIRE_MODE = 1;    // setFireMode to the mode in x
+    private static final byte RELEASE = 2;      // releaseTrigger
+
+    // starting state
+    private int mWidth;     // playing field passed to setSize
+    private int mHeight;
+    private int mMaxProjectiles;    // capacity of the game's pool
+    private int mLevelNumber;   // LevelGenerator level played, 0 for classic
+    private long mLevelSeed;
+    private CannonGame.FireMode mFireMode;  // fire mode when the game started
+    private long mEndTick = Long.MAX_VALUE; // step the game was left at, if unfinished
+
+    // inputs in the order they were applied, as parallel arrays
+    private long[] mTicks = new long[64];   // CannonGame.getTicks() when applied
+    private byte[] mTypes = new byte[64];
+    private float[] mX = new float[64];
+    private float[] mY = new float[64];
+    private int mSize;  // number of recorded inputs
+
+    // discards any inputs and records the state of the given game, which
+    // must have just had newGame called
+    public void start(CannonGame game) {
+        mWidth = game.getWidth();
+        mHeight = game.getHeight();
+        mMaxProjectiles = game.getCannonballs().capacity();
+        mLevelNumber = game.getLevel().getNumber();
+        mLevelSeed = game.getLevel().getSeed();
+        mFireMode = game.getFireMode();
+        mEndTick = Long.MAX_VALUE;
+        mSize = 0;
+    }
+
+    // records a fireCannonball call made before the given step
+    public void recordFire(long tick, float x, float y) {
+        add(tick, FIRE, x, y);
+    }
+
+    // records a releaseTrigger call made before the given step
+    public void recordRelease(long tick) {
+        add(tick, RELEASE, 0, 0);
+    }
+
+    // records a setFireMode call made before the given step
+    public void recordFireMode(long tick, CannonGame.FireMode fireMode) {
+        add(tick, FIRE_MODE, fireMode.ordinal(), 0);
+    }
+
+    // records that the game stopped being simulated before the given step;
+    // games that end on their own don't need this
+    public void finish(long tick) {
+        mEndTick = tick;
+    }
+
+    // clears the step recorded by finish when a stopped game carries on
+    public void resume() {
+        mEndTick = Long.MAX_VALUE;
+    }
+
+    private void add(long tick, byte type, float x, float y) {
+        if (mSize == mTicks.length) {
+            int capacity = mSize * 2;
+            mTicks = Arrays.copyOf(mTicks, capacity);
+            mTypes = Arrays.copyOf(mTypes, capacity);
+            mX = Arrays.copyOf(mX, capacity);
+            mY = Arrays.copyOf(mY, capacity);
+        }
+
+        mTicks[mSize] = tick;
+        mTypes[mSize] = type;
+        mX[mSize] = x;
+        mY[mSize] = y;
+        ++mSize;
+    }
+
+    // plays the recording in a new game without waiting between steps and
+    // returns the game in its final state
+    public CannonGame replay(CannonGame.Listener listener) {
+        CannonGame game = new CannonGame(mMaxProjectiles);
+        game.setSize(mWidth, mHeight);
+        if (mLevelNumber != 0)
+            game.setLevel(new LevelGenerator(mLevelSeed, mWidth, mHeight).generate(mLevelNumber));
+        game.setFireMode(mFireMode);
+        game.setListener(listener);
+        game.newGame();
+
+        int next = 0;   // next input to apply
+        while (!game.isGameOver() && game.getTicks() < mEndTick) {
+            // apply the inputs that came in before this step
+            while (next < mSize && mTicks[next] == game.getTicks()) {
+                if (mTypes[next] == FIRE)
+                    game.fireCannonball(mX[next], mY[next]);
+                else if (mTypes[next] == RELEASE)
+                    game.releaseTrigger();
+                else
+                    game.setFireMode(CannonGame.FireMode.values()[(int) mX[next]]);
+                ++next;
+            }
+
+            game.step();
+        }
+
+        return game;
+    }
+
+    // returns true if the two games ended with the same shots, elapsed
+    // time and target pieces hit
+    public static boolean sameOutcome(CannonGame a, CannonGame b) {
+        if (a.getShotsFired() != b.getShotsFired()
+                || a.getTotalElapsedTime() != b.getTotalElapsedTime())
+            return false;
+
+        Target[] targetsA = a.getLevel().getTargets();
+        Target[] targetsB = b.getLevel().getTargets();
+        if (targetsA.length != targetsB.length)
+            return false;
+
+        for (int t = 0; t < targetsA.length; t++) {
+            if (targetsA[t].getPieceCount() != targetsB[t].getPieceCount())
+                return false;
+            for (int piece = 0; piece < targetsA[t].getPieceCount(); piece++) {
+                if (targetsA[t].isPieceHit(piece) != targetsB[t].isPieceHit(piece))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    // saves the recording for use as a workload or regression fixture
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(mWidth);
+        out.writeInt(mHeight);
+        out.writeInt(mMaxProjectiles);
+        out.writeInt(mLevelNumber);
+        out.writeLong(mLevelSeed);
+        out.writeByte(mFireMode.ordinal());
+        out.writeLong(mEndTick);
+        out.writeInt(mSize);
+        for (int i = 0; i < mSize; i++) {
+            out.writeLong(mTicks[i]);
+            out.writeByte(mTypes[i]);
+            out.writeFloat(mX[i]);
+            out.writeFloat(mY[i]);
+        }
+    }
+
+    // loads a recording saved with writeTo; throws IOException for a file
+    // that isn't a valid recording, so replay can trust what it loaded
+    public static InputRecording readFrom(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported recording version " + version);
+
+        InputRecording recording = new InputRecording();
+        recording.mWidth = in.readInt();
+        recording.mHeight = in.readInt();
+        recording.mMaxProjectiles = in.readInt();
+        recording.mLevelNumber = in.readInt();
+        recording.mLevelSeed = in.readLong();
+        if (recording.mWidth <= 0 || recording.mHeight <= 0 || recording.mMaxProjectiles <= 0
+                || recording.mLevelNumber < 0)
+            throw new IOException("Invalid starting state");
+        recording.mFireMode = readFireMode(in.readByte());
+        recording.mEndTick = in.readLong();
+
+        int size = in.readInt();
+        if (size < 0)
+            throw new IOException("Invalid input count " + size);
+
+        long previousTick = 0;
+        for (int i = 0; i < size; i++) {
+            // replay applies inputs in order, one step at a time, so an
+            // input before the one ahead of it would stop the rest
+            long tick = in.readLong();
+            if (tick < previousTick)
+                throw new IOException("Input " + i + " at step " + tick + " is out of order");
+            previousTick = tick;
+
+            byte type = in.readByte();
+            float x = in.readFloat();
+            float y = in.readFloat();
+            if (type == FIRE_MODE)
+                readFireMode((int) x);
+            else if (type != FIRE && type != RELEASE)
+                throw new IOException("Unknown input type " + type);
+            recording.add(tick, type, x, y);
+        }
+        return recording;
+    }
+
+    private static CannonGame.FireMode readFireMode(int ordinal) throws IOException {
+        CannonGame.FireMode[] modes = CannonGame.FireMode.values();
+        if (ordinal < 0 || ordinal >= modes.length)
+            throw new IOException("Unknown fire mode " + ordinal);
+        return modes[ordinal];
+    }
+}
@@ -0,0 +1,86 @@
+package me.seet.cannongame;
+
+// Level.java
+// The blockers and targets the cannon plays against
+public class Level {
+    private final int mNumber;  // 0 for the classic layout
+    private final long mSeed;   // LevelGenerator seed it came from
+    private final MovingLine[] mBlockers;
+    private final Target[] mTargets;
+    private final int mPieceCount;  // pieces in all targets
+
+    public Level(MovingLine[] blockers, Target[] targets) {
+        this(0, 0, blockers, targets);
+    }
+
+    public Level(int number, long seed, MovingLine[] blockers, Target[] targets) {
+        mNumber = number;
+        mSeed = seed;
+        mBlockers = blockers;
+        mTargets = targets;
+
+        int pieces = 0;
+        for (Target target : targets)
+            pieces += target.getPieceCount();
+        mPieceCount = pieces;
+    }
+
+    // the original layout: one blocker and one target of TARGET_PIECES
+    public static Level createClassic(int w, int h) {
+        // blocker 5/8 screen width from left, between 1/8 and 3/8 of
+        // the screen height, initially moving down at h / 2
+        MovingLine blocker = new MovingLine(w * 5 / 8, h / 8, h * 3 / 8, h / 2);
+
+        // target 7/8 screen width from left, between 1/8 and 7/8 of
+        // the screen height, initially moving up at h / 4
+        Target target = new Target(w * 7 / 8, h / 8, h * 7 / 8, -h / 4,
+                CannonGame.TARGET_PIECES);
+
+        return new Level(new MovingLine[] { blocker }, new Target[] { target });
+    }
+
+    // returns every blocker and target to its starting state
+    public void reset() {
+        for (MovingLine blocker : mBlockers)
+            blocker.reset();
+        for (Target target : mTargets)
+            target.reset();
+    }
+
+    // computes the paths of every blocker and target for the first ticks
+    // steps of a game; call from any thread before the level is played
+    public void precompute(int ticks, float interval, int screenHeight) {
+        for (MovingLine blocker : mBlockers)
+            blocker.cachePath(ticks, interval, screenHeight);
+        for (Target target : mTargets)
+            target.cachePath(ticks, interval, screenHeight);
+    }
+
+    // remembers every position for interpolated rendering
+    public void savePositions() {
+        for (MovingLine blocker : mBlockers)
+            blocker.savePosition();
+        for (Target target : mTargets)
+            target.savePosition();
+    }
+
+    public int getNumber() {
+        return mNumber;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    public MovingLine[] getBlockers() {
+        return mBlockers;
+    }
+
+    public Target[] getTargets() {
+        return mTargets;
+    }
+
+    public int getPieceCount() {
+        return mPieceCount;
+    }
+}
@@ -0,0 +1,71 @@
+package me.seet.cannongame;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+// LevelEngine.java
+// Supplies levels in order from a LevelGenerator; while one level is
+// played the next is generated and its paths precomputed on a background
+// thread, so moving on to it takes no time on the UI or game thread
+public class LevelEngine {
+    private final LevelGenerator mGenerator;
+    private final int mHeight;  // playing field height the paths bounce within
+    private Level mCurrent;     // level being played
+    private FutureTask<Level> mNext;    // level after it, being prepared
+
+    // starts at the classic level and begins preparing level 1
+    public LevelEngine(long seed, int width, int height) {
+        mGenerator = new LevelGenerator(seed, width, height);
+        mHeight = height;
+        mCurrent = prepare(0);
+        mNext = prepareInBackground(1);
+    }
+
+    // level being played
+    public Level getCurrent() {
+        return mCurrent;
+    }
+
+    // moves on to the next level and starts preparing the one after it;
+    // waits only if the next level isn't ready yet
+    public Level advance() {
+        Level next;
+        try {
+            next = mNext.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            next = prepare(mCurrent.getNumber() + 1);   // finish it here instead
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Can't generate level", e.getCause());
+        }
+
+        mCurrent = next;
+        mNext = prepareInBackground(next.getNumber() + 1);
+        return next;
+    }
+
+    // generates a level and computes its paths for the longest possible game
+    private Level prepare(int number) {
+        Level level = mGenerator.generate(number);
+        level.precompute(CannonGame.getMaxTicks(level),
+                (float) FixedTimestep.STEP_SECONDS, mHeight);
+        return level;
+    }
+
+    // prepares a level on a low-priority thread
+    private FutureTask<Level> prepareInBackground(final int number) {
+        FutureTask<Level> task = new FutureTask<Level>(new Callable<Level>() {
+            @Override
+            public Level call() {
+                return prepare(number);
+            }
+        });
+
+        Thread thread = new Thread(task, "LevelEngine");
+        thread.setPriority(Thread.MIN_PRIORITY);   // stay out of the game's way
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+}
@@ -0,0 +1,97 @@
+package me.seet.cannongame;
+
+import java.util.Random;
+
+// LevelGenerator.java
+// Builds levels from a seed and a level number: level 0 is the classic
+// layout, and each later level adds blockers, clusters of targets that
+// move together, faster speeds and stronger velocity curves. The same
+// seed, number and size always give the same level
+public class LevelGenerator {
+    public static final int MAX_BLOCKERS = 6;
+    public static final int MAX_CLUSTERS = 4;
+    public static final int MAX_CLUSTER_SIZE = 3;   // targets side by side
+    public static final int MIN_PIECES = 3;  // pieces in the smallest target
+    public static final int MAX_DIFFICULTY = 20;    // levels after this don't get harder
+
+    private final long mSeed;
+    private final int mWidth;   // playing field the levels fit
+    private final int mHeight;
+
+    public LevelGenerator(long seed, int width, int height) {
+        mSeed = seed;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    // builds level number, which can be played right away or after Level.precompute
+    public Level generate(int number) {
+        if (number == 0)
+            return Level.createClassic(mWidth, mHeight);
+
+        int w = mWidth;
+        int h = mHeight;
+        Random random = new Random(mSeed * 1000003 + number);
+        int difficulty = Math.min(number, MAX_DIFFICULTY);
+        float speedScale = 1 + 0.1f * difficulty;   // lines speed up each level
+        float maxAmplitude = Math.min(0.6f, 0.05f * difficulty);    // stronger surges
+
+        // blockers between the cannon and the targets
+        MovingLine[] blockers = new MovingLine[Math.min(1 + (number + 1) / 2, MAX_BLOCKERS)];
+        for (int b = 0; b < blockers.length; b++) {
+            float length = h * (0.125f + 0.125f * random.nextFloat());
+            float top = randomTop(random, length);
+            blockers[b] = new MovingLine(w * (0.375f + 0.3125f * random.nextFloat()),
+                    top, top + length,
+                    randomVelocity(random, h * 0.4f * speedScale),
+                    randomCurve(random, maxAmplitude));
+        }
+
+        // clusters of targets sharing a position, speed and curve
+        int clusters = Math.min(1 + number / 3, MAX_CLUSTERS);
+        int clusterSize = Math.min(1 + number / 4, MAX_CLUSTER_SIZE);
+        float spacing = w / 12f;    // two line widths apart
+        Target[] targets = new Target[clusters * clusterSize];
+        for (int c = 0; c < clusters; c++) {
+            float length = h * (0.25f + 0.25f * random.nextFloat());
+            float top = randomTop(random, length);
+            float x = w * 0.75f + random.nextFloat() * (w * 0.1875f - spacing * (clusterSize - 1));
+            float velocity = randomVelocity(random, h * 0.25f * speedScale);
+            VelocityCurve curve = randomCurve(random, maxAmplitude);
+            int pieces = MIN_PIECES + random.nextInt(CannonGame.TARGET_PIECES - MIN_PIECES + 1);
+
+            for (int t = 0; t < clusterSize; t++) {
+                targets[c * clusterSize + t] = new Target(x + t * spacing, top, top + length,
+                        velocity, curve, pieces);
+            }
+        }
+
+        return new Level(number, mSeed, blockers, targets);
+    }
+
+    // top of a line of the given length that starts fully on screen
+    private float randomTop(Random random, float length) {
+        float margin = mHeight / 16f;
+        return margin + random.nextFloat() * Math.max(0, mHeight - 2 * margin - length);
+    }
+
+    // speed between 3/4 and 5/4 of the given speed, up or down
+    private static float randomVelocity(Random random, float speed) {
+        float velocity = speed * (0.75f + 0.5f * random.nextFloat());
+        return random.nextBoolean() ? velocity : -velocity;
+    }
+
+    // a wave of one to three seconds with up to the given amplitude
+    private static VelocityCurve randomCurve(Random random, float maxAmplitude) {
+        if (maxAmplitude == 0)
+            return VelocityCurve.CONSTANT;
+
+        int periodTicks = (int) ((1 + 2 * random.nextDouble()) / FixedTimestep.STEP_SECONDS);
+        return new VelocityCurve(maxAmplitude * random.nextFloat(), periodTicks,
+                2 * Math.PI * random.nextDouble());
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+}
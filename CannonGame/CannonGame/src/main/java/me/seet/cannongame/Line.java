@@ -1,27 +1,53 @@
 package me.seet.cannongame;
 
-import android.graphics.Point;
-
 // Line.java
-// Class Line represents a line with two endpoints
+// Class Line represents a line with two endpoints; coordinates are plain
+// floats so the simulation can run without android.graphics
 public class Line {
-    private Point mStart = new Point();   // start Point--(0,0) by default
-    private Point mEnd = new Point();   // start Point--(0,0) by default
+    private float mStartX;  // start point--(0,0) by default
+    private float mStartY;
+    private float mEndX;    // end point--(0,0) by default
+    private float mEndY;
 
-    public Point getStart() {
-        return mStart;
+    public float getStartX() {
+        return mStartX;
     }
 
-    public void setStart(Point mStart) {
-        this.mStart = mStart;
+    public float getStartY() {
+        return mStartY;
     }
 
-    public Point getEnd() {
-        return mEnd;
+    public float getEndX() {
+        return mEndX;
     }
 
-    public void setEnd(Point mEnd) {
-        this.mEnd = mEnd;
+    public float getEndY() {
+        return mEndY;
+    }
+
+    public void setStart(float x, float y) {
+        mStartX = x;
+        mStartY = y;
+    }
+
+    public void setEnd(float x, float y) {
+        mEndX = x;
+        mEndY = y;
+    }
+
+    // copies both endpoints of another Line
+    public void set(Line other) {
+        mStartX = other.mStartX;
+        mStartY = other.mStartY;
+        mEndX = other.mEndX;
+        mEndY = other.mEndY;
     }
-}
 
+    // moves both endpoints by the given amount
+    public void offset(float dx, float dy) {
+        mStartX += dx;
+        mStartY += dy;
+        mEndX += dx;
+        mEndY += dy;
+    }
+}
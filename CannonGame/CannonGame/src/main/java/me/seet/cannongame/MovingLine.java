@@ -0,0 +1,138 @@
+package me.seet.cannongame;
+
+// MovingLine.java
+// A vertical Line that moves up and down the screen, reversing direction
+// at the top and bottom; used for blockers and as the base of Target.
+// Its speed follows a VelocityCurve, and its whole path can be computed
+// ahead of time so stepping it only copies positions
+public class MovingLine {
+    private final Line mLine = new Line();  // current position
+    private final Line mPrevious = new Line();  // position before the last step
+    private final Line mInitial = new Line();   // position when a game starts
+    private final float mInitialVelocity;   // speed when a game starts
+    private final VelocityCurve mCurve; // scales the speed at each step
+    private float mVelocity;    // vertical speed in pixels per second
+
+    // cached path, or null: position and velocity after each step and
+    // the distance moved during each step, from the start of a game
+    private float[] mPathStartY;
+    private float[] mPathEndY;
+    private float[] mPathVelocity;
+    private float[] mPathMove;
+
+    public MovingLine(float x, float top, float bottom, float velocity) {
+        this(x, top, bottom, velocity, VelocityCurve.CONSTANT);
+    }
+
+    public MovingLine(float x, float top, float bottom, float velocity, VelocityCurve curve) {
+        mInitial.setStart(x, top);
+        mInitial.setEnd(x, bottom);
+        mInitialVelocity = velocity;
+        mCurve = curve;
+        mLine.set(mInitial);
+        mPrevious.set(mInitial);
+        mVelocity = velocity;
+    }
+
+    // returns to the starting position and speed
+    public void reset() {
+        mLine.set(mInitial);
+        mPrevious.set(mInitial);
+        mVelocity = mInitialVelocity;
+    }
+
+    // remembers the current position for interpolated rendering
+    public void savePosition() {
+        mPrevious.set(mLine);
+    }
+
+    // moves by distance, reversing if the top or bottom was reached
+    public void move(float distance, int screenHeight) {
+        mLine.offset(0, distance);
+
+        if (mLine.getStartY() < 0 || mLine.getEndY() > screenHeight)
+            mVelocity *= -1;
+    }
+
+    // distance the line moves during the given step of a game
+    public float getStepMove(long tick, float interval) {
+        float[] moves = mPathMove;
+        if (moves != null && tick < moves.length)
+            return moves[(int) tick];
+        return interval * mVelocity * mCurve.getScale(tick);
+    }
+
+    // takes the given step of a game, from the cached path if it reaches
+    // that far; the result is the same either way
+    public void step(long tick, float interval, int screenHeight) {
+        float[] moves = mPathMove;
+        if (moves != null && tick < moves.length) {
+            int next = (int) tick + 1;
+            mLine.setStart(mLine.getStartX(), mPathStartY[next]);
+            mLine.setEnd(mLine.getEndX(), mPathEndY[next]);
+            mVelocity = mPathVelocity[next];
+        }
+        else {
+            move(getStepMove(tick, interval), screenHeight);
+        }
+    }
+
+    // computes the first ticks steps of a game ahead of time, exactly as
+    // step and move would; call from any thread before the line is played
+    public void cachePath(int ticks, float interval, int screenHeight) {
+        float[] startYs = new float[ticks + 1];
+        float[] endYs = new float[ticks + 1];
+        float[] velocities = new float[ticks + 1];
+        float[] moves = new float[ticks];
+
+        float startY = mInitial.getStartY();
+        float endY = mInitial.getEndY();
+        float velocity = mInitialVelocity;
+        startYs[0] = startY;
+        endYs[0] = endY;
+        velocities[0] = velocity;
+
+        for (int tick = 0; tick < ticks; tick++) {
+            float distance = interval * velocity * mCurve.getScale(tick);
+            startY += distance;
+            endY += distance;
+            if (startY < 0 || endY > screenHeight)
+                velocity *= -1;
+
+            moves[tick] = distance;
+            startYs[tick + 1] = startY;
+            endYs[tick + 1] = endY;
+            velocities[tick + 1] = velocity;
+        }
+
+        mPathStartY = startYs;
+        mPathEndY = endYs;
+        mPathVelocity = velocities;
+        mPathMove = moves;
+    }
+
+    // stores the position between the last two steps into result
+    public void interpolate(float alpha, Line result) {
+        result.setStart(lerp(mPrevious.getStartX(), mLine.getStartX(), alpha),
+                lerp(mPrevious.getStartY(), mLine.getStartY(), alpha));
+        result.setEnd(lerp(mPrevious.getEndX(), mLine.getEndX(), alpha),
+                lerp(mPrevious.getEndY(), mLine.getEndY(), alpha));
+    }
+
+    // linear interpolation between the previous and current step
+    private static float lerp(float previous, float current, float alpha) {
+        return previous + (current - previous) * alpha;
+    }
+
+    public Line getLine() {
+        return mLine;
+    }
+
+    public float getVelocity() {
+        return mVelocity;
+    }
+
+    public VelocityCurve getCurve() {
+        return mCurve;
+    }
+}
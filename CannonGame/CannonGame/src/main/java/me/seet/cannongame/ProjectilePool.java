@@ -0,0 +1,105 @@
+package me.seet.cannongame;
+
+// ProjectilePool.java
+// Fixed-capacity store for the cannonballs in flight, kept as parallel
+// float arrays (structure of arrays) so updating them allocates nothing
+// and walks memory in order; live projectiles are always 0 to size() - 1
+public class ProjectilePool {
+    private final float[] mX;   // center of each projectile
+    private final float[] mY;
+    private final float[] mPreviousX;   // center before the last step
+    private final float[] mPreviousY;
+    private final float[] mVelocityX;   // velocity in pixels per second
+    private final float[] mVelocityY;
+    private int mSize;  // number of live projectiles
+
+    public ProjectilePool(int capacity) {
+        mX = new float[capacity];
+        mY = new float[capacity];
+        mPreviousX = new float[capacity];
+        mPreviousY = new float[capacity];
+        mVelocityX = new float[capacity];
+        mVelocityY = new float[capacity];
+    }
+
+    // adds a projectile and returns its index, or -1 if the pool is full
+    public int spawn(float x, float y, float velocityX, float velocityY) {
+        if (mSize == mX.length)
+            return -1;
+
+        int i = mSize++;
+        mX[i] = x;
+        mY[i] = y;
+        mPreviousX[i] = x;  // nothing to interpolate from yet
+        mPreviousY[i] = y;
+        mVelocityX[i] = velocityX;
+        mVelocityY[i] = velocityY;
+        return i;
+    }
+
+    // removes projectile i by moving the last projectile into its slot;
+    // iterate from the end when removing during a loop
+    public void remove(int i) {
+        int last = --mSize;
+        mX[i] = mX[last];
+        mY[i] = mY[last];
+        mPreviousX[i] = mPreviousX[last];
+        mPreviousY[i] = mPreviousY[last];
+        mVelocityX[i] = mVelocityX[last];
+        mVelocityY[i] = mVelocityY[last];
+    }
+
+    // removes every projectile
+    public void clear() {
+        mSize = 0;
+    }
+
+    // remembers every current position for interpolated rendering
+    public void savePositions() {
+        System.arraycopy(mX, 0, mPreviousX, 0, mSize);
+        System.arraycopy(mY, 0, mPreviousY, 0, mSize);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int capacity() {
+        return mX.length;
+    }
+
+    public float getX(int i) {
+        return mX[i];
+    }
+
+    public float getY(int i) {
+        return mY[i];
+    }
+
+    public float getVelocityX(int i) {
+        return mVelocityX[i];
+    }
+
+    public float getVelocityY(int i) {
+        return mVelocityY[i];
+    }
+
+    public void setPosition(int i, float x, float y) {
+        mX[i] = x;
+        mY[i] = y;
+    }
+
+    public void setVelocity(int i, float velocityX, float velocityY) {
+        mVelocityX[i] = velocityX;
+        mVelocityY[i] = velocityY;
+    }
+
+    // position between the last two steps, alpha from 0 to 1
+    public float getX(int i, float alpha) {
+        return mPreviousX[i] + (mX[i] - mPreviousX[i]) * alpha;
+    }
+
+    public float getY(int i, float alpha) {
+        return mPreviousY[i] + (mY[i] - mPreviousY[i]) * alpha;
+    }
+}
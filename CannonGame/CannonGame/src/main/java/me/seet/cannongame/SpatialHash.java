@@ -0,0 +1,136 @@
+package me.seet.cannongame;
+
+import java.util.Arrays;
+
+// SpatialHash.java
+// Uniform grid broadphase: items are axis-aligned boxes numbered in the
+// order they are added, bucketed into every cell they overlap, and a query
+// returns the items in the cells a box overlaps. Storage is reused between
+// builds, so a steady number of items allocates nothing
+public class SpatialHash {
+    private final float mCellSize;  // width and height of a cell
+    private final int mColumns;
+    private final int mRows;
+    private final int[] mCellStart; // first entry of each cell in mCellItems
+    private final int[] mCellFill;  // next free entry of each cell while building
+
+    private int[] mCellItems = new int[16]; // item numbers, grouped by cell
+    private float[] mMinX = new float[16];  // bounding box of each item
+    private float[] mMinY = new float[16];
+    private float[] mMaxX = new float[16];
+    private float[] mMaxY = new float[16];
+    private int[] mStamps = new int[16];    // last query that returned each item
+    private int mItemCount;
+    private int mQueryStamp;
+
+    // covers a width by height area; boxes outside it use the edge cells
+    public SpatialHash(float width, float height, float cellSize) {
+        mCellSize = cellSize;
+        mColumns = Math.max(1, (int) Math.ceil(width / cellSize));
+        mRows = Math.max(1, (int) Math.ceil(height / cellSize));
+        mCellStart = new int[mColumns * mRows + 1];
+        mCellFill = new int[mColumns * mRows];
+    }
+
+    // removes every item
+    public void clear() {
+        mItemCount = 0;
+    }
+
+    // adds a box and returns its item number; call build before querying
+    public int add(float minX, float minY, float maxX, float maxY) {
+        if (mItemCount == mMinX.length) {
+            int capacity = mItemCount * 2;
+            mMinX = Arrays.copyOf(mMinX, capacity);
+            mMinY = Arrays.copyOf(mMinY, capacity);
+            mMaxX = Arrays.copyOf(mMaxX, capacity);
+            mMaxY = Arrays.copyOf(mMaxY, capacity);
+            mStamps = Arrays.copyOf(mStamps, capacity);
+        }
+
+        mMinX[mItemCount] = minX;
+        mMinY[mItemCount] = minY;
+        mMaxX[mItemCount] = maxX;
+        mMaxY[mItemCount] = maxY;
+        return mItemCount++;
+    }
+
+    // buckets the added items into cells with a counting sort
+    public void build() {
+        Arrays.fill(mCellStart, 0);
+
+        // count the items in each cell
+        for (int item = 0; item < mItemCount; item++) {
+            int lastColumn = column(mMaxX[item]);
+            int lastRow = row(mMaxY[item]);
+            for (int r = row(mMinY[item]); r <= lastRow; r++)
+                for (int c = column(mMinX[item]); c <= lastColumn; c++)
+                    ++mCellStart[r * mColumns + c + 1];
+        }
+
+        // turn the counts into the start of each cell's entries
+        for (int cell = 1; cell < mCellStart.length; cell++)
+            mCellStart[cell] += mCellStart[cell - 1];
+
+        int entries = mCellStart[mCellStart.length - 1];
+        if (entries > mCellItems.length)
+            mCellItems = new int[Math.max(entries, mCellItems.length * 2)];
+
+        // place each item in the cells it overlaps
+        System.arraycopy(mCellStart, 0, mCellFill, 0, mCellFill.length);
+        for (int item = 0; item < mItemCount; item++) {
+            int lastColumn = column(mMaxX[item]);
+            int lastRow = row(mMaxY[item]);
+            for (int r = row(mMinY[item]); r <= lastRow; r++)
+                for (int c = column(mMinX[item]); c <= lastColumn; c++)
+                    mCellItems[mCellFill[r * mColumns + c]++] = item;
+        }
+    }
+
+    // stores the numbers of the items whose boxes overlap the given box
+    // into result, each once, and returns how many there are; result must
+    // have room for every item
+    public int query(float minX, float minY, float maxX, float maxY, int[] result) {
+        // a new stamp marks items already returned by this query
+        if (++mQueryStamp == Integer.MAX_VALUE) {
+            Arrays.fill(mStamps, 0);
+            mQueryStamp = 1;
+        }
+
+        int count = 0;
+        int lastColumn = column(maxX);
+        int lastRow = row(maxY);
+        for (int r = row(minY); r <= lastRow; r++) {
+            for (int c = column(minX); c <= lastColumn; c++) {
+                int cell = r * mColumns + c;
+                for (int entry = mCellStart[cell]; entry < mCellStart[cell + 1]; entry++) {
+                    int item = mCellItems[entry];
+                    if (mStamps[item] == mQueryStamp)
+                        continue;   // already seen in another cell
+
+                    mStamps[item] = mQueryStamp;
+                    if (mMinX[item] <= maxX && mMaxX[item] >= minX
+                            && mMinY[item] <= maxY && mMaxY[item] >= minY)
+                        result[count++] = item;
+                }
+            }
+        }
+        return count;
+    }
+
+    public int size() {
+        return mItemCount;
+    }
+
+    private int column(float x) {
+        return clamp((int) Math.floor(x / mCellSize), mColumns);
+    }
+
+    private int row(float y) {
+        return clamp((int) Math.floor(y / mCellSize), mRows);
+    }
+
+    private static int clamp(int index, int count) {
+        return index < 0 ? 0 : (index >= count ? count - 1 : index);
+    }
+}
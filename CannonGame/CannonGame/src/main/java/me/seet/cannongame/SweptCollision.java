@@ -0,0 +1,91 @@
+package me.seet.cannongame;
+
+// SweptCollision.java
+// Continuous collision test between a moving circle and a moving, thick
+// Line; finds the first moment of contact within a step so fast objects
+// cannot pass through thin ones between two steps
+public final class SweptCollision {
+    public static final float NO_IMPACT = -1f;  // returned when nothing is hit
+
+    private SweptCollision() {
+        // static methods only
+    }
+
+    // returns the fraction of the step, from 0 to 1, at which a circle
+    // centered at (x, y) moving by (dx, dy) first touches the line moving
+    // by (lineDx, lineDy); halfWidth is half the line's drawn thickness.
+    // Returns NO_IMPACT if they don't touch or are already moving apart
+    public static float timeOfImpact(float x, float y, float dx, float dy, float radius,
+                                     Line line, float lineDx, float lineDy, float halfWidth) {
+        // work in the line's frame of reference, where only the circle
+        // moves; the circle's center then sweeps a straight segment and
+        // contact means coming within reach of the line's capsule
+        double reach = radius + halfWidth;
+        double moveX = dx - lineDx;
+        double moveY = dy - lineDy;
+
+        double ax = line.getStartX();
+        double ay = line.getStartY();
+        double abX = line.getEndX() - ax;
+        double abY = line.getEndY() - ay;
+        double aoX = x - ax;
+        double aoY = y - ay;
+
+        // already touching: report contact only while still approaching
+        double abab = abX * abX + abY * abY;
+        double along = abab > 0 ? clamp((aoX * abX + aoY * abY) / abab) : 0;
+        double awayX = aoX - abX * along;  // from closest point to center
+        double awayY = aoY - abY * along;
+        if (awayX * awayX + awayY * awayY <= reach * reach)
+            return awayX * moveX + awayY * moveY < 0 ? 0f : NO_IMPACT;
+
+        double moveMove = moveX * moveX + moveY * moveY;
+        if (moveMove == 0)
+            return NO_IMPACT;   // not moving relative to the line
+
+        double earliest = Double.MAX_VALUE;
+
+        // contact with the long sides: solve for the time the distance to
+        // the infinite line equals reach, then keep it if it lies between
+        // the end points
+        if (abab > 0) {
+            double abMove = abX * moveX + abY * moveY;
+            double abAo = abX * aoX + abY * aoY;
+            double a = abab * moveMove - abMove * abMove;
+            double b = abab * (moveX * aoX + moveY * aoY) - abAo * abMove;
+            double c = abab * (aoX * aoX + aoY * aoY) - abAo * abAo - reach * reach * abab;
+            double discriminant = b * b - a * c;
+            if (a > 0 && discriminant >= 0) {
+                double t = (-b - Math.sqrt(discriminant)) / a;
+                double projection = abAo + t * abMove;
+                if (t >= 0 && t <= 1 && projection >= 0 && projection <= abab)
+                    earliest = t;
+            }
+        }
+
+        // contact with the rounded ends
+        earliest = Math.min(earliest, timeToPoint(aoX, aoY, moveX, moveY, moveMove, reach));
+        earliest = Math.min(earliest,
+                timeToPoint(aoX - abX, aoY - abY, moveX, moveY, moveMove, reach));
+
+        return earliest <= 1 ? (float) earliest : NO_IMPACT;
+    }
+
+    // time at which a point at offset (ox, oy) from a circle's center,
+    // moving by (moveX, moveY), reaches the circle's edge
+    private static double timeToPoint(double ox, double oy, double moveX, double moveY,
+                                      double moveMove, double reach) {
+        double b = ox * moveX + oy * moveY;
+        double c = ox * ox + oy * oy - reach * reach;
+        double discriminant = b * b - moveMove * c;
+        if (discriminant < 0)
+            return Double.MAX_VALUE;
+
+        double t = (-b - Math.sqrt(discriminant)) / moveMove;
+        return t >= 0 ? t : Double.MAX_VALUE;
+    }
+
+    private static double clamp(double value) {
+        return value < 0 ? 0 : (value > 1 ? 1 : value);
+    }
+}
@@ -0,0 +1,61 @@
+package me.seet.cannongame;
+
+// Target.java
+// A MovingLine split into equal pieces that are destroyed one at a time
+public class Target extends MovingLine {
+    private final boolean[] mHitStates; // is each target piece hit?
+    private final float mPieceLength;   // length of a target piece
+    private int mPiecesHit; // number of target pieces hit
+
+    public Target(float x, float top, float bottom, float velocity, int pieces) {
+        this(x, top, bottom, velocity, VelocityCurve.CONSTANT, pieces);
+    }
+
+    public Target(float x, float top, float bottom, float velocity, VelocityCurve curve,
+                  int pieces) {
+        super(x, top, bottom, velocity, curve);
+        mHitStates = new boolean[pieces];
+        mPieceLength = (bottom - top) / pieces;
+    }
+
+    // returns to the starting position and restores every piece
+    @Override
+    public void reset() {
+        super.reset();
+
+        // set the every element of hitStates to false--restores target pieces
+        for (int i = 0; i < mHitStates.length; i++)
+            mHitStates[i] = false;
+        mPiecesHit = 0;
+    }
+
+    // stores the current position of a piece into result (0 is the top)
+    public void getPiece(int piece, Line result) {
+        Line line = getLine();
+        float top = line.getStartY() + piece * mPieceLength;
+        result.setStart(line.getStartX(), top);
+        result.setEnd(line.getEndX(), top + mPieceLength);
+    }
+
+    // destroys a piece
+    public void hitPiece(int piece) {
+        mHitStates[piece] = true;
+        ++mPiecesHit;
+    }
+
+    public boolean isPieceHit(int piece) {
+        return mHitStates[piece];
+    }
+
+    public int getPieceCount() {
+        return mHitStates.length;
+    }
+
+    public int getPiecesHit() {
+        return mPiecesHit;
+    }
+
+    public float getPieceLength() {
+        return mPieceLength;
+    }
+}
@@ -0,0 +1,91 @@
+package me.seet.cannongame;
+
+// TextureAtlas.java
+// Where each image a VertexBatch uses lies in its one texture: an opaque
+// texel for solid shapes, a disc for circles and a glyph for every
+// printable ASCII character, with the metrics to lay out text. The
+// pixels themselves are drawn by GlRenderer
+public class TextureAtlas {
+    public static final char FIRST_CHAR = ' ';
+    public static final char LAST_CHAR = '~';
+    private static final int CHARS = LAST_CHAR - FIRST_CHAR + 1;
+
+    private final float mGlyphSize;     // text size the glyphs were drawn at
+    private float mSolidU;  // center of an opaque texel
+    private float mSolidV;
+    private final float[] mDisc = new float[4];    // u0, v0, u1, v1 of the disc
+
+    // per character: texture corners u0, v0, u1, v1, the box the glyph
+    // covers relative to the pen on the baseline, and the pen advance
+    private final float[] mGlyphUv = new float[CHARS * 4];
+    private final float[] mGlyphBox = new float[CHARS * 4];
+    private final float[] mAdvance = new float[CHARS];
+
+    public TextureAtlas(float glyphSize) {
+        mGlyphSize = glyphSize;
+    }
+
+    public void setSolid(float u, float v) {
+        mSolidU = u;
+        mSolidV = v;
+    }
+
+    public void setDisc(float u0, float v0, float u1, float v1) {
+        mDisc[0] = u0;
+        mDisc[1] = v0;
+        mDisc[2] = u1;
+        mDisc[3] = v1;
+    }
+
+    // records a glyph; left, top, right and bottom are relative to the pen
+    // at glyphSize, top being negative above the baseline
+    public void setGlyph(char c, float u0, float v0, float u1, float v1,
+                         float left, float top, float right, float bottom, float advance) {
+        int i = c - FIRST_CHAR;
+        mGlyphUv[i * 4] = u0;
+        mGlyphUv[i * 4 + 1] = v0;
+        mGlyphUv[i * 4 + 2] = u1;
+        mGlyphUv[i * 4 + 3] = v1;
+        mGlyphBox[i * 4] = left;
+        mGlyphBox[i * 4 + 1] = top;
+        mGlyphBox[i * 4 + 2] = right;
+        mGlyphBox[i * 4 + 3] = bottom;
+        mAdvance[i] = advance;
+    }
+
+    // index of the glyph for c, or -1 for characters the atlas lacks
+    public int getGlyph(char c) {
+        return c >= FIRST_CHAR && c <= LAST_CHAR ? c - FIRST_CHAR : -1;
+    }
+
+    public float getGlyphSize() {
+        return mGlyphSize;
+    }
+
+    public float getSolidU() {
+        return mSolidU;
+    }
+
+    public float getSolidV() {
+        return mSolidV;
+    }
+
+    // corner 0 to 3 of the disc: u0, v0, u1, v1
+    public float getDisc(int corner) {
+        return mDisc[corner];
+    }
+
+    // corner 0 to 3 of a glyph's texture: u0, v0, u1, v1
+    public float getGlyphUv(int glyph, int corner) {
+        return mGlyphUv[glyph * 4 + corner];
+    }
+
+    // side 0 to 3 of a glyph's box at glyphSize: left, top, right, bottom
+    public float getGlyphBox(int glyph, int side) {
+        return mGlyphBox[glyph * 4 + side];
+    }
+
+    public float getAdvance(int glyph) {
+        return mAdvance[glyph];
+    }
+}
@@ -0,0 +1,143 @@
+package me.seet.cannongame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// TouchInputQueue.java
+// Hands touches from the UI thread to the game thread without locks: each
+// touch down or up gets its own slot in a bounded single-producer,
+// single-consumer ring, while moves share one slot that always holds the
+// latest position and its time, so a flood of moves costs one event
+public class TouchInputQueue {
+    // receives touches on the game thread in the order they happened
+    public interface Consumer {
+        void onTouch(float x, float y, long timeNanos); // a touch down or move
+        void onRelease(long timeNanos); // the finger was lifted
+    }
+
+    // touch downs and ups as parallel arrays, a power of two long
+    private final long[] mTimes;    // System.nanoTime of each touch
+    private final float[] mX;
+    private final float[] mY;
+    private final boolean[] mUp;    // a touch up, which has no position
+    private final int mMask;
+    private final AtomicLong mHead = new AtomicLong();  // next to read, consumer only
+    private final AtomicLong mTail = new AtomicLong();  // next to write, producer only
+
+    // latest move behind a sequence lock: the sequence is odd while the
+    // UI thread writes the move, and changes with every move, so the game
+    // thread can read position and time as one and see whether it's new
+    private volatile int mMoveSequence;
+    private volatile float mMoveX;
+    private volatile float mMoveY;
+    private volatile long mMoveTime;   // when the latest move happened
+    private int mMoveTaken;     // sequence of the last move drained, consumer only
+    private long mLastTime;     // time of the last touch passed on, consumer only
+
+    private int mDropped;   // touch downs and ups lost to a full ring, producer only
+
+    // creates a queue holding at least capacity touch downs and ups
+    public TouchInputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        mTimes = new long[size];
+        mX = new float[size];
+        mY = new float[size];
+        mUp = new boolean[size];
+        mMask = size - 1;
+    }
+
+    // queues a touch down; drops it if the game thread has fallen this far
+    // behind. UI thread only
+    public void offerDown(float x, float y, long timeNanos) {
+        offer(x, y, false, timeNanos);
+    }
+
+    // queues a touch up, or a cancelled touch. UI thread only
+    public void offerUp(long timeNanos) {
+        offer(0, 0, true, timeNanos);
+    }
+
+    private void offer(float x, float y, boolean up, long timeNanos) {
+        long tail = mTail.get();
+        if (tail - mHead.get() == mTimes.length) {
+            ++mDropped;
+            return;
+        }
+
+        int slot = (int) tail & mMask;
+        mTimes[slot] = timeNanos;
+        mX[slot] = x;
+        mY[slot] = y;
+        mUp[slot] = up;
+        mTail.lazySet(tail + 1);   // publish the touch after writing it
+    }
+
+    // replaces any pending move with this one. UI thread only
+    public void offerMove(float x, float y, long timeNanos) {
+        int sequence = mMoveSequence;
+        mMoveSequence = sequence + 1;   // odd: the move is being written
+        mMoveX = x;
+        mMoveY = y;
+        mMoveTime = timeNanos;
+        mMoveSequence = sequence + 2;   // even again: the new move is complete
+    }
+
+    // passes every pending touch to consumer in time order and returns the
+    // number passed. Game thread only
+    public int drain(Consumer consumer) {
+        // read the latest move until no write overlapped the reads; the UI
+        // thread writes three fields, so this rarely goes round again
+        int sequence;
+        float moveX;
+        float moveY;
+        long moveTime;
+        do {
+            sequence = mMoveSequence;
+            moveX = mMoveX;
+            moveY = mMoveY;
+            moveTime = mMoveTime;
+        } while ((sequence & 1) != 0 || sequence != mMoveSequence);
+
+        // a move since the last drain, unless it was made before a touch
+        // down or up that an earlier drain already passed on
+        boolean move = sequence != mMoveTaken && moveTime >= mLastTime;
+        mMoveTaken = sequence;
+
+        long head = mHead.get();
+        long tail = mTail.get();
+        int count = 0;
+
+        for (; head < tail; head++) {
+            int slot = (int) head & mMask;
+            if (move && moveTime < mTimes[slot]) {
+                consumer.onTouch(moveX, moveY, moveTime);   // the move came first
+                move = false;
+                ++count;
+            }
+            if (mUp[slot])
+                consumer.onRelease(mTimes[slot]);
+            else
+                consumer.onTouch(mX[slot], mY[slot], mTimes[slot]);
+            mLastTime = mTimes[slot];
+            ++count;
+        }
+        mHead.lazySet(tail);   // free the slots after reading them
+
+        if (move) {
+            consumer.onTouch(moveX, moveY, moveTime);
+            ++count;
+        }
+        return count;
+    }
+
+    // discards every pending touch and move. UI thread only, and only
+    // while the consumer can't be draining, e.g. under the lock it drains in
+    public void clear() {
+        mMoveTaken = mMoveSequence;
+        mHead.set(mTail.get());
+    }
+
+    // touch downs and ups dropped because the ring was full. UI thread only
+    public int getDropped() {
+        return mDropped;
+    }
+}
@@ -0,0 +1,11 @@
+package me.seet.cannongame;
+
+// UnthrottledScheduler.java
+// Starts each frame as soon as the previous one is done; for measuring
+// the most frames the device can produce
+public class UnthrottledScheduler extends FrameScheduler {
+    @Override
+    protected void waitForFrame() {
+        // never wait
+    }
+}
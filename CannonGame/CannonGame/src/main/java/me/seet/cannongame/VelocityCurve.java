@@ -0,0 +1,36 @@
+package me.seet.cannongame;
+
+// VelocityCurve.java
+// Scales a MovingLine's speed over time so it surges and slows in a
+// repeating wave; computed with StrictMath from the step count so every
+// device moves the lines identically
+public class VelocityCurve {
+    public static final VelocityCurve CONSTANT = new VelocityCurve(0, 1, 0);  // never changes
+
+    private final float mAmplitude; // largest change in speed, below 1
+    private final int mPeriodTicks; // steps in one wave
+    private final double mPhase;    // radians into the wave at step 0
+
+    public VelocityCurve(float amplitude, int periodTicks, double phase) {
+        mAmplitude = amplitude;
+        mPeriodTicks = Math.max(1, periodTicks);
+        mPhase = phase;
+    }
+
+    // speed multiplier for the given step, between 1 - amplitude and 1 + amplitude
+    public float getScale(long tick) {
+        if (mAmplitude == 0)
+            return 1f;
+
+        double angle = 2 * Math.PI * (tick % mPeriodTicks) / mPeriodTicks + mPhase;
+        return (float) (1 + mAmplitude * StrictMath.sin(angle));
+    }
+
+    public float getAmplitude() {
+        return mAmplitude;
+    }
+
+    public int getPeriodTicks() {
+        return mPeriodTicks;
+    }
+}
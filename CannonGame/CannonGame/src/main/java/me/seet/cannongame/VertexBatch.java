@@ -0,0 +1,175 @@
+package me.seet.cannongame;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// VertexBatch.java
+// A GameRenderer that turns a whole frame into one array of textured,
+// colored triangles so the GPU can draw it in a single call: lines are
+// quads over an opaque texel, circles are quads over a disc and text is
+// a quad per glyph, all from one TextureAtlas. Free of Android types so
+// batching can be measured and checked on a plain JVM
+public class VertexBatch implements GameRenderer {
+    // each vertex is x, y, u, v as float bits, then the color as RGBA bytes
+    public static final int INTS_PER_VERTEX = 5;
+    public static final int BYTES_PER_VERTEX = INTS_PER_VERTEX * 4;
+    public static final int VERTICES_PER_QUAD = 6;  // two triangles
+
+    private static final boolean LITTLE_ENDIAN =
+            ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private final TextureAtlas mAtlas;
+    private int[] mData = new int[INTS_PER_VERTEX * VERTICES_PER_QUAD * 256];
+    private int mVertexCount;   // vertices added since beginFrame
+    private int mClearColor;    // background of the frame, ARGB
+
+    // the paints by number: ARGB color and line width or text size
+    private int[] mPaintColors = new int[0];
+    private float[] mPaintSizes = new float[0];
+
+    public VertexBatch(TextureAtlas atlas) {
+        mAtlas = atlas;
+    }
+
+    @Override
+    public void setShapePaint(int paint, int color, float width) {
+        setPaint(paint, color, width);
+    }
+
+    @Override
+    public void setTextPaint(int paint, int color, float size) {
+        setPaint(paint, color, size);
+    }
+
+    private void setPaint(int paint, int color, float size) {
+        if (paint >= mPaintColors.length) {
+            mPaintColors = Arrays.copyOf(mPaintColors, paint + 1);
+            mPaintSizes = Arrays.copyOf(mPaintSizes, paint + 1);
+        }
+        mPaintColors[paint] = color;
+        mPaintSizes[paint] = size;
+    }
+
+    @Override
+    public void beginFrame(int color) {
+        mClearColor = color;
+        mVertexCount = 0;
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float endX, float endY, int paint) {
+        float dx = endX - startX;
+        float dy = endY - startY;
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        if (length == 0)
+            return;
+
+        // offset both ends by half the width, across the line
+        float half = Math.max(mPaintSizes[paint], 1) / 2;    // hairlines are one pixel
+        float acrossX = -dy / length * half;
+        float acrossY = dx / length * half;
+        float u = mAtlas.getSolidU();
+        float v = mAtlas.getSolidV();
+        addQuad(startX + acrossX, startY + acrossY, endX + acrossX, endY + acrossY,
+                endX - acrossX, endY - acrossY, startX - acrossX, startY - acrossY,
+                u, v, u, v, mPaintColors[paint]);
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, int paint) {
+        float left = centerX - radius;
+        float top = centerY - radius;
+        float right = centerX + radius;
+        float bottom = centerY + radius;
+        addQuad(left, top, right, top, right, bottom, left, bottom,
+                mAtlas.getDisc(0), mAtlas.getDisc(1), mAtlas.getDisc(2), mAtlas.getDisc(3),
+                mPaintColors[paint]);
+    }
+
+    @Override
+    public void drawText(char[] text, int start, int count, float x, float y, int paint) {
+        float scale = mPaintSizes[paint] / mAtlas.getGlyphSize();
+        int color = mPaintColors[paint];
+        int space = mAtlas.getGlyph(' ');
+
+        for (int i = start; i < start + count; i++) {
+            int glyph = mAtlas.getGlyph(text[i]);
+            if (glyph < 0) {
+                x += mAtlas.getAdvance(space) * scale;  // leave a gap for the unknown
+                continue;
+            }
+
+            float left = x + mAtlas.getGlyphBox(glyph, 0) * scale;
+            float top = y + mAtlas.getGlyphBox(glyph, 1) * scale;
+            float right = x + mAtlas.getGlyphBox(glyph, 2) * scale;
+            float bottom = y + mAtlas.getGlyphBox(glyph, 3) * scale;
+            if (right > left && bottom > top) {
+                addQuad(left, top, right, top, right, bottom, left, bottom,
+                        mAtlas.getGlyphUv(glyph, 0), mAtlas.getGlyphUv(glyph, 1),
+                        mAtlas.getGlyphUv(glyph, 2), mAtlas.getGlyphUv(glyph, 3), color);
+            }
+            x += mAtlas.getAdvance(glyph) * scale;
+        }
+    }
+
+    @Override
+    public void endFrame() {
+        // the frame stays in the batch until the next beginFrame
+    }
+
+    // adds a quad with corners in clockwise order from the one at u0, v0
+    private void addQuad(float x0, float y0, float x1, float y1,
+                         float x2, float y2, float x3, float y3,
+                         float u0, float v0, float u1, float v1, int color) {
+        int needed = (mVertexCount + VERTICES_PER_QUAD) * INTS_PER_VERTEX;
+        if (needed > mData.length)
+            mData = Arrays.copyOf(mData, Math.max(needed, mData.length * 2));
+
+        int rgba = toRgba(color);
+        int i = mVertexCount * INTS_PER_VERTEX;
+        i = putVertex(i, x0, y0, u0, v0, rgba);
+        i = putVertex(i, x1, y1, u1, v0, rgba);
+        i = putVertex(i, x2, y2, u1, v1, rgba);
+        i = putVertex(i, x0, y0, u0, v0, rgba);
+        i = putVertex(i, x2, y2, u1, v1, rgba);
+        putVertex(i, x3, y3, u0, v1, rgba);
+        mVertexCount += VERTICES_PER_QUAD;
+    }
+
+    private int putVertex(int i, float x, float y, float u, float v, int rgba) {
+        int[] data = mData;
+        data[i] = Float.floatToRawIntBits(x);
+        data[i + 1] = Float.floatToRawIntBits(y);
+        data[i + 2] = Float.floatToRawIntBits(u);
+        data[i + 3] = Float.floatToRawIntBits(v);
+        data[i + 4] = rgba;
+        return i + INTS_PER_VERTEX;
+    }
+
+    // reorders an ARGB color so its bytes lie in memory as R, G, B, A
+    static int toRgba(int argb) {
+        int a = argb >>> 24;
+        int r = (argb >> 16) & 0xff;
+        int g = (argb >> 8) & 0xff;
+        int b = argb & 0xff;
+        return LITTLE_ENDIAN ? a << 24 | b << 16 | g << 8 | r : r << 24 | g << 16 | b << 8 | a;
+    }
+
+    // vertex data of the frame; the first getVertexCount() * INTS_PER_VERTEX
+    // ints are valid
+    public int[] getData() {
+        return mData;
+    }
+
+    public int getVertexCount() {
+        return mVertexCount;
+    }
+
+    public int getClearColor() {
+        return mClearColor;
+    }
+
+    public TextureAtlas getAtlas() {
+        return mAtlas;
+    }
+}
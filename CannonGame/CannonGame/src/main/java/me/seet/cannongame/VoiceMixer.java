@@ -0,0 +1,117 @@
+package me.seet.cannongame;
+
+// VoiceMixer.java
+// Sums a fixed number of playing sounds into 16-bit samples; when every
+// voice is busy a new sound replaces the lowest-priority, then oldest,
+// voice if it matters at least as much, so hits are never drowned out
+// by a stream of cannon shots
+public class VoiceMixer {
+    private short[][] mSounds = new short[0][];    // decoded samples per sound
+
+    // voices as parallel arrays; a voice is free when its sound is -1
+    private final int[] mVoiceSound;
+    private final int[] mVoicePosition;    // next sample to play
+    private final int[] mVoicePriority;
+    private final int[] mVoiceVolume;      // gain in 1/256ths
+    private final long[] mVoiceStart;      // play count when started, for age
+    private long mPlays;    // sounds started so far
+
+    private int[] mMix = new int[0];   // 32-bit sums before clipping
+
+    public VoiceMixer(int voices) {
+        mVoiceSound = new int[voices];
+        mVoicePosition = new int[voices];
+        mVoicePriority = new int[voices];
+        mVoiceVolume = new int[voices];
+        mVoiceStart = new long[voices];
+        stopAll();
+    }
+
+    // sets the samples that sound numbers refer to
+    public void setSounds(short[][] sounds) {
+        stopAll();
+        mSounds = sounds;
+    }
+
+    // starts a sound at volume 0 to 1 and returns the voice playing it, or
+    // -1 if every voice is playing something more important
+    public int play(int sound, float volume, int priority) {
+        if (sound < 0 || sound >= mSounds.length || mSounds[sound] == null)
+            return -1;
+
+        // take a free voice, or else the least important and oldest one
+        int voice = -1;
+        for (int v = 0; v < mVoiceSound.length; v++) {
+            if (mVoiceSound[v] < 0) {
+                voice = v;
+                break;
+            }
+            if (voice < 0 || mVoicePriority[v] < mVoicePriority[voice]
+                    || (mVoicePriority[v] == mVoicePriority[voice]
+                    && mVoiceStart[v] < mVoiceStart[voice]))
+                voice = v;
+        }
+
+        if (voice < 0 || (mVoiceSound[voice] >= 0 && mVoicePriority[voice] > priority))
+            return -1;  // nothing to steal
+
+        mVoiceSound[voice] = sound;
+        mVoicePosition[voice] = 0;
+        mVoicePriority[voice] = priority;
+        mVoiceVolume[voice] = (int) (Math.max(0, Math.min(1, volume)) * 256);
+        mVoiceStart[voice] = mPlays++;
+        return voice;
+    }
+
+    // silences every voice
+    public void stopAll() {
+        for (int v = 0; v < mVoiceSound.length; v++)
+            mVoiceSound[v] = -1;
+    }
+
+    // fills out[0] to out[frames - 1] with the sum of the playing voices
+    public void mix(short[] out, int frames) {
+        if (mMix.length < frames)
+            mMix = new int[frames];
+        int[] mix = mMix;
+        for (int i = 0; i < frames; i++)
+            mix[i] = 0;
+
+        for (int v = 0; v < mVoiceSound.length; v++) {
+            if (mVoiceSound[v] < 0)
+                continue;
+
+            short[] samples = mSounds[mVoiceSound[v]];
+            int position = mVoicePosition[v];
+            int count = Math.min(frames, samples.length - position);
+            int volume = mVoiceVolume[v];
+            for (int i = 0; i < count; i++)
+                mix[i] += samples[position + i] * volume >> 8;
+
+            mVoicePosition[v] = position + count;
+            if (mVoicePosition[v] >= samples.length)
+                mVoiceSound[v] = -1;    // finished; free the voice
+        }
+
+        // clip instead of wrapping around when loud voices add up
+        for (int i = 0; i < frames; i++) {
+            int sample = mix[i];
+            out[i] = (short) (sample > Short.MAX_VALUE ? Short.MAX_VALUE
+                    : (sample < Short.MIN_VALUE ? Short.MIN_VALUE : sample));
+        }
+    }
+
+    // number of voices playing a sound
+    public int getActiveVoices() {
+        int active = 0;
+        for (int sound : mVoiceSound) {
+            if (sound >= 0)
+                ++active;
+        }
+        return active;
+    }
+
+    public int getVoiceCount() {
+        return mVoiceSound.length;
+    }
+}
@@ -0,0 +1,140 @@
+package me.seet.cannongame;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+// WavDecoder.java
+// Reads an uncompressed RIFF WAVE file into 16-bit mono samples at the
+// mixer's sample rate, so sounds are decoded once and mixed without any
+// per-sample conversion
+public final class WavDecoder {
+    private static final int FORMAT_PCM = 1;    // WAVE_FORMAT_PCM
+
+    private WavDecoder() {
+        // static methods only
+    }
+
+    // decodes 8-bit or 16-bit PCM in any channel count, averaging the
+    // channels and resampling to outputRate
+    public static short[] decode(InputStream stream, int outputRate) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (readTag(in) != tag("RIFF"))
+            throw new IOException("Not a RIFF file");
+        readLittleInt(in);  // size of the rest of the file
+        if (readTag(in) != tag("WAVE"))
+            throw new IOException("Not a WAVE file");
+
+        int channels = 0;
+        int sampleRate = 0;
+        int bitsPerSample = 0;
+
+        // walk the chunks until the samples; fmt comes before data
+        while (true) {
+            int chunk = readTag(in);
+            int size = readLittleInt(in);
+
+            if (chunk == tag("fmt ")) {
+                int format = readLittleShort(in);
+                channels = readLittleShort(in);
+                sampleRate = readLittleInt(in);
+                readLittleInt(in);  // byte rate
+                readLittleShort(in);    // block align
+                bitsPerSample = readLittleShort(in);
+                skip(in, size - 16);
+
+                if (format != FORMAT_PCM || channels < 1
+                        || (bitsPerSample != 8 && bitsPerSample != 16))
+                    throw new IOException("Unsupported WAVE format " + format
+                            + ", " + bitsPerSample + " bits");
+            }
+            else if (chunk == tag("data")) {
+                if (channels == 0)
+                    throw new IOException("WAVE data before fmt chunk");
+
+                byte[] data = new byte[size];
+                in.readFully(data);
+                return resample(toMono(data, channels, bitsPerSample), sampleRate, outputRate);
+            }
+            else {
+                skip(in, size);
+            }
+
+            if ((size & 1) != 0)
+                skip(in, 1);    // chunks are padded to an even size
+        }
+    }
+
+    // converts interleaved little-endian samples to one 16-bit channel
+    private static short[] toMono(byte[] data, int channels, int bitsPerSample) {
+        int bytesPerSample = bitsPerSample / 8;
+        int frames = data.length / (bytesPerSample * channels);
+        short[] samples = new short[frames];
+
+        int offset = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            int sum = 0;
+            for (int channel = 0; channel < channels; channel++) {
+                if (bytesPerSample == 1) {
+                    // 8-bit samples are unsigned around 128
+                    sum += ((data[offset] & 0xff) - 128) << 8;
+                }
+                else {
+                    sum += (short) ((data[offset] & 0xff) | (data[offset + 1] << 8));
+                }
+                offset += bytesPerSample;
+            }
+            samples[frame] = (short) (sum / channels);
+        }
+        return samples;
+    }
+
+    // linearly interpolates samples from one rate to another
+    private static short[] resample(short[] samples, int inputRate, int outputRate) {
+        if (inputRate == outputRate || samples.length < 2)
+            return samples;
+
+        int length = (int) ((long) samples.length * outputRate / inputRate);
+        short[] result = new short[length];
+        double step = (double) inputRate / outputRate;
+        for (int i = 0; i < length; i++) {
+            double position = i * step;
+            int index = (int) position;
+            if (index >= samples.length - 1) {
+                result[i] = samples[samples.length - 1];
+            }
+            else {
+                double fraction = position - index;
+                result[i] = (short) (samples[index]
+                        + (samples[index + 1] - samples[index]) * fraction);
+            }
+        }
+        return result;
+    }
+
+    private static int tag(String name) {
+        return name.charAt(0) << 24 | name.charAt(1) << 16 | name.charAt(2) << 8 | name.charAt(3);
+    }
+
+    private static int readTag(DataInputStream in) throws IOException {
+        return in.readInt();    // tags are stored in reading order
+    }
+
+    private static int readLittleInt(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static int readLittleShort(DataInputStream in) throws IOException {
+        return Short.reverseBytes(in.readShort()) & 0xffff;
+    }
+
+    private static void skip(DataInputStream in, int bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = in.skipBytes(bytes);
+            if (skipped <= 0)
+                throw new EOFException("Truncated WAVE file");
+            bytes -= skipped;
+        }
+    }
+}
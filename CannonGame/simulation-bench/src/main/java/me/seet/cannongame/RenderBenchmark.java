@@ -0,0 +1,63 @@
+package me.seet.cannongame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// RenderBenchmark.java
+// Frames per second turned into one vertex buffer by VertexBatch, for a
+// scene of a scripted game with hundreds to thousands of cannonballs.
+// Only the batching is measured: CanvasRenderer and the GL upload need a
+// device, so comparing the two backends is out of scope here
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int projectiles;
+
+    private CannonGame mGame;
+    private VertexBatch mBatch;
+    private final GameDrawer mDrawer = new GameDrawer();
+    private final HudText mTimeText = new HudText("Time remaining: %.1f seconds", '.');
+
+    // an atlas with evenly spaced glyphs, standing in for the drawn one
+    static TextureAtlas createTestAtlas() {
+        TextureAtlas atlas = new TextureAtlas(48);
+        atlas.setSolid(0.004f, 0.004f);
+        atlas.setDisc(0.016f, 0.016f, 0.141f, 0.141f);
+        for (char c = TextureAtlas.FIRST_CHAR; c <= TextureAtlas.LAST_CHAR; c++) {
+            int i = c - TextureAtlas.FIRST_CHAR;
+            float u = (i % 16) / 16f;
+            float v = 0.25f + (i / 16) / 16f;
+            atlas.setGlyph(c, u, v, u + 1 / 16f, v + 1 / 16f, 0, -36, 26, 10, 28);
+        }
+        return atlas;
+    }
+
+    @Setup
+    public void setUp() {
+        // a scripted game with the pool full gives a realistic scene
+        ScriptedGame script = new ScriptedGame(projectiles, 42);
+        script.verify(1);
+        mGame = script.getGame();
+
+        mBatch = new VertexBatch(createTestAtlas());
+        mDrawer.setSize(mGame.getWidth());
+    }
+
+    @Benchmark
+    public int drawFrame() {
+        mDrawer.draw(mBatch, mGame, 0.5f, mTimeText, null, null);
+        return mBatch.getVertexCount();
+    }
+}
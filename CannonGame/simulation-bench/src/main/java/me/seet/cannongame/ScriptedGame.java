@@ -0,0 +1,89 @@
+package me.seet.cannongame;
+
+import java.util.Random;
+
+// ScriptedGame.java
+// Plays a CannonGame without a device: every step aims and fires at a
+// random point and tops the pool up to a fixed number of cannonballs in
+// flight. The game can't end, so every step simulates a full step of a
+// game in progress. Seeded, so every run plays the same game
+public class ScriptedGame {
+    public static final int WIDTH = 1280;   // playing field of a typical phone
+    public static final int HEIGHT = 720;
+
+    private final CannonGame mGame;
+    private final int mProjectiles; // cannonballs kept in flight
+    private final Random mRandom;   // seeded so every run plays the same game
+
+    // creates a scripted game that keeps the given number of cannonballs in flight
+    public ScriptedGame(int projectiles, long seed) {
+        mProjectiles = projectiles;
+        mRandom = new Random(seed);
+        mGame = new CannonGame(projectiles);
+        mGame.setSize(WIDTH, HEIGHT);
+        mGame.setLevel(createEndlessLevel(WIDTH, HEIGHT));
+        mGame.setTimeLimit(Double.POSITIVE_INFINITY);
+        mGame.setFireMode(CannonGame.FireMode.RAPID);
+        mGame.newGame();
+        fillPool();
+    }
+
+    // the classic layout with a blocker where the target would be: there
+    // is nothing to win, and cannonballs bounce off both lines instead of
+    // leaving the pool
+    private static Level createEndlessLevel(int w, int h) {
+        MovingLine blocker = new MovingLine(w * 5 / 8, h / 8, h * 3 / 8, h / 2);
+        MovingLine wall = new MovingLine(w * 7 / 8, h / 8, h * 7 / 8, -h / 4);
+        return new Level(new MovingLine[] { blocker, wall }, new Target[0]);
+    }
+
+    // simulates one step of the script: aim and fire at a random point,
+    // top the pool up to the target count, then step the game
+    public void step() {
+        float x = WIDTH / 2 + mRandom.nextFloat() * WIDTH / 2;
+        float y = mRandom.nextFloat() * HEIGHT;
+        mGame.alignCannon(x, y);
+        mGame.fireCannonball(x, y);
+        fillPool();
+
+        mGame.step();
+    }
+
+    // plays the given number of steps and throws unless every one of them
+    // advanced the game with a full pool; benchmarks call it from setup so
+    // a script that stopped simulating can't go unnoticed
+    public void verify(int steps) {
+        for (int i = 0; i < steps; i++) {
+            long ticks = mGame.getTicks();
+            step();
+
+            if (mGame.isGameOver() || mGame.getTicks() != ticks + 1)
+                throw new IllegalStateException("step " + i + " didn't advance the game");
+        }
+
+        fillPool();
+        if (mGame.getCannonballs().size() != mProjectiles)
+            throw new IllegalStateException("pool holds "
+                    + mGame.getCannonballs().size() + " of " + mProjectiles + " cannonballs");
+    }
+
+    // launches cannonballs from random points in random directions until
+    // the target count is in flight; the cannon itself can't fire fast
+    // enough to fill a large pool
+    public void fillPool() {
+        ProjectilePool cannonballs = mGame.getCannonballs();
+        int radius = mGame.getCannonballRadius() + 1;
+        while (cannonballs.size() < mProjectiles) {
+            double angle = mRandom.nextDouble() * 2 * Math.PI;
+            float speed = WIDTH * 3 / 2;
+            cannonballs.spawn(radius + mRandom.nextFloat() * (WIDTH - 2 * radius),
+                    radius + mRandom.nextFloat() * (HEIGHT - 2 * radius),
+                    (float) (speed * StrictMath.cos(angle)),
+                    (float) (speed * StrictMath.sin(angle)));
+        }
+    }
+
+    public CannonGame getGame() {
+        return mGame;
+    }
+}
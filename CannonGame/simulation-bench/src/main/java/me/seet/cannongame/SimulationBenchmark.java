@@ -0,0 +1,40 @@
+package me.seet.cannongame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// SimulationBenchmark.java
+// Simulation steps per second of scripted games with 1, 100 and 10,000
+// cannonballs in flight. A step covers FixedTimestep.STEP_SECONDS of
+// play, so a score below 1 / STEP_SECONDS can't keep up on a device
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulationBenchmark {
+    @Param({"1", "100", "10000"})
+    public int projectiles;
+
+    private ScriptedGame mScript;
+
+    @Setup
+    public void setUp() {
+        mScript = new ScriptedGame(projectiles, 42);
+        mScript.verify(100);    // throws if the script stopped simulating
+    }
+
+    @Benchmark
+    public CannonGame step() {
+        mScript.step();
+        return mScript.getGame();
+    }
+}
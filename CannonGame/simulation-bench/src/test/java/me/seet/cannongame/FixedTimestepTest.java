@@ -0,0 +1,140 @@
+package me.seet.cannongame;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// FixedTimestepTest.java
+// Plays the same inputs through FixedTimestep at 30, 60 and 120 frames a
+// second and checks that the game ends up exactly the same at every rate
+public class FixedTimestepTest {
+    private static final long END_TICK = 900;  // steps played, unless the game ends first
+    private static final int SNAPSHOT_TICKS = 30;   // steps between cannonball snapshots
+
+    // touches as {step, x, y}, applied before that step as InputRecording
+    // replays them; x < 0 lifts the finger, y < 0 switches to fire mode x.
+    // Single shots, then bursts, then rapid fire until every piece is hit
+    private static final float[][] SCRIPT = {
+            {5, 1100, 300}, {9, -1, 0},
+            {80, 1000, 600}, {84, -1, 0},
+            {150, CannonGame.FireMode.BURST.ordinal(), -1},
+            {151, 1150, 200}, {155, -1, 0},
+            {240, 950, 450}, {244, -1, 0},
+            {300, CannonGame.FireMode.RAPID.ordinal(), -1},
+            {305, 1200, 100}, {340, 1050, 500}, {400, -1, 0},
+    };
+
+    // the state of a game after each step, as the exact bits of every value
+    private static class GameTrace {
+        final List<Long> snapshots = new ArrayList<Long>();
+        CannonGame game;
+        int frames;
+    }
+
+    // plays SCRIPT with frames frameNanos apart and returns the final state
+    private static GameTrace play(long frameNanos) {
+        GameTrace trace = new GameTrace();
+        CannonGame game = new CannonGame();
+        game.setSize(1280, 720);
+        game.newGame();
+        trace.game = game;
+
+        FixedTimestep timestep = new FixedTimestep();
+        long now = 1000000000L;
+        timestep.reset(now);
+
+        int next = 0;   // next touch in SCRIPT
+        while (!game.isGameOver() && game.getTicks() < END_TICK) {
+            now += frameNanos;
+            ++trace.frames;
+
+            int steps = timestep.advance(now);
+            for (int i = 0; i < steps && !game.isGameOver() && game.getTicks() < END_TICK; i++) {
+                while (next < SCRIPT.length && SCRIPT[next][0] == game.getTicks()) {
+                    float[] touch = SCRIPT[next++];
+                    if (touch[2] < 0)
+                        game.setFireMode(CannonGame.FireMode.values()[(int) touch[1]]);
+                    else if (touch[1] < 0)
+                        game.releaseTrigger();
+                    else
+                        game.fireCannonball(touch[1], touch[2]);
+                }
+
+                game.step();
+                if (game.getTicks() % SNAPSHOT_TICKS == 0)
+                    snapshot(game, trace.snapshots);
+            }
+        }
+        return trace;
+    }
+
+    private static void snapshot(CannonGame game, List<Long> snapshots) {
+        ProjectilePool cannonballs = game.getCannonballs();
+        snapshots.add(game.getTicks());
+        snapshots.add((long) game.getShotsFired());
+        snapshots.add(Double.doubleToLongBits(game.getTimeLeft()));
+        snapshots.add((long) cannonballs.size());
+        for (int i = 0; i < cannonballs.size(); i++) {
+            snapshots.add((long) Float.floatToIntBits(cannonballs.getX(i)));
+            snapshots.add((long) Float.floatToIntBits(cannonballs.getY(i)));
+            snapshots.add((long) Float.floatToIntBits(cannonballs.getVelocityX(i)));
+            snapshots.add((long) Float.floatToIntBits(cannonballs.getVelocityY(i)));
+        }
+    }
+
+    private static void assertSameGame(GameTrace expected, GameTrace actual) {
+        assertEquals(expected.game.getShotsFired(), actual.game.getShotsFired());
+        assertEquals(expected.game.getTicks(), actual.game.getTicks());
+        assertEquals(expected.game.isGameOver(), actual.game.isGameOver());
+
+        Target[] expectedTargets = expected.game.getLevel().getTargets();
+        Target[] actualTargets = actual.game.getLevel().getTargets();
+        assertEquals(expectedTargets.length, actualTargets.length);
+        for (int t = 0; t < expectedTargets.length; t++) {
+            for (int piece = 0; piece < expectedTargets[t].getPieceCount(); piece++)
+                assertEquals("target " + t + " piece " + piece,
+                        expectedTargets[t].isPieceHit(piece), actualTargets[t].isPieceHit(piece));
+        }
+
+        // every cannonball at exactly the same place at every snapshot
+        assertEquals(expected.snapshots, actual.snapshots);
+    }
+
+    @Test
+    public void sameGameAtEveryFrameRate() {
+        GameTrace at120 = play(1000000000L / 120);
+        GameTrace at60 = play(1000000000L / 60);
+        GameTrace at30 = play(1000000000L / 30);
+
+        // the script must have played: shots fired, the target destroyed
+        // and cannonballs in flight at the snapshots
+        assertTrue(at120.game.isGameOver());
+        assertTrue(at120.game.getShotsFired() > 20);
+        assertTrue(at120.game.getTicks() > 10 * SNAPSHOT_TICKS);
+        assertTrue(at120.snapshots.size() > 4 * (at120.game.getTicks() / SNAPSHOT_TICKS));
+        assertTrue(at30.frames < at60.frames && at60.frames < at120.frames);
+
+        assertSameGame(at120, at60);
+        assertSameGame(at120, at30);
+    }
+
+    @Test
+    public void advanceKeepsLeftoverTime() {
+        FixedTimestep timestep = new FixedTimestep();
+        timestep.reset(0);
+
+        // a frame that isn't a whole number of steps leaves time over,
+        // which is carried into the next frame rather than dropped
+        long frame = FixedTimestep.STEP_NANOS * 5 / 2;
+        long steps = 0;
+        for (int i = 1; i <= 30; i++)
+            steps += timestep.advance(i * frame);
+        assertEquals(30 * frame / FixedTimestep.STEP_NANOS, steps);
+        assertEquals((float) (30 * frame % FixedTimestep.STEP_NANOS) / FixedTimestep.STEP_NANOS,
+                timestep.getAlpha(), 0);
+    }
+}
@@ -0,0 +1,98 @@
+package me.seet.cannongame;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// FrameAllocationTest.java
+// Checks that simulating and drawing frames allocates nothing once the
+// game is running, by counting the bytes this thread allocates
+public class FrameAllocationTest {
+    private static final int FRAMES = 10000;
+
+    // counts what a frame draws without keeping any of it
+    private static class RecordingRenderer implements GameRenderer {
+        long frames;
+        long lines;
+        long circles;
+        long characters;
+
+        @Override
+        public void setShapePaint(int paint, int color, float width) {
+        }
+
+        @Override
+        public void setTextPaint(int paint, int color, float size) {
+        }
+
+        @Override
+        public void beginFrame(int color) {
+            ++frames;
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float endX, float endY, int paint) {
+            ++lines;
+        }
+
+        @Override
+        public void drawCircle(float centerX, float centerY, float radius, int paint) {
+            ++circles;
+        }
+
+        @Override
+        public void drawText(char[] text, int start, int count, float x, float y, int paint) {
+            characters += count;
+        }
+
+        @Override
+        public void endFrame() {
+        }
+    }
+
+    private final CannonGame mGame = new CannonGame();
+    private final GameDrawer mDrawer = new GameDrawer();
+    private final HudText mTimeText = new HudText("Time remaining: %.1f seconds", '.');
+    private final RecordingRenderer mRenderer = new RecordingRenderer();
+    private final char[] mOverlay = "frame  p50 1.00 ms".toCharArray();
+    private final int[] mOverlayLineEnds = { mOverlay.length };
+
+    // one step and one frame of a game that keeps the cannon firing and
+    // starts again whenever it ends
+    private void frame(int frame) {
+        if (mGame.isGameOver())
+            mGame.newGame();
+        mGame.fireCannonball(mGame.getWidth() * 3 / 4, (frame * 7) % mGame.getHeight());
+        mGame.step();
+        mDrawer.draw(mRenderer, mGame, 0.5f, mTimeText, mOverlay, mOverlayLineEnds);
+    }
+
+    @Test
+    public void framesDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        mGame.setSize(1280, 720);
+        mGame.setFireMode(CannonGame.FireMode.BURST);
+        mGame.newGame();
+        mDrawer.setSize(mGame.getWidth());
+
+        // load every class and let the JIT settle first
+        for (int i = 0; i < FRAMES; i++)
+            frame(i);
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < FRAMES; i++)
+            frame(i);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals("bytes allocated by " + FRAMES + " frames", 0, allocated);
+        assertEquals(2 * FRAMES, mRenderer.frames);
+        assertTrue(mRenderer.circles > 0 && mRenderer.lines > 0 && mRenderer.characters > 0);
+    }
+}
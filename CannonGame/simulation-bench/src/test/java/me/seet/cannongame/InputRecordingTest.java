@@ -0,0 +1,129 @@
+package me.seet.cannongame;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// InputRecordingTest.java
+// Replays a recorded game as a regression fixture and checks that damaged
+// recordings are refused when loaded
+public class InputRecordingTest {
+    // a classic level played with single shots, bursts from step 300 and
+    // rapid fire held down from step 600 until the time runs out at step
+    // 961, lifting the finger between touches
+    private static final String FIXTURE = "classic_mixed_modes.rec";
+    private static final int FIXTURE_SHOTS = 37;
+    private static final long FIXTURE_TICKS = 961;
+    private static final double FIXTURE_ELAPSED = 8.008333013;
+    private static final boolean[] FIXTURE_HITS = {true, true, true, true, false, true, true};
+
+    // where the header ends and the first input starts in a saved recording
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4 + 8 + 1 + 8 + 4;
+    private static final int INPUT_SIZE = 8 + 1 + 4 + 4;
+
+    private static InputRecording loadFixture() throws IOException {
+        InputStream in = InputRecordingTest.class.getResourceAsStream(FIXTURE);
+        try {
+            return InputRecording.readFrom(new DataInputStream(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void fixtureReplaysToTheRecordedOutcome() throws IOException {
+        CannonGame game = loadFixture().replay(null);
+
+        assertTrue(game.isGameOver());
+        assertEquals(FIXTURE_SHOTS, game.getShotsFired());
+        assertEquals(FIXTURE_TICKS, game.getTicks());
+        assertEquals(FIXTURE_ELAPSED, game.getTotalElapsedTime(), 0);
+
+        Target target = game.getLevel().getTargets()[0];
+        assertEquals(FIXTURE_HITS.length, target.getPieceCount());
+        for (int piece = 0; piece < FIXTURE_HITS.length; piece++)
+            assertEquals("piece " + piece, FIXTURE_HITS[piece], target.isPieceHit(piece));
+    }
+
+    @Test
+    public void savedRecordingReplaysTheSame() throws IOException {
+        InputRecording recording = loadFixture();
+        InputRecording copy = InputRecording.readFrom(
+                new DataInputStream(new ByteArrayInputStream(save(recording))));
+
+        assertEquals(recording.size(), copy.size());
+        assertTrue(InputRecording.sameOutcome(recording.replay(null), copy.replay(null)));
+    }
+
+    @Test
+    public void refusesUnknownStartingFireMode() throws IOException {
+        byte[] bytes = save(loadFixture());
+        bytes[HEADER_SIZE - 4 - 8 - 1] = 42;
+        assertRefused(bytes);
+    }
+
+    @Test
+    public void refusesNegativeInputCount() throws IOException {
+        byte[] bytes = save(loadFixture());
+        putInt(bytes, HEADER_SIZE - 4, -1);
+        assertRefused(bytes);
+    }
+
+    @Test
+    public void refusesOutOfOrderInputs() throws IOException {
+        byte[] bytes = save(loadFixture());
+        putInt(bytes, HEADER_SIZE + INPUT_SIZE + 4, 0);    // second input back at step 0
+        putInt(bytes, HEADER_SIZE + 4, 100);    // after the first one at step 100
+        assertRefused(bytes);
+    }
+
+    @Test
+    public void refusesUnknownInputType() throws IOException {
+        byte[] bytes = save(loadFixture());
+        bytes[HEADER_SIZE + 8] = 9;
+        assertRefused(bytes);
+    }
+
+    @Test
+    public void refusesUnknownFireModeInput() throws IOException {
+        InputRecording recording = new InputRecording();
+        CannonGame game = new CannonGame();
+        game.setSize(1280, 720);
+        game.newGame();
+        recording.start(game);
+        recording.recordFireMode(10, CannonGame.FireMode.BURST);
+
+        byte[] bytes = save(recording);
+        putInt(bytes, HEADER_SIZE + 9, Float.floatToIntBits(7));
+        assertRefused(bytes);
+    }
+
+    private static byte[] save(InputRecording recording) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        recording.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        for (int i = 0; i < 4; i++)
+            bytes[offset + i] = (byte) (value >>> (24 - 8 * i));
+    }
+
+    private static void assertRefused(byte[] bytes) {
+        try {
+            InputRecording.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+            fail("damaged recording was loaded");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package me.seet.cannongame;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// SpatialHashTest.java
+// Checks the grid broadphase against a brute-force scan of every segment
+// for every cannonball path, with segments that span several cells, lie
+// on cell borders or stick out of the field
+public class SpatialHashTest {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final float CELL = WIDTH / 12f;  // as CannonGame sizes it
+    private static final int ROUNDS = 200;  // builds, each with fresh segments
+    private static final int QUERIES = 500; // cannonball paths per build
+
+    private final Random mRandom = new Random(4);
+
+    // a coordinate that is often exactly on a cell border or the field's edge
+    private float coordinate(int extent) {
+        switch (mRandom.nextInt(4)) {
+            case 0:
+                return mRandom.nextInt((int) (extent / CELL) + 1) * CELL;
+            case 1:
+                return -CELL + mRandom.nextFloat() * (extent + 2 * CELL);  // may be outside
+            default:
+                return mRandom.nextFloat() * extent;
+        }
+    }
+
+    // a box from a coordinate, with a size from zero to several cells
+    private void box(float[] box) {
+        float x = coordinate(WIDTH);
+        float y = coordinate(HEIGHT);
+        float size = mRandom.nextInt(3) == 0 ? 0 : mRandom.nextFloat() * 4 * CELL;
+        if (mRandom.nextBoolean()) {
+            box[0] = x;   // a vertical segment, like the blockers
+            box[1] = y;
+            box[2] = x + mRandom.nextFloat() * CELL / 2;
+            box[3] = y + size;
+        }
+        else {
+            box[0] = x;
+            box[1] = y;
+            box[2] = x + size;
+            box[3] = y + mRandom.nextInt(2) * CELL;   // sometimes exactly a cell tall
+        }
+    }
+
+    private static boolean overlaps(float[] a, float[] b) {
+        return a[0] <= b[2] && a[2] >= b[0] && a[1] <= b[3] && a[3] >= b[1];
+    }
+
+    @Test
+    public void queriesMatchBruteForce() {
+        SpatialHash hash = new SpatialHash(WIDTH, HEIGHT, CELL);
+        float[] query = new float[4];
+        int matches = 0;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            // a different number of segments each build, so storage is
+            // both grown and reused
+            int count = 1 + mRandom.nextInt(round % 2 == 0 ? 8 : 120);
+            float[][] segments = new float[count][4];
+            hash.clear();
+            for (int s = 0; s < count; s++) {
+                box(segments[s]);
+                assertEquals(s, hash.add(segments[s][0], segments[s][1],
+                        segments[s][2], segments[s][3]));
+            }
+            hash.build();
+            assertEquals(count, hash.size());
+
+            int[] result = new int[count];
+            for (int q = 0; q < QUERIES; q++) {
+                box(query);
+                int found = hash.query(query[0], query[1], query[2], query[3], result);
+
+                // brute force: every segment against the path's box
+                int expected = 0;
+                int[] brute = new int[count];
+                for (int s = 0; s < count; s++) {
+                    if (overlaps(segments[s], query))
+                        brute[expected++] = s;
+                }
+
+                int[] actual = Arrays.copyOf(result, found);
+                Arrays.sort(actual);    // each segment at most once, in any order
+                assertArrayEquals("round " + round + " query " + q,
+                        Arrays.copyOf(brute, expected), actual);
+                matches += found;
+            }
+        }
+
+        // the boxes must overlap often enough for the test to mean anything
+        assertTrue(matches > ROUNDS * QUERIES / 4);
+    }
+
+    @Test
+    public void boxesTouchingAtACellBorderOverlap() {
+        SpatialHash hash = new SpatialHash(WIDTH, HEIGHT, CELL);
+        hash.add(CELL, CELL, CELL, 2 * CELL);   // a line on a column border
+        hash.add(2 * CELL, 0, 3 * CELL, CELL);  // ends on a row border
+        hash.build();
+
+        int[] result = new int[2];
+        assertEquals(1, hash.query(CELL - 10, 0, CELL, CELL, result));
+        assertEquals(0, result[0]);
+        assertEquals(2, hash.query(CELL, CELL, 2 * CELL, CELL, result));
+        assertEquals(0, hash.query(CELL + 1, CELL + 1, 2 * CELL - 1, 2 * CELL, result));
+    }
+}
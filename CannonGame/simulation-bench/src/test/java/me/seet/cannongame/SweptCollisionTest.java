@@ -0,0 +1,130 @@
+package me.seet.cannongame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// SweptCollisionTest.java
+// Checks the time of impact between a moving cannonball and a moving
+// blocker: fast cannonballs can't pass through, and contact is found at
+// the exact moment for the sides, the rounded ends and grazing paths
+public class SweptCollisionTest {
+    private static final float RADIUS = 35;     // cannonball on a 1280 wide field
+    private static final float HALF_WIDTH = 26; // half of a 53 wide blocker
+    private static final float REACH = RADIUS + HALF_WIDTH;
+    private static final float EPSILON = 1e-6f;
+
+    // a vertical blocker from (800, 100) to (800, 300)
+    private static Line blocker() {
+        Line line = new Line();
+        line.setStart(800, 100);
+        line.setEnd(800, 300);
+        return line;
+    }
+
+    @Test
+    public void fastCannonballDoesNotTunnel() {
+        // moves 1000 in one step, many times the blocker's 52 width; it
+        // starts and ends the step well clear of the blocker
+        float time = SweptCollision.timeOfImpact(500, 200, 1000, 0, RADIUS,
+                blocker(), 0, 0, HALF_WIDTH);
+        assertEquals((800 - REACH - 500) / 1000, time, EPSILON);
+    }
+
+    @Test
+    public void fastCannonballBouncesOffTheBlockerInAGame() {
+        CannonGame game = new CannonGame();
+        game.setSize(1280, 720);
+        game.newGame();
+
+        // a cannonball left of the classic blocker at x = 800, fast enough
+        // to end the step far to its right if nothing stopped it
+        MovingLine blocker = game.getLevel().getBlockers()[0];
+        float y = (blocker.getLine().getStartY() + blocker.getLine().getEndY()) / 2;
+        float speed = 600 / (float) FixedTimestep.STEP_SECONDS;
+        game.getCannonballs().spawn(700, y, speed, 0);
+        game.step();
+
+        assertEquals(1, game.getCannonballs().size());
+        assertTrue(game.getCannonballs().getX(0) < 800);
+        assertEquals(-speed, game.getCannonballs().getVelocityX(0), 0);
+    }
+
+    @Test
+    public void impactTimeIsExact() {
+        // hits the long side when its center is REACH left of the line
+        float time = SweptCollision.timeOfImpact(600, 150, 250, 50, RADIUS,
+                blocker(), 0, 0, HALF_WIDTH);
+        assertEquals((800 - REACH - 600) / 250, time, EPSILON);
+    }
+
+    @Test
+    public void grazesTheRoundedEnd() {
+        // passes exactly REACH below the bottom end: touches once, halfway
+        float time = SweptCollision.timeOfImpact(500, 300 + REACH, 600, 0, RADIUS,
+                blocker(), 0, 0, HALF_WIDTH);
+        assertEquals(0.5f, time, EPSILON);
+
+        // a hair further away misses
+        assertEquals(SweptCollision.NO_IMPACT, SweptCollision.timeOfImpact(500, 300 + REACH + 0.01f,
+                600, 0, RADIUS, blocker(), 0, 0, HALF_WIDTH), 0);
+    }
+
+    @Test
+    public void grazesAlongTheSide() {
+        // moves down parallel to the blocker exactly REACH to its left,
+        // first touching the top end's rounded cap from above
+        float time = SweptCollision.timeOfImpact(800 - REACH, 0, 0, 200, RADIUS,
+                blocker(), 0, 0, HALF_WIDTH);
+        assertEquals(0.5f, time, EPSILON);
+    }
+
+    @Test
+    public void hitsTheEndHeadOn() {
+        // comes straight up at the bottom end
+        float time = SweptCollision.timeOfImpact(800, 500, 0, -300, RADIUS,
+                blocker(), 0, 0, HALF_WIDTH);
+        assertEquals((500 - (300 + REACH)) / 300, time, EPSILON);
+    }
+
+    @Test
+    public void blockerMovesIntoStillCannonball() {
+        // the blocker sweeps left onto a cannonball that isn't moving
+        float time = SweptCollision.timeOfImpact(500, 200, 0, 0, RADIUS,
+                blocker(), -400, 0, HALF_WIDTH);
+        assertEquals((800 - (500 + REACH)) / 400, time, EPSILON);
+
+        // the blocker slides down until its bottom end reaches it
+        time = SweptCollision.timeOfImpact(800, 450, 0, 0, RADIUS,
+                blocker(), 0, 200, HALF_WIDTH);
+        assertEquals((450 - REACH - 300) / 200, time, EPSILON);
+    }
+
+    @Test
+    public void bothMovingTowardEachOther() {
+        // closing at 600 a step from 300 - REACH apart
+        float time = SweptCollision.timeOfImpact(500, 200, 200, 0, RADIUS,
+                blocker(), -400, 0, HALF_WIDTH);
+        assertEquals((800 - REACH - 500) / 600, time, EPSILON);
+    }
+
+    @Test
+    public void touchingCountsOnlyWhileApproaching() {
+        // overlapping the blocker's side at the start of the step
+        assertEquals(0f, SweptCollision.timeOfImpact(760, 200, 100, 0, RADIUS,
+                blocker(), 0, 0, HALF_WIDTH), 0);
+        assertEquals(SweptCollision.NO_IMPACT, SweptCollision.timeOfImpact(760, 200, -100, 0,
+                RADIUS, blocker(), 0, 0, HALF_WIDTH), 0);
+    }
+
+    @Test
+    public void missesWhenTooSlowOrAimedAway() {
+        // stops short of the blocker
+        assertEquals(SweptCollision.NO_IMPACT, SweptCollision.timeOfImpact(500, 200, 200, 0,
+                RADIUS, blocker(), 0, 0, HALF_WIDTH), 0);
+        // passes above the top end
+        assertEquals(SweptCollision.NO_IMPACT, SweptCollision.timeOfImpact(500, 100 - REACH - 1,
+                1000, 0, RADIUS, blocker(), 0, 0, HALF_WIDTH), 0);
+    }
+}
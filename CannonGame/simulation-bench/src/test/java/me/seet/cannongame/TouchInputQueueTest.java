@@ -0,0 +1,91 @@
+package me.seet.cannongame;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// TouchInputQueueTest.java
+// Checks that touches come out in the order they happened, with each
+// move's position and time taken together while the UI thread keeps moving
+public class TouchInputQueueTest {
+    // keeps every touch as {x, y, time}; a release has NaN for x and y
+    private static class Touches implements TouchInputQueue.Consumer {
+        final List<double[]> touches = new ArrayList<double[]>();
+
+        @Override
+        public void onTouch(float x, float y, long timeNanos) {
+            touches.add(new double[] { x, y, timeNanos });
+        }
+
+        @Override
+        public void onRelease(long timeNanos) {
+            touches.add(new double[] { Double.NaN, Double.NaN, timeNanos });
+        }
+    }
+
+    @Test
+    public void movesKeepTheirPlaceBetweenDownsAndUps() {
+        TouchInputQueue queue = new TouchInputQueue(4);
+        Touches consumer = new Touches();
+
+        queue.offerDown(1, 1, 10);
+        queue.offerMove(2, 2, 20);
+        queue.offerMove(3, 3, 30);  // replaces the move at 20
+        queue.offerUp(40);
+        assertEquals(3, queue.drain(consumer));
+
+        assertEquals(10, consumer.touches.get(0)[2], 0);
+        assertEquals(3, consumer.touches.get(1)[0], 0);
+        assertEquals(30, consumer.touches.get(1)[2], 0);
+        assertTrue(Double.isNaN(consumer.touches.get(2)[0]));
+
+        // a move is passed once, and clear drops one that is waiting
+        assertEquals(0, queue.drain(consumer));
+        queue.offerMove(4, 4, 50);
+        queue.clear();
+        assertEquals(0, queue.drain(consumer));
+    }
+
+    @Test
+    public void concurrentMovesKeepTheirTimes() throws InterruptedException {
+        final TouchInputQueue queue = new TouchInputQueue(32);
+        final int moves = 2000001;  // ends on a move, which can't be dropped
+
+        // every move is at x = y = its time, with a touch down now and then;
+        // downs the ring has no room for are dropped, as on a device
+        Thread ui = new Thread() {
+            @Override
+            public void run() {
+                for (int time = 1; time <= moves; time++) {
+                    if (time % 1000 == 0)
+                        queue.offerDown(time, time, time);
+                    else
+                        queue.offerMove(time, time, time);
+                }
+            }
+        };
+
+        Touches consumer = new Touches();
+        ui.start();
+        while (ui.isAlive())
+            queue.drain(consumer);
+        ui.join();
+        queue.drain(consumer);
+
+        // a move read across two writes would have a position from one
+        // and a time from the other; a move taken just before a touch down
+        // was written and passed after it would come out of order
+        double previous = 0;
+        for (double[] touch : consumer.touches) {
+            assertEquals(touch[2], touch[0], 0);
+            assertEquals(touch[2], touch[1], 0);
+            assertTrue(touch[2] > previous);
+            previous = touch[2];
+        }
+        assertEquals(moves, previous, 0);
+    }
+}
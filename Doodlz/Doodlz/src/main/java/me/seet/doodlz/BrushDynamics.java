@@ -0,0 +1,71 @@
+// BrushDynamics.java
+// Turns a finger's pressure and speed into the size of the brush
+package me.seet.doodlz;
+
+// follows one finger's touch samples and gives the brush size, as a
+// fraction of the line width, for the point last kept: pressing harder
+// widens the line and moving faster thins it, as ink runs out under a
+// quick pen. Pressure and speed are smoothed over SMOOTH_TIME, so the
+// size doesn't jump with the noise of single samples. Each sample takes
+// constant time
+public class BrushDynamics {
+    // size at no pressure; full pressure gives a size of 1
+    public static final float MIN_PRESSURE_SIZE = 0.3f;
+
+    // speed in screen pixels per second at which the line is thinnest,
+    // and how thin that is
+    public static final float THIN_SPEED = 3000;
+    public static final float MIN_SPEED_SIZE = 0.4f;
+
+    // how long pressure and speed are averaged over, in seconds
+    public static final float SMOOTH_TIME = 0.03f;
+
+    private float mX;   // last sample, in screen pixels
+    private float mY;
+    private long mTime; // of the last sample, in milliseconds
+    private float mPressure;    // smoothed
+    private float mSpeed;   // smoothed, in pixels per second
+
+    // start a stroke at its first sample
+    public void begin(float x, float y, long time, float pressure) {
+        mX = x;
+        mY = y;
+        mTime = time;
+        mPressure = clamp(pressure);
+        mSpeed = 0;
+    }
+
+    // take the next sample, kept or not
+    public void add(float x, float y, long time, float pressure) {
+        if(time <= mTime) {
+            // samples of the same time only move the finger
+            mX = x;
+            mY = y;
+            return;
+        }
+
+        float dt = (time - mTime) / 1000f;
+        float alpha = dt / (SMOOTH_TIME + dt);
+        float dx = x - mX;
+        float dy = y - mY;
+        mSpeed += alpha * ((float)Math.sqrt(dx * dx + dy * dy) / dt - mSpeed);
+        mPressure += alpha * (clamp(pressure) - mPressure);
+
+        mX = x;
+        mY = y;
+        mTime = time;
+    }
+
+    // size of the brush now, as a fraction of the line width
+    public float getSize() {
+        float pressureSize = MIN_PRESSURE_SIZE + (1 - MIN_PRESSURE_SIZE) * mPressure;
+        float speedSize = 1 - (1 - MIN_SPEED_SIZE) * Math.min(mSpeed / THIN_SPEED, 1);
+        return pressureSize * speedSize;
+    }
+
+    // devices without a pressure sensor report 1, some report a little
+    // more when pressed hard
+    private static float clamp(float pressure) {
+        return Math.max(0, Math.min(pressure, 1));
+    }
+}
@@ -0,0 +1,171 @@
+// BrushStamper.java
+// Lays brush stamps along the curve through the points of a stroke
+package me.seet.doodlz;
+
+// follows the same Catmull-Rom curve as StrokeCurve, one piece per new
+// point, and puts a stamp of the brush texture every SPACING of its
+// diameter along it, into a StampBatch. The size goes linearly from one
+// point's size to the next along each piece, and each stamp turns the
+// texture to the next of GRAIN_ANGLES, so the grain doesn't repeat along
+// the line. The stamps depend only on the points, so DoodleView's live
+// stroke and StrokePainter's logged one look the same
+public class BrushStamper {
+    // distance between stamps as a fraction of their diameter
+    public static final float SPACING = 0.2f;
+
+    // smallest size a stamp is drawn at, as a fraction of the line width
+    public static final float MIN_SIZE = 0.05f;
+
+    // smallest stamp radius and distance between stamps, in drawing
+    // pixels, so even a line of no width shows and ends
+    public static final float MIN_RADIUS = 0.5f;
+    public static final float MIN_SPACING = 0.25f;
+
+    // most straight steps a piece is walked in
+    public static final int MAX_STEPS = 32;
+
+    // cosines and sines of the angles the texture is turned to, in turn
+    private static final int GRAIN_ANGLES = 16;
+    private static final float[] COS = new float[GRAIN_ANGLES];
+    private static final float[] SIN = new float[GRAIN_ANGLES];
+
+    static {
+        // steps of a golden-ratio turn spread the angles evenly
+        for (int i = 0; i < GRAIN_ANGLES; i++) {
+            double angle = i * 0.618034 * 2 * Math.PI;
+            COS[i] = (float)Math.cos(angle);
+            SIN[i] = (float)Math.sin(angle);
+        }
+    }
+
+    // the last three points and their sizes, as in StrokeCurve
+    private float mX0, mY0, mX1, mY1, mX2, mY2;
+    private float mSize1, mSize2;
+    private int mCount; // points added since begin
+
+    private int mColor;
+    private float mWidth;   // line width the sizes are fractions of
+    private float mToNext;  // distance along the curve to the next stamp
+    private int mStamps;    // stamps so far, which picks the grain angle
+
+    // area of the stamps since the last getChangedBounds
+    private float mLeft, mTop, mRight, mBottom;
+    private boolean mChanged;
+
+    // start a stroke with a stamp at its first point
+    public void begin(StampBatch batch, int color, float width, float x, float y, float size) {
+        mX0 = mX1 = mX2 = x;
+        mY0 = mY1 = mY2 = y;
+        mSize1 = mSize2 = size;
+        mCount = 1;
+        mColor = color;
+        mWidth = width;
+        mStamps = 0;
+        mChanged = false;
+
+        stamp(batch, x, y, size);
+        mToNext = getSpacing(size);
+    }
+
+    // add the next point, stamping the piece before the previous point
+    public void add(StampBatch batch, float x, float y, float size) {
+        if(mCount >= 2)
+            addPiece(batch, x, y);
+
+        mX0 = mX1;
+        mY0 = mY1;
+        mX1 = mX2;
+        mY1 = mY2;
+        mX2 = x;
+        mY2 = y;
+        mSize1 = mSize2;
+        mSize2 = size;
+        ++mCount;
+    }
+
+    // stamp the last piece, as if the stroke stopped at its last point
+    public void finish(StampBatch batch) {
+        if(mCount >= 2)
+            addPiece(batch, mX2, mY2);
+    }
+
+    // set bounds, as left, top, right and bottom, to the area the stamps
+    // since the last call cover, and return false if there were none
+    public boolean getChangedBounds(float[] bounds) {
+        if(!mChanged)
+            return false;
+
+        bounds[0] = mLeft;
+        bounds[1] = mTop;
+        bounds[2] = mRight;
+        bounds[3] = mBottom;
+        mChanged = false;
+        return true;
+    }
+
+    // the piece from point 1 to point 2, walked as straight steps along
+    // its cubic Bezier
+    private void addPiece(StampBatch batch, float x3, float y3) {
+        float c1x = StrokeCurve.getControl(mX1, mX0, mX2);
+        float c1y = StrokeCurve.getControl(mY1, mY0, mY2);
+        float c2x = StrokeCurve.getControl(mX2, x3, mX1);
+        float c2y = StrokeCurve.getControl(mY2, y3, mY1);
+
+        // the control polygon is at least as long as the curve
+        float length = distance(mX1, mY1, c1x, c1y) + distance(c1x, c1y, c2x, c2y)
+                + distance(c2x, c2y, mX2, mY2);
+        float spacing = getSpacing(Math.min(mSize1, mSize2));
+        int steps = Math.max(1, Math.min((int)Math.ceil(length / spacing), MAX_STEPS));
+
+        float previousX = mX1;
+        float previousY = mY1;
+        for (int i = 1; i <= steps; i++) {
+            float t = (float)i / steps;
+            float u = 1 - t;
+            float x = u * u * u * mX1 + 3 * u * u * t * c1x + 3 * u * t * t * c2x + t * t * t * mX2;
+            float y = u * u * u * mY1 + 3 * u * u * t * c1y + 3 * u * t * t * c2y + t * t * t * mY2;
+
+            // stamps that fall on this step
+            float step = distance(previousX, previousY, x, y);
+            while(mToNext <= step) {
+                float f = mToNext / step;
+                float size = mSize1 + (mSize2 - mSize1) * (t - (1 - f) / steps);
+                stamp(batch, previousX + (x - previousX) * f, previousY + (y - previousY) * f, size);
+                mToNext += getSpacing(size);
+            }
+            mToNext -= step;
+            previousX = x;
+            previousY = y;
+        }
+    }
+
+    private void stamp(StampBatch batch, float x, float y, float size) {
+        float radius = Math.max(mWidth * Math.max(size, MIN_SIZE) / 2, MIN_RADIUS);
+        int angle = mStamps++ % GRAIN_ANGLES;
+        batch.add(x, y, radius, COS[angle], SIN[angle], mColor);
+
+        if(!mChanged) {
+            mLeft = x - radius;
+            mTop = y - radius;
+            mRight = x + radius;
+            mBottom = y + radius;
+            mChanged = true;
+        }
+        else {
+            mLeft = Math.min(mLeft, x - radius);
+            mTop = Math.min(mTop, y - radius);
+            mRight = Math.max(mRight, x + radius);
+            mBottom = Math.max(mBottom, y + radius);
+        }
+    }
+
+    private float getSpacing(float size) {
+        return Math.max(SPACING * mWidth * Math.max(size, MIN_SIZE), MIN_SPACING);
+    }
+
+    private static float distance(float x1, float y1, float x2, float y2) {
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        return (float)Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,142 @@
+// DocumentExporter.java
+// Saves and opens drawings as documents in the background
+package me.seet.doodlz;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// writes a StrokeLog snapshot and its layers as a Doodlz document, SVG or
+// PDF, and reads Doodlz documents back, on a worker thread; the results
+// are reported on the UI thread
+public class DocumentExporter {
+    // the formats a drawing can be saved in
+    public enum Format {
+        DOODLE(DoodleDocument.MIME_TYPE, DoodleDocument.EXTENSION),
+        SVG(SvgWriter.MIME_TYPE, SvgWriter.EXTENSION),
+        PDF(PdfWriter.MIME_TYPE, PdfWriter.EXTENSION);
+
+        private final String mMimeType;
+        private final String mExtension;
+
+        Format(String mimeType, String extension) {
+            mMimeType = mimeType;
+            mExtension = extension;
+        }
+
+        public String getMimeType() {
+            return mMimeType;
+        }
+
+        public String getExtension() {
+            return mExtension;
+        }
+    }
+
+    // hears whether a document was saved, on the UI thread
+    public interface Listener {
+        void onFinished(boolean saved);
+    }
+
+    // receives an opened drawing and its layers, or null if it couldn't
+    // be read, on the UI thread
+    public interface OpenListener {
+        void onOpened(StrokeLog log, LayerStack layers);
+    }
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler;  // runs listener calls on the UI thread
+
+    // one document at a time, in the order asked for; the thread ends
+    // when idle
+    private final ExecutorService mWorker = new ThreadPoolExecutor(0, 1,
+            1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    public DocumentExporter(ContentResolver resolver, Handler handler) {
+        mResolver = resolver;
+        mHandler = handler;
+    }
+
+    // write all strokes of log on layers, neither of which may change, to
+    // uri
+    public void export(final StrokeLog log, final LayerStack layers, final Format format, final Uri uri,
+                       final Listener listener) {
+        mWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean saved;
+                try {
+                    OutputStream out = mResolver.openOutputStream(uri);
+                    try {
+                        if(format == Format.DOODLE)
+                            DoodleDocument.write(log, log.size(), layers, out);
+                        else if(format == Format.SVG)
+                            new SvgWriter().write(log, log.size(), layers, out);
+                        else
+                            new PdfWriter().write(log, log.size(), layers, out);
+                    }
+                    finally {
+                        out.close();
+                    }
+                    saved = true;
+                }
+                catch (IOException e) {
+                    saved = false;
+                }
+                catch (RuntimeException e) {    // e.g. the document was deleted meanwhile
+                    saved = false;
+                }
+
+                final boolean result = saved;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onFinished(result);
+                    }
+                });
+            }
+        });
+    }
+
+    // read the Doodlz document at uri
+    public void open(final Uri uri, final OpenListener listener) {
+        mWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                StrokeLog log;
+                final LayerStack layers = new LayerStack();
+                try {
+                    InputStream in = mResolver.openInputStream(uri);
+                    try {
+                        log = DoodleDocument.read(in, layers);
+                    }
+                    finally {
+                        in.close();
+                    }
+                }
+                catch (IOException e) {
+                    log = null;
+                }
+                catch (RuntimeException e) {
+                    log = null;
+                }
+
+                final StrokeLog result = log;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onOpened(result, result != null ? layers : null);
+                    }
+                });
+            }
+        });
+    }
+}
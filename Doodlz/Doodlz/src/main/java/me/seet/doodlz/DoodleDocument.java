@@ -0,0 +1,284 @@
+// DoodleDocument.java
+// Reads and writes drawings in Doodlz's own compact format
+package me.seet.doodlz;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// a drawing as its layers and strokes, so it can be opened and changed
+// again. The file is the magic number "DOOD", then as varints the version,
+// the number of layers, the active one, each layer's opacity, blend mode
+// and flags, the number of strokes, the number of x, y values in them and
+// an index of each stroke's length in bytes. Each stroke follows as its
+// color and width in 4 bytes each, its flags, layer and point count as
+// varints and its points in StrokeLog units as zigzag varints, the first
+// one whole and the rest as the step from the point before. Steps are
+// short, so most points take two or three bytes. A brush stroke's sizes
+// follow its points, stepped the same way. Version 1 had no flags or
+// sizes, and version 2 no layers
+public class DoodleDocument {
+    public static final String MIME_TYPE = "application/x-doodlz";
+    public static final String EXTENSION = ".doodle";
+
+    private static final int MAGIC = 0x444f4f44;   // "DOOD"
+    private static final int VERSION = 3;
+
+    // stroke flags
+    private static final int BRUSH = 1;
+
+    // layer flags
+    private static final int HIDDEN = 1;
+
+    // write layers and the first count strokes of log to out; out is not
+    // closed
+    public static void write(StrokeLog log, int count, LayerStack layers, OutputStream out) throws IOException {
+        out = new BufferedOutputStream(out);
+        writeInt(out, MAGIC);
+        writeVarint(out, VERSION);
+
+        writeVarint(out, layers.size());
+        writeVarint(out, layers.getActive());
+        for (int i = 0; i < layers.size(); i++) {
+            Layer layer = layers.get(i);
+            writeVarint(out, layer.getOpacity());
+            writeVarint(out, layer.getBlend().ordinal());
+            writeVarint(out, layer.isVisible() ? 0 : HIDDEN);
+        }
+
+        writeVarint(out, count);
+
+        int coordinates = 0;
+        for (int i = 0; i < count; i++)
+            coordinates += log.getPointCount(i) * 2;
+        writeVarint(out, coordinates);
+
+        // the index, measured without writing anything
+        for (int i = 0; i < count; i++)
+            writeVarint(out, getStrokeLength(log, i, layers));
+
+        for (int i = 0; i < count; i++) {
+            writeInt(out, log.getColor(i));
+            writeInt(out, Float.floatToIntBits(log.getWidth(i)));
+            writeVarint(out, log.isBrush(i) ? BRUSH : 0);
+            writeVarint(out, layers.getLayer(log, i));
+            writeVarint(out, log.getPointCount(i));
+
+            int previousX = 0;
+            int previousY = 0;
+            for (int j = 0; j < log.getPointCount(i) * 2; j += 2) {
+                int x = log.getCoordinate(i, j);
+                int y = log.getCoordinate(i, j + 1);
+                writeVarint(out, zigzag(x - previousX));
+                writeVarint(out, zigzag(y - previousY));
+                previousX = x;
+                previousY = y;
+            }
+
+            if(log.isBrush(i)) {
+                int previousSize = 0;
+                for (int j = 0; j < log.getPointCount(i); j++) {
+                    int size = log.getSizeValue(i, j);
+                    writeVarint(out, zigzag(size - previousSize));
+                    previousSize = size;
+                }
+            }
+        }
+        out.flush();
+    }
+
+    // read a whole document into a new StrokeLog, and its layers into
+    // layers; in is not closed
+    public static StrokeLog read(InputStream in, LayerStack layers) throws IOException {
+        Reader reader = new Reader(readAll(in));
+        if(reader.readInt() != MAGIC)
+            throw new IOException("not a Doodlz drawing");
+        int version = reader.readVarint();
+        if(version < 1 || version > VERSION)
+            throw new IOException("drawing version " + version + " is not supported");
+
+        // older drawings have one plain layer
+        List<Layer> layerList = new ArrayList<Layer>();
+        int active = 0;
+        if(version >= 3) {
+            int layerCount = reader.readVarint();
+            if(layerCount < 1 || layerCount > LayerStack.MAX_LAYERS)
+                throw new IOException("bad layer count " + layerCount);
+            active = reader.readVarint();
+            Layer.Blend[] blends = Layer.Blend.values();
+            for (int i = 0; i < layerCount; i++) {
+                Layer layer = new Layer();
+                layer.setOpacity(reader.readVarint());
+                int blend = reader.readVarint();
+                if(blend < 0 || blend >= blends.length)
+                    throw new IOException("bad blend mode " + blend);
+                layer.setBlend(blends[blend]);
+                layer.setVisible((reader.readVarint() & HIDDEN) == 0);
+                layerList.add(layer);
+            }
+        }
+        else
+            layerList.add(new Layer());
+
+        int count = reader.readVarint();
+        int coordinates = reader.readVarint();
+        if(count < 0 || count > reader.mData.length || coordinates < 0 || coordinates > reader.mData.length)
+            throw new IOException("bad header");   // each value takes at least a byte
+        int[] starts = new int[count + 1];  // offsets of the strokes from the index
+        for (int i = 0; i < count; i++)
+            starts[i + 1] = starts[i] + reader.readVarint();
+
+        // the header gives the log's size, so it never grows while loading
+        StrokeLog log = new StrokeLog(count, coordinates);
+        int[] points = new int[64];
+        int[] sizes = new int[32];
+        int base = reader.mPosition;
+        for (int i = 0; i < count; i++) {
+            reader.mPosition = base + starts[i];
+            int color = reader.readInt();
+            float width = Float.intBitsToFloat(reader.readInt());
+            int flags = version >= 2 ? reader.readVarint() : 0;
+            int layer = version >= 3 ? reader.readVarint() : 0;
+            if(layer < 0 || layer >= layerList.size())
+                throw new IOException("stroke " + i + " is on a missing layer");
+            int size = reader.readVarint() * 2;
+            if(size < 0 || size > reader.mData.length)
+                throw new IOException("bad stroke " + i);
+            if(size > points.length) {
+                points = new int[Math.max(size, points.length * 2)];
+                sizes = new int[points.length / 2];
+            }
+
+            int x = 0;
+            int y = 0;
+            for (int j = 0; j < size; j += 2) {
+                x += unzigzag(reader.readVarint());
+                y += unzigzag(reader.readVarint());
+                points[j] = x;
+                points[j + 1] = y;
+            }
+
+            boolean brush = (flags & BRUSH) != 0;
+            if(brush) {
+                int pointSize = 0;
+                for (int j = 0; j < size / 2; j++) {
+                    pointSize += unzigzag(reader.readVarint());
+                    sizes[j] = pointSize;
+                }
+            }
+            if(reader.mPosition != base + starts[i + 1])
+                throw new IOException("stroke " + i + " doesn't match the index");
+            log.add(layer, color, width, points, brush ? sizes : null, size);
+        }
+        layers.set(layerList, active);
+        return log;
+    }
+
+    // bytes a stroke takes in the document
+    private static int getStrokeLength(StrokeLog log, int stroke, LayerStack layers) {
+        int length = 8 + getVarintLength(log.isBrush(stroke) ? BRUSH : 0)
+                + getVarintLength(layers.getLayer(log, stroke)) + getVarintLength(log.getPointCount(stroke));
+        int previousX = 0;
+        int previousY = 0;
+        for (int j = 0; j < log.getPointCount(stroke) * 2; j += 2) {
+            int x = log.getCoordinate(stroke, j);
+            int y = log.getCoordinate(stroke, j + 1);
+            length += getVarintLength(zigzag(x - previousX)) + getVarintLength(zigzag(y - previousY));
+            previousX = x;
+            previousY = y;
+        }
+
+        if(log.isBrush(stroke)) {
+            int previousSize = 0;
+            for (int j = 0; j < log.getPointCount(stroke); j++) {
+                int size = log.getSizeValue(stroke, j);
+                length += getVarintLength(zigzag(size - previousSize));
+                previousSize = size;
+            }
+        }
+        return length;
+    }
+
+    // small positive and negative steps both become small numbers
+    private static int zigzag(int value) {
+        return value << 1 ^ value >> 31;
+    }
+
+    private static int unzigzag(int value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    // 7 bits per byte, low bits first, with the top bit set on all but
+    // the last byte
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while((value & ~0x7f) != 0) {
+            out.write(value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int getVarintLength(int value) {
+        int length = 1;
+        while((value & ~0x7f) != 0) {
+            value >>>= 7;
+            ++length;
+        }
+        return length;
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    // the rest of in as an array, which the reader walks without copying
+    private static byte[] readAll(InputStream in) throws IOException {
+        byte[] data = new byte[Math.max(in.available(), 64 * 1024)];
+        int length = 0;
+        int read;
+        while((read = in.read(data, length, data.length - length)) >= 0) {
+            length += read;
+            if(length == data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+        }
+        return Arrays.copyOf(data, length);
+    }
+
+    // reads the values of a document from its bytes
+    private static class Reader {
+        final byte[] mData;
+        int mPosition;
+
+        Reader(byte[] data) {
+            mData = data;
+        }
+
+        int readInt() throws IOException {
+            return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+        }
+
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7f) << shift;
+                if((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("bad number at byte " + mPosition);
+        }
+
+        private int readByte() throws IOException {
+            if(mPosition >= mData.length)
+                throw new IOException("drawing ends too soon");
+            return mData[mPosition++] & 0xff;
+        }
+    }
+}
@@ -1,53 +1,52 @@
 package me.seet.doodlz;
 
+import android.app.Activity;
 import android.app.Fragment;
 import android.content.Context;
+import android.content.Intent;
 import android.graphics.Color;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.view.*;
 
 // DoodleFragment.java
 // Fragment in which the DoodleView is displayed
 public class DoodleFragment extends Fragment {
     private DoodleView mDoodleView; // handles touch events and draws
-    private float mAcceleration;
-    private float mCurrentAcceleration;
-    private float mLastAcceleration;
     private boolean mDialogOnScreen = false;
 
-    // value used to determine whether user shook the device to erase
-    private static final int ACCELERATION_THRESHOLD = 100000;
+    // accelerometer sampling period on KitKat and later, and how long
+    // samples may wait to be delivered together, in microseconds; 25 Hz is
+    // the slowest rate ShakeDetector still finds every shake at
+    private static final int SAMPLING_PERIOD = 40000;
+    private static final int MAX_REPORT_LATENCY = 1000000;
 
-    // event handler for accelerometer events
+    // accelerometer samples are filtered on their own thread, and only a
+    // shake reaches the UI thread
+    private final ShakeDetector mShakeDetector = new ShakeDetector();
+    private HandlerThread mSensorThread;
+    private final Handler mUiHandler = new Handler();
+
+    // requests for the system's document picker
+    private static final int REQUEST_OPEN_DRAWING = 1;
+    private static final int REQUEST_SAVE_DRAWING = 2;
+    private static final int REQUEST_EXPORT_SVG = 3;
+    private static final int REQUEST_EXPORT_PDF = 4;
+
+    // event handler for accelerometer events, on mSensorThread
     private SensorEventListener mSensorEventListener = new SensorEventListener() {
 
         // use accelerometer to determine whether user shook device
         @Override
         public void onSensorChanged(SensorEvent event) {
-            // ensure that other dialogs are not displayed
-            if(!mDialogOnScreen) {
-                // get x, y, and z values for the SensorEvent
-                float x = event.values[0];
-                float y = event.values[1];
-                float z = event.values[2];
-
-                // save previous acceleration value
-                mLastAcceleration = mCurrentAcceleration;
-
-                // calculate the current acceleration
-                mCurrentAcceleration = x * x + y * y + z * z;
-
-                // calculate the change in acceleration
-                mAcceleration = mCurrentAcceleration * (mCurrentAcceleration - mLastAcceleration);
-
-                // if the acceleration is above a certain threshold
-                if(mAcceleration > ACCELERATION_THRESHOLD)
-                    confirmErase();
-            }
+            if(mShakeDetector.add(event.values[0], event.values[1], event.values[2], event.timestamp))
+                mUiHandler.post(mShakeRunnable);
         }
 
         // required method of interface SensorEventListener
@@ -57,6 +56,33 @@ public class DoodleFragment extends Fragment {
         }
     };
 
+    // ask to erase after a shake, unless other dialogs are displayed
+    private final Runnable mShakeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if(!mDialogOnScreen && isResumed())
+                confirmErase();
+        }
+    };
+
+    // show how saving goes under the title, as drawing goes on meanwhile
+    private ImageExporter.Listener mExportListener = new ImageExporter.Listener() {
+        @Override
+        public void onDrawProgress(int percent) {
+            setSubtitle(getString(R.string.message_saving_drawing, percent));
+        }
+
+        @Override
+        public void onWriteProgress(long bytes) {
+            setSubtitle(getString(R.string.message_saving_writing, bytes / 1024));
+        }
+
+        @Override
+        public void onFinished(boolean saved) {
+            setSubtitle(null);
+        }
+    };
+
     public DoodleFragment() {
         // Required empty public constructor
     }
@@ -72,11 +98,7 @@ public class DoodleFragment extends Fragment {
 
         // get reference to the DoodleView
         mDoodleView = (DoodleView)view.findViewById(R.id.doodleView);
-
-        // initialize acceleration values
-        mAcceleration = 0.00f;
-        mCurrentAcceleration = SensorManager.GRAVITY_EARTH;
-        mLastAcceleration = SensorManager.GRAVITY_EARTH;
+        mDoodleView.setExportListener(mExportListener);
 
         return view;
     }
@@ -104,6 +126,29 @@ public class DoodleFragment extends Fragment {
             case R.id.eraser:
                 mDoodleView.setDrawingColor(Color.WHITE);   // line color white
                 return true;    // consume the menu event
+            case R.id.undo:
+                mDoodleView.undo(); // take back the last stroke
+                return true;    // consume the menu event
+            case R.id.redo:
+                mDoodleView.redo(); // put back the last undone stroke
+                return true;    // consume the menu event
+            case R.id.panZoom:
+                item.setChecked(!item.isChecked()); // toggle the check mark
+                mDoodleView.setPanZoomEnabled(item.isChecked());
+                return true;    // consume the menu event
+            case R.id.steadyLines:
+                item.setChecked(!item.isChecked()); // toggle the check mark
+                mDoodleView.setSmoothing(item.isChecked() ?
+                        StrokeSmoother.Mode.ONE_EURO : StrokeSmoother.Mode.CATMULL_ROM);
+                return true;    // consume the menu event
+            case R.id.brush:
+                item.setChecked(!item.isChecked()); // toggle the check mark
+                mDoodleView.setBrushEnabled(item.isChecked());
+                return true;    // consume the menu event
+            case R.id.layers:
+                LayerDialogFragment layerDialog = new LayerDialogFragment();
+                layerDialog.show(getFragmentManager(), "layer dialog");
+                return true;    // consume the menu event
             case R.id.clear:
                 confirmErase();
                 return true;    // consume the menu event
@@ -113,11 +158,49 @@ public class DoodleFragment extends Fragment {
             case R.id.print:
                 mDoodleView.printImage();   // print the current images
                 return true;    // consume the menu event
+            case R.id.openDrawing:
+                Intent open = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                open.addCategory(Intent.CATEGORY_OPENABLE);
+                open.setType(DocumentExporter.Format.DOODLE.getMimeType());
+                startActivityForResult(open, REQUEST_OPEN_DRAWING);
+                return true;    // consume the menu event
+            case R.id.saveDrawing:
+                createDocument(DocumentExporter.Format.DOODLE, REQUEST_SAVE_DRAWING);
+                return true;    // consume the menu event
+            case R.id.exportSvg:
+                createDocument(DocumentExporter.Format.SVG, REQUEST_EXPORT_SVG);
+                return true;    // consume the menu event
+            case R.id.exportPdf:
+                createDocument(DocumentExporter.Format.PDF, REQUEST_EXPORT_PDF);
+                return true;    // consume the menu event
         }
 
         return super.onOptionsItemSelected(item);   // call super's method
     }
 
+    // open or write the document the user picked
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if(resultCode != Activity.RESULT_OK || data == null || data.getData() == null)
+            return; // the user backed out
+
+        switch (requestCode) {
+            case REQUEST_OPEN_DRAWING:
+                mDoodleView.openDocument(data.getData());
+                break;
+            case REQUEST_SAVE_DRAWING:
+                mDoodleView.saveDocument(data.getData(), DocumentExporter.Format.DOODLE);
+                break;
+            case REQUEST_EXPORT_SVG:
+                mDoodleView.saveDocument(data.getData(), DocumentExporter.Format.SVG);
+                break;
+            case REQUEST_EXPORT_PDF:
+                mDoodleView.saveDocument(data.getData(), DocumentExporter.Format.PDF);
+                break;
+        }
+    }
+
     // start listening for sensor events
     @Override
     public void onStart() {
@@ -130,6 +213,7 @@ public class DoodleFragment extends Fragment {
     public void onPause() {
         super.onPause();
         disableAccelerometerListening();    // stop listening for shake
+        mDoodleView.flushJournal(); // the app may be killed from here on
     }
 
     // returns the DoodleView
@@ -142,6 +226,21 @@ public class DoodleFragment extends Fragment {
         mDialogOnScreen = visible;
     }
 
+    // set the action bar's subtitle, if the fragment is still shown
+    private void setSubtitle(CharSequence subtitle) {
+        if(getActivity() != null && getActivity().getActionBar() != null)
+            getActivity().getActionBar().setSubtitle(subtitle);
+    }
+
+    // let the user pick where a document in format goes
+    private void createDocument(DocumentExporter.Format format, int requestCode) {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(format.getMimeType());
+        intent.putExtra(Intent.EXTRA_TITLE, "Doodlz" + System.currentTimeMillis() + format.getExtension());
+        startActivityForResult(intent, requestCode);
+    }
+
     // confirm whether image should be erased
     private void confirmErase() {
         EraseImageDialogFragment fragment = new EraseImageDialogFragment();
@@ -153,10 +252,19 @@ public class DoodleFragment extends Fragment {
         // get the SensorManager
         SensorManager sensorManager = (SensorManager)getActivity().getSystemService(Context.SENSOR_SERVICE);
 
-        // register to listen for accelerometer events
-        sensorManager.registerListener(mSensorEventListener,
-                sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-                SensorManager.SENSOR_DELAY_NORMAL);
+        // samples go to a thread of their own, and from KitKat are batched
+        // in the sensor hub so the app wakes about once a second
+        mShakeDetector.reset();
+        mSensorThread = new HandlerThread("DoodleFragment sensors");
+        mSensorThread.start();
+        Handler handler = new Handler(mSensorThread.getLooper());
+        Sensor accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+            sensorManager.registerListener(mSensorEventListener, accelerometer,
+                    SAMPLING_PERIOD, MAX_REPORT_LATENCY, handler);
+        else
+            sensorManager.registerListener(mSensorEventListener, accelerometer,
+                    SensorManager.SENSOR_DELAY_NORMAL, handler);
     }
 
     // disable listening for accelerometer events
@@ -166,5 +274,7 @@ public class DoodleFragment extends Fragment {
 
         // stop listening for accelerometer events
         sensorManager.unregisterListener(mSensorEventListener, sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
+        mSensorThread.quit();
+        mUiHandler.removeCallbacks(mShakeRunnable);
     }
 }
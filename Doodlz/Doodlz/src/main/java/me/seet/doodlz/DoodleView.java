@@ -3,27 +3,27 @@
 package me.seet.doodlz;
 
 import android.content.Context;
+import android.net.Uri;
 import android.gesture.Gesture;
 import android.graphics.*;
 import android.os.Build;
-import android.provider.MediaStore;
+import android.os.Handler;
 import android.support.v4.print.PrintHelper;
 import android.util.AttributeSet;
 import android.util.MonthDisplayHelper;
 import android.view.GestureDetector;
 import android.view.Gravity;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
 import android.widget.Toast;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
 
 // the main screen that is painted
 public class DoodleView extends View
 {
-    // used to determine whether user moved a finger enough to draw again
-    private static final float TOUCH_TOLERANCE = 10;
+    private static final int MAX_POINTERS = StrokeInput.MAX_POINTERS;
 
     // create SimpleOnGestureListener for single tap events
     private final GestureDetector.OnGestureListener mSingleTapListener = new GestureDetector.OnGestureListener() {
@@ -63,22 +63,69 @@ public class DoodleView extends View
         }
     };
 
-    private Bitmap mBitmap; // drawing area for display or saving
-    private Canvas mBitmapCanvas;   // used to draw on bitmap
-    private final Paint mPaintScreen;   // used to draw bitmap onto screen
-    private final Paint mPaintLine;   // used to draw lines onto bitmap
+    // zoom the drawing with a pinch
+    private final ScaleGestureDetector.OnScaleGestureListener mScaleListener =
+            new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            mViewport.zoom(detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+            return true;
+        }
+    };
 
-    // Maps of current Paths being drawn and Points in those Paths
-    private final Map<Integer, Path> mPathMap = new HashMap<Integer, Path>();
-    private final Map<Integer, Point> mPreviousPointMap = new HashMap<Integer, Point>();
+    private final Viewport mViewport = new Viewport();  // part of the drawing on screen
+    private final LayerCompositor mTiles; // drawing area for display or saving
+    private final Paint mPaintScreen;   // used to draw tiles onto screen
+    private final Paint mPaintLine;   // line as it looks on screen
+    private final Paint mPaintStroke;   // the same line in drawing coordinates
+
+    // Paths being drawn, indexed by pointer ID, and the strokes that build
+    // them and keep their points, reused from touch to touch so drawing
+    // allocates nothing
+    private final StrokePath[] mPaths = new StrokePath[MAX_POINTERS];
+    private final StrokeInput mInput;
+
+    // the stamps brush strokes add between frames are drawn together in
+    // one call into an overlay bitmap that keeps the brush strokes being
+    // drawn
+    private final Paint mStampPaint = StrokePainter.createStampPaint();
+    private Bitmap mOverlay;    // screen-sized, made when the first brush stroke starts
+    private Canvas mOverlayCanvas;
+    private boolean mBrushEnabled;
+
+    // finished strokes, for undo and redo, the layers they are on and
+    // their copy on disk
+    private final UndoHistory mHistory = new UndoHistory();
+    private final LayerStack mLayers = new LayerStack();
+    private final StrokeJournal mJournal;
+
+    // saves images in the background, and who hears about its progress
+    private final ImageExporter mExporter;
+    private Bitmap.CompressFormat mExportFormat = Bitmap.CompressFormat.JPEG;
+    private ImageExporter.Listener mExportListener;
+    private final DocumentExporter mDocuments;  // saves and opens the strokes themselves
+
+    // region of the screen the current touch event changed, snapped to tiles
+    private final Rect mDirtyRect = new Rect();
+    private final RectF mStrokeBounds = new RectF();
+    private final float[] mChangedBounds = new float[4];
+    private final Rect mTileBounds = new Rect();
+    private final Rect mClipBounds = new Rect();
+    private final Rect mOverlayClip = new Rect();  // overlay area erased when a stroke lifts
 
     // used to hide/show system bars
     private GestureDetector mSingleTapDetector;
 
+    // used to pan and zoom instead of drawing
+    private final ScaleGestureDetector mScaleDetector;
+    private boolean mPanZoomEnabled;
+    private float mLastFocusX;  // center of the fingers at the last event
+    private float mLastFocusY;
+
     public DoodleView(Context context, AttributeSet attrs) {
         super(context, attrs);  // pass the context to View's constructor
-        mPaintScreen = new Paint(); // used to display bitmap onto screen
-        
+        mPaintScreen = new Paint(Paint.FILTER_BITMAP_FLAG); // smooths tiles between zoom levels
+
         // set the initial settings for the painted line
         mPaintLine = new Paint();
         mPaintLine.setAntiAlias(true);  // smooth edges of drawn line
@@ -86,19 +133,153 @@ public class DoodleView extends View
         mPaintLine.setStyle(Paint.Style.STROKE);    // solid line
         mPaintLine.setStrokeWidth(5);   // set the default width
         mPaintLine.setStrokeCap(Paint.Cap.ROUND);   // rounded line ends
-        
+        mPaintStroke = new Paint(mPaintLine);
+
+        // a Path for every pointer ID
+        for (int i = 0; i < MAX_POINTERS; i++)
+            mPaths[i] = new StrokePath();
+        mInput = new StrokeInput(mViewport, mPaths);
+
+        // bring back the drawing from the last run, then keep saving it
+        mJournal = new StrokeJournal(new File(context.getFilesDir(), "drawing"), mHistory, mLayers);
+
+        // tiles without recent use go to the app's cache directory
+        mTiles = new LayerCompositor(mHistory, mLayers, new File(context.getCacheDir(), "tiles"));
+        mTiles.setListener(new TileCache.Listener() {
+            @Override
+            public void onTileRead() {
+                postInvalidate();   // show it in place of the coarser tile
+            }
+        });
+        mExporter = new ImageExporter(context.getContentResolver(), new Handler());
+        mDocuments = new DocumentExporter(context.getContentResolver(), new Handler());
+
         // GestureDetector for single taps
         mSingleTapDetector = new GestureDetector(getContext(), mSingleTapListener);
+        mScaleDetector = new ScaleGestureDetector(getContext(), mScaleListener);
     }
 
     // clear the painting
     public void clear() {
-        mPathMap.clear();   // remove all paths
-        mPreviousPointMap.clear();  // remove all previous points
-        mBitmap.eraseColor(Color.WHITE);    // clear the bitmap
+        mInput.cancelAll(); // remove all paths
+        mHistory.clear();   // a cleared painting starts a new history
+        mLayers.reset();    // on a single layer
+        mJournal.clear();
+        mTiles.layersChanged();
+        mTiles.clear();    // clear the tiles
+        restampBrushStrokes();  // none are left
+        invalidate();   // refresh the screen
+    }
+
+    // take back the last finished stroke
+    public void undo() {
+        if(!mHistory.canUndo())
+            return;
+
+        // the tiles under the stroke are drawn again without it
+        mTiles.removeStroke(mHistory.undo());
+        mJournal.undo();
+        invalidate();   // refresh the screen
+    }
+
+    // put back the last stroke that was undone
+    public void redo() {
+        if(!mHistory.canRedo())
+            return;
+
+        mTiles.addStroke(mHistory.redo());
+        mJournal.redo();
+        invalidate();   // refresh the screen
+    }
+
+    public boolean canUndo() {
+        return mHistory.canUndo();
+    }
+
+    public boolean canRedo() {
+        return mHistory.canRedo();
+    }
+
+    // set how many bytes of tiles may stay in memory
+    public void setTileCacheBudget(long bytes) {
+        mTiles.setBudget(bytes);
+    }
+
+    // choose how touch samples are smoothed before they become strokes
+    public void setSmoothing(StrokeSmoother.Mode mode) {
+        mInput.setSmoothing(mode);
+    }
+
+    public StrokeSmoother.Mode getSmoothing() {
+        return mInput.getSmoothing();
+    }
+
+    // let touches move and zoom the drawing instead of drawing on it
+    public void setPanZoomEnabled(boolean enabled) {
+        mPanZoomEnabled = enabled;
+    }
+
+    public boolean isPanZoomEnabled() {
+        return mPanZoomEnabled;
+    }
+
+    // draw strokes with the textured brush, whose size follows the
+    // finger's pressure and speed, instead of lines of even width
+    public void setBrushEnabled(boolean enabled) {
+        mBrushEnabled = enabled;
+    }
+
+    public int getLayerCount() {
+        return mLayers.size();
+    }
+
+    // the layer new strokes go on
+    public int getActiveLayer() {
+        return mLayers.getActive();
+    }
+
+    // a copy of a layer's settings
+    public Layer getLayer(int index) {
+        return new Layer(mLayers.get(index));
+    }
+
+    // change the opacity, blend mode or visibility of a layer
+    public void setLayer(int index, Layer layer) {
+        mLayers.get(index).setOpacity(layer.getOpacity());
+        mLayers.get(index).setBlend(layer.getBlend());
+        mLayers.get(index).setVisible(layer.isVisible());
+        mTiles.layerChanged(index);
+        mJournal.setLayers(mLayers);
+        invalidate();   // refresh the screen
+    }
+
+    // draw on another layer from now on
+    public void setActiveLayer(int index) {
+        if(index == mLayers.getActive())
+            return;
+
+        mLayers.setActive(index);
+        mTiles.layersChanged();
+        mJournal.setLayers(mLayers);
         invalidate();   // refresh the screen
     }
 
+    // add a layer on top and draw on it; returns false if there are
+    // LayerStack.MAX_LAYERS already
+    public boolean addLayer() {
+        if(!mLayers.add())
+            return false;
+
+        mTiles.layersChanged();
+        mJournal.setLayers(mLayers);
+        invalidate();   // refresh the screen
+        return true;
+    }
+
+    public boolean isBrushEnabled() {
+        return mBrushEnabled;
+    }
+
     // set the painted line's color
     public void setDrawingColor(int color) {
         mPaintLine.setColor(color);
@@ -143,30 +324,98 @@ public class DoodleView extends View
             );
     }
 
+    // make sure the drawing so far is on disk soon, e.g. when the app is left
+    public void flushJournal() {
+        mJournal.flush();
+    }
+
+    // choose the format saveImage uses
+    public void setExportFormat(Bitmap.CompressFormat format) {
+        mExportFormat = format;
+    }
+
+    public Bitmap.CompressFormat getExportFormat() {
+        return mExportFormat;
+    }
+
+    // be told how saving an image goes, besides the message at the end
+    public void setExportListener(ImageExporter.Listener listener) {
+        mExportListener = listener;
+    }
+
     // save the current image to the Gallery
     public void saveImage() {
         // use "Doodlz" followed by current time as the image name
-        String name = "Doodlz" + System.currentTimeMillis() + ".jpg";
+        String name = "Doodlz" + System.currentTimeMillis();
+
+        // the image is drawn and compressed in the background from a
+        // snapshot of the strokes shown, so drawing goes on meanwhile
+        StrokeLog snapshot = mHistory.getStrokeLog().snapshot(mHistory.getPosition());
+        mExporter.export(snapshot, new LayerStack(mLayers), new Viewport(mViewport), getWidth(), getHeight(), mExportFormat, name,
+                new ImageExporter.Listener() {
+            @Override
+            public void onDrawProgress(int percent) {
+                if(mExportListener != null)
+                    mExportListener.onDrawProgress(percent);
+            }
 
-        // insert the image in the device's gallery
-        String location = MediaStore.Images.Media.insertImage(
-                getContext().getContentResolver(), mBitmap, name, "Doodlz Drawing"
-        );
+            @Override
+            public void onWriteProgress(long bytes) {
+                if(mExportListener != null)
+                    mExportListener.onWriteProgress(bytes);
+            }
 
-        if(location != null)    // image was saved
-        {
-            // displayed a message indicating that the image was saved
-            Toast message = Toast.makeText(getContext(), R.string.message_saved, Toast.LENGTH_SHORT);
-            message.setGravity(Gravity.CENTER, message.getXOffset()/2, message.getYOffset()/2);
-            message.show();
-        }
-        else
-        {
-            // display a message indicating that the image was saved
-            Toast message = Toast.makeText(getContext(), R.string.message_error_saving, Toast.LENGTH_SHORT);
-            message.setGravity(Gravity.CENTER, message.getXOffset() / 2, message.getYOffset() / 2);
-            message.show();
-        }
+            @Override
+            public void onFinished(boolean saved) {
+                if(mExportListener != null)
+                    mExportListener.onFinished(saved);
+
+                // display a message indicating whether the image was saved
+                showMessage(saved ? R.string.message_saved : R.string.message_error_saving);
+            }
+        });
+    }
+
+    // save the shown strokes to uri as a document that can be opened again,
+    // or as SVG or PDF
+    public void saveDocument(Uri uri, DocumentExporter.Format format) {
+        StrokeLog snapshot = mHistory.getStrokeLog().snapshot(mHistory.getPosition());
+        mDocuments.export(snapshot, new LayerStack(mLayers), format, uri, new DocumentExporter.Listener() {
+            @Override
+            public void onFinished(boolean saved) {
+                showMessage(saved ? R.string.message_document_saved : R.string.message_error_saving);
+            }
+        });
+    }
+
+    // replace the drawing with the Doodlz document at uri
+    public void openDocument(Uri uri) {
+        mDocuments.open(uri, new DocumentExporter.OpenListener() {
+            @Override
+            public void onOpened(StrokeLog log, LayerStack layers) {
+                if(log == null) {
+                    showMessage(R.string.message_error_opening);
+                    return;
+                }
+
+                // the history takes over the document's strokes as they
+                // are, so they can be undone, and the journal saves them
+                // as one snapshot
+                clear();
+                mHistory.replace(log, log.size());
+                mLayers.set(layers);
+                mTiles.layersChanged();
+                mJournal.replace(mHistory, mLayers);
+                invalidate();   // tiles are drawn from the new strokes
+            }
+        });
+    }
+
+    // show a short message in the middle of the screen
+    private void showMessage(int message) {
+        Toast toast = Toast.makeText(getContext(), message, Toast.LENGTH_SHORT);
+        toast.setGravity(Gravity.CENTER, toast.getXOffset() / 2, toast.getYOffset() / 2);
+        toast.show();
     }
 
     // print the current image
@@ -177,7 +426,7 @@ public class DoodleView extends View
 
             // fit image in page bounds and print the image
             printHelper.setScaleMode(PrintHelper.SCALE_MODE_FIT);
-            printHelper.printBitmap("Doodlz Image", mBitmap);
+            printHelper.printBitmap("Doodlz Image", getImage());
         }
         else
         {
@@ -188,28 +437,32 @@ public class DoodleView extends View
         }
     }
 
+    // the part of the drawing on screen as one bitmap, for printing
+    private Bitmap getImage() {
+        Bitmap bitmap = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Rect clip = new Rect(0, 0, getWidth(), getHeight());
+        mTiles.draw(canvas, clip, mViewport, mPaintScreen, true);
+        mTiles.drawAbove(canvas, clip, mViewport, mPaintScreen, true);
+        return bitmap;
+    }
+
+    // set mPaintStroke to the line in drawing coordinates, so it looks as
+    // wide on screen at any zoom
+    private Paint getStrokePaint() {
+        mPaintStroke.setColor(mPaintLine.getColor());
+        mPaintStroke.setStrokeWidth(mPaintLine.getStrokeWidth() / mViewport.getZoom());
+        return mPaintStroke;
+    }
+
     // called when the use touches the screen
-    private void touchStarted(float x, float y, int lineId) {
-        Path path;  // used to store the path for the given touch id
-        Point point; // used to store the last point in path
-
-        // if there is already a path for lineID
-        if(mPathMap.containsKey(lineId)) {
-            path = mPathMap.get(lineId);    // get the Path
-            path.reset();   // reset the Path because a new touch has started
-            point = mPreviousPointMap.get(lineId);  // get Path's last point
-        }
-        else {
-            path = new Path();
-            mPathMap.put(lineId, path); // add the Path to Map
-            point = new Point();    // create a new Point
-            mPreviousPointMap.put(lineId, point);   // add the Point to the Map
-        }
+    private void touchStarted(float x, float y, long time, float pressure, int lineId) {
+        if(mBrushEnabled && mOverlay == null)
+            createOverlay();
 
-        // move to the coordinates of the touch
-        path.moveTo(x, y);
-        point.x = (int)x;
-        point.y = (int)y;
+        // a new touch starts the pointer's stroke afresh
+        Paint paint = getStrokePaint();
+        mInput.begin(lineId, x, y, time, pressure, mBrushEnabled, paint.getColor(), paint.getStrokeWidth());
     }
 
     // called when the user drags along the screen
@@ -221,59 +474,238 @@ public class DoodleView extends View
             int pointerIndex = event.findPointerIndex(pointerId);
 
             // if there is a path associated with the pointer
-            if(mPathMap.containsKey(pointerId)) {
-                // get the new coordinates for the pointer
-                float newX = event.getX(pointerIndex);
-                float newY = event.getY(pointerIndex);
-
-                // get the Path and previous Point associated with
-                // this pointer
-                Path path = mPathMap.get(pointerId);
-                Point point = mPreviousPointMap.get(pointerId);
-
-                // calculate how far the user moved from the last update
-                float deltaX = Math.abs(newX - point.x);
-                float deltaY = Math.abs(newY - point.y);
-
-                // if the distance is significant enough to matter
-                if(deltaX >= TOUCH_TOLERANCE || deltaY >= TOUCH_TOLERANCE) {
-                    // move the path to the new location
-                    path.quadTo(point.x, point.y, (newX + point.x) / 2, (newY + point.y) / 2);
-
-                    // store the new coordinates
-                    point.x = (int)newX;
-                    point.y = (int)newY;
-                }
+            if(mInput.isDrawing(pointerId)) {
+                // the samples Android batched since the last event first,
+                // so fast strokes keep their shape
+                for (int h = 0; h < event.getHistorySize(); h++)
+                    mInput.add(pointerId, event.getHistoricalX(pointerIndex, h),
+                            event.getHistoricalY(pointerIndex, h), event.getHistoricalEventTime(h),
+                            event.getHistoricalPressure(pointerIndex, h));
+
+                mInput.add(pointerId, event.getX(pointerIndex), event.getY(pointerIndex), event.getEventTime(),
+                        event.getPressure(pointerIndex));
             }
         }
     }
 
     // called when the user finishes a touch
-    private void touchEnded(int lineId) {
-        Path path = mPathMap.get(lineId);   // get the corresponding Path
-        mBitmapCanvas.drawPath(path, mPaintLine);   // draw to bitmapCanvas
-        path.reset();   // reset the Path
+    private void touchEnded(MotionEvent event, int actionIndex) {
+        int lineId = event.getPointerId(actionIndex);
+        if(!mInput.isDrawing(lineId))
+            return;
+
+        // the finger may have moved since the last sample
+        mInput.end(lineId, event.getX(actionIndex), event.getY(actionIndex), event.getEventTime(),
+                event.getPressure(actionIndex));
+
+        // the tiles draw the finished stroke from now on, so the overlay
+        // keeps only the brush strokes still being drawn
+        boolean brush = mInput.isBrushStroke(lineId);
+        if(brush)
+            unstampBrushStroke(lineId);
+
+        // add the stroke to the drawing, unless it was a tap that drew nothing
+        StrokePoints points = mInput.getPoints(lineId);
+        if(points.size() > 1) {
+            int color = mInput.getColor(lineId);
+            float width = mInput.getWidth(lineId);
+            int layer = mLayers.getActive();
+            mHistory.add(layer, color, width, points, brush);
+            mJournal.addStroke(layer, color, width, points, brush);   // written in the background
+
+            int stroke = mHistory.getPosition() - 1;
+            mTiles.addStroke(stroke);   // draw to the tiles under it
+            StrokeLog log = mHistory.getStrokeLog();
+            mStrokeBounds.set(log.getBounds(stroke, 0), log.getBounds(stroke, 1),
+                    log.getBounds(stroke, 2), log.getBounds(stroke, 3));
+            markDirty(mStrokeBounds);
+        }
     }
 
-    // called each time this View is drawn
+    // drop the stroke of lineId without adding it to the drawing, when its
+    // touch turned out to be a tap or the system took it over
+    private void cancelTouch(int lineId) {
+        if(!mInput.isDrawing(lineId))
+            return;
+
+        mInput.cancel(lineId);
+        if(mInput.isBrushStroke(lineId))
+            unstampBrushStroke(lineId); // its stamps leave the overlay
+        else
+            invalidate();   // its line leaves the screen
+    }
+
+    // add what the strokes being drawn just got to the dirty region
+    private void markStrokesDirty() {
+        if(mInput.getChangedBounds(mChangedBounds)) {
+            mStrokeBounds.set(mChangedBounds[0], mChangedBounds[1], mChangedBounds[2], mChangedBounds[3]);
+            float margin = 1 / mViewport.getZoom(); // antialiasing
+            mStrokeBounds.inset(-margin, -margin);
+            markDirty(mStrokeBounds);
+        }
+    }
+
+    // make the overlay brush strokes are stamped into while drawn
+    private void createOverlay() {
+        mOverlay = Bitmap.createBitmap(Math.max(getWidth(), 1), Math.max(getHeight(), 1),
+                Bitmap.Config.ARGB_8888);
+        mOverlayCanvas = new Canvas(mOverlay);
+    }
+
+    // empty the overlay and stamp again the brush strokes being drawn,
+    // after the drawing was cleared or the view's size changed; the stamps
+    // depend only on the points, so they come out as they were
+    private void restampBrushStrokes() {
+        if(mOverlay == null) {
+            mInput.getStamps().reset();
+            return;
+        }
+
+        mOverlay.eraseColor(Color.TRANSPARENT);
+        mInput.restamp();
+        invalidate();   // the overlay covers the whole view
+    }
+
+    // take the stamps of lineId's brush stroke, which just ended or was
+    // cancelled, out of the overlay: erase only the area they cover, stamp
+    // the brush strokes still being drawn into that area again, and redraw
+    // the tiles under it
+    private void unstampBrushStroke(int lineId) {
+        if(mOverlay == null || !mInput.getStampBounds(lineId, mChangedBounds)) {
+            restampBrushStrokes();
+            return;
+        }
+
+        drawPendingStamps();    // the last samples' stamps go in before the erase
+
+        float margin = 1 / mViewport.getZoom(); // antialiasing
+        mStrokeBounds.set(mChangedBounds[0] - margin, mChangedBounds[1] - margin,
+                mChangedBounds[2] + margin, mChangedBounds[3] + margin);
+        mOverlayClip.set((int)Math.floor(mViewport.toScreenX(mStrokeBounds.left)),
+                (int)Math.floor(mViewport.toScreenY(mStrokeBounds.top)),
+                (int)Math.ceil(mViewport.toScreenX(mStrokeBounds.right)),
+                (int)Math.ceil(mViewport.toScreenY(mStrokeBounds.bottom)));
+
+        // inside the clip the overlay ends up as a full restamp would leave
+        // it, and outside it nothing changes
+        mOverlayCanvas.save();
+        mOverlayCanvas.clipRect(mOverlayClip);
+        mOverlayCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        mInput.restamp(mStrokeBounds.left, mStrokeBounds.top, mStrokeBounds.right, mStrokeBounds.bottom);
+        drawPendingStamps();
+        mOverlayCanvas.restore();
+
+        mTiles.getTileBounds(mStrokeBounds, mViewport, mTileBounds);
+        invalidate(mTileBounds);
+    }
+
+    // stamp what the brush strokes added since the last call into the
+    // overlay, in one call
+    private void drawPendingStamps() {
+        StampBatch stamps = mInput.getStamps();
+        if(stamps.isEmpty())
+            return;
+
+        mOverlayCanvas.save();
+        mOverlayCanvas.scale(mViewport.getZoom(), mViewport.getZoom());
+        mOverlayCanvas.translate(-mViewport.getOriginX(), -mViewport.getOriginY());
+        StrokePainter.drawStamps(mOverlayCanvas, stamps, mStampPaint);
+        mOverlayCanvas.restore();
+        stamps.reset();
+    }
+
+    // add the tiles under bounds, in drawing coordinates, to the dirty region
+    private void markDirty(RectF bounds) {
+        mTiles.getTileBounds(bounds, mViewport, mTileBounds);
+        mDirtyRect.union(mTileBounds);
+    }
+
+    // move and scale the drawing with one or more fingers
+    private void panAndZoom(MotionEvent event) {
+        mScaleDetector.onTouchEvent(event); // a pinch changes the zoom
+
+        // the center of the fingers, leaving out one that is being lifted
+        int action = event.getActionMasked();
+        int liftedIndex = action == MotionEvent.ACTION_POINTER_UP ? event.getActionIndex() : -1;
+        float sumX = 0;
+        float sumY = 0;
+        int count = 0;
+        for (int i = 0; i < event.getPointerCount(); i++) {
+            if(i != liftedIndex) {
+                sumX += event.getX(i);
+                sumY += event.getY(i);
+                ++count;
+            }
+        }
+        float focusX = sumX / count;
+        float focusY = sumY / count;
+
+        // dragging moves the drawing; a finger going down or up only
+        // moves the center
+        if(action == MotionEvent.ACTION_MOVE)
+            mViewport.pan(focusX - mLastFocusX, focusY - mLastFocusY);
+        mLastFocusX = focusX;
+        mLastFocusY = focusY;
+
+        invalidate();   // the whole view moves
+    }
+
+    // the overlay is as big as the view, and each layer keeps enough tiles
+    // in memory to cover it
     @Override
-    protected void onDraw(Canvas canvas) {
-        // draw the background screen
-        canvas.drawBitmap(mBitmap, 0, 0, mPaintScreen);
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        mTiles.setViewSize(width, height);  // each layer's tiles cover the view
+        if(mOverlay != null) {
+            createOverlay();
+            restampBrushStrokes();
+        }
+    }
 
-        // for each path currently being drawn
-        for (Integer key : mPathMap.keySet())
-            canvas.drawPath(mPathMap.get(key), mPaintLine); // draw line
+    // the journal's files are free for the next DoodleView once it is closed
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mJournal.close();
     }
 
-    // Method onSizeChanged creates Bitmap and Canvas after app displays
+    // called each time this View is drawn
     @Override
-    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-        super.onSizeChanged(w, h, oldw, oldh);
-        mBitmap = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+    protected void onDraw(Canvas canvas) {
+        // draw the tiles of the layers up to the active one within the
+        // region being redrawn; strokes being drawn go on the active one
+        canvas.getClipBounds(mClipBounds);
+        mTiles.draw(canvas, mClipBounds, mViewport, mPaintScreen, false);
+
+        // the stamps since the last frame go into the overlay in one call,
+        // then the overlay shows the brush strokes being drawn
+        if(mOverlay != null) {
+            drawPendingStamps();
+            canvas.drawBitmap(mOverlay, 0, 0, null);
+        }
 
-        mBitmapCanvas = new Canvas(mBitmap);
-        mBitmap.eraseColor(Color.WHITE);    // erase the Bitmap with white
+        // paths are in drawing coordinates
+        canvas.save();
+        canvas.scale(mViewport.getZoom(), mViewport.getZoom());
+        canvas.translate(-mViewport.getOriginX(), -mViewport.getOriginY());
+
+        // for each path currently being drawn
+        Paint paint = getStrokePaint();
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            if(mInput.isDrawing(i) && !mInput.isBrushStroke(i)) {
+                canvas.drawPath(mPaths[i], paint); // draw line
+
+                // the piece to the last point isn't in the Path until the
+                // next point bends it, so show it straight
+                StrokeCurve curve = mInput.getCurve(i);
+                if(mInput.getPoints(i).size() > 1)
+                    canvas.drawLine(curve.getEndX(), curve.getEndY(), curve.getLastX(), curve.getLastY(), paint);
+            }
+        }
+        canvas.restore();
+
+        // the layers above the active one cover what is drawn on it
+        mTiles.drawAbove(canvas, mClipBounds, mViewport, mPaintScreen, false);
     }
 
     // handle touch event
@@ -281,22 +713,42 @@ public class DoodleView extends View
     public boolean onTouchEvent(MotionEvent event) {
         // get the event type and the ID of the pointer that caused the event
         // if a single tap event occurred on KitKat or higher device
-        if(mSingleTapDetector.onTouchEvent(event))
+        if(mSingleTapDetector.onTouchEvent(event)) {
+            // the tap shows or hides the system bars instead of drawing,
+            // but its finger is up, so its stroke ends here
+            cancelTouch(event.getPointerId(event.getActionIndex()));
+            return true;
+        }
+
+        if(mPanZoomEnabled) {
+            panAndZoom(event);
             return true;
+        }
 
         int action = event.getActionMasked();  // event type
         int actionIndex = event.getActionIndex();   // pointer (i.e., finger)
 
         // determine whether touch started, ended or is moving
         if(action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_POINTER_DOWN) {
-            touchStarted(event.getX(actionIndex), event.getY(actionIndex), event.getPointerId(actionIndex));
+            touchStarted(event.getX(actionIndex), event.getY(actionIndex), event.getEventTime(),
+                    event.getPressure(actionIndex), event.getPointerId(actionIndex));
         } else if(action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_POINTER_UP) {
-            touchEnded(event.getPointerId(actionIndex));
+            touchEnded(event, actionIndex);
+        } else if(action == MotionEvent.ACTION_CANCEL) {
+            // a parent or the system took the gesture over, so none of it
+            // is drawn
+            for (int i = 0; i < event.getPointerCount(); i++)
+                cancelTouch(event.getPointerId(i));
         } else {
             touchedMoved(event);
         }
 
-        invalidate();   // redraw
+        // redraw only the tiles the strokes changed
+        markStrokesDirty();
+        if(!mDirtyRect.isEmpty()) {
+            invalidate(mDirtyRect);
+            mDirtyRect.setEmpty();
+        }
         return true;
     }
 }
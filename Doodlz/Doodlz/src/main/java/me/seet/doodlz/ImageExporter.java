@@ -0,0 +1,227 @@
+// ImageExporter.java
+// Saves the drawing to the Gallery in the background
+package me.seet.doodlz;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.net.Uri;
+import android.os.Handler;
+import android.provider.MediaStore;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// draws a StrokeLog snapshot into a bitmap on a worker thread and
+// compresses it straight into the Gallery's output stream, so the UI
+// thread only takes the snapshot and the user can keep drawing. Progress
+// and the result are reported to a Listener on the UI thread
+public class ImageExporter {
+    // report progress to the UI thread after each step of this many
+    public static final int PROGRESS_STROKES = 64;
+    public static final int PROGRESS_BYTES = 64 * 1024;
+
+    // compression quality for JPEG and WEBP; PNG is lossless
+    public static final int QUALITY = 90;
+
+    // receives what the export does, on the UI thread
+    public interface Listener {
+        // percent of the strokes drawn into the image
+        void onDrawProgress(int percent);
+
+        // bytes of the compressed image written so far
+        void onWriteProgress(long bytes);
+
+        // the image was saved, or not
+        void onFinished(boolean saved);
+    }
+
+    private final ContentResolver mResolver;
+    private final Handler mHandler;  // runs listener calls on the UI thread
+
+    // exports one image at a time, in the order asked for, and lets its
+    // thread end when idle
+    private final ExecutorService mWorker = new ThreadPoolExecutor(0, 1,
+            1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    public ImageExporter(ContentResolver resolver, Handler handler) {
+        mResolver = resolver;
+        mHandler = handler;
+    }
+
+    // save the area of log the viewport shows on a width x height screen,
+    // its layers composited; log, layers and viewport must not change
+    // afterwards, as a snapshot and copies don't
+    public void export(final StrokeLog log, final LayerStack layers, final Viewport viewport, final int width,
+                       final int height, final Bitmap.CompressFormat format, final String title,
+                       final Listener listener) {
+        mWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = draw(log, layers, viewport, width, height, listener);
+                boolean saved = write(bitmap, format, title, listener);
+                bitmap.recycle();
+                postFinished(listener, saved);
+            }
+        });
+    }
+
+    // the strokes on screen, drawn as TileCache would but in one bitmap
+    private Bitmap draw(final StrokeLog log, LayerStack layers, Viewport viewport, int width, int height,
+                        final Listener listener) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.WHITE);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.scale(viewport.getZoom(), viewport.getZoom());
+        canvas.translate(-viewport.getOriginX(), -viewport.getOriginY());
+
+        float left = viewport.toDrawingX(0);
+        float top = viewport.toDrawingY(0);
+        float right = viewport.toDrawingX(width);
+        float bottom = viewport.toDrawingY(height);
+
+        // the UI thread's painter isn't ours to use; this one counts the
+        // strokes it draws, of at most all in the log
+        StrokePainter painter = new StrokePainter() {
+            private int mDrawn;
+
+            @Override
+            public void draw(Canvas canvas, StrokeLog strokes, int stroke) {
+                super.draw(canvas, strokes, stroke);
+                if(++mDrawn % PROGRESS_STROKES == 0)
+                    postDrawProgress(listener, mDrawn * 100 / log.size());
+            }
+        };
+        layers.draw(canvas, log, null, log.size(), 0, layers.size() - 1, true, left, top, right, bottom,
+                painter, new Paint());
+        postDrawProgress(listener, 100);
+        return bitmap;
+    }
+
+    // add an entry to the Gallery and compress bitmap into its file; the
+    // entry is removed again if that fails
+    private boolean write(Bitmap bitmap, Bitmap.CompressFormat format, String title, Listener listener) {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.ImageColumns.TITLE, title);
+        values.put(MediaStore.Images.ImageColumns.DISPLAY_NAME, title + getExtension(format));
+        values.put(MediaStore.Images.ImageColumns.DESCRIPTION, "Doodlz Drawing");
+        values.put(MediaStore.Images.ImageColumns.MIME_TYPE, getMimeType(format));
+        values.put(MediaStore.Images.ImageColumns.DATE_TAKEN, System.currentTimeMillis());
+
+        Uri uri = null;
+        boolean saved;
+        try {
+            uri = mResolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+            if(uri == null)
+                return false;
+
+            OutputStream out = new ProgressOutputStream(mResolver.openOutputStream(uri), listener);
+            try {
+                saved = bitmap.compress(format, QUALITY, out);
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch (IOException e) {
+            saved = false;
+        }
+        catch (RuntimeException e) {    // e.g. no external storage
+            saved = false;
+        }
+
+        if(!saved && uri != null)
+            mResolver.delete(uri, null, null);
+        return saved;
+    }
+
+    private void postDrawProgress(final Listener listener, final int percent) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onDrawProgress(percent);
+            }
+        });
+    }
+
+    private void postWriteProgress(final Listener listener, final long bytes) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onWriteProgress(bytes);
+            }
+        });
+    }
+
+    private void postFinished(final Listener listener, final boolean saved) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFinished(saved);
+            }
+        });
+    }
+
+    private static String getExtension(Bitmap.CompressFormat format) {
+        switch (format) {
+            case PNG:
+                return ".png";
+            case WEBP:
+                return ".webp";
+            default:
+                return ".jpg";
+        }
+    }
+
+    private static String getMimeType(Bitmap.CompressFormat format) {
+        switch (format) {
+            case PNG:
+                return "image/png";
+            case WEBP:
+                return "image/webp";
+            default:
+                return "image/jpeg";
+        }
+    }
+
+    // passes writes straight on and reports every PROGRESS_BYTES written
+    private class ProgressOutputStream extends FilterOutputStream {
+        private final Listener mListener;
+        private long mCount;
+        private long mReported;
+
+        ProgressOutputStream(OutputStream out, Listener listener) {
+            super(out);
+            mListener = listener;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            counted(1);
+        }
+
+        // FilterOutputStream would write one byte at a time
+        @Override
+        public void write(byte[] buffer, int offset, int count) throws IOException {
+            out.write(buffer, offset, count);
+            counted(count);
+        }
+
+        private void counted(int count) {
+            mCount += count;
+            if(mCount - mReported >= PROGRESS_BYTES) {
+                mReported = mCount;
+                postWriteProgress(mListener, mCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+// Layer.java
+// Opacity, blend mode and visibility of one layer of the drawing
+package me.seet.doodlz;
+
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Xfermode;
+
+// a layer holds no pixels of its own: its strokes are those in the
+// StrokeLog with its index, and it only says how they are composited over
+// the layers below. A hidden layer isn't drawn at all
+public class Layer {
+    // how a layer's pixels combine with those below; stored by ordinal in
+    // journals and documents, so new modes go at the end
+    public enum Blend {
+        NORMAL(PorterDuff.Mode.SRC_OVER),
+        MULTIPLY(PorterDuff.Mode.MULTIPLY),
+        SCREEN(PorterDuff.Mode.SCREEN),
+        DARKEN(PorterDuff.Mode.DARKEN),
+        LIGHTEN(PorterDuff.Mode.LIGHTEN),
+        OVERLAY(PorterDuff.Mode.OVERLAY);
+
+        private final Xfermode mXfermode;
+
+        Blend(PorterDuff.Mode mode) {
+            mXfermode = new PorterDuffXfermode(mode);
+        }
+    }
+
+    // opacity of a layer drawn as it is
+    public static final int OPAQUE = 255;
+
+    private int mOpacity = OPAQUE;  // 0 to OPAQUE
+    private Blend mBlend = Blend.NORMAL;
+    private boolean mVisible = true;
+
+    public Layer() {
+    }
+
+    public Layer(Layer layer) {
+        mOpacity = layer.mOpacity;
+        mBlend = layer.mBlend;
+        mVisible = layer.mVisible;
+    }
+
+    public int getOpacity() {
+        return mOpacity;
+    }
+
+    public void setOpacity(int opacity) {
+        mOpacity = Math.max(0, Math.min(opacity, OPAQUE));
+    }
+
+    public Blend getBlend() {
+        return mBlend;
+    }
+
+    public void setBlend(Blend blend) {
+        mBlend = blend;
+    }
+
+    public boolean isVisible() {
+        return mVisible;
+    }
+
+    public void setVisible(boolean visible) {
+        mVisible = visible;
+    }
+
+    // whether the layer's strokes can be drawn straight onto those below,
+    // without compositing the layer on its own first
+    public boolean isPlain() {
+        return mOpacity == OPAQUE && mBlend == Blend.NORMAL;
+    }
+
+    // set up paint to composite the layer with
+    public void setPaint(Paint paint) {
+        paint.setAlpha(mOpacity);
+        paint.setXfermode(mBlend == Blend.NORMAL ? null : mBlend.mXfermode);
+    }
+}
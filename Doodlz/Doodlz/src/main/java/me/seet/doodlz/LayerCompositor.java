@@ -0,0 +1,206 @@
+// LayerCompositor.java
+// Shows the layers of the drawing from three sets of tiles
+package me.seet.doodlz;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.io.File;
+
+// keeps the layers below the active one flattened onto the white paper in
+// one TileCache, the layers above it flattened in another and the active
+// layer's own strokes in a third. A frame draws the three in turn, the
+// active layer with its opacity and blend mode, so drawing, undoing or
+// changing the look of the active layer touches only its tiles, and the
+// flattened ones are rasterised again only when another layer changes.
+// The three caches share one memory budget and spill their least recently
+// used tiles to disk when over their share; a hidden layer has no tiles,
+// so it takes no memory at all.
+//
+// Layers above the active one are flattened onto clear tiles, which only
+// shows them right if they are drawn over what is below as they are. A
+// visible layer above with a blend mode other than NORMAL has to act on
+// the active layer and those below it, so then every layer is flattened
+// in the below cache instead. A stroke being drawn then shows over every
+// layer until it ends, when the tiles it crosses are drawn again
+//
+// Every cache that shows something keeps at least a screenful of tiles,
+// even if together they are over the budget, so a frame never pushes
+// another cache's tiles for the same screen out to disk
+public class LayerCompositor {
+    private final LayerStack mLayers;
+    private final TileCache mBelow;
+    private final TileCache mActive;
+    private final TileCache mAbove;
+    private final Paint mActivePaint = new Paint(Paint.FILTER_BITMAP_FLAG);   // composites the active layer
+    private long mBudget = TileCache.DEFAULT_BUDGET;
+    private long mScreenBytes;  // the tiles that cover the view
+    private boolean mFlattened; // every layer is in mBelow
+
+    // tiles of history's strokes on layers, spilled to directories in
+    // spillDirectory
+    public LayerCompositor(UndoHistory history, LayerStack layers, File spillDirectory) {
+        mLayers = layers;
+        mBelow = new TileCache(history, layers, new File(spillDirectory, "below"));
+        mActive = new TileCache(history, layers, new File(spillDirectory, "active"));
+        mAbove = new TileCache(history, layers, new File(spillDirectory, "above"));
+        layersChanged();
+    }
+
+    // set the most memory the tiles of all layers may hold, in bytes
+    public void setBudget(long bytes) {
+        mBudget = bytes;
+        shareBudget();
+    }
+
+    public long getBudget() {
+        return mBudget;
+    }
+
+    // the view is width by height pixels; tiles lie on a grid that doesn't
+    // follow the view's edges, so one more row and column may show
+    public void setViewSize(int width, int height) {
+        long columns = (width + TileCache.TILE_SIZE - 1) / TileCache.TILE_SIZE + 1;
+        long rows = (height + TileCache.TILE_SIZE - 1) / TileCache.TILE_SIZE + 1;
+        mScreenBytes = columns * rows * TileCache.TILE_BYTES;
+        shareBudget();
+    }
+
+    // listener is told, on a background thread, when a tile read back from
+    // disk can be drawn
+    public void setListener(TileCache.Listener listener) {
+        mBelow.setListener(listener);
+        mActive.setListener(listener);
+        mAbove.setListener(listener);
+    }
+
+    // layers were added, replaced or another one made active: sort them
+    // into the three caches again and flatten the ones that aren't active
+    public void layersChanged() {
+        int active = mLayers.getActive();
+        mFlattened = isBlendedAbove();
+        if(mFlattened) {
+            mBelow.setLayers(0, mLayers.size() - 1, true, true);
+            mActive.setLayers(0, -1, false, false); // none
+            mAbove.setLayers(0, -1, true, false);
+        }
+        else {
+            mBelow.setLayers(0, active - 1, true, true);
+            mActive.setLayers(active, active, false, false);
+            mAbove.setLayers(active + 1, mLayers.size() - 1, true, false);
+        }
+        mBelow.clear();
+        mAbove.clear();
+        shareBudget();
+    }
+
+    // the opacity, blend mode or visibility of one layer changed; the
+    // active layer's tiles stay as they are, as they are composited when
+    // drawn
+    public void layerChanged(int index) {
+        if(isBlendedAbove() != mFlattened) {
+            layersChanged();    // the layers are sorted differently
+            return;
+        }
+
+        int active = mLayers.getActive();
+        if(mFlattened)
+            mBelow.clear();
+        else if(index < active)
+            mBelow.clear();
+        else if(index > active)
+            mAbove.clear();
+        shareBudget();
+    }
+
+    // draw the paper, the layers below the active one and the active one
+    // within clip onto canvas; strokes being drawn go on top of these.
+    // Tiles on disk are shown once read unless wait; see TileCache
+    public void draw(Canvas canvas, Rect clip, Viewport viewport, Paint paint, boolean wait) {
+        mBelow.draw(canvas, clip, viewport, paint, wait);
+
+        Layer active = mLayers.getActiveLayer();
+        if(!mFlattened && active.isVisible()) {
+            active.setPaint(mActivePaint);
+            mActive.draw(canvas, clip, viewport, mActivePaint, wait);
+        }
+    }
+
+    // draw the layers above the active one within clip onto canvas
+    public void drawAbove(Canvas canvas, Rect clip, Viewport viewport, Paint paint, boolean wait) {
+        mAbove.draw(canvas, clip, viewport, paint, wait);
+    }
+
+    // round bounds out to the edges of the tiles they touch; see TileCache
+    public void getTileBounds(RectF bounds, Viewport viewport, Rect out) {
+        mActive.getTileBounds(bounds, viewport, out);
+    }
+
+    // a stroke was just shown; each cache draws it in or forgets its tiles
+    public void addStroke(int stroke) {
+        mBelow.addStroke(stroke);
+        mActive.addStroke(stroke);
+        mAbove.addStroke(stroke);
+    }
+
+    // a stroke was just hidden by undoing it
+    public void removeStroke(int stroke) {
+        mBelow.removeStroke(stroke);
+        mActive.removeStroke(stroke);
+        mAbove.removeStroke(stroke);
+    }
+
+    // forget every tile, e.g. after the history was cleared
+    public void clear() {
+        mBelow.clear();
+        mActive.clear();
+        mAbove.clear();
+    }
+
+    // whether a visible layer above the active one has a blend mode that
+    // acts on the layers below it
+    private boolean isBlendedAbove() {
+        for (int i = mLayers.getActive() + 1; i < mLayers.size(); i++) {
+            Layer layer = mLayers.get(i);
+            if(layer.isVisible() && layer.getBlend() != Layer.Blend.NORMAL)
+                return true;
+        }
+        return false;
+    }
+
+    // each cache that shows something first gets a screenful of tiles;
+    // of what is left, the active layer changes most, so it keeps half, or
+    // all of it if no other layer is shown, and the flattened caches share
+    // the rest by how many visible layers each holds. Flattened all in
+    // one, the below cache has it all
+    private void shareBudget() {
+        if(mFlattened) {
+            mBelow.setBudget(Math.max(mBudget, mScreenBytes));
+            mActive.setBudget(0);
+            mAbove.setBudget(0);
+            return;
+        }
+
+        int active = mLayers.getActive();
+        int below = mLayers.getVisibleCount(0, active - 1);
+        int above = mLayers.getVisibleCount(active + 1, mLayers.size() - 1);
+        long activeScreen = mLayers.getActiveLayer().isVisible() ? mScreenBytes : 0;
+        long belowScreen = below > 0 ? mScreenBytes : 0;
+        long aboveScreen = above > 0 ? mScreenBytes : 0;
+        long left = Math.max(0, mBudget - activeScreen - belowScreen - aboveScreen);
+        if(below + above == 0) {
+            mActive.setBudget(activeScreen + left);
+            mBelow.setBudget(0);
+            mAbove.setBudget(0);
+            return;
+        }
+
+        long rest = left / 2;
+        long belowShare = rest * below / (below + above);
+        mActive.setBudget(activeScreen + left - rest);
+        mBelow.setBudget(belowScreen + belowShare);
+        mAbove.setBudget(aboveScreen + rest - belowShare);
+    }
+}
@@ -0,0 +1,139 @@
+// LayerDialogFragment.java
+// Allows user to choose the layer to draw on and how each layer looks
+package me.seet.doodlz;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.app.Dialog;
+import android.app.DialogFragment;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.CheckBox;
+import android.widget.SeekBar;
+import android.widget.Spinner;
+import android.widget.Toast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// class for the Layers dialog
+public class LayerDialogFragment extends DialogFragment {
+    private DoodleView mDoodleView;
+    private CheckBox mVisibleCheckBox;
+    private SeekBar mOpacitySeekBar;
+    private Spinner mBlendSpinner;
+
+    // show the settings of the layer chosen in the layer Spinner
+    private AdapterView.OnItemSelectedListener mLayerSelected = new AdapterView.OnItemSelectedListener() {
+        @Override
+        public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+            Layer layer = mDoodleView.getLayer(position);
+            mVisibleCheckBox.setChecked(layer.isVisible());
+            mOpacitySeekBar.setProgress(layer.getOpacity());
+            mBlendSpinner.setSelection(layer.getBlend().ordinal());
+        }
+
+        @Override
+        public void onNothingSelected(AdapterView<?> parent) {
+
+        }
+    };
+
+    public LayerDialogFragment() {
+        // Required empty public constructor
+    }
+
+    // create an AlertDialog and return it
+    @Override
+    public Dialog onCreateDialog(Bundle bundle) {
+        AlertDialog.Builder builder =
+                new AlertDialog.Builder(getActivity());
+        View layerDialogView = getActivity().getLayoutInflater().inflate(R.layout.fragment_layers, null);
+        builder.setView(layerDialogView);   // add GUI to dialog
+
+        // set the AlertDialog's message
+        builder.setTitle(R.string.title_layer_dialog);
+        builder.setCancelable(true);
+
+        // get the layer settings controls
+        mDoodleView = getDoodleFragment().getDoodleView();
+        mVisibleCheckBox = (CheckBox)layerDialogView.findViewById(R.id.visibleCheckBox);
+        mOpacitySeekBar = (SeekBar)layerDialogView.findViewById(R.id.opacitySeekBar);
+        mBlendSpinner = (Spinner)layerDialogView.findViewById(R.id.blendSpinner);
+
+        // list the layers, bottom first, with the active one chosen
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < mDoodleView.getLayerCount(); i++)
+            names.add(getString(R.string.label_layer_name, i + 1));
+        ArrayAdapter<String> adapter =
+                new ArrayAdapter<String>(getActivity(), android.R.layout.simple_spinner_item, names);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        final Spinner layerSpinner = (Spinner)layerDialogView.findViewById(R.id.layerSpinner);
+        layerSpinner.setAdapter(adapter);
+        layerSpinner.setOnItemSelectedListener(mLayerSelected);
+        layerSpinner.setSelection(mDoodleView.getActiveLayer());
+
+        // add Set Layer Button, which also makes the layer the one drawn on
+        builder.setPositiveButton(R.string.button_set_layer,
+            new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialogInterface, int i) {
+                    Layer layer = new Layer();
+                    layer.setVisible(mVisibleCheckBox.isChecked());
+                    layer.setOpacity(mOpacitySeekBar.getProgress());
+                    layer.setBlend(Layer.Blend.values()[mBlendSpinner.getSelectedItemPosition()]);
+
+                    int index = layerSpinner.getSelectedItemPosition();
+                    mDoodleView.setLayer(index, layer);
+                    mDoodleView.setActiveLayer(index);
+                }
+            }
+        );
+
+        // add New Layer Button
+        builder.setNeutralButton(R.string.button_new_layer,
+            new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialogInterface, int i) {
+                    if(!mDoodleView.addLayer()) {
+                        // display message indicating there are too many layers
+                        Toast message = Toast.makeText(getActivity(), R.string.message_too_many_layers,
+                                Toast.LENGTH_SHORT);
+                        message.setGravity(Gravity.CENTER, message.getXOffset()/2, message.getYOffset()/2);
+                        message.show();
+                    }
+                }
+            }
+        );
+        return builder.create();
+    }
+
+    // tell DoodleFragment that dialog is now displayed
+    @Override
+    public void onAttach(Activity activity) {
+        super.onAttach(activity);
+        DoodleFragment fragment = getDoodleFragment();
+
+        if(fragment != null)
+            fragment.setDialogOnScreen(true);
+    }
+
+    // tell DoodleFragment that dialog is no longer displayed
+    @Override
+    public void onDetach() {
+        super.onDetach();
+        DoodleFragment fragment = getDoodleFragment();
+
+        if(fragment != null)
+            fragment.setDialogOnScreen(false);
+    }
+
+    // gets a reference to the DoodleFragment
+    private DoodleFragment getDoodleFragment() {
+        return (DoodleFragment)getFragmentManager().findFragmentById(R.id.doodleFragment);
+    }
+}
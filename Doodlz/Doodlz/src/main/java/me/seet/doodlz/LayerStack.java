@@ -0,0 +1,158 @@
+// LayerStack.java
+// The layers of the drawing, bottom to top, and which one is drawn on
+package me.seet.doodlz;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// the drawing's layers in order from the bottom, always at least one, and
+// the active layer new strokes go on. It also draws the strokes of a range
+// of layers, each composited with its own opacity and blend mode, for the
+// tiles and the saved image. Strokes on a layer past the top one, e.g. from
+// a damaged file, count as on the top layer
+public class LayerStack {
+    // most layers a drawing may have
+    public static final int MAX_LAYERS = 16;
+
+    private final List<Layer> mLayers = new ArrayList<Layer>();
+    private int mActive;
+
+    // a single plain layer
+    public LayerStack() {
+        mLayers.add(new Layer());
+    }
+
+    // a copy of layers that doesn't change with them
+    public LayerStack(LayerStack layers) {
+        set(layers);
+    }
+
+    // become a copy of layers
+    public void set(LayerStack layers) {
+        mLayers.clear();
+        for (Layer layer : layers.mLayers)
+            mLayers.add(new Layer(layer));
+        mActive = layers.mActive;
+    }
+
+    // become the given layers, as read back from a file
+    void set(List<Layer> layers, int active) {
+        mLayers.clear();
+        mLayers.addAll(layers);
+        if(mLayers.isEmpty())
+            mLayers.add(new Layer());
+        mActive = Math.max(0, Math.min(active, mLayers.size() - 1));
+    }
+
+    // back to a single plain layer, e.g. when the drawing is cleared
+    public void reset() {
+        mLayers.clear();
+        mLayers.add(new Layer());
+        mActive = 0;
+    }
+
+    public int size() {
+        return mLayers.size();
+    }
+
+    public Layer get(int index) {
+        return mLayers.get(index);
+    }
+
+    public int getActive() {
+        return mActive;
+    }
+
+    public void setActive(int index) {
+        mActive = index;
+    }
+
+    public Layer getActiveLayer() {
+        return mLayers.get(mActive);
+    }
+
+    // add a plain layer on top and make it the active one; returns false
+    // if there are MAX_LAYERS already
+    public boolean add() {
+        if(mLayers.size() >= MAX_LAYERS)
+            return false;
+
+        mLayers.add(new Layer());
+        mActive = mLayers.size() - 1;
+        return true;
+    }
+
+    // visible layers from first to last; last may be past the top layer
+    public int getVisibleCount(int first, int last) {
+        int count = 0;
+        last = Math.min(last, mLayers.size() - 1);
+        for (int i = first; i <= last; i++)
+            if(mLayers.get(i).isVisible())
+                ++count;
+        return count;
+    }
+
+    // whether any of count strokes of log on the layers from first to last
+    // may draw inside the given area; the strokes are those listed in
+    // strokes in ascending order, or the first count if it is null, and
+    // composite leaves out hidden layers, as draw() does
+    public boolean intersects(StrokeLog log, int[] strokes, int count, int first, int last, boolean composite,
+                              float left, float top, float right, float bottom) {
+        for (int i = 0; i < count; i++) {
+            int stroke = strokes != null ? strokes[i] : i;
+            int layer = getLayer(log, stroke);
+            if(layer >= first && layer <= last && (!composite || mLayers.get(layer).isVisible()) &&
+                    log.intersects(stroke, left, top, right, bottom))
+                return true;
+        }
+        return false;
+    }
+
+    // draw those of count strokes of log, chosen as for intersects(), on
+    // the layers from first to last that may draw inside the given area.
+    // With composite each visible layer is composited over the ones below
+    // with its opacity and blend mode, using layerPaint; without, every
+    // stroke is drawn as it is, as for the active layer, which is
+    // composited when shown
+    public void draw(Canvas canvas, StrokeLog log, int[] strokes, int count, int first, int last, boolean composite,
+                     float left, float top, float right, float bottom, StrokePainter painter, Paint layerPaint) {
+        if(!composite) {
+            for (int i = 0; i < count; i++) {
+                int stroke = strokes != null ? strokes[i] : i;
+                int layer = getLayer(log, stroke);
+                if(layer >= first && layer <= last && log.intersects(stroke, left, top, right, bottom))
+                    painter.draw(canvas, log, stroke);
+            }
+            return;
+        }
+
+        last = Math.min(last, mLayers.size() - 1);
+        for (int layer = first; layer <= last; layer++) {
+            Layer settings = mLayers.get(layer);
+            if(!settings.isVisible() || !intersects(log, strokes, count, layer, layer, true, left, top, right, bottom))
+                continue;
+
+            // a layer that isn't plain is drawn on its own, then composited
+            boolean plain = settings.isPlain();
+            if(!plain) {
+                settings.setPaint(layerPaint);
+                canvas.saveLayer(null, layerPaint, Canvas.ALL_SAVE_FLAG);
+            }
+            for (int i = 0; i < count; i++) {
+                int stroke = strokes != null ? strokes[i] : i;
+                if(getLayer(log, stroke) == layer && log.intersects(stroke, left, top, right, bottom))
+                    painter.draw(canvas, log, stroke);
+            }
+            if(!plain)
+                canvas.restore();
+        }
+    }
+
+    // the layer a stroke is drawn on
+    public int getLayer(StrokeLog log, int stroke) {
+        return Math.min(log.getLayer(stroke), mLayers.size() - 1);
+    }
+}
@@ -0,0 +1,184 @@
+// LongLruMap.java
+// Map with long keys that remembers which entries were used last
+package me.seet.doodlz;
+
+import java.util.Arrays;
+
+// hash map from primitive long keys to values, kept in least recently
+// used order; entries live at stable indices in parallel arrays, so
+// looking up, walking and removing entries never boxes a key or creates
+// an iterator, and memory is only allocated when the map grows
+public class LongLruMap<V> {
+    private static final int NONE = -1;
+
+    private int[] mBuckets; // first entry of each hash bucket
+    private long[] mKeys;
+    private Object[] mValues;
+    private boolean[] mUsed;
+    private int[] mChain;   // next entry in the same bucket, or the next free entry
+    private int[] mOlder;   // neighbours in the order of use
+    private int[] mNewer;
+    private int mOldest = NONE;
+    private int mNewest = NONE;
+    private int mFree = NONE;   // first entry that was removed and can be reused
+    private int mLimit;  // entries below this index have been used
+    private int mSize;
+
+    public LongLruMap(int capacity) {
+        int buckets = Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1);
+        mBuckets = new int[buckets];
+        Arrays.fill(mBuckets, NONE);
+        mKeys = new long[buckets];
+        mValues = new Object[buckets];
+        mUsed = new boolean[buckets];
+        mChain = new int[buckets];
+        mOlder = new int[buckets];
+        mNewer = new int[buckets];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    // the entry holding key, made the most recently used; NONE if absent
+    public int find(long key) {
+        for (int i = mBuckets[getBucket(key)]; i != NONE; i = mChain[i]) {
+            if(mKeys[i] == key) {
+                unlink(i);
+                linkNewest(i);
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    // add or replace the value for key as the most recently used entry,
+    // and return its entry
+    public int put(long key, V value) {
+        int entry = find(key);
+        if(entry != NONE) {
+            mValues[entry] = value;
+            return entry;
+        }
+
+        if(mFree != NONE) {
+            entry = mFree;
+            mFree = mChain[entry];
+        }
+        else {
+            if(mLimit == mKeys.length)
+                grow();
+            entry = mLimit++;
+        }
+
+        int bucket = getBucket(key);
+        mKeys[entry] = key;
+        mValues[entry] = value;
+        mUsed[entry] = true;
+        mChain[entry] = mBuckets[bucket];
+        mBuckets[bucket] = entry;
+        linkNewest(entry);
+        ++mSize;
+        return entry;
+    }
+
+    // the least recently used entry; NONE if the map is empty
+    public int getOldest() {
+        return mOldest;
+    }
+
+    // entries are walked with for (i = 0; i < getEntryLimit(); i++) and
+    // isEntry(i); removing entry i during the walk is allowed
+    public int getEntryLimit() {
+        return mLimit;
+    }
+
+    public boolean isEntry(int entry) {
+        return mUsed[entry];
+    }
+
+    public long keyAt(int entry) {
+        return mKeys[entry];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int entry) {
+        return (V)mValues[entry];
+    }
+
+    public void removeAt(int entry) {
+        // unhook the entry from its bucket
+        int bucket = getBucket(mKeys[entry]);
+        if(mBuckets[bucket] == entry)
+            mBuckets[bucket] = mChain[entry];
+        else {
+            int i = mBuckets[bucket];
+            while(mChain[i] != entry)
+                i = mChain[i];
+            mChain[i] = mChain[entry];
+        }
+
+        unlink(entry);
+        mValues[entry] = null;  // let the value be collected
+        mUsed[entry] = false;
+        mChain[entry] = mFree;
+        mFree = entry;
+        --mSize;
+    }
+
+    public void clear() {
+        Arrays.fill(mBuckets, NONE);
+        Arrays.fill(mValues, null);
+        Arrays.fill(mUsed, false);
+        mOldest = mNewest = mFree = NONE;
+        mLimit = 0;
+        mSize = 0;
+    }
+
+    // double the entries and buckets and rehash
+    private void grow() {
+        int capacity = mKeys.length * 2;
+        mKeys = Arrays.copyOf(mKeys, capacity);
+        mValues = Arrays.copyOf(mValues, capacity);
+        mUsed = Arrays.copyOf(mUsed, capacity);
+        mChain = Arrays.copyOf(mChain, capacity);
+        mOlder = Arrays.copyOf(mOlder, capacity);
+        mNewer = Arrays.copyOf(mNewer, capacity);
+
+        // the map is full when it grows, so every entry is in use
+        mBuckets = new int[capacity];
+        Arrays.fill(mBuckets, NONE);
+        for (int i = 0; i < mLimit; i++) {
+            int bucket = getBucket(mKeys[i]);
+            mChain[i] = mBuckets[bucket];
+            mBuckets[bucket] = i;
+        }
+    }
+
+    private int getBucket(long key) {
+        int hash = (int)(key ^ key >>> 32) * 0x9e3779b9;  // spread nearby tiles apart
+        return (hash ^ hash >>> 16) & (mBuckets.length - 1);
+    }
+
+    private void unlink(int entry) {
+        if(mOlder[entry] == NONE)
+            mOldest = mNewer[entry];
+        else
+            mNewer[mOlder[entry]] = mNewer[entry];
+
+        if(mNewer[entry] == NONE)
+            mNewest = mOlder[entry];
+        else
+            mOlder[mNewer[entry]] = mOlder[entry];
+    }
+
+    private void linkNewest(int entry) {
+        mOlder[entry] = mNewest;
+        mNewer[entry] = NONE;
+        if(mNewest == NONE)
+            mOldest = entry;
+        else
+            mNewer[mNewest] = entry;
+        mNewest = entry;
+    }
+}
@@ -0,0 +1,149 @@
+// PdfWriter.java
+// Exports the drawing as a PDF document
+package me.seet.doodlz;
+
+import android.graphics.Color;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// writes a one-page PDF the size of the drawing, with each stroke as a
+// path of cubic curves in the page's content stream. The stream is
+// written as the strokes come, and its length and the graphics states for
+// translucent colors go in objects after it, as they are only known then
+public class PdfWriter extends VectorWriter {
+    public static final String MIME_TYPE = "application/pdf";
+    public static final String EXTENSION = ".pdf";
+
+    // catalog, page list, page, content stream, its length, resources
+    private static final int OBJECT_COUNT = 6;
+
+    private final long[] mObjectOffsets = new long[OBJECT_COUNT + 1];
+    private final boolean[] mAlphas = new boolean[256]; // alphas the strokes use
+    private long mStreamStart;
+    private boolean mTranslucent;   // the stroke being written saved the graphics state
+
+    @Override
+    protected void beginDocument(float left, float top, float right, float bottom) throws IOException {
+        Arrays.fill(mAlphas, false);
+        write("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");   // binary marker for file transfers
+
+        beginObject(1);
+        write("<< /Type /Catalog /Pages 2 0 R >>\n");
+        endObject();
+
+        beginObject(2);
+        write("<< /Type /Pages /Kids [3 0 R] /Count 1 >>\n");
+        endObject();
+
+        beginObject(3);
+        write("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 ");
+        writeNumber(right - left);
+        write(" ");
+        writeNumber(bottom - top);
+        write("] /Contents 4 0 R /Resources 6 0 R >>\n");
+        endObject();
+
+        beginObject(4);
+        write("<< /Length 5 0 R >>\nstream\n");
+        mStreamStart = getOffset();
+
+        // PDF's y goes up from the bottom of the page; round caps and
+        // Android's miter limit for all strokes
+        write("1 0 0 -1 ");
+        writeNumber(-left);
+        write(" ");
+        writeNumber(bottom);
+        write(" cm 1 J 4 M\n");
+    }
+
+    @Override
+    protected void beginStroke(int color, float width) throws IOException {
+        int alpha = Color.alpha(color);
+        mTranslucent = alpha < 255;
+        if(mTranslucent) {
+            mAlphas[alpha] = true;
+            write("q /A" + alpha + " gs ");
+        }
+
+        writeNumber(getFraction(Color.red(color)));
+        write(" ");
+        writeNumber(getFraction(Color.green(color)));
+        write(" ");
+        writeNumber(getFraction(Color.blue(color)));
+        write(" RG ");
+        writeNumber(width);
+        write(" w\n");
+    }
+
+    @Override
+    protected void moveTo(float x, float y) throws IOException {
+        writeNumber(x);
+        write(" ");
+        writeNumber(y);
+        write(" m\n");
+    }
+
+    @Override
+    protected void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) throws IOException {
+        writeNumber(x1);
+        write(" ");
+        writeNumber(y1);
+        write(" ");
+        writeNumber(x2);
+        write(" ");
+        writeNumber(y2);
+        write(" ");
+        writeNumber(x3);
+        write(" ");
+        writeNumber(y3);
+        write(" c\n");
+    }
+
+    @Override
+    protected void endStroke() throws IOException {
+        write(mTranslucent ? "S Q\n" : "S\n");
+    }
+
+    // the objects only known after the strokes, then the cross-reference
+    // table of where every object starts
+    @Override
+    protected void endDocument() throws IOException {
+        long length = getOffset() - mStreamStart;
+        write("endstream\n");
+        endObject();
+
+        beginObject(5);
+        write(length + "\n");
+        endObject();
+
+        beginObject(6);
+        write("<< /ExtGState <<");
+        for (int alpha = 0; alpha < 255; alpha++) {
+            if(mAlphas[alpha]) {
+                write(" /A" + alpha + " << /CA ");
+                writeNumber(getFraction(alpha));
+                write(" >>");
+            }
+        }
+        write(" >> >>\n");
+        endObject();
+
+        long xref = getOffset();
+        write("xref\n0 " + (OBJECT_COUNT + 1) + "\n0000000000 65535 f \n");
+        for (int i = 1; i <= OBJECT_COUNT; i++) {
+            String offset = Long.toString(mObjectOffsets[i]);
+            write("0000000000".substring(offset.length()) + offset + " 00000 n \n");
+        }
+        write("trailer\n<< /Size " + (OBJECT_COUNT + 1) + " /Root 1 0 R >>\nstartxref\n" + xref + "\n%%EOF\n");
+    }
+
+    private void beginObject(int number) throws IOException {
+        mObjectOffsets[number] = getOffset();
+        write(number + " 0 obj\n");
+    }
+
+    private void endObject() throws IOException {
+        write("endobj\n");
+    }
+}
@@ -0,0 +1,98 @@
+// ShakeDetector.java
+// Recognizes a shake in accelerometer samples
+package me.seet.doodlz;
+
+// separates the device's own movement from gravity with a high-pass
+// filter, averages the energy of that movement over a short window, and
+// reports a shake once the energy has been above HIGH_ENERGY for
+// MIN_SHAKE_TIME in all since it was last below LOW_ENERGY. The next
+// shake is reported only after the energy has fallen below LOW_ENERGY,
+// so one long shake erases once, and the jolts of walking or setting the
+// device down, which are short or weak, don't count. Samples are weighted
+// by the time between them, so the result doesn't depend on the sampling
+// rate or on samples arriving in batches
+public class ShakeDetector {
+    // how slowly the gravity estimate follows the samples, in seconds
+    public static final float GRAVITY_TIME = 0.5f;
+
+    // how long the energy is averaged over, in seconds
+    public static final float ENERGY_TIME = 0.1f;
+
+    // mean square acceleration besides gravity, in (m/s^2)^2, at which a
+    // shake starts and ends
+    public static final float HIGH_ENERGY = 100;
+    public static final float LOW_ENERGY = 25;
+
+    // the most one sample adds to the average, so a single hard jolt
+    // can't keep the energy high for long
+    public static final float MAX_SAMPLE_ENERGY = 4 * HIGH_ENERGY;
+
+    // how long the energy must be high to be a shake, in nanoseconds
+    public static final long MIN_SHAKE_TIME = 250000000L;
+
+    // samples further apart than this, in nanoseconds, start afresh, e.g.
+    // after listening was paused
+    public static final long MAX_GAP = 1000000000L;
+
+    private float mGravityX;
+    private float mGravityY;
+    private float mGravityZ;
+    private float mEnergy;
+    private long mTime; // of the last sample; 0 before the first
+    private long mHighTime; // time above HIGH_ENERGY since it was below LOW_ENERGY
+    private boolean mArmed = true;  // the energy was low since the last shake
+
+    // forget everything, e.g. when listening starts again
+    public void reset() {
+        mTime = 0;
+        mHighTime = 0;
+        mArmed = true;
+    }
+
+    // take an accelerometer sample in m/s^2 with its time in nanoseconds;
+    // returns true if it completes a shake
+    public boolean add(float x, float y, float z, long time) {
+        if(mTime == 0 || time - mTime > MAX_GAP) {
+            // nothing to go on yet: take the sample as gravity
+            mGravityX = x;
+            mGravityY = y;
+            mGravityZ = z;
+            mEnergy = 0;
+            mHighTime = 0;
+            mTime = time;
+            return false;
+        }
+        if(time <= mTime)
+            return false;   // repeated or out of order
+
+        float dt = (time - mTime) / 1e9f;
+
+        // low-pass for gravity; what is left is the device's movement
+        float gravityAlpha = dt / (GRAVITY_TIME + dt);
+        mGravityX += gravityAlpha * (x - mGravityX);
+        mGravityY += gravityAlpha * (y - mGravityY);
+        mGravityZ += gravityAlpha * (z - mGravityZ);
+        float moveX = x - mGravityX;
+        float moveY = y - mGravityY;
+        float moveZ = z - mGravityZ;
+
+        float energyAlpha = dt / (ENERGY_TIME + dt);
+        float energy = Math.min(moveX * moveX + moveY * moveY + moveZ * moveZ, MAX_SAMPLE_ENERGY);
+        mEnergy += energyAlpha * (energy - mEnergy);
+
+        // hysteresis between the two thresholds
+        if(mEnergy < LOW_ENERGY) {
+            mHighTime = 0;
+            mArmed = true;
+        }
+        else if(mEnergy > HIGH_ENERGY)
+            mHighTime += time - mTime;
+        mTime = time;
+
+        if(mArmed && mHighTime >= MIN_SHAKE_TIME) {
+            mArmed = false;
+            return true;
+        }
+        return false;
+    }
+}
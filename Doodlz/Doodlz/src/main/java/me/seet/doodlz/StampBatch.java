@@ -0,0 +1,125 @@
+// StampBatch.java
+// Collects brush stamps so they are drawn in one call
+package me.seet.doodlz;
+
+import java.util.Arrays;
+
+// each stamp is a square of the brush texture, turned to its grain angle
+// and tinted with its color, stored as two triangles of vertices, texture
+// coordinates and colors. However many stamps and strokes are in the
+// batch, StrokePainter.drawStamps hands them to the canvas as one
+// drawVertices call, whose Paint's shader is the brush texture. The
+// arrays grow as needed and are kept across reset(), so a batch reused
+// every frame allocates nothing
+public class StampBatch {
+    // width and height of the brush texture, in texture coordinates
+    public static final int TEXTURE_SIZE = 64;
+
+    // texture corners of a stamp's two triangles
+    private static final float[] CORNERS = {
+            0, 0, TEXTURE_SIZE, 0, TEXTURE_SIZE, TEXTURE_SIZE,
+            0, 0, TEXTURE_SIZE, TEXTURE_SIZE, 0, TEXTURE_SIZE
+    };
+
+    private float[] mVertices = new float[12 * 64];  // x, y of 6 vertices per stamp
+    private float[] mTextureCoordinates = new float[12 * 64];
+    private int[] mColors = new int[6 * 64];
+    private int mCount; // stamps
+
+    // stamps entirely outside this area are left out
+    private float mClipLeft = Float.NEGATIVE_INFINITY;
+    private float mClipTop = Float.NEGATIVE_INFINITY;
+    private float mClipRight = Float.POSITIVE_INFINITY;
+    private float mClipBottom = Float.POSITIVE_INFINITY;
+
+    // add a stamp of the given radius centred on x, y, turned so its
+    // texture's x axis points along cos, sin
+    public void add(float x, float y, float radius, float cos, float sin, int color) {
+        // a turned square reaches at most radius * sqrt(2) from its centre
+        float reach = radius * 1.415f;
+        if(x + reach < mClipLeft || x - reach > mClipRight || y + reach < mClipTop || y - reach > mClipBottom)
+            return;
+
+        if(mColors.length < (mCount + 1) * 6)
+            grow();
+
+        // corners are the centre plus or minus the turned half axes
+        float ux = radius * cos, uy = radius * sin;
+        float vx = -radius * sin, vy = radius * cos;
+        float x0 = x - ux - vx, y0 = y - uy - vy;
+        float x1 = x + ux - vx, y1 = y + uy - vy;
+        float x2 = x + ux + vx, y2 = y + uy + vy;
+        float x3 = x - ux + vx, y3 = y - uy + vy;
+
+        int v = mCount * 12;
+        float[] vertices = mVertices;
+        vertices[v] = x0;
+        vertices[v + 1] = y0;
+        vertices[v + 2] = x1;
+        vertices[v + 3] = y1;
+        vertices[v + 4] = x2;
+        vertices[v + 5] = y2;
+        vertices[v + 6] = x0;
+        vertices[v + 7] = y0;
+        vertices[v + 8] = x2;
+        vertices[v + 9] = y2;
+        vertices[v + 10] = x3;
+        vertices[v + 11] = y3;
+        System.arraycopy(CORNERS, 0, mTextureCoordinates, v, 12);
+
+        int c = mCount * 6;
+        for (int i = 0; i < 6; i++)
+            mColors[c + i] = color;
+        ++mCount;
+    }
+
+    // forget the stamps, keeping the arrays
+    public void reset() {
+        mCount = 0;
+    }
+
+    // leave out stamps that don't reach into the given area until the
+    // clip is set again, e.g. while only part of the overlay is restamped
+    public void setClip(float left, float top, float right, float bottom) {
+        mClipLeft = left;
+        mClipTop = top;
+        mClipRight = right;
+        mClipBottom = bottom;
+    }
+
+    // keep every stamp again
+    public void clearClip() {
+        setClip(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+    }
+
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    // stamps in the batch
+    public int size() {
+        return mCount;
+    }
+
+    // the first size() * 12 floats are the x, y of the stamps' vertices
+    float[] getVertices() {
+        return mVertices;
+    }
+
+    // texture coordinates of the same vertices
+    float[] getTextureCoordinates() {
+        return mTextureCoordinates;
+    }
+
+    // the first size() * 6 ints are the colors of the vertices
+    int[] getColors() {
+        return mColors;
+    }
+
+    private void grow() {
+        mVertices = Arrays.copyOf(mVertices, mVertices.length * 2);
+        mTextureCoordinates = Arrays.copyOf(mTextureCoordinates, mTextureCoordinates.length * 2);
+        mColors = Arrays.copyOf(mColors, mColors.length * 2);
+    }
+}
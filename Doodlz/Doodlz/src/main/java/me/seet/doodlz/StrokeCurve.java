@@ -0,0 +1,109 @@
+// StrokeCurve.java
+// Builds the smooth Path through the points of a stroke
+package me.seet.doodlz;
+
+// extends a Path with a Catmull-Rom curve through each point as it comes;
+// the piece between two points depends on the points either side, so
+// each new point completes the piece before the previous one, in constant
+// time, and finish() completes the last. DoodleView and StrokePainter
+// both build strokes with it, so a stroke looks the same while it is
+// drawn and whenever it is drawn again from the log
+public class StrokeCurve {
+    // what the curve is built into; StrokePath is an android.graphics.Path
+    // that is one, and tests use their own
+    public interface Sink {
+        void reset();
+
+        void moveTo(float x, float y);
+
+        void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3);
+    }
+
+    // the last three points: the completed curve ends at the second and
+    // the piece to the third is still open
+    private float mX0, mY0, mX1, mY1, mX2, mY2;
+    private int mCount; // points added since begin
+
+    // bounds of the last completed piece, including its control points
+    private float mLeft, mTop, mRight, mBottom;
+
+    // start the curve at the stroke's first point
+    public void begin(Sink path, float x, float y) {
+        path.moveTo(x, y);
+        mX0 = mX1 = mX2 = x;
+        mY0 = mY1 = mY2 = y;
+        mLeft = mRight = x;
+        mTop = mBottom = y;
+        mCount = 1;
+    }
+
+    // add the next point, completing the piece before the previous point
+    public void add(Sink path, float x, float y) {
+        if(mCount >= 2)
+            addPiece(path, x, y);
+
+        mX0 = mX1;
+        mY0 = mY1;
+        mX1 = mX2;
+        mY1 = mY2;
+        mX2 = x;
+        mY2 = y;
+        ++mCount;
+    }
+
+    // complete the last piece, as if the stroke stopped at its last point
+    public void finish(Sink path) {
+        if(mCount >= 2)
+            addPiece(path, mX2, mY2);
+    }
+
+    // end of the completed curve; a straight line from there to the last
+    // point shows the open piece while the stroke is drawn
+    public float getEndX() {
+        return mX1;
+    }
+
+    public float getEndY() {
+        return mY1;
+    }
+
+    public float getLastX() {
+        return mX2;
+    }
+
+    public float getLastY() {
+        return mY2;
+    }
+
+    // set bounds, as left, top, right and bottom, to the area of the last
+    // completed piece and the open one
+    public void getChangedBounds(float[] bounds) {
+        bounds[0] = Math.min(mLeft, mX2);
+        bounds[1] = Math.min(mTop, mY2);
+        bounds[2] = Math.max(mRight, mX2);
+        bounds[3] = Math.max(mBottom, mY2);
+    }
+
+    // the control point next to point on a piece of the curve, from the
+    // points before and after it along the piece's direction; the SVG and
+    // PDF writers use it too, with the first and last point repeated at
+    // the ends, so exported strokes follow the same curve
+    public static float getControl(float point, float before, float after) {
+        return point + (after - before) / 6;
+    }
+
+    // the piece from point 1 to point 2 as a cubic Bezier, with tangents
+    // from the points before and after
+    private void addPiece(Sink path, float x3, float y3) {
+        float c1x = getControl(mX1, mX0, mX2);
+        float c1y = getControl(mY1, mY0, mY2);
+        float c2x = getControl(mX2, x3, mX1);
+        float c2y = getControl(mY2, y3, mY1);
+        path.cubicTo(c1x, c1y, c2x, c2y, mX2, mY2);
+
+        mLeft = Math.min(Math.min(mX1, mX2), Math.min(c1x, c2x));
+        mTop = Math.min(Math.min(mY1, mY2), Math.min(c1y, c2y));
+        mRight = Math.max(Math.max(mX1, mX2), Math.max(c1x, c2x));
+        mBottom = Math.max(Math.max(mY1, mY2), Math.max(c1y, c2y));
+    }
+}
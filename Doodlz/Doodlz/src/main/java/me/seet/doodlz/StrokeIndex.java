@@ -0,0 +1,200 @@
+// StrokeIndex.java
+// Which strokes of a StrokeLog reach into each part of the drawing
+package me.seet.doodlz;
+
+import java.util.Arrays;
+
+// a grid of CELL_SIZE squares over the unbounded drawing, each listing the
+// strokes whose bounds reach into it in the order they were drawn, so a
+// tile is rasterised from the strokes near it rather than from every
+// stroke of the log; undoing a stroke then costs only the strokes on the
+// tiles it crossed, however large the drawing has grown. Only cells with
+// strokes exist. A stroke that would be in more than MAX_CELLS cells, e.g.
+// one drawn zoomed far out, is kept in one list every search looks at
+public class StrokeIndex {
+    // width and height of a cell in drawing coordinates, two tiles wide
+    // at the level drawn at when not zoomed
+    public static final float CELL_SIZE = 512;
+
+    // most cells a stroke is listed in before it counts as wide
+    public static final int MAX_CELLS = 64;
+
+    // strokes in each cell by key, each as a count and that many strokes
+    // in ascending order; the map's order of use isn't needed
+    private final LongLruMap<int[]> mCells = new LongLruMap<int[]>(64);
+    private int[] mWide = new int[16];  // strokes in too many cells, ascending
+    private int mWideCount;
+    private StrokeLog mLog;
+    private int mStrokeCount;   // strokes of mLog that are listed
+
+    private int[] mFound = new int[64]; // strokes found by the last find()
+    private int mFoundCount;
+
+    // list the strokes of log that aren't yet; log must be the one listed
+    // so far, or any log after clear()
+    public void update(StrokeLog log) {
+        mLog = log;
+        for (; mStrokeCount < log.size(); mStrokeCount++) {
+            int stroke = mStrokeCount;
+            int left = getCell(log.getBounds(stroke, 0));
+            int top = getCell(log.getBounds(stroke, 1));
+            int right = getCell(log.getBounds(stroke, 2));
+            int bottom = getCell(log.getBounds(stroke, 3));
+            if((long)(right - left + 1) * (bottom - top + 1) > MAX_CELLS) {
+                if(mWideCount == mWide.length)
+                    mWide = Arrays.copyOf(mWide, mWideCount * 2);
+                mWide[mWideCount++] = stroke;
+                continue;
+            }
+
+            for (int row = top; row <= bottom; row++) {
+                for (int column = left; column <= right; column++) {
+                    long key = getKey(column, row);
+                    int entry = mCells.find(key);
+                    int[] cell = entry >= 0 ? mCells.valueAt(entry) : null;
+                    if(cell == null)
+                        cell = new int[4];
+                    else if(cell[0] + 1 == cell.length)
+                        cell = Arrays.copyOf(cell, cell.length * 2);
+                    cell[++cell[0]] = stroke;
+                    mCells.put(key, cell);
+                }
+            }
+        }
+    }
+
+    // strokes of the log that are listed
+    public int size() {
+        return mStrokeCount;
+    }
+
+    // forget the strokes from count on, before the log drops them; their
+    // bounds are still needed to find their cells
+    public void truncate(int count) {
+        if(count >= mStrokeCount)
+            return;
+
+        while(mWideCount > 0 && mWide[mWideCount - 1] >= count)
+            --mWideCount;
+        for (int stroke = count; stroke < mStrokeCount; stroke++) {
+            int left = getCell(mLog.getBounds(stroke, 0));
+            int top = getCell(mLog.getBounds(stroke, 1));
+            int right = getCell(mLog.getBounds(stroke, 2));
+            int bottom = getCell(mLog.getBounds(stroke, 3));
+            if((long)(right - left + 1) * (bottom - top + 1) > MAX_CELLS)
+                continue;   // wide, dropped above
+
+            for (int row = top; row <= bottom; row++) {
+                for (int column = left; column <= right; column++) {
+                    int entry = mCells.find(getKey(column, row));
+                    if(entry < 0)
+                        continue;   // emptied by an earlier stroke
+                    int[] cell = mCells.valueAt(entry);
+                    while(cell[0] > 0 && cell[cell[0]] >= count)
+                        --cell[0];
+                    if(cell[0] == 0)
+                        mCells.removeAt(entry);
+                }
+            }
+        }
+        mStrokeCount = count;
+    }
+
+    // forget every stroke, e.g. when the log was cleared or replaced
+    public void clear() {
+        mCells.clear();
+        mWideCount = 0;
+        mStrokeCount = 0;
+        mLog = null;
+    }
+
+    // find the strokes among the first count that may draw inside the
+    // given area, in the order they were drawn; return how many there are
+    // and get them from getFound()
+    public int find(int count, float left, float top, float right, float bottom) {
+        mFoundCount = 0;
+        for (int i = 0; i < mWideCount && mWide[i] < count; i++)
+            addFound(mWide[i], left, top, right, bottom);
+
+        int firstColumn = getCell(left);
+        int lastColumn = getCell(right);
+        int firstRow = getCell(top);
+        int lastRow = getCell(bottom);
+        int cells = 0;
+        if((long)(lastColumn - firstColumn + 1) * (lastRow - firstRow + 1) > mCells.size()) {
+            // an area of more cells than have strokes: walk those instead
+            for (int entry = 0; entry < mCells.getEntryLimit(); entry++) {
+                if(!mCells.isEntry(entry))
+                    continue;
+                long key = mCells.keyAt(entry);
+                int column = (int)(key >> 32);
+                int row = (int)key;
+                if(column >= firstColumn && column <= lastColumn && row >= firstRow && row <= lastRow) {
+                    addFound(mCells.valueAt(entry), count, left, top, right, bottom);
+                    ++cells;
+                }
+            }
+        }
+        else {
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int entry = mCells.find(getKey(column, row));
+                    if(entry >= 0) {
+                        addFound(mCells.valueAt(entry), count, left, top, right, bottom);
+                        ++cells;
+                    }
+                }
+            }
+        }
+
+        // a stroke in several of the cells, or in the wide list too, is
+        // found more than once
+        if(cells > 1 || cells > 0 && mWideCount > 0) {
+            Arrays.sort(mFound, 0, mFoundCount);
+            int unique = 0;
+            for (int i = 0; i < mFoundCount; i++)
+                if(unique == 0 || mFound[unique - 1] != mFound[i])
+                    mFound[unique++] = mFound[i];
+            mFoundCount = unique;
+        }
+        return mFoundCount;
+    }
+
+    // the strokes the last find() found, in ascending order; only the
+    // first find() returned are valid
+    public int[] getFound() {
+        return mFound;
+    }
+
+    // memory held by the index, roughly
+    public long getByteCount() {
+        long bytes = 4L * (mWide.length + mFound.length);
+        for (int i = 0; i < mCells.getEntryLimit(); i++)
+            if(mCells.isEntry(i))
+                bytes += 4L * mCells.valueAt(i).length + 16;
+        return bytes;
+    }
+
+    // add a cell's strokes among the first count that may draw inside the
+    // area
+    private void addFound(int[] cell, int count, float left, float top, float right, float bottom) {
+        for (int i = 1; i <= cell[0] && cell[i] < count; i++)
+            addFound(cell[i], left, top, right, bottom);
+    }
+
+    private void addFound(int stroke, float left, float top, float right, float bottom) {
+        if(!mLog.intersects(stroke, left, top, right, bottom))
+            return;
+        if(mFoundCount == mFound.length)
+            mFound = Arrays.copyOf(mFound, mFoundCount * 2);
+        mFound[mFoundCount++] = stroke;
+    }
+
+    private static int getCell(float coordinate) {
+        return (int)Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long getKey(int column, int row) {
+        return (long)column << 32 | row & 0xffffffffL;
+    }
+}
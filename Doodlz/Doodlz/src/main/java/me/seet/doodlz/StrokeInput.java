@@ -0,0 +1,275 @@
+// StrokeInput.java
+// Turns the touch samples of every finger into the strokes being drawn
+package me.seet.doodlz;
+
+// keeps the stroke each pointer ID is drawing: its points, smoother and
+// curve, and for a brush stroke its pressure, speed and stamper, whose
+// stamps all go into one StampBatch. Everything is made once and reused
+// from touch to touch, so taking samples allocates nothing once the
+// arrays have grown. DoodleView feeds it the samples of its MotionEvents
+// and draws what it builds; nothing here needs Android
+public class StrokeInput {
+    // pointer IDs Android hands out are below this
+    public static final int MAX_POINTERS = 32;
+
+    private final Viewport mViewport;   // maps touches into the drawing
+    private final StrokeCurve.Sink[] mPaths;    // curves of line strokes
+    private final StrokePoints[] mPoints = new StrokePoints[MAX_POINTERS];
+    private final StrokeSmoother[] mSmoothers = new StrokeSmoother[MAX_POINTERS];
+    private final StrokeCurve[] mCurves = new StrokeCurve[MAX_POINTERS];
+    private final BrushDynamics[] mDynamics = new BrushDynamics[MAX_POINTERS];
+    private final BrushStamper[] mStampers = new BrushStamper[MAX_POINTERS];
+    private final boolean[] mDrawing = new boolean[MAX_POINTERS];   // finger is down
+    private final boolean[] mBrushStroke = new boolean[MAX_POINTERS];
+    private final int[] mColors = new int[MAX_POINTERS];
+    private final float[] mWidths = new float[MAX_POINTERS];    // in drawing pixels
+
+    // area each brush stroke's stamps cover, as left, top, right and bottom
+    private final float[] mStampBounds = new float[MAX_POINTERS * 4];
+
+    // stamps of the brush strokes since the stamps were last drawn
+    private final StampBatch mStamps = new StampBatch();
+    private final BrushStamper mReplayStamper = new BrushStamper();
+
+    // area the samples since the last getChangedBounds drew on, as left,
+    // top, right and bottom in drawing coordinates
+    private final float[] mPieceBounds = new float[4];
+    private final float[] mChangedBounds = new float[4];
+    private boolean mChanged;
+
+    // paths holds the Sink each pointer ID's line strokes are built into
+    public StrokeInput(Viewport viewport, StrokeCurve.Sink[] paths) {
+        mViewport = viewport;
+        mPaths = paths;
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            mPoints[i] = new StrokePoints();
+            mSmoothers[i] = new StrokeSmoother();
+            mCurves[i] = new StrokeCurve();
+            mDynamics[i] = new BrushDynamics();
+            mStampers[i] = new BrushStamper();
+        }
+    }
+
+    // choose how touch samples are smoothed before they become strokes
+    public void setSmoothing(StrokeSmoother.Mode mode) {
+        for (StrokeSmoother smoother : mSmoothers)
+            smoother.setMode(mode);
+    }
+
+    public StrokeSmoother.Mode getSmoothing() {
+        return mSmoothers[0].getMode();
+    }
+
+    // start the stroke of lineId at a touch on the screen, a brush stroke
+    // if brush is true, with the given color and width in drawing pixels
+    public void begin(int lineId, float x, float y, long time, float pressure, boolean brush,
+                      int color, float width) {
+        if(lineId >= MAX_POINTERS)
+            return;
+
+        mPaths[lineId].reset();
+        StrokePoints points = mPoints[lineId];
+        points.reset();
+        mDrawing[lineId] = true;
+        mBrushStroke[lineId] = brush;
+        mColors[lineId] = color;
+        mWidths[lineId] = width;
+
+        // move to the coordinates of the touch in the drawing, as the
+        // history stores them
+        mSmoothers[lineId].begin(x, y, time);
+        if(brush) {
+            BrushDynamics dynamics = mDynamics[lineId];
+            dynamics.begin(x, y, time, pressure);
+            points.add(mViewport.toDrawingX(x), mViewport.toDrawingY(y), dynamics.getSize());
+
+            BrushStamper stamper = mStampers[lineId];
+            stamper.begin(mStamps, color, width, points.getLastX(), points.getLastY(), points.getLastSize());
+            int b = lineId * 4;
+            mStampBounds[b] = mStampBounds[b + 1] = Float.POSITIVE_INFINITY; // no stamps yet
+            mStampBounds[b + 2] = mStampBounds[b + 3] = Float.NEGATIVE_INFINITY;
+            addStampBounds(lineId, stamper);
+        }
+        else {
+            points.add(mViewport.toDrawingX(x), mViewport.toDrawingY(y));
+            mCurves[lineId].begin(mPaths[lineId], points.getLastX(), points.getLastY());
+        }
+    }
+
+    // pass a touch sample of lineId through its smoother and, if it is
+    // kept, extend the stroke's points and Path, or its stamps, with it;
+    // samples of pointers that aren't drawing are ignored
+    public void add(int lineId, float x, float y, long time, float pressure) {
+        if(!isDrawing(lineId))
+            return;
+
+        // every sample counts towards the brush's speed and pressure
+        boolean brush = mBrushStroke[lineId];
+        if(brush)
+            mDynamics[lineId].add(x, y, time, pressure);
+
+        StrokeSmoother smoother = mSmoothers[lineId];
+        if(!smoother.add(x, y, time))
+            return;
+
+        // store the new coordinates in the drawing
+        StrokePoints points = mPoints[lineId];
+        if(brush) {
+            points.add(mViewport.toDrawingX(smoother.getX()), mViewport.toDrawingY(smoother.getY()),
+                    mDynamics[lineId].getSize());
+            BrushStamper stamper = mStampers[lineId];
+            stamper.add(mStamps, points.getLastX(), points.getLastY(), points.getLastSize());
+            addStampBounds(lineId, stamper);
+            return;
+        }
+        points.add(mViewport.toDrawingX(smoother.getX()), mViewport.toDrawingY(smoother.getY()));
+
+        // extend the path to the new location, as the history will draw it
+        StrokeCurve curve = mCurves[lineId];
+        curve.add(mPaths[lineId], points.getLastX(), points.getLastY());
+        curve.getChangedBounds(mPieceBounds);
+        addBounds(mPieceBounds, mWidths[lineId] / 2);  // half the line
+    }
+
+    // end the stroke of lineId with its last sample; its points stay
+    // until the pointer's next stroke begins
+    public void end(int lineId, float x, float y, long time, float pressure) {
+        if(!isDrawing(lineId))
+            return;
+
+        // the finger may have moved since the last sample
+        add(lineId, x, y, time, pressure);
+        cancel(lineId);
+    }
+
+    // stop the stroke of lineId without a last sample
+    public void cancel(int lineId) {
+        if(!isDrawing(lineId))
+            return;
+
+        mPaths[lineId].reset();
+        mDrawing[lineId] = false;
+    }
+
+    // stop every stroke, e.g. when the drawing is cleared
+    public void cancelAll() {
+        for (int i = 0; i < MAX_POINTERS; i++)
+            cancel(i);
+    }
+
+    public boolean isDrawing(int lineId) {
+        return lineId < MAX_POINTERS && mDrawing[lineId];
+    }
+
+    // whether the stroke of lineId, drawing or last ended, is stamped
+    public boolean isBrushStroke(int lineId) {
+        return mBrushStroke[lineId];
+    }
+
+    // points of the stroke of lineId, drawing or last ended
+    public StrokePoints getPoints(int lineId) {
+        return mPoints[lineId];
+    }
+
+    public StrokeCurve getCurve(int lineId) {
+        return mCurves[lineId];
+    }
+
+    public int getColor(int lineId) {
+        return mColors[lineId];
+    }
+
+    public float getWidth(int lineId) {
+        return mWidths[lineId];
+    }
+
+    // stamps since they were last drawn and reset
+    public StampBatch getStamps() {
+        return mStamps;
+    }
+
+    // set bounds, as left, top, right and bottom in drawing coordinates,
+    // to the area the stamps of lineId's brush stroke, drawing or last
+    // ended, cover; returns false for a line stroke
+    public boolean getStampBounds(int lineId, float[] bounds) {
+        if(lineId >= MAX_POINTERS || !mBrushStroke[lineId])
+            return false;
+
+        System.arraycopy(mStampBounds, lineId * 4, bounds, 0, 4);
+        return true;
+    }
+
+    // forget the stamps and stamp again the brush strokes being drawn;
+    // the stamps depend only on the points, so they come out as they were
+    public void restamp() {
+        restamp(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+    }
+
+    // forget the stamps and stamp again only the brush strokes being drawn
+    // whose stamps reach into the given area, in drawing coordinates, e.g.
+    // after the overlay was erased there
+    public void restamp(float left, float top, float right, float bottom) {
+        mStamps.reset();
+        mStamps.setClip(left, top, right, bottom);
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            int b = i * 4;
+            if(mDrawing[i] && mBrushStroke[i] && mStampBounds[b] <= right && mStampBounds[b + 2] >= left
+                    && mStampBounds[b + 1] <= bottom && mStampBounds[b + 3] >= top) {
+                StrokePoints points = mPoints[i];
+                mReplayStamper.begin(mStamps, mColors[i], mWidths[i],
+                        points.getX(0), points.getY(0), points.getSize(0));
+                for (int j = 1; j < points.size(); j++)
+                    mReplayStamper.add(mStamps, points.getX(j), points.getY(j), points.getSize(j));
+            }
+        }
+        mStamps.clearClip();    // the strokes' next stamps go anywhere
+    }
+
+    // set bounds, as left, top, right and bottom in drawing coordinates, to
+    // the area the strokes changed since the last call, and return false
+    // if they changed nothing
+    public boolean getChangedBounds(float[] bounds) {
+        if(!mChanged)
+            return false;
+
+        System.arraycopy(mChangedBounds, 0, bounds, 0, 4);
+        mChanged = false;
+        return true;
+    }
+
+    // add the area the stamper's latest stamps cover to the changed area
+    // and to the area of lineId's stroke
+    private void addStampBounds(int lineId, BrushStamper stamper) {
+        if(!stamper.getChangedBounds(mPieceBounds))
+            return;
+
+        addBounds(mPieceBounds, 0);
+        int b = lineId * 4;
+        mStampBounds[b] = Math.min(mStampBounds[b], mPieceBounds[0]);
+        mStampBounds[b + 1] = Math.min(mStampBounds[b + 1], mPieceBounds[1]);
+        mStampBounds[b + 2] = Math.max(mStampBounds[b + 2], mPieceBounds[2]);
+        mStampBounds[b + 3] = Math.max(mStampBounds[b + 3], mPieceBounds[3]);
+    }
+
+    // grow the changed area by bounds, widened by margin on each side
+    private void addBounds(float[] bounds, float margin) {
+        float left = bounds[0] - margin;
+        float top = bounds[1] - margin;
+        float right = bounds[2] + margin;
+        float bottom = bounds[3] + margin;
+        if(!mChanged) {
+            mChangedBounds[0] = left;
+            mChangedBounds[1] = top;
+            mChangedBounds[2] = right;
+            mChangedBounds[3] = bottom;
+            mChanged = true;
+        }
+        else {
+            mChangedBounds[0] = Math.min(mChangedBounds[0], left);
+            mChangedBounds[1] = Math.min(mChangedBounds[1], top);
+            mChangedBounds[2] = Math.max(mChangedBounds[2], right);
+            mChangedBounds[3] = Math.max(mChangedBounds[3], bottom);
+        }
+    }
+}
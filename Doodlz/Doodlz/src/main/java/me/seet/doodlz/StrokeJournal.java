@@ -0,0 +1,669 @@
+// StrokeJournal.java
+// Keeps the drawing on disk as it is drawn
+package me.seet.doodlz;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// appends every change to the UndoHistory (a stroke, undo, redo or clear)
+// and to the LayerStack to a journal file, so a drawing survives the
+// process being killed. The UI thread only queues the change; a
+// background thread writes whatever has queued up in one go, syncs the
+// file to disk at most every SYNC_INTERVAL, and when the journal grows
+// past COMPACT_SIZE writes the whole history to a snapshot file and starts
+// the journal again. On the next launch the snapshot is read and the
+// journal replayed on top of it.
+//
+// Both files start with a magic number, a version and the sequence number
+// of their first change. Journal records are a type byte, the length of
+// the data, the data and a CRC32 of type and data; a record cut short by
+// a crash fails its check and ends the replay. Strokes are now written
+// with their layer and, for a brush, the points' sizes; the older stroke
+// records are still read, as on the bottom layer. Since version 2 the
+// snapshot marks each stroke as line or brush, since version 3 it has
+// the layers and each stroke's layer, and since version 4 it ends with a
+// CRC32 of everything before it. A snapshot that fails its check or
+// doesn't hold the strokes it counts is ignored, as if there were none
+public class StrokeJournal {
+    // sync written changes to disk after this many milliseconds
+    public static final long SYNC_INTERVAL = 1000;
+
+    // journal size in bytes after which it is folded into the snapshot
+    public static final long COMPACT_SIZE = 256 * 1024;
+
+    private static final int JOURNAL_MAGIC = 0x444a4e4c;   // "DJNL"
+    private static final int SNAPSHOT_MAGIC = 0x44534e50;  // "DSNP"
+    private static final int JOURNAL_VERSION = 1;
+    private static final int SNAPSHOT_VERSION = 4;
+    private static final int HEADER_SIZE = 16;  // magic, version, sequence
+
+    // record types
+    private static final byte STROKE = 1;
+    private static final byte UNDO = 2;
+    private static final byte REDO = 3;
+    private static final byte CLEAR = 4;
+    private static final byte BRUSH_STROKE = 7;
+    private static final byte LAYERS = 8;
+    private static final byte LAYER_STROKE = 9;
+
+    // queued only for the writer
+    private static final byte FLUSH = 5;
+    private static final byte CLOSE = 6;
+    private static final byte REPLACE = 10;
+
+    // a change waiting for the writer
+    private static class Change {
+        final byte mType;
+        final int mLayer;
+        final int mColor;
+        final float mWidth;
+        final int[] mCoordinates;  // x, y pairs in StrokeLog units
+        final int[] mSizes; // of a brush stroke's points, in StrokeLog units
+        final LayerStack mLayers;   // a copy of all layers
+        final UndoHistory mHistory; // a copy of the whole history
+
+        Change(byte type) {
+            this(type, 0, 0, 0, null, null, null, null);
+        }
+
+        // a stroke
+        Change(int layer, int color, float width, int[] coordinates, int[] sizes) {
+            this(LAYER_STROKE, layer, color, width, coordinates, sizes, null, null);
+        }
+
+        // the layers
+        Change(LayerStack layers) {
+            this(LAYERS, 0, 0, 0, null, null, layers, null);
+        }
+
+        // a new history and layers
+        Change(UndoHistory history, LayerStack layers) {
+            this(REPLACE, 0, 0, 0, null, null, layers, history);
+        }
+
+        private Change(byte type, int layer, int color, float width, int[] coordinates, int[] sizes,
+                       LayerStack layers, UndoHistory history) {
+            mType = type;
+            mLayer = layer;
+            mColor = color;
+            mWidth = width;
+            mCoordinates = coordinates;
+            mSizes = sizes;
+            mLayers = layers;
+            mHistory = history;
+        }
+    }
+
+    private final File mJournalFile;
+    private final File mSnapshotFile;
+    private final LinkedBlockingQueue<Change> mQueue = new LinkedBlockingQueue<Change>();
+    private final Thread mWriter;
+    private volatile boolean mFailed;   // the writer stopped on an error
+
+    // the writer's own copy of the history and layers, for compacting, the
+    // sequence number of its next change and the journal's valid length;
+    // set by restore() before the writer starts and only used by it
+    // afterwards
+    private UndoHistory mHistory;
+    private LayerStack mLayers;
+    private long mSequence;
+    private long mJournalLength;
+    private boolean mCompactFirst;  // the journal starts before the snapshot
+
+    // restore what was saved in directory into history, which must be
+    // empty, and layers, and start journaling their changes
+    public StrokeJournal(File directory, UndoHistory history, LayerStack layers) {
+        directory.mkdirs();
+        mJournalFile = new File(directory, "strokes.journal");
+        mSnapshotFile = new File(directory, "strokes.snapshot");
+        restore(history, layers);
+
+        // the writer starts from a copy that shares history's strokes
+        StrokeLog log = history.getStrokeLog();
+        mHistory = new UndoHistory(log.snapshot(log.size()), history.getPosition());
+        mLayers = new LayerStack(layers);
+
+        mWriter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "StrokeJournal");
+        mWriter.setPriority(Thread.MIN_PRIORITY);   // drawing comes first
+        mWriter.start();
+    }
+
+    // a stroke was added to the history on a layer
+    public void addStroke(int layer, int color, float width, StrokePoints points, boolean brush) {
+        int[] coordinates = Arrays.copyOf(points.getCoordinates(), points.size() * 2);
+        int[] sizes = brush ? Arrays.copyOf(points.getSizes(), points.size()) : null;
+        addStroke(layer, color, width, coordinates, sizes);
+    }
+
+    // a stroke of x, y values and, for a brush, sizes in StrokeLog units
+    // was added; the journal keeps the arrays
+    void addStroke(int layer, int color, float width, int[] coordinates, int[] sizes) {
+        queue(new Change(layer, color, width, coordinates, sizes));
+    }
+
+    // the layers, or which one is active, changed
+    public void setLayers(LayerStack layers) {
+        queue(new Change(new LayerStack(layers)));
+    }
+
+    public void undo() {
+        queue(new Change(UNDO));
+    }
+
+    public void redo() {
+        queue(new Change(REDO));
+    }
+
+    // the history was cleared and the layers reset
+    public void clear() {
+        queue(new Change(CLEAR));
+    }
+
+    // history and layers were replaced as a whole, e.g. by an opened
+    // document; the journal saves them as one snapshot instead of a record
+    // per stroke
+    public void replace(UndoHistory history, LayerStack layers) {
+        StrokeLog log = history.getStrokeLog();
+        queue(new Change(new UndoHistory(log.snapshot(log.size()), history.getPosition()),
+                new LayerStack(layers)));
+    }
+
+    // sync everything queued so far to disk soon, e.g. when the app is
+    // left
+    public void flush() {
+        queue(new Change(FLUSH));
+    }
+
+    // write and sync what is queued, then stop the writer; waits for it,
+    // so another StrokeJournal may restore from the same files afterwards
+    public void close() {
+        queue(new Change(CLOSE));
+        try {
+            mWriter.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void queue(Change change) {
+        if(!mFailed)    // nothing would take it
+            mQueue.add(change);
+    }
+
+    // read the snapshot and replay the journal after it into history and
+    // layers
+    private void restore(UndoHistory history, LayerStack layers) {
+        long snapshotSequence = 0;
+        ByteBuffer snapshot = readFile(mSnapshotFile);
+        if(snapshot != null) {
+            try {
+                snapshotSequence = readSnapshot(snapshot, history, layers);
+            }
+            catch (RuntimeException e) {
+                history.clear();    // unreadable, as if there were none
+                layers.reset();
+            }
+        }
+        mSequence = snapshotSequence;
+
+        ByteBuffer journal = readFile(mJournalFile);
+        if(journal == null || journal.remaining() < HEADER_SIZE || journal.getInt() != JOURNAL_MAGIC ||
+                journal.getInt() != JOURNAL_VERSION)
+            return; // the writer starts a new journal
+
+        long sequence = journal.getLong();
+        mCompactFirst = sequence < snapshotSequence;
+        CRC32 crc = new CRC32();
+        while(journal.remaining() >= 5) {
+            int start = journal.position();
+            byte type = journal.get();
+            int length = journal.getInt();
+            if(length < 0 || journal.remaining() < length + 4) {
+                journal.position(start);    // cut short
+                break;
+            }
+
+            crc.reset();
+            crc.update(journal.array(), start, 1);
+            crc.update(journal.array(), start + 5, length);
+            int end = start + 5 + length;
+            if(journal.getInt(end) != (int)crc.getValue()) {
+                journal.position(start);
+                break;
+            }
+
+            if(sequence >= snapshotSequence) {  // not in the snapshot yet
+                try {
+                    apply(history, layers, type, journal);
+                }
+                catch (RuntimeException e) {
+                    journal.position(start);    // a record that checks out but can't be read
+                    break;
+                }
+            }
+            journal.position(end + 4);
+            ++sequence;
+        }
+
+        mSequence = Math.max(sequence, snapshotSequence);
+        mJournalLength = journal.position();
+    }
+
+    // read a snapshot into history and layers and return its sequence
+    // number
+    private static long readSnapshot(ByteBuffer buffer, UndoHistory history, LayerStack layers) {
+        if(buffer.getInt() != SNAPSHOT_MAGIC)
+            return 0;
+        int version = buffer.getInt();
+        if(version < 1 || version > SNAPSHOT_VERSION)
+            return 0;
+
+        // the CRC32 at the end covers everything before it
+        if(version >= 4) {
+            int end = buffer.limit() - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, end);
+            if(buffer.getInt(end) != (int)crc.getValue())
+                return 0;
+            buffer.limit(end);
+        }
+
+        long sequence = buffer.getLong();
+        int position = buffer.getInt();
+        if(version >= 3)
+            readLayers(buffer, layers);
+        int strokes = buffer.getInt();
+        for (int i = 0; i < strokes; i++) {
+            boolean brush = version >= 2 && buffer.get() != 0;
+            readStroke(history, buffer, version >= 3 ? buffer.getInt() : 0, brush);
+        }
+
+        // strokes after position were undone and can be redone
+        while(history.getPosition() > position)
+            history.undo();
+        return sequence;
+    }
+
+    // apply a change read from buffer to history or layers
+    private static void apply(UndoHistory history, LayerStack layers, byte type, ByteBuffer buffer) {
+        switch (type) {
+            case STROKE:
+            case BRUSH_STROKE:
+                readStroke(history, buffer, 0, type == BRUSH_STROKE);
+                break;
+            case LAYER_STROKE:
+                int layer = buffer.getInt();
+                readStroke(history, buffer, layer, buffer.get() != 0);
+                break;
+            case LAYERS:
+                readLayers(buffer, layers);
+                break;
+            case UNDO:
+                if(history.canUndo())
+                    history.undo();
+                break;
+            case REDO:
+                if(history.canRedo())
+                    history.redo();
+                break;
+            case CLEAR:
+                history.clear();
+                layers.reset();
+                break;
+        }
+    }
+
+    private static void readStroke(UndoHistory history, ByteBuffer buffer, int layer, boolean brush) {
+        int color = buffer.getInt();
+        float width = buffer.getFloat();
+        int count = buffer.getInt();
+
+        // x, y pairs and, for a brush, a size for each pair
+        if(count < 0 || count % 2 != 0 || count > buffer.remaining() / (brush ? 6 : 4))
+            throw new BufferUnderflowException();
+        int[] coordinates = new int[count];
+        buffer.asIntBuffer().get(coordinates);
+        buffer.position(buffer.position() + coordinates.length * 4);
+
+        int[] sizes = null;
+        if(brush) {
+            sizes = new int[coordinates.length / 2];
+            buffer.asIntBuffer().get(sizes);
+            buffer.position(buffer.position() + sizes.length * 4);
+        }
+        history.add(layer, color, width, coordinates, sizes, coordinates.length);
+    }
+
+    // the layers as a count, the active one and each one's opacity, blend
+    // mode and visibility
+    private static void readLayers(ByteBuffer buffer, LayerStack layers) {
+        int count = buffer.getInt();
+        int active = buffer.getInt();
+        if(count < 0 || count > buffer.remaining() / 6)
+            throw new BufferUnderflowException();
+        Layer.Blend[] blends = Layer.Blend.values();
+        List<Layer> list = new ArrayList<Layer>();
+        for (int i = 0; i < count; i++) {
+            Layer layer = new Layer();
+            layer.setOpacity(buffer.getInt());
+            int blend = buffer.get();
+            layer.setBlend(blend >= 0 && blend < blends.length ? blends[blend] : Layer.Blend.NORMAL);
+            layer.setVisible(buffer.get() != 0);
+            if(list.size() < LayerStack.MAX_LAYERS)
+                list.add(layer);
+        }
+        layers.set(list, active);
+    }
+
+    private static void writeLayers(ByteBuffer buffer, LayerStack layers) {
+        buffer.putInt(layers.size());
+        buffer.putInt(layers.getActive());
+        for (int i = 0; i < layers.size(); i++) {
+            Layer layer = layers.get(i);
+            buffer.putInt(layer.getOpacity());
+            buffer.put((byte)layer.getBlend().ordinal());
+            buffer.put((byte)(layer.isVisible() ? 1 : 0));
+        }
+    }
+
+    private static int getLayersLength(LayerStack layers) {
+        return 8 + layers.size() * 6;
+    }
+
+    // the whole file in a buffer; null if it can't be read
+    private static ByteBuffer readFile(File file) {
+        if(!file.exists())
+            return null;
+
+        try {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                FileChannel channel = in.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+                while(buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                }
+                buffer.flip();
+                return buffer;
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    // the writer thread: take whatever changes have queued up, append them
+    // to the journal in one write, and sync when SYNC_INTERVAL has passed
+    private void write() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        List<Change> changes = new ArrayList<Change>();
+        CRC32 crc = new CRC32();
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mJournalFile, "rw");
+            FileChannel channel = file.getChannel();
+            channel.truncate(mJournalLength);   // drop a record cut short
+            channel.position(mJournalLength);
+            if(mCompactFirst)
+                buffer = compact(channel, buffer);
+            else if(mJournalLength == 0) {
+                buffer.clear();
+                writeHeader(buffer, JOURNAL_MAGIC, JOURNAL_VERSION, mSequence);
+                writeAll(channel, buffer);
+            }
+
+            boolean unsynced = false;
+            long lastSync = System.currentTimeMillis();
+            boolean closing = false;
+            while(!closing) {
+                // wait for a change, or until the written ones are due a sync
+                Change first;
+                if(unsynced)
+                    first = mQueue.poll(Math.max(0, lastSync + SYNC_INTERVAL - System.currentTimeMillis()),
+                            TimeUnit.MILLISECONDS);
+                else
+                    first = mQueue.take();
+
+                boolean flushing = false;
+                if(first != null) {
+                    changes.add(first);
+                    mQueue.drainTo(changes);
+
+                    buffer.clear();
+                    for (Change change : changes) {
+                        if(change.mType == CLOSE)
+                            closing = true;
+                        else if(change.mType == FLUSH)
+                            flushing = true;
+                        else if(change.mType == REPLACE) {
+                            // the records before it go out first, then a
+                            // snapshot of the new history replaces them all
+                            if(buffer.position() > 0)
+                                writeAll(channel, buffer);
+                            mHistory = change.mHistory;
+                            mLayers = change.mLayers;
+                            buffer = compact(channel, buffer);
+                            buffer.clear();
+                        }
+                        else {
+                            buffer = writeRecord(channel, buffer, crc, change);
+                            apply(change);
+                        }
+                    }
+                    changes.clear();
+
+                    if(buffer.position() > 0) {
+                        writeAll(channel, buffer);
+                        unsynced = true;
+                    }
+                }
+
+                if(channel.size() > COMPACT_SIZE) {
+                    buffer = compact(channel, buffer);
+                    unsynced = false;   // compacting syncs both files
+                    lastSync = System.currentTimeMillis();
+                }
+                else if(unsynced && (first == null || flushing || closing ||
+                        System.currentTimeMillis() - lastSync >= SYNC_INTERVAL)) {
+                    channel.force(false);
+                    unsynced = false;
+                    lastSync = System.currentTimeMillis();
+                }
+            }
+        }
+        catch (IOException e) {
+            mFailed = true; // the drawing goes on without being saved
+            mQueue.clear();
+        }
+        catch (InterruptedException e) {
+            mFailed = true;
+            mQueue.clear();
+        }
+        finally {
+            if(file != null) {
+                try {
+                    file.close();
+                }
+                catch (IOException e) {
+                    // nothing more to save
+                }
+            }
+        }
+    }
+
+    // append a change's record to buffer, writing the buffer out first if
+    // the record doesn't fit; returns the buffer, which may be a larger one
+    private ByteBuffer writeRecord(FileChannel channel, ByteBuffer buffer, CRC32 crc, Change change)
+            throws IOException {
+        int length = 0;
+        if(change.mType == LAYER_STROKE)
+            length = 17 + change.mCoordinates.length * 4 + (change.mSizes != null ? change.mSizes.length * 4 : 0);
+        else if(change.mType == LAYERS)
+            length = getLayersLength(change.mLayers);
+        buffer = ensureRemaining(channel, buffer, 5 + length + 4);
+
+        int start = buffer.position();
+        buffer.put(change.mType);
+        buffer.putInt(length);
+        if(change.mType == LAYERS)
+            writeLayers(buffer, change.mLayers);
+        else if(change.mType == LAYER_STROKE) {
+            buffer.putInt(change.mLayer);
+            buffer.put((byte)(change.mSizes != null ? 1 : 0));
+            buffer.putInt(change.mColor);
+            buffer.putFloat(change.mWidth);
+            buffer.putInt(change.mCoordinates.length);
+            putInts(buffer, change.mCoordinates);
+            if(change.mSizes != null)
+                putInts(buffer, change.mSizes);
+        }
+
+        crc.reset();
+        crc.update(buffer.array(), start, 1);
+        crc.update(buffer.array(), start + 5, length);
+        buffer.putInt((int)crc.getValue());
+        ++mSequence;
+        return buffer;
+    }
+
+    // apply a written change to the writer's copy of the history
+    private void apply(Change change) {
+        switch (change.mType) {
+            case LAYER_STROKE:
+                mHistory.add(change.mLayer, change.mColor, change.mWidth, change.mCoordinates, change.mSizes,
+                        change.mCoordinates.length);
+                break;
+            case LAYERS:
+                mLayers = change.mLayers;   // a copy already
+                break;
+            case UNDO:
+                if(mHistory.canUndo())
+                    mHistory.undo();
+                break;
+            case REDO:
+                if(mHistory.canRedo())
+                    mHistory.redo();
+                break;
+            case CLEAR:
+                mHistory.clear();
+                mLayers.reset();
+                break;
+        }
+    }
+
+    // write the whole history and the layers to the snapshot file, replace
+    // the old one with it and start the journal again after it
+    private ByteBuffer compact(FileChannel journal, ByteBuffer buffer) throws IOException {
+        File temporary = new File(mSnapshotFile.getPath() + ".tmp");
+        RandomAccessFile file = new RandomAccessFile(temporary, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            channel.truncate(0);
+
+            StrokeLog log = mHistory.getStrokeLog();
+            CRC32 crc = new CRC32();
+            buffer.clear();
+            writeHeader(buffer, SNAPSHOT_MAGIC, SNAPSHOT_VERSION, mSequence);
+            buffer.putInt(mHistory.getPosition());
+            buffer = ensureRemaining(channel, buffer, getLayersLength(mLayers) + 4, crc);
+            writeLayers(buffer, mLayers);
+            buffer.putInt(log.size());
+            for (int i = 0; i < log.size(); i++) {
+                boolean brush = log.isBrush(i);
+                int count = log.getPointCount(i) * 2;
+                buffer = ensureRemaining(channel, buffer, 17 + count * 4 + (brush ? count * 2 : 0), crc);
+                buffer.put((byte)(brush ? 1 : 0));
+                buffer.putInt(log.getLayer(i));
+                buffer.putInt(log.getColor(i));
+                buffer.putFloat(log.getWidth(i));
+                buffer.putInt(count);
+                for (int j = 0; j < count; j++)
+                    buffer.putInt(log.getCoordinate(i, j));
+                if(brush)
+                    for (int j = 0; j < count / 2; j++)
+                        buffer.putInt(log.getSizeValue(i, j));
+            }
+            buffer = ensureRemaining(channel, buffer, 4, crc);
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.putInt((int)crc.getValue());
+            writeAll(channel, buffer);
+            channel.force(false);
+        }
+        finally {
+            file.close();
+        }
+
+        // a crash before this leaves the old snapshot and journal, and
+        // one after it a journal the snapshot already holds, which restore
+        // skips
+        if(!temporary.renameTo(mSnapshotFile))
+            throw new IOException("can't replace " + mSnapshotFile);
+
+        journal.truncate(0);
+        journal.position(0);
+        buffer.clear();
+        writeHeader(buffer, JOURNAL_MAGIC, JOURNAL_VERSION, mSequence);
+        writeAll(journal, buffer);
+        journal.force(false);
+        return buffer;
+    }
+
+    private static void writeHeader(ByteBuffer buffer, int magic, int version, long sequence) {
+        buffer.putInt(magic);
+        buffer.putInt(version);
+        buffer.putLong(sequence);
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * 4);
+    }
+
+    // make room for count more bytes in buffer, writing out what it holds
+    // or, for a record larger than the buffer, moving to a larger one
+    private static ByteBuffer ensureRemaining(FileChannel channel, ByteBuffer buffer, int count)
+            throws IOException {
+        return ensureRemaining(channel, buffer, count, null);
+    }
+
+    // the same, adding what is written out to crc unless it is null
+    private static ByteBuffer ensureRemaining(FileChannel channel, ByteBuffer buffer, int count, CRC32 crc)
+            throws IOException {
+        if(buffer.remaining() >= count)
+            return buffer;
+
+        if(crc != null)
+            crc.update(buffer.array(), 0, buffer.position());
+        writeAll(channel, buffer);
+        if(buffer.capacity() < count)
+            buffer = ByteBuffer.allocate(Integer.highestOneBit(count) * 2);
+        return buffer;
+    }
+
+    // write out what buffer holds and clear it
+    private static void writeAll(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
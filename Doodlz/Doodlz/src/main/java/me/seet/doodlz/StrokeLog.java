@@ -0,0 +1,280 @@
+// StrokeLog.java
+// Compact record of the finished strokes of a drawing
+package me.seet.doodlz;
+
+import java.util.Arrays;
+
+// stores each stroke as its layer, color, width and points, with all
+// points in one array of fixed-point ints, and for brush strokes the size
+// of each point in another; a few bytes per point instead of the
+// megabytes a bitmap snapshot of the screen takes. A snapshot shares the
+// arrays and the log copies them only before it would overwrite strokes
+// the snapshot still reads, so a worker thread can draw a snapshot while
+// the user keeps drawing
+public class StrokeLog {
+    // points are stored in steps of 1/QUANTUM of a pixel
+    public static final int QUANTUM = 8;
+
+    // brush sizes are stored in steps of 1/SIZE_QUANTUM of the line width
+    public static final int SIZE_QUANTUM = 256;
+
+    private int[] mCoordinates; // x, y pairs of all strokes
+    private int mCoordinateCount;
+    private int[] mStarts;  // first coordinate of each stroke
+    private int[] mSizes;   // point sizes of all brush strokes
+    private int mSizeCount;
+    private int[] mSizeStarts;  // first size of each stroke; pen strokes have none
+    private int[] mLayers;  // layer each stroke was drawn on
+    private int[] mColors;
+    private float[] mWidths;
+    private float[] mBounds;    // left, top, right, bottom of each stroke
+    private int mStrokeCount;
+
+    // strokes and coordinates a snapshot reads from the arrays above
+    private int mSharedStrokes;
+    private int mSharedCoordinates;
+    private int mSharedSizes;
+
+    public StrokeLog() {
+        this(64, 4096);
+    }
+
+    // a log with room for the given number of strokes and x, y values
+    // before it has to grow, e.g. for a document of known size
+    public StrokeLog(int strokes, int coordinates) {
+        strokes = Math.max(strokes, 1);
+        mCoordinates = new int[Math.max(coordinates, 2)];
+        mStarts = new int[strokes];
+        mSizes = new int[64];
+        mSizeStarts = new int[strokes];
+        mLayers = new int[strokes];
+        mColors = new int[strokes];
+        mWidths = new float[strokes];
+        mBounds = new float[strokes * 4];
+    }
+
+    // convert pixels to the stored fixed-point value
+    public static int quantise(float value) {
+        return Math.round(value * QUANTUM);
+    }
+
+    // convert a stored fixed-point value to pixels
+    public static float toPixels(int value) {
+        return (float)value / QUANTUM;
+    }
+
+    // convert a brush size to the stored fixed-point value
+    public static int quantiseSize(float size) {
+        return Math.round(size * SIZE_QUANTUM);
+    }
+
+    // convert a stored fixed-point value to a brush size
+    public static float toSize(int value) {
+        return (float)value / SIZE_QUANTUM;
+    }
+
+    // an unchanging copy of the first count strokes, made in constant time
+    public StrokeLog snapshot(int count) {
+        StrokeLog snapshot = new StrokeLog(1, 2);  // arrays replaced below
+        snapshot.mCoordinates = mCoordinates;
+        snapshot.mStarts = mStarts;
+        snapshot.mSizes = mSizes;
+        snapshot.mSizeStarts = mSizeStarts;
+        snapshot.mLayers = mLayers;
+        snapshot.mColors = mColors;
+        snapshot.mWidths = mWidths;
+        snapshot.mBounds = mBounds;
+        snapshot.mCoordinateCount = count > 0 ? end(count - 1) : 0;
+        snapshot.mSizeCount = count > 0 ? sizeEnd(count - 1) : 0;
+        snapshot.mStrokeCount = count;
+
+        // the snapshot copies before any change, as its strokes may be ours
+        snapshot.mSharedStrokes = Integer.MAX_VALUE;
+        mSharedStrokes = Math.max(mSharedStrokes, count);
+        mSharedCoordinates = Math.max(mSharedCoordinates, snapshot.mCoordinateCount);
+        mSharedSizes = Math.max(mSharedSizes, snapshot.mSizeCount);
+        return snapshot;
+    }
+
+    // append a finished stroke on a layer; a brush stroke keeps its
+    // points' sizes
+    public void add(int layer, int color, float width, StrokePoints points, boolean brush) {
+        add(layer, color, width, points.getCoordinates(), brush ? points.getSizes() : null, points.size() * 2);
+    }
+
+    // append a stroke from count fixed-point x, y values and, for a brush
+    // stroke, count / 2 fixed-point sizes, as StrokeJournal reads them back
+    void add(int layer, int color, float width, int[] coordinates, int[] sizes, int count) {
+        // after truncate() or clear() the stroke may go where a snapshot reads
+        if(mStrokeCount < mSharedStrokes || mCoordinateCount < mSharedCoordinates || mSizeCount < mSharedSizes)
+            unshare();
+
+        if(mStrokeCount == mStarts.length) {
+            int capacity = mStarts.length * 2;
+            mStarts = Arrays.copyOf(mStarts, capacity);
+            mSizeStarts = Arrays.copyOf(mSizeStarts, capacity);
+            mLayers = Arrays.copyOf(mLayers, capacity);
+            mColors = Arrays.copyOf(mColors, capacity);
+            mWidths = Arrays.copyOf(mWidths, capacity);
+            mBounds = Arrays.copyOf(mBounds, capacity * 4);
+        }
+
+        if(mCoordinateCount + count > mCoordinates.length)
+            mCoordinates = Arrays.copyOf(mCoordinates,
+                    Math.max(mCoordinateCount + count, mCoordinates.length * 2));
+
+        System.arraycopy(coordinates, 0, mCoordinates, mCoordinateCount, count);
+        mStarts[mStrokeCount] = mCoordinateCount;
+
+        // the largest size is what the line's width reaches
+        int maxSize = SIZE_QUANTUM;
+        mSizeStarts[mStrokeCount] = mSizeCount;
+        if(sizes != null) {
+            if(mSizeCount + count / 2 > mSizes.length)
+                mSizes = Arrays.copyOf(mSizes, Math.max(mSizeCount + count / 2, mSizes.length * 2));
+            System.arraycopy(sizes, 0, mSizes, mSizeCount, count / 2);
+            maxSize = 0;
+            for (int i = 0; i < count / 2; i++)
+                maxSize = Math.max(maxSize, sizes[i]);
+            mSizeCount += count / 2;
+        }
+        mLayers[mStrokeCount] = layer;
+        mColors[mStrokeCount] = color;
+        mWidths[mStrokeCount] = width;
+
+        // the area the stroke covers: its points, plus half the widest line and
+        // a pixel of antialiasing around them; the StrokeCurve through the
+        // points swings out by at most a third of the longest step
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        int maxStep = 0;
+        for (int i = mCoordinateCount; i < mCoordinateCount + count; i += 2) {
+            minX = Math.min(minX, mCoordinates[i]);
+            maxX = Math.max(maxX, mCoordinates[i]);
+            minY = Math.min(minY, mCoordinates[i + 1]);
+            maxY = Math.max(maxY, mCoordinates[i + 1]);
+            if(i > mCoordinateCount)
+                maxStep = Math.max(maxStep, Math.max(Math.abs(mCoordinates[i] - mCoordinates[i - 2]),
+                        Math.abs(mCoordinates[i + 1] - mCoordinates[i - 1])));
+        }
+        float margin = width * toSize(maxSize) / 2 + 1 + toPixels(maxStep) / 3;
+        mBounds[mStrokeCount * 4] = toPixels(minX) - margin;
+        mBounds[mStrokeCount * 4 + 1] = toPixels(minY) - margin;
+        mBounds[mStrokeCount * 4 + 2] = toPixels(maxX) + margin;
+        mBounds[mStrokeCount * 4 + 3] = toPixels(maxY) + margin;
+
+        mCoordinateCount += count;
+        ++mStrokeCount;
+    }
+
+    // number of strokes in the log
+    public int size() {
+        return mStrokeCount;
+    }
+
+    // layer a stroke was drawn on, 0 being the bottom one
+    public int getLayer(int stroke) {
+        return mLayers[stroke];
+    }
+
+    public int getColor(int stroke) {
+        return mColors[stroke];
+    }
+
+    public float getWidth(int stroke) {
+        return mWidths[stroke];
+    }
+
+    public int getPointCount(int stroke) {
+        return (end(stroke) - mStarts[stroke]) / 2;
+    }
+
+    // whether a stroke may draw inside the given rectangle
+    public boolean intersects(int stroke, float left, float top, float right, float bottom) {
+        int i = stroke * 4;
+        return mBounds[i] < right && mBounds[i + 2] > left && mBounds[i + 1] < bottom && mBounds[i + 3] > top;
+    }
+
+    // left, top, right or bottom (side 0 to 3) of the area a stroke covers
+    public float getBounds(int stroke, int side) {
+        return mBounds[stroke * 4 + side];
+    }
+
+    // x of a stroke's point, in pixels
+    public float getX(int stroke, int point) {
+        return toPixels(mCoordinates[mStarts[stroke] + point * 2]);
+    }
+
+    // y of a stroke's point, in pixels
+    public float getY(int stroke, int point) {
+        return toPixels(mCoordinates[mStarts[stroke] + point * 2 + 1]);
+    }
+
+    // whether a stroke is stamped with a brush rather than drawn as a line
+    public boolean isBrush(int stroke) {
+        return sizeEnd(stroke) > mSizeStarts[stroke];
+    }
+
+    // brush size of a stroke's point, relative to its width; 1 for a line
+    public float getSize(int stroke, int point) {
+        return isBrush(stroke) ? toSize(mSizes[mSizeStarts[stroke] + point]) : 1;
+    }
+
+    // a brush stroke's point size as stored, in 1/SIZE_QUANTUM
+    int getSizeValue(int stroke, int point) {
+        return mSizes[mSizeStarts[stroke] + point];
+    }
+
+    // a stroke's x (even index) or y (odd index) as stored, in 1/QUANTUM
+    // pixels
+    int getCoordinate(int stroke, int index) {
+        return mCoordinates[mStarts[stroke] + index];
+    }
+
+    // keep only the first count strokes
+    public void truncate(int count) {
+        if(count < mStrokeCount) {
+            mCoordinateCount = mStarts[count];
+            mSizeCount = mSizeStarts[count];
+            mStrokeCount = count;
+        }
+    }
+
+    // remove all strokes
+    public void clear() {
+        mCoordinateCount = 0;
+        mSizeCount = 0;
+        mStrokeCount = 0;
+    }
+
+    // memory held by the log's arrays
+    public long getByteCount() {
+        return 4L * (mCoordinates.length + mStarts.length + mSizes.length + mSizeStarts.length + mLayers.length +
+                mColors.length + mWidths.length + mBounds.length);
+    }
+
+    // copy the arrays so snapshots keep the old ones to themselves
+    private void unshare() {
+        mCoordinates = mCoordinates.clone();
+        mStarts = mStarts.clone();
+        mSizes = mSizes.clone();
+        mSizeStarts = mSizeStarts.clone();
+        mLayers = mLayers.clone();
+        mColors = mColors.clone();
+        mWidths = mWidths.clone();
+        mBounds = mBounds.clone();
+        mSharedStrokes = 0;
+        mSharedCoordinates = 0;
+        mSharedSizes = 0;
+    }
+
+    // index just past a stroke's last coordinate
+    private int end(int stroke) {
+        return stroke + 1 < mStrokeCount ? mStarts[stroke + 1] : mCoordinateCount;
+    }
+
+    // index just past a stroke's last size
+    private int sizeEnd(int stroke) {
+        return stroke + 1 < mStrokeCount ? mSizeStarts[stroke + 1] : mSizeCount;
+    }
+}
@@ -0,0 +1,101 @@
+// StrokePainter.java
+// Draws strokes from a StrokeLog
+package me.seet.doodlz;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Shader;
+
+import java.util.Random;
+
+// rebuilds a logged stroke's Path with the StrokeCurve DoodleView uses
+// while the finger moves, and draws it with the stroke's own color and
+// width; a brush stroke is stamped with a BrushStamper instead and drawn
+// in one drawVertices call
+public class StrokePainter {
+    // the brush texture's grain is the same on every run
+    private static final long GRAIN_SEED = 0x446f6f646c7aL;
+
+    private final StrokePath mPath = new StrokePath();
+    private final StrokeCurve mCurve = new StrokeCurve();
+    private final Paint mPaint;
+    private final BrushStamper mStamper = new BrushStamper();
+    private final StampBatch mStamps = new StampBatch();
+    private final Paint mStampPaint = createStampPaint();
+
+    public StrokePainter() {
+        // same settings as the DoodleView's line
+        mPaint = new Paint();
+        mPaint.setAntiAlias(true);
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    // draw a stroke in drawing coordinates
+    public void draw(Canvas canvas, StrokeLog log, int stroke) {
+        if(log.isBrush(stroke)) {
+            drawBrush(canvas, log, stroke);
+            return;
+        }
+
+        mPath.reset();
+        mCurve.begin(mPath, log.getX(stroke, 0), log.getY(stroke, 0));
+        for (int i = 1; i < log.getPointCount(stroke); i++)
+            mCurve.add(mPath, log.getX(stroke, i), log.getY(stroke, i));
+        mCurve.finish(mPath);
+
+        mPaint.setColor(log.getColor(stroke));
+        mPaint.setStrokeWidth(log.getWidth(stroke));
+        canvas.drawPath(mPath, mPaint);
+    }
+
+    // a Paint that draws StampBatch stamps with the brush texture: a soft
+    // disc roughened by grain, white so each stamp's color tints it
+    public static Paint createStampPaint() {
+        int size = StampBatch.TEXTURE_SIZE;
+        int[] pixels = new int[size * size];
+        Random grain = new Random(GRAIN_SEED);
+        float center = (size - 1) / 2f;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                float dx = (x - center) / center;
+                float dy = (y - center) / center;
+                float distance = (float)Math.sqrt(dx * dx + dy * dy);
+
+                // opaque inside 3/4 of the radius, fading to the edge
+                float edge = Math.max(0, Math.min((1 - distance) * 4, 1));
+                edge = edge * edge * (3 - 2 * edge);
+                float alpha = edge * (0.6f + 0.4f * grain.nextFloat());
+                pixels[y * size + x] = Math.round(alpha * 255) << 24 | 0xffffff;
+            }
+        }
+
+        Bitmap texture = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        texture.setPixels(pixels, 0, size, 0, 0, size, size);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        paint.setShader(new BitmapShader(texture, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+        return paint;
+    }
+
+    // stamp a brush stroke and draw all its stamps at once
+    private void drawBrush(Canvas canvas, StrokeLog log, int stroke) {
+        mStamps.reset();
+        mStamper.begin(mStamps, log.getColor(stroke), log.getWidth(stroke),
+                log.getX(stroke, 0), log.getY(stroke, 0), log.getSize(stroke, 0));
+        for (int i = 1; i < log.getPointCount(stroke); i++)
+            mStamper.add(mStamps, log.getX(stroke, i), log.getY(stroke, i), log.getSize(stroke, i));
+        mStamper.finish(mStamps);
+        drawStamps(canvas, mStamps, mStampPaint);
+    }
+
+    // draw every stamp in stamps with paint, whose shader must be the
+    // brush texture; drawVertices isn't hardware accelerated before
+    // Android 10, so canvas should draw into a bitmap
+    public static void drawStamps(Canvas canvas, StampBatch stamps, Paint paint) {
+        if(!stamps.isEmpty())
+            canvas.drawVertices(Canvas.VertexMode.TRIANGLES, stamps.size() * 12, stamps.getVertices(), 0,
+                    stamps.getTextureCoordinates(), 0, stamps.getColors(), 0, null, 0, 0, paint);
+    }
+}
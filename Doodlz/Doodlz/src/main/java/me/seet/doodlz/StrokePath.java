@@ -0,0 +1,10 @@
+// StrokePath.java
+// A Path that a StrokeCurve can be built into
+package me.seet.doodlz;
+
+import android.graphics.Path;
+
+// Path already has reset, moveTo and cubicTo, so it only has to say it
+// is a StrokeCurve.Sink
+public class StrokePath extends Path implements StrokeCurve.Sink {
+}
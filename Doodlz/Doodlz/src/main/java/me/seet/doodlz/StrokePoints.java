@@ -0,0 +1,82 @@
+// StrokePoints.java
+// Points of a stroke that is still being drawn
+package me.seet.doodlz;
+
+import java.util.Arrays;
+
+// growable list of quantised x, y pairs and brush sizes; one per finger
+// on the screen, reused from stroke to stroke and copied into the
+// StrokeLog at the end
+public class StrokePoints {
+    private int[] mCoordinates = new int[256];  // x, y pairs in StrokeLog units
+    private int[] mSizes = new int[128];    // brush size of each point, in StrokeLog units
+    private int mCount; // number of points
+
+    // forget the points of the previous stroke
+    public void reset() {
+        mCount = 0;
+    }
+
+    // add a point, rounded to the log's precision
+    public void add(float x, float y) {
+        add(x, y, 1);
+    }
+
+    // add a point with the size a brush stamps it at, relative to the
+    // line width
+    public void add(float x, float y, float size) {
+        if(mCount * 2 + 2 > mCoordinates.length) {
+            mCoordinates = Arrays.copyOf(mCoordinates, mCoordinates.length * 2);
+            mSizes = Arrays.copyOf(mSizes, mCoordinates.length / 2);
+        }
+
+        mCoordinates[mCount * 2] = StrokeLog.quantise(x);
+        mCoordinates[mCount * 2 + 1] = StrokeLog.quantise(y);
+        mSizes[mCount] = StrokeLog.quantiseSize(size);
+        ++mCount;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    // x of a point as it will be stored, in pixels
+    public float getX(int point) {
+        return StrokeLog.toPixels(mCoordinates[point * 2]);
+    }
+
+    // y of a point as it will be stored, in pixels
+    public float getY(int point) {
+        return StrokeLog.toPixels(mCoordinates[point * 2 + 1]);
+    }
+
+    // x of the last point as it will be stored, in pixels
+    public float getLastX() {
+        return StrokeLog.toPixels(mCoordinates[mCount * 2 - 2]);
+    }
+
+    // y of the last point as it will be stored, in pixels
+    public float getLastY() {
+        return StrokeLog.toPixels(mCoordinates[mCount * 2 - 1]);
+    }
+
+    // brush size of a point as it will be stored
+    public float getSize(int point) {
+        return StrokeLog.toSize(mSizes[point]);
+    }
+
+    // brush size of the last point as it will be stored
+    public float getLastSize() {
+        return StrokeLog.toSize(mSizes[mCount - 1]);
+    }
+
+    // the first size() * 2 ints are the quantised x, y pairs
+    int[] getCoordinates() {
+        return mCoordinates;
+    }
+
+    // the first size() ints are the quantised sizes
+    int[] getSizes() {
+        return mSizes;
+    }
+}
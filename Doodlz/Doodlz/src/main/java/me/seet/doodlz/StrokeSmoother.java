@@ -0,0 +1,103 @@
+// StrokeSmoother.java
+// Cleans up the touch samples of a stroke before they are kept
+package me.seet.doodlz;
+
+// takes every touch sample of one finger, including the historical ones
+// Android batches between frames, and passes on those that move far enough
+// from the last one kept; in ONE_EURO mode the samples first go through a
+// one-euro filter, which smooths jitter strongly when the finger is slow
+// and barely at all when it is fast, so lines are steady without lagging.
+// Each sample takes constant time
+public class StrokeSmoother {
+    public enum Mode {
+        CATMULL_ROM,    // curve through the samples as they are
+        ONE_EURO    // curve through the filtered samples
+    }
+
+    // samples closer than this to the last one kept, in screen pixels,
+    // don't change the curve
+    public static final float MIN_SPACING = 2;
+
+    // one-euro filter settings: cutoff frequency in Hz for a still finger,
+    // how much it rises per pixel per second of speed, and the cutoff for
+    // the speed estimate
+    public static final float MIN_CUTOFF = 1.5f;
+    public static final float BETA = 0.02f;
+    public static final float SPEED_CUTOFF = 1;
+
+    private Mode mMode = Mode.CATMULL_ROM;
+    private float mX;   // position after filtering
+    private float mY;
+    private float mSpeedX;  // filtered speed in pixels per second
+    private float mSpeedY;
+    private long mTime; // of the last sample, in milliseconds
+    private float mKeptX;   // last sample passed on
+    private float mKeptY;
+
+    public void setMode(Mode mode) {
+        mMode = mode;
+    }
+
+    public Mode getMode() {
+        return mMode;
+    }
+
+    // start a stroke at the first sample, which is always kept
+    public void begin(float x, float y, long time) {
+        mX = mKeptX = x;
+        mY = mKeptY = y;
+        mSpeedX = 0;
+        mSpeedY = 0;
+        mTime = time;
+    }
+
+    // take the next sample; returns true if the stroke should go on to
+    // getX(), getY()
+    public boolean add(float x, float y, long time) {
+        if(mMode == Mode.ONE_EURO)
+            filter(x, y, time);
+        else {
+            mX = x;
+            mY = y;
+        }
+        mTime = time;
+
+        float dx = mX - mKeptX;
+        float dy = mY - mKeptY;
+        if(dx * dx + dy * dy < MIN_SPACING * MIN_SPACING)
+            return false;
+
+        mKeptX = mX;
+        mKeptY = mY;
+        return true;
+    }
+
+    public float getX() {
+        return mKeptX;
+    }
+
+    public float getY() {
+        return mKeptY;
+    }
+
+    // one-euro filter step: low-pass the speed, then low-pass the
+    // position with a cutoff that rises with that speed
+    private void filter(float x, float y, long time) {
+        float dt = Math.max(time - mTime, 1) / 1000f;  // samples can share a time stamp
+
+        float speedAlpha = getAlpha(SPEED_CUTOFF, dt);
+        mSpeedX += speedAlpha * ((x - mX) / dt - mSpeedX);
+        mSpeedY += speedAlpha * ((y - mY) / dt - mSpeedY);
+
+        float speed = (float)Math.sqrt(mSpeedX * mSpeedX + mSpeedY * mSpeedY);
+        float alpha = getAlpha(MIN_CUTOFF + BETA * speed, dt);
+        mX += alpha * (x - mX);
+        mY += alpha * (y - mY);
+    }
+
+    // smoothing factor of a low-pass filter with the given cutoff
+    private static float getAlpha(float cutoff, float dt) {
+        float tau = 1 / (2 * (float)Math.PI * cutoff);
+        return 1 / (1 + tau / dt);
+    }
+}
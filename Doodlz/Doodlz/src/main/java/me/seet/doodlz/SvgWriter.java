@@ -0,0 +1,85 @@
+// SvgWriter.java
+// Exports the drawing as an SVG image
+package me.seet.doodlz;
+
+import java.io.IOException;
+
+// writes each stroke as an SVG path of cubic curves, on a white page the
+// size of the drawing
+public class SvgWriter extends VectorWriter {
+    public static final String MIME_TYPE = "image/svg+xml";
+    public static final String EXTENSION = ".svg";
+
+    @Override
+    protected void beginDocument(float left, float top, float right, float bottom) throws IOException {
+        write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+        writeNumber(right - left);
+        write("\" height=\"");
+        writeNumber(bottom - top);
+        write("\" viewBox=\"");
+        writeNumber(left);
+        write(" ");
+        writeNumber(top);
+        write(" ");
+        writeNumber(right - left);
+        write(" ");
+        writeNumber(bottom - top);
+        write("\">\n");
+
+        // the app's white background, which the eraser paints with
+        write("<rect x=\"");
+        writeNumber(left);
+        write("\" y=\"");
+        writeNumber(top);
+        write("\" width=\"100%\" height=\"100%\" fill=\"#ffffff\"/>\n");
+    }
+
+    // Android's default miter join and limit of 4 are also SVG's
+    @Override
+    protected void beginStroke(int color, float width) throws IOException {
+        write("<path fill=\"none\" stroke-linecap=\"round\" stroke=\"");
+        write(getHex(color));
+        if(getOpacity(color) < 1) {
+            write("\" stroke-opacity=\"");
+            writeNumber(getOpacity(color));
+        }
+        write("\" stroke-width=\"");
+        writeNumber(width);
+        write("\" d=\"");
+    }
+
+    @Override
+    protected void moveTo(float x, float y) throws IOException {
+        write("M");
+        writeNumber(x);
+        write(" ");
+        writeNumber(y);
+    }
+
+    @Override
+    protected void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) throws IOException {
+        write("C");
+        writeNumber(x1);
+        write(" ");
+        writeNumber(y1);
+        write(" ");
+        writeNumber(x2);
+        write(" ");
+        writeNumber(y2);
+        write(" ");
+        writeNumber(x3);
+        write(" ");
+        writeNumber(y3);
+    }
+
+    @Override
+    protected void endStroke() throws IOException {
+        write("\"/>\n");
+    }
+
+    @Override
+    protected void endDocument() throws IOException {
+        write("</svg>\n");
+    }
+}
@@ -0,0 +1,537 @@
+// TileCache.java
+// The unbounded drawing, rasterised on demand into tiles
+package me.seet.doodlz;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// draws the shown strokes of an UndoHistory as TILE_SIZE squares at the
+// zoom level the Viewport asks for, rasterising a tile from the strokes
+// the first time it is shown; the most recently used tiles stay in memory
+// up to a byte budget, older ones are written to disk as PNG on a
+// background thread and read back on it when they are shown again; until
+// a tile is read, the screen shows it from a coarser tile or not at all.
+// Only tiles that have strokes on them exist at all. A cache may hold only
+// a range of the layers, flattened with their opacity and blend modes or,
+// for the layer being drawn on, as its bare strokes
+public class TileCache {
+    // width and height of a tile in pixels
+    public static final int TILE_SIZE = 256;
+
+    // bytes of one tile in memory
+    public static final long TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+
+    // about 128 tiles, a few screens full
+    public static final long DEFAULT_BUDGET = 32L * 1024 * 1024;
+
+    // levels up a tile being read from disk is looked for in memory
+    private static final int COARSER_LEVELS = 3;
+
+    // told, on a background thread, that a tile has been read back from
+    // disk and can be drawn
+    public interface Listener {
+        void onTileRead();
+    }
+
+    private final UndoHistory mHistory;
+    private final LayerStack mLayers;
+    private final StrokePainter mPainter = new StrokePainter();
+    private final Paint mLayerPaint = new Paint();  // composites a layer in a tile
+    private final Canvas mTileCanvas = new Canvas();    // draws into one tile
+    private final RectF mDestination = new RectF(); // where a tile goes on screen
+    private final Rect mSource = new Rect();    // the part of a coarser tile shown instead
+
+    // tiles in memory by key, and their total size; a tile that was shown
+    // but has no strokes on it is kept as a null bitmap
+    private final LongLruMap<Bitmap> mTiles = new LongLruMap<Bitmap>(256);
+    private long mByteCount;
+    private long mBudget = DEFAULT_BUDGET;
+
+    // the layers in the tiles, whether they are flattened with their
+    // opacity and blend modes, and whether the tiles have the white paper
+    // under them or are clear for drawing over other tiles
+    private int mFirstLayer;
+    private int mLastLayer = LayerStack.MAX_LAYERS - 1;
+    private boolean mComposite = true;
+    private boolean mBackground = true;
+
+    // tiles being written to disk, tiles on disk, tiles being read back
+    // and tiles read but not drawn yet; guarded by mSpilled
+    private final File mSpillDirectory;
+    private final Map<Long, Bitmap> mSpilling = new HashMap<Long, Bitmap>();
+    private final Set<Long> mSpilled = new HashSet<Long>();
+    private final Set<Long> mReading = new HashSet<Long>();
+    private final Map<Long, Bitmap> mRead = new HashMap<Long, Bitmap>();
+    private Listener mListener;
+
+    // writes or reads one tile at a time, so a tile is never written while
+    // an older copy is read, and lets its thread end when idle
+    private final ExecutorService mDisk = new ThreadPoolExecutor(0, 1,
+            1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    // tiles of every layer, spilled to spillDirectory; anything already in
+    // it is left over from an earlier run and deleted
+    public TileCache(UndoHistory history, LayerStack layers, File spillDirectory) {
+        mHistory = history;
+        mLayers = layers;
+        mSpillDirectory = spillDirectory;
+        mDisk.execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] files = mSpillDirectory.listFiles();
+                if(files != null)
+                    for (File file : files)
+                        file.delete();
+                mSpillDirectory.mkdirs();
+            }
+        });
+    }
+
+    // set the most memory the tiles may hold, in bytes
+    public void setBudget(long bytes) {
+        mBudget = bytes;
+        trim(0);
+    }
+
+    public long getBudget() {
+        return mBudget;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    // keep only the layers from first to last in the tiles, flattened if
+    // composite, over white if background; the tiles are drawn again if
+    // that changes. An empty range has no tiles
+    public void setLayers(int first, int last, boolean composite, boolean background) {
+        if(first == mFirstLayer && last == mLastLayer && composite == mComposite && background == mBackground)
+            return;
+
+        mFirstLayer = first;
+        mLastLayer = last;
+        mComposite = composite;
+        mBackground = background;
+        clear();
+    }
+
+    // draw the tiles that lie within clip onto canvas. Tiles on disk are
+    // read in the background and the listener told when they can be drawn,
+    // unless wait, when they are read before drawing, e.g. for printing
+    public void draw(Canvas canvas, Rect clip, Viewport viewport, Paint paint, boolean wait) {
+        if(mBackground)
+            canvas.drawColor(Color.WHITE);  // background where there are no strokes
+        if(mFirstLayer > mLastLayer)
+            return;
+
+        int level = viewport.getLevel();
+        float size = getTileSize(level);
+        int left = (int)Math.floor(viewport.toDrawingX(clip.left) / size);
+        int top = (int)Math.floor(viewport.toDrawingY(clip.top) / size);
+        int right = (int)Math.floor(viewport.toDrawingX(clip.right) / size);
+        int bottom = (int)Math.floor(viewport.toDrawingY(clip.bottom) / size);
+
+        int drawn = 0;  // tiles used by this frame, now the most recent ones
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                mDestination.set(viewport.toScreenX(column * size), viewport.toScreenY(row * size),
+                        viewport.toScreenX((column + 1) * size), viewport.toScreenY((row + 1) * size));
+
+                int entry = getTile(level, column, row, wait);
+                if(entry < 0) {
+                    drawn += drawCoarser(canvas, level, column, row, paint);
+                    continue;
+                }
+
+                ++drawn;
+                Bitmap tile = mTiles.valueAt(entry);
+                if(tile != null)
+                    canvas.drawBitmap(tile, null, mDestination, paint);
+            }
+        }
+
+        // tiles are never recycled, so those drawn before may go, but not
+        // the ones this frame needs, or the next frame reads them again
+        trim(drawn);
+    }
+
+    // show part of a coarser tile in memory where a tile is being read from
+    // disk, at mDestination; return how many tiles were used for it
+    private int drawCoarser(Canvas canvas, int level, int column, int row, Paint paint) {
+        for (int up = 1; up <= COARSER_LEVELS; up++) {
+            int entry = mTiles.find(getKey(level - up, column >> up, row >> up));
+            if(entry < 0)
+                continue;
+
+            Bitmap tile = mTiles.valueAt(entry);
+            if(tile != null) {
+                int part = TILE_SIZE >> up;
+                int x = (column - (column >> up << up)) * part;
+                int y = (row - (row >> up << up)) * part;
+                mSource.set(x, y, x + part, y + part);
+                canvas.drawBitmap(tile, mSource, mDestination, paint);
+            }
+            return 1;
+        }
+        return 0;   // blank until it is read
+    }
+
+    // round bounds, in drawing coordinates, out to the edges of the tiles
+    // they touch at the viewport's level and return that area on screen
+    public void getTileBounds(RectF bounds, Viewport viewport, Rect out) {
+        float size = getTileSize(viewport.getLevel());
+        float left = (float)Math.floor(bounds.left / size) * size;
+        float top = (float)Math.floor(bounds.top / size) * size;
+        float right = ((float)Math.floor(bounds.right / size) + 1) * size;
+        float bottom = ((float)Math.floor(bounds.bottom / size) + 1) * size;
+
+        out.set((int)Math.floor(viewport.toScreenX(left)), (int)Math.floor(viewport.toScreenY(top)),
+                (int)Math.ceil(viewport.toScreenX(right)), (int)Math.ceil(viewport.toScreenY(bottom)));
+    }
+
+    // a stroke of the history was just shown, by drawing or redoing it;
+    // draw it into the tiles in memory it crosses, at every level, and
+    // forget the copies of those tiles on disk
+    public void addStroke(int stroke) {
+        StrokeLog log = mHistory.getStrokeLog();
+        int layer = mLayers.getLayer(log, stroke);
+        if(layer < mFirstLayer || layer > mLastLayer)
+            return;
+
+        if(mComposite) {
+            Layer settings = mLayers.get(layer);
+            if(!settings.isVisible())
+                return; // not in the tiles
+
+            // flattened tiles can only take the stroke as it is if it goes
+            // on top of everything in them, on a layer that doesn't composite
+            if(layer != Math.min(mLastLayer, mLayers.size() - 1) || !settings.isPlain()) {
+                forget(log, stroke, true);
+                return;
+            }
+        }
+
+        for (int i = 0; i < mTiles.getEntryLimit(); i++) {
+            if(!mTiles.isEntry(i) || mTiles.valueAt(i) == null)
+                continue;
+
+            long key = mTiles.keyAt(i);
+            float size = getTileSize(getLevel(key));
+            float left = getColumn(key) * size;
+            float top = getRow(key) * size;
+            if(log.intersects(stroke, left, top, left + size, top + size)) {
+                beginTile(mTiles.valueAt(i), left, top, size);
+                mPainter.draw(mTileCanvas, log, stroke);
+                mTileCanvas.restore();
+            }
+        }
+
+        forget(log, stroke, false);
+    }
+
+    // a stroke of the history was just hidden by undoing it; forget all
+    // tiles it crosses so they are rasterised again without it
+    public void removeStroke(int stroke) {
+        StrokeLog log = mHistory.getStrokeLog();
+        int layer = mLayers.getLayer(log, stroke);
+        if(layer >= mFirstLayer && layer <= mLastLayer && (!mComposite || mLayers.get(layer).isVisible()))
+            forget(log, stroke, true);
+    }
+
+    // forget every tile, e.g. after the history was cleared
+    public void clear() {
+        mTiles.clear();
+        mByteCount = 0;
+
+        synchronized (mSpilled) {
+            mSpilling.clear();  // the writer deletes what it was writing
+            mReading.clear();   // and the reader drops what it was reading
+            mRead.clear();
+            for (long key : mSpilled)
+                getSpillFile(key).delete();
+            mSpilled.clear();
+        }
+    }
+
+    // the entry of the tile in memory, from disk or newly rasterised, made
+    // the most recently used; its bitmap is null if it has no strokes on it.
+    // -1 if it is being read from disk, unless wait
+    private int getTile(int level, int column, int row, boolean wait) {
+        long key = getKey(level, column, row);
+        int entry = mTiles.find(key);
+        if(entry >= 0)
+            return entry;
+
+        Bitmap tile = unspill(key);
+        if(tile == null && wait && isReading(key)) {
+            waitForDisk();
+            tile = unspill(key);
+        }
+        if(tile == null && isReading(key))
+            return -1;
+        if(tile == null)
+            tile = rasterise(level, column, row);
+
+        if(tile != null)
+            mByteCount += tile.getByteCount();
+        return mTiles.put(key, tile);   // null if blank
+    }
+
+    // draw every shown stroke of the cache's layers that crosses a tile
+    // into a new bitmap; the index finds them, so the cost is in the
+    // strokes near the tile, not in all of the drawing's
+    private Bitmap rasterise(int level, int column, int row) {
+        StrokeLog log = mHistory.getStrokeLog();
+        float size = getTileSize(level);
+        float left = column * size;
+        float top = row * size;
+        StrokeIndex index = mHistory.getStrokeIndex();
+        int count = index.find(mHistory.getPosition(), left, top, left + size, top + size);
+        int[] strokes = index.getFound();
+        if(!mLayers.intersects(log, strokes, count, mFirstLayer, mLastLayer, mComposite, left, top, left + size,
+                top + size))
+            return null;
+
+        Bitmap tile = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        tile.eraseColor(mBackground ? Color.WHITE : Color.TRANSPARENT);
+        beginTile(tile, left, top, size);
+        mLayers.draw(mTileCanvas, log, strokes, count, mFirstLayer, mLastLayer, mComposite, left, top, left + size,
+                top + size, mPainter, mLayerPaint);
+        mTileCanvas.restore();
+        return tile;
+    }
+
+    // point mTileCanvas at tile, in drawing coordinates; restore it after
+    private void beginTile(Bitmap tile, float left, float top, float size) {
+        float scale = TILE_SIZE / size;
+        mTileCanvas.setBitmap(tile);
+        mTileCanvas.save();
+        mTileCanvas.scale(scale, scale);
+        mTileCanvas.translate(-left, -top);
+    }
+
+    // move the least recently used tiles to disk until the rest fit, but
+    // keep the keep most recently used ones even if they don't
+    private void trim(int keep) {
+        while(mByteCount > mBudget && mTiles.size() > keep) {
+            int oldest = mTiles.getOldest();
+            long key = mTiles.keyAt(oldest);
+            Bitmap tile = mTiles.valueAt(oldest);
+            mTiles.removeAt(oldest);
+
+            if(tile != null) {
+                mByteCount -= tile.getByteCount();
+                spill(key, tile);
+            }
+        }
+    }
+
+    // write a tile to disk in the background
+    private void spill(final long key, final Bitmap tile) {
+        synchronized (mSpilled) {
+            mSpilling.put(key, tile);
+        }
+
+        mDisk.execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = getSpillFile(key);
+                boolean written;
+                try {
+                    OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+                    try {
+                        written = tile.compress(Bitmap.CompressFormat.PNG, 100, out);
+                    }
+                    finally {
+                        out.close();
+                    }
+                }
+                catch (IOException e) {
+                    written = false;
+                }
+
+                // keep the file unless the tile was shown or changed meanwhile
+                synchronized (mSpilled) {
+                    if(mSpilling.get(key) == tile) {
+                        mSpilling.remove(key);
+                        if(written) {
+                            mSpilled.add(key);
+                            return;
+                        }
+                    }
+                }
+                file.delete();
+            }
+        });
+    }
+
+    // take a tile back from the writer if it isn't done yet, or once it
+    // has been read from disk; null if it isn't there. A tile on disk is
+    // read in the background, and is in mReading until it has been
+    private Bitmap unspill(long key) {
+        synchronized (mSpilled) {
+            Bitmap tile = mSpilling.remove(key);
+            if(tile == null)
+                tile = mRead.remove(key);
+            if(tile != null || !mSpilled.remove(key))
+                return tile;
+            mReading.add(key);
+        }
+
+        read(key);
+        return null;
+    }
+
+    // read a tile from disk in the background and tell the listener; if it
+    // can't be read, it is rasterised again when next shown
+    private void read(final long key) {
+        mDisk.execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = getSpillFile(key);
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inMutable = true;   // later strokes are drawn into it
+                Bitmap tile = BitmapFactory.decodeFile(file.getPath(), options);
+                file.delete();
+
+                // keep the tile unless it was changed or cleared meanwhile
+                synchronized (mSpilled) {
+                    if(!mReading.remove(key))
+                        return;
+                    if(tile != null)
+                        mRead.put(key, tile);
+                }
+
+                Listener listener = mListener;
+                if(listener != null)
+                    listener.onTileRead();
+            }
+        });
+    }
+
+    private boolean isReading(long key) {
+        synchronized (mSpilled) {
+            return mReading.contains(key);
+        }
+    }
+
+    // wait until every tile written or read before now is done
+    private void waitForDisk() {
+        try {
+            mDisk.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            // nothing was run that could fail
+        }
+    }
+
+    // drop the tiles a stroke crosses from disk, and from memory too if
+    // inMemory; tiles known to be blank are dropped as the stroke may now
+    // be on them
+    private void forget(StrokeLog log, int stroke, boolean inMemory) {
+        for (int i = 0; i < mTiles.getEntryLimit(); i++) {
+            if(!mTiles.isEntry(i) || !crosses(log, stroke, mTiles.keyAt(i)))
+                continue;
+
+            Bitmap tile = mTiles.valueAt(i);
+            if(tile == null)
+                mTiles.removeAt(i);
+            else if(inMemory) {
+                mTiles.removeAt(i);
+                mByteCount -= tile.getByteCount();
+            }
+        }
+
+        synchronized (mSpilled) {
+            // nothing to walk unless tiles were spilled
+            if(mSpilling.isEmpty() && mSpilled.isEmpty() && mReading.isEmpty() && mRead.isEmpty())
+                return;
+
+            Iterator<Long> reading = mReading.iterator();
+            while(reading.hasNext())
+                if(crosses(log, stroke, reading.next()))
+                    reading.remove();   // the reader drops the tile
+
+            Iterator<Long> read = mRead.keySet().iterator();
+            while(read.hasNext())
+                if(crosses(log, stroke, read.next()))
+                    read.remove();
+
+            Iterator<Long> spilling = mSpilling.keySet().iterator();
+            while(spilling.hasNext())
+                if(crosses(log, stroke, spilling.next()))
+                    spilling.remove();  // the writer deletes its file
+
+            Iterator<Long> spilled = mSpilled.iterator();
+            while(spilled.hasNext()) {
+                long key = spilled.next();
+                if(crosses(log, stroke, key)) {
+                    spilled.remove();
+                    getSpillFile(key).delete();
+                }
+            }
+        }
+    }
+
+    // whether a stroke crosses the tile with the given key
+    private static boolean crosses(StrokeLog log, int stroke, long key) {
+        float size = getTileSize(getLevel(key));
+        float left = getColumn(key) * size;
+        float top = getRow(key) * size;
+        return log.intersects(stroke, left, top, left + size, top + size);
+    }
+
+    private File getSpillFile(long key) {
+        return new File(mSpillDirectory, Long.toHexString(key) + ".png");
+    }
+
+    // size of a tile at a level, in drawing coordinates
+    private static float getTileSize(int level) {
+        return TILE_SIZE / (float)Math.pow(2, level);
+    }
+
+    // a tile's level, column and row packed into 8, 28 and 28 bits
+    private static long getKey(int level, int column, int row) {
+        return (long)(level & 0xff) << 56 | (long)(column & 0xfffffff) << 28 | row & 0xfffffff;
+    }
+
+    private static int getLevel(long key) {
+        return (int)(key >> 56);
+    }
+
+    private static int getColumn(long key) {
+        return (int)(key << 8 >> 36);
+    }
+
+    private static int getRow(long key) {
+        return (int)(key << 36 >> 36);
+    }
+}
@@ -0,0 +1,90 @@
+// UndoHistory.java
+// Undo and redo for the DoodleView
+package me.seet.doodlz;
+
+// the finished strokes of the drawing in a StrokeLog, and how many of them
+// are shown; undoing hides the last stroke and redoing shows it again, so
+// the caller only has to redraw the area that stroke covers, from the
+// strokes a StrokeIndex finds there. The log is the drawing itself, so it
+// keeps every stroke; at a few bytes a point it is far smaller than the
+// tiles it is drawn into
+public class UndoHistory {
+    private StrokeLog mLog;
+    private int mPosition;  // strokes of the log currently shown
+    private final StrokeIndex mIndex = new StrokeIndex();   // brought up to date when asked for
+
+    public UndoHistory() {
+        this(new StrokeLog(), 0);
+    }
+
+    // a history of log with its first position strokes shown
+    public UndoHistory(StrokeLog log, int position) {
+        mLog = log;
+        mPosition = position;
+    }
+
+    // record a stroke that was just drawn on a layer
+    public void add(int layer, int color, float width, StrokePoints points, boolean brush) {
+        add(layer, color, width, points.getCoordinates(), brush ? points.getSizes() : null, points.size() * 2);
+    }
+
+    // record a stroke from count fixed-point x, y values and, for a brush
+    // stroke, its sizes
+    void add(int layer, int color, float width, int[] coordinates, int[] sizes, int count) {
+        // a new stroke replaces everything that could have been redone
+        mIndex.truncate(mPosition);
+        mLog.truncate(mPosition);
+        mLog.add(layer, color, width, coordinates, sizes, count);
+        ++mPosition;
+    }
+
+    public boolean canUndo() {
+        return mPosition > 0;
+    }
+
+    public boolean canRedo() {
+        return mPosition < mLog.size();
+    }
+
+    // hide the last stroke and return it
+    public int undo() {
+        return --mPosition;
+    }
+
+    // show the last hidden stroke again and return it
+    public int redo() {
+        return mPosition++;
+    }
+
+    // strokes of the log that are shown
+    public int getPosition() {
+        return mPosition;
+    }
+
+    public StrokeLog getStrokeLog() {
+        return mLog;
+    }
+
+    // where the strokes of the log are; listed the first time it is asked
+    // for, so a history that is never drawn, like the journal's copy,
+    // never pays for it
+    public StrokeIndex getStrokeIndex() {
+        mIndex.update(mLog);
+        return mIndex;
+    }
+
+    // take over log, with its first position strokes shown, in place of
+    // the strokes recorded so far, e.g. for a document that was opened
+    public void replace(StrokeLog log, int position) {
+        mLog = log;
+        mPosition = position;
+        mIndex.clear();
+    }
+
+    // forget all strokes, e.g. after the canvas was cleared
+    public void clear() {
+        mLog.clear();
+        mPosition = 0;
+        mIndex.clear();
+    }
+}
@@ -0,0 +1,178 @@
+// VectorWriter.java
+// Base class of the SVG and PDF exports
+package me.seet.doodlz;
+
+import android.graphics.Color;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// writes strokes of a StrokeLog as resolution-independent curves, one
+// stroke at a time straight to the output, so no image of the drawing is
+// ever made. The curves are the StrokeCurve pieces the app draws; a
+// subclass turns them into its format's text. Neither format varies a
+// line's width along it, so a brush stroke is written as its pieces, each
+// as wide as the mean size of its ends. Strokes are written a layer at a
+// time from the bottom, leaving out hidden layers, with each layer's
+// opacity in their colors; blend modes aren't kept
+public abstract class VectorWriter {
+    private OutputStream mOut;
+    private long mOffset;   // bytes written so far
+
+    // write the first count strokes of log on layers to out, on a page that
+    // just fits them; out is not closed
+    public void write(StrokeLog log, int count, LayerStack layers, OutputStream out) throws IOException {
+        mOut = new BufferedOutputStream(out);
+        mOffset = 0;
+
+        // the area the shown strokes cover; an empty drawing gets a small
+        // page
+        float left = 0, top = 0, right = 1, bottom = 1;
+        boolean first = true;
+        for (int i = 0; i < count; i++) {
+            if(!layers.get(layers.getLayer(log, i)).isVisible())
+                continue;
+
+            if(first) {
+                first = false;
+                left = log.getBounds(i, 0);
+                top = log.getBounds(i, 1);
+                right = log.getBounds(i, 2);
+                bottom = log.getBounds(i, 3);
+            }
+            else {
+                left = Math.min(left, log.getBounds(i, 0));
+                top = Math.min(top, log.getBounds(i, 1));
+                right = Math.max(right, log.getBounds(i, 2));
+                bottom = Math.max(bottom, log.getBounds(i, 3));
+            }
+        }
+
+        beginDocument(left, top, right, bottom);
+        for (int layer = 0; layer < layers.size(); layer++) {
+            Layer settings = layers.get(layer);
+            if(!settings.isVisible())
+                continue;
+
+            for (int i = 0; i < count; i++) {
+                if(layers.getLayer(log, i) != layer)
+                    continue;
+
+                int color = getLayerColor(log.getColor(i), settings);
+                if(log.isBrush(i) && log.getPointCount(i) > 1)
+                    writeBrushCurve(log, i, color);
+                else {
+                    beginStroke(color, log.getWidth(i));
+                    writeCurve(log, i);
+                    endStroke();
+                }
+            }
+        }
+        endDocument();
+        mOut.flush();
+    }
+
+    // start the output for a drawing covering the given area, in drawing
+    // coordinates with y going down
+    protected abstract void beginDocument(float left, float top, float right, float bottom)
+            throws IOException;
+
+    protected abstract void beginStroke(int color, float width) throws IOException;
+
+    protected abstract void moveTo(float x, float y) throws IOException;
+
+    protected abstract void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3)
+            throws IOException;
+
+    protected abstract void endStroke() throws IOException;
+
+    protected abstract void endDocument() throws IOException;
+
+    // bytes written so far, e.g. for a PDF's cross-reference table
+    protected long getOffset() {
+        return mOffset;
+    }
+
+    // write ASCII text
+    protected void write(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++)
+            mOut.write(text.charAt(i));
+        mOffset += text.length();
+    }
+
+    // write a number with at most two decimals, without an exponent and
+    // whatever the locale
+    protected void writeNumber(float value) throws IOException {
+        long hundredths = Math.round(value * 100.0);
+        if(hundredths < 0) {
+            write("-");
+            hundredths = -hundredths;
+        }
+        write(Long.toString(hundredths / 100));
+
+        int fraction = (int)(hundredths % 100);
+        if(fraction != 0) {
+            write(fraction < 10 ? ".0" : ".");
+            write(Integer.toString(fraction % 10 == 0 ? fraction / 10 : fraction));
+        }
+    }
+
+    // a color's red, green and blue as a fraction, for formats that don't
+    // take bytes
+    protected static float getFraction(int component) {
+        return component / 255f;
+    }
+
+    // "#rrggbb" of a color
+    protected static String getHex(int color) {
+        String hex = Integer.toHexString(color & 0xffffff | 0x1000000);
+        return "#" + hex.substring(1);
+    }
+
+    // the alpha of a color as a fraction
+    protected static float getOpacity(int color) {
+        return getFraction(Color.alpha(color));
+    }
+
+    // a stroke's color with its layer's opacity
+    private static int getLayerColor(int color, Layer layer) {
+        int alpha = Color.alpha(color) * layer.getOpacity() / Layer.OPAQUE;
+        return alpha << 24 | color & 0xffffff;
+    }
+
+    // a stroke as the StrokeCurve pieces through its points, with the
+    // first and last points repeated at the ends as StrokeCurve does
+    private void writeCurve(StrokeLog log, int stroke) throws IOException {
+        int last = log.getPointCount(stroke) - 1;
+        moveTo(log.getX(stroke, 0), log.getY(stroke, 0));
+        for (int i = 0; i < last; i++)
+            writePiece(log, stroke, i);
+    }
+
+    // a brush stroke as one line per piece, its width following the sizes
+    private void writeBrushCurve(StrokeLog log, int stroke, int color) throws IOException {
+        int last = log.getPointCount(stroke) - 1;
+        for (int i = 0; i < last; i++) {
+            float size = (log.getSize(stroke, i) + log.getSize(stroke, i + 1)) / 2;
+            beginStroke(color, log.getWidth(stroke) * size);
+            moveTo(log.getX(stroke, i), log.getY(stroke, i));
+            writePiece(log, stroke, i);
+            endStroke();
+        }
+    }
+
+    // the piece of a stroke from point i to the next
+    private void writePiece(StrokeLog log, int stroke, int i) throws IOException {
+        int last = log.getPointCount(stroke) - 1;
+        int before = Math.max(i - 1, 0);
+        int after = Math.min(i + 2, last);
+        float x1 = log.getX(stroke, i), y1 = log.getY(stroke, i);
+        float x2 = log.getX(stroke, i + 1), y2 = log.getY(stroke, i + 1);
+        cubicTo(StrokeCurve.getControl(x1, log.getX(stroke, before), x2),
+                StrokeCurve.getControl(y1, log.getY(stroke, before), y2),
+                StrokeCurve.getControl(x2, log.getX(stroke, after), x1),
+                StrokeCurve.getControl(y2, log.getY(stroke, after), y1),
+                x2, y2);
+    }
+}
@@ -0,0 +1,73 @@
+// Viewport.java
+// Which part of the unbounded drawing is on screen, and how large
+package me.seet.doodlz;
+
+// maps drawing coordinates to screen pixels: screen = (drawing - origin) * zoom
+public class Viewport {
+    public static final float MIN_ZOOM = 1 / 16f;
+    public static final float MAX_ZOOM = 16;
+
+    private float mZoom = 1;
+    private float mOriginX; // drawing point at the screen's top left
+    private float mOriginY;
+
+    public Viewport() {
+    }
+
+    // a copy of other that doesn't follow its later changes
+    public Viewport(Viewport other) {
+        mZoom = other.mZoom;
+        mOriginX = other.mOriginX;
+        mOriginY = other.mOriginY;
+    }
+
+    public float getZoom() {
+        return mZoom;
+    }
+
+    public float getOriginX() {
+        return mOriginX;
+    }
+
+    public float getOriginY() {
+        return mOriginY;
+    }
+
+    public float toDrawingX(float screenX) {
+        return screenX / mZoom + mOriginX;
+    }
+
+    public float toDrawingY(float screenY) {
+        return screenY / mZoom + mOriginY;
+    }
+
+    public float toScreenX(float drawingX) {
+        return (drawingX - mOriginX) * mZoom;
+    }
+
+    public float toScreenY(float drawingY) {
+        return (drawingY - mOriginY) * mZoom;
+    }
+
+    // move the drawing by the given screen distance
+    public void pan(float dx, float dy) {
+        mOriginX -= dx / mZoom;
+        mOriginY -= dy / mZoom;
+    }
+
+    // scale the drawing by factor, keeping the point under the given
+    // screen position in place
+    public void zoom(float factor, float focusX, float focusY) {
+        float x = toDrawingX(focusX);
+        float y = toDrawingY(focusY);
+        mZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, mZoom * factor));
+        mOriginX = x - focusX / mZoom;
+        mOriginY = y - focusY / mZoom;
+    }
+
+    // the power of two tiles are drawn at for the current zoom, so tiles
+    // are never stretched or shrunk by more than a factor of 1.41
+    public int getLevel() {
+        return Math.round((float)(Math.log(mZoom) / Math.log(2)));
+    }
+}
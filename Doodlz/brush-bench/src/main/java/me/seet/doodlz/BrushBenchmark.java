@@ -0,0 +1,148 @@
+// BrushBenchmark.java
+// Frames per second of the brush engine for fingers drawing at 120 Hz
+package me.seet.doodlz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// plays fingers drawing brush strokes along Lissajous curves, with two
+// touch samples per finger per 120 Hz frame, through the StrokeInput
+// DoodleView feeds, then takes each frame's stamps as onDraw would draw
+// them; finished strokes go into an UndoHistory, and the stamps of the
+// strokes still being drawn are made again where a lifted one was erased
+// from the overlay. It measures the work on the UI thread before drawing,
+// not GPU or raster time. A frame has 1 / FRAME_RATE on a device, so a
+// score below FRAME_RATE can't keep up
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BrushBenchmark {
+    public static final int WIDTH = 1080;   // screen of a typical phone
+    public static final int HEIGHT = 1920;
+    public static final int FRAME_RATE = 120;
+    public static final int SAMPLES_PER_FRAME = 2;  // a 240 Hz touch panel
+    public static final int STROKE_FRAMES = 240;    // each finger lifts every two seconds
+    public static final float LINE_WIDTH = 24;
+
+    // paths are only needed for line strokes, which this doesn't draw
+    private static final StrokeCurve.Sink NO_PATH = new StrokeCurve.Sink() {
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+        }
+
+        @Override
+        public void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+        }
+    };
+
+    @Param({"1", "10"})
+    public int fingers;
+
+    private StrokeInput mInput;
+    private UndoHistory mHistory;
+    private long mFrame;    // frames played so far
+    private final float[] mLifted = new float[4];   // stamp bounds of a lifted stroke
+    private int mRestamped; // stamps made again after lifts, as onDraw would draw them
+
+    @Setup
+    public void setUp() {
+        StrokeCurve.Sink[] paths = new StrokeCurve.Sink[StrokeInput.MAX_POINTERS];
+        for (int i = 0; i < paths.length; i++)
+            paths[i] = NO_PATH;
+        mInput = new StrokeInput(new Viewport(), paths);
+        mHistory = new UndoHistory();
+        mFrame = 0;
+    }
+
+    // play one frame: every finger's samples since the last one, then the
+    // stamps as onDraw would hand them on
+    @Benchmark
+    public int frame() {
+        for (int finger = 0; finger < fingers; finger++) {
+            // fingers start their strokes at different frames
+            int strokeFrame = (int)((mFrame + finger * STROKE_FRAMES / fingers) % STROKE_FRAMES);
+            for (int s = 0; s < SAMPLES_PER_FRAME; s++) {
+                double time = (mFrame * SAMPLES_PER_FRAME + s) / (double)(FRAME_RATE * SAMPLES_PER_FRAME);
+                float x = getX(finger, time);
+                float y = getY(finger, time);
+                long millis = (long)(time * 1000);
+                float pressure = getPressure(finger, time);
+                if((strokeFrame == 0 || mFrame == 0) && s == 0)
+                    mInput.begin(finger, x, y, millis, pressure, true, 0xff000000 | finger * 0x151515, LINE_WIDTH);
+                else
+                    mInput.add(finger, x, y, millis, pressure);
+            }
+            if(strokeFrame == STROKE_FRAMES - 1)
+                end(finger);
+        }
+
+        StampBatch stamps = mInput.getStamps();
+        int count = stamps.size() + mRestamped;
+        stamps.reset();
+        mRestamped = 0;
+        ++mFrame;
+        return count;
+    }
+
+    // the restamp a lift costs alone, with every finger halfway through a
+    // stroke and one of them lifting
+    @Benchmark
+    public int lift() {
+        if(mFrame == 0) {
+            while(mFrame < STROKE_FRAMES / 2)
+                frame();
+            mInput.cancel(0);
+        }
+
+        mInput.getStampBounds(0, mLifted);
+        mInput.restamp(mLifted[0], mLifted[1], mLifted[2], mLifted[3]);
+        StampBatch stamps = mInput.getStamps();
+        int count = stamps.size();
+        stamps.reset();
+        return count;
+    }
+
+    private void end(int finger) {
+        mInput.cancel(finger);  // its last sample is already in
+        mHistory.add(0, 0xff000000, LINE_WIDTH, mInput.getPoints(finger), true);
+
+        // as DoodleView does, the stamps drawn so far go into the overlay,
+        // which is erased where the lifted stroke was, and the strokes
+        // still being drawn are stamped into that area again
+        StampBatch stamps = mInput.getStamps();
+        mRestamped += stamps.size();
+        mInput.getStampBounds(finger, mLifted);
+        mInput.restamp(mLifted[0], mLifted[1], mLifted[2], mLifted[3]);
+
+        // keep the history's memory from growing without end
+        if(mHistory.getPosition() >= 1000)
+            mHistory = new UndoHistory();
+    }
+
+    // each finger follows its own Lissajous curve across the screen
+    private static float getX(int finger, double time) {
+        return (float)(WIDTH / 2 + WIDTH * 0.4 * Math.sin((1.3 + finger * 0.11) * time + finger));
+    }
+
+    private static float getY(int finger, double time) {
+        return (float)(HEIGHT / 2 + HEIGHT * 0.4 * Math.sin((1.7 + finger * 0.07) * time + finger * 2));
+    }
+
+    private static float getPressure(int finger, double time) {
+        return (float)(0.5 + 0.4 * Math.sin(3 * time + finger));
+    }
+}
@@ -0,0 +1,95 @@
+// LongLruMapTest.java
+// Checks LongLruMap against a LinkedHashMap kept in access order
+package me.seet.doodlz;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LongLruMapTest {
+    private static final int OPERATIONS = 2000000;
+    private static final int KEYS = 4096;   // keys are drawn from this many, so they repeat
+
+    private final LongLruMap<Long> mMap = new LongLruMap<Long>(16);
+    private final LinkedHashMap<Long, Long> mExpected = new LinkedHashMap<Long, Long>(16, 0.75f, true);
+
+    // a key far from the others in its low bits too, like tile keys
+    private static long key(Random random) {
+        long key = random.nextInt(KEYS);
+        return key << 32 | key * 31;
+    }
+
+    @Test
+    public void matchesLinkedHashMap() {
+        Random random = new Random(18);
+        for (int i = 0; i < OPERATIONS; i++) {
+            int operation = random.nextInt(100);
+            long key = key(random);
+            if(operation < 40) {
+                // add or replace
+                Long value = random.nextLong();
+                int entry = mMap.put(key, value);
+                mExpected.put(key, value);
+                assertEquals(key, mMap.keyAt(entry));
+            }
+            else if(operation < 75) {
+                // look up
+                int entry = mMap.find(key);
+                Long expected = mExpected.get(key);
+                if(expected == null)
+                    assertEquals(-1, entry);
+                else
+                    assertEquals(expected, mMap.valueAt(entry));
+            }
+            else if(operation < 90) {
+                // remove, if present
+                int entry = mMap.find(key);
+                Long expected = mExpected.remove(key);
+                assertEquals(expected != null, entry != -1);
+                if(entry != -1)
+                    mMap.removeAt(entry);
+            }
+            else if(operation < 99) {
+                // evict the least recently used, as the tile cache does
+                int oldest = mMap.getOldest();
+                if(mExpected.isEmpty())
+                    assertEquals(-1, oldest);
+                else {
+                    long expected = mExpected.keySet().iterator().next();
+                    assertEquals(expected, mMap.keyAt(oldest));
+                    mMap.removeAt(oldest);
+                    mExpected.remove(expected);
+                }
+            }
+            else if(random.nextInt(100) == 0)
+                clear();
+            else if(random.nextInt(20) == 0)
+                assertSameEntries();
+
+            assertEquals(mExpected.size(), mMap.size());
+        }
+        assertSameEntries();
+    }
+
+    private void clear() {
+        mMap.clear();
+        mExpected.clear();
+    }
+
+    // walking the entries finds every key once, with its value; the walk
+    // doesn't change the order of use
+    private void assertSameEntries() {
+        Map<Long, Long> walked = new HashMap<Long, Long>();
+        for (int i = 0; i < mMap.getEntryLimit(); i++) {
+            if(mMap.isEntry(i))
+                assertTrue(walked.put(mMap.keyAt(i), mMap.valueAt(i)) == null);
+        }
+        assertEquals(new HashMap<Long, Long>(mExpected), walked);
+    }
+}
@@ -0,0 +1,179 @@
+// ShakeDetectorTest.java
+// Plays made-up accelerometer traces through a ShakeDetector
+package me.seet.doodlz;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ShakeDetectorTest {
+    private static final float G = 9.81f;
+    private static final long START = 5000000000L;  // sensor time of the first sample, in nanoseconds
+
+    // accelerometer samples at a fixed rate, built up from pieces of motion
+    // with gravity along z until something tilts it
+    private static class Trace {
+        final long mPeriod; // nanoseconds between samples
+        final float mStep;  // the same in seconds
+        float[] mValues = new float[3 * 1024];  // x, y, z of each sample
+        int mCount;
+        float mTiltAngle;   // of gravity from z towards x, in radians
+        final Random mNoise = new Random(23);
+
+        Trace(int rate) {
+            mPeriod = 1000000000L / rate;
+            mStep = 1f / rate;
+        }
+
+        private void add(float x, float y, float z) {
+            if(mValues.length < (mCount + 1) * 3)
+                mValues = Arrays.copyOf(mValues, mValues.length * 2);
+
+            // a little sensor noise on every sample
+            mValues[mCount * 3] = x + (mNoise.nextFloat() - 0.5f) * 0.2f;
+            mValues[mCount * 3 + 1] = y + (mNoise.nextFloat() - 0.5f) * 0.2f;
+            mValues[mCount * 3 + 2] = z + (mNoise.nextFloat() - 0.5f) * 0.2f;
+            ++mCount;
+        }
+
+        private float gravityX() {
+            return G * (float)Math.sin(mTiltAngle);
+        }
+
+        private float gravityZ() {
+            return G * (float)Math.cos(mTiltAngle);
+        }
+
+        // lying on a table
+        Trace still(float seconds) {
+            for (float t = 0; t < seconds; t += mStep)
+                add(gravityX(), 0, gravityZ());
+            return this;
+        }
+
+        // shaken side to side at hz with the given peak acceleration
+        Trace shake(float seconds, float hz, float peak) {
+            for (float t = 0; t < seconds; t += mStep)
+                add(gravityX() + peak * (float)Math.sin(2 * Math.PI * hz * t), 0, gravityZ());
+            return this;
+        }
+
+        // a hard knock lasting a few samples, as when it is set down
+        Trace jolt(float peak, float seconds) {
+            for (float t = 0; t < seconds; t += mStep)
+                add(gravityX(), 0, gravityZ() + peak);
+            return this;
+        }
+
+        // turned steadily by angle radians
+        Trace tilt(float seconds, float angle) {
+            float step = angle * mStep / seconds;
+            for (float t = 0; t < seconds; t += mStep) {
+                mTiltAngle += step;
+                add(gravityX(), 0, gravityZ());
+            }
+            return this;
+        }
+
+        // carried while walking: a bounce with every step and some sway
+        Trace walk(float seconds) {
+            for (float t = 0; t < seconds; t += mStep) {
+                double phase = 2 * Math.PI * 2 * t;   // two steps a second
+                add(gravityX() + 1.5f * (float)Math.sin(phase / 2), 0,
+                        gravityZ() + 4 * (float)Math.sin(phase));
+            }
+            return this;
+        }
+
+        // shakes the detector reports for the samples as they come
+        int play(ShakeDetector detector) {
+            int shakes = 0;
+            for (int i = 0; i < mCount; i++) {
+                if(detector.add(mValues[i * 3], mValues[i * 3 + 1], mValues[i * 3 + 2], START + i * mPeriod))
+                    ++shakes;
+            }
+            return shakes;
+        }
+
+        // the same, with the samples arriving batch at a time and the last
+        // of each batch delivered a second time, as some sensor hubs do
+        int playBatched(ShakeDetector detector, int batch) {
+            int shakes = 0;
+            for (int start = 0; start < mCount; start += batch) {
+                int end = Math.min(start + batch, mCount);
+                for (int i = start; i < end; i++) {
+                    if(detector.add(mValues[i * 3], mValues[i * 3 + 1], mValues[i * 3 + 2], START + i * mPeriod))
+                        ++shakes;
+                }
+                int last = end - 1;
+                if(detector.add(mValues[last * 3], mValues[last * 3 + 1], mValues[last * 3 + 2],
+                        START + last * mPeriod))
+                    ++shakes;
+            }
+            return shakes;
+        }
+    }
+
+    @Test
+    public void stillIsNoShake() {
+        assertEquals(0, new Trace(50).still(10).play(new ShakeDetector()));
+    }
+
+    @Test
+    public void oneShake() {
+        assertEquals(1, new Trace(50).still(1).shake(1, 4, 20).still(1).play(new ShakeDetector()));
+    }
+
+    @Test
+    public void longShakeIsOneShake() {
+        assertEquals(1, new Trace(50).still(1).shake(5, 4, 25).still(1).play(new ShakeDetector()));
+    }
+
+    @Test
+    public void twoShakes() {
+        Trace trace = new Trace(50).still(1).shake(1, 4, 20).still(1).shake(1, 4, 20).still(1);
+        assertEquals(2, trace.play(new ShakeDetector()));
+    }
+
+    @Test
+    public void joltIsNoShake() {
+        Trace trace = new Trace(50).still(1).jolt(60, 0.02f).still(1).jolt(-30, 0.1f).still(1);
+        assertEquals(0, trace.play(new ShakeDetector()));
+    }
+
+    @Test
+    public void tiltIsNoShake() {
+        Trace trace = new Trace(50).still(1).tilt(1, (float)Math.PI / 2).still(1).tilt(1, -(float)Math.PI / 2)
+                .still(1);
+        assertEquals(0, trace.play(new ShakeDetector()));
+    }
+
+    @Test
+    public void walkingIsNoShake() {
+        assertEquals(0, new Trace(50).still(1).walk(20).still(1).play(new ShakeDetector()));
+    }
+
+    @Test
+    public void sameAtAnyRate() {
+        for (int rate : new int[] { 25, 50, 100, 200 }) {
+            Trace trace = new Trace(rate).still(1).shake(1, 4, 20).still(1).shake(1, 4, 20).still(1);
+            assertEquals("at " + rate + " Hz", 2, trace.play(new ShakeDetector()));
+        }
+    }
+
+    @Test
+    public void batchedDelivery() {
+        Trace trace = new Trace(200).still(1).shake(1, 4, 20).still(1).shake(1, 4, 20).still(1).walk(5);
+        assertEquals(2, trace.playBatched(new ShakeDetector(), 40));
+    }
+
+    @Test
+    public void batchedAtTheRegisteredRate() {
+        // DoodleFragment's 25 Hz, with a second of samples in each batch
+        Trace trace = new Trace(25).still(1).shake(1, 4, 20).still(1).shake(1, 4, 20).still(1).walk(5);
+        assertEquals(2, trace.playBatched(new ShakeDetector(), 25));
+    }
+}
@@ -0,0 +1,91 @@
+// StrokeIndexTest.java
+// Checks the strokes StrokeIndex finds for a tile against a scan of the
+// whole log, while strokes are drawn, undone and drawn over
+package me.seet.doodlz;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StrokeIndexTest {
+    private static final int ROUNDS = 3000;   // strokes drawn or undone
+    private static final int QUERIES = 20;  // tiles looked up after each
+    private static final float TILE_SIZE = 256; // as TileCache, at the level when not zoomed
+
+    private final Random mRandom = new Random(15);
+    private final UndoHistory mHistory = new UndoHistory();
+
+    // a stroke of a few points somewhere in a 10000 pixel square; now and
+    // then a long one, as drawn zoomed far out, or one right on cell borders
+    private void addStroke() {
+        int points = 1 + mRandom.nextInt(8);
+        float spread = mRandom.nextInt(20) == 0 ? 20 * StrokeIndex.CELL_SIZE : 300;
+        float x = mRandom.nextInt(3) == 0 ? mRandom.nextInt(20) * StrokeIndex.CELL_SIZE : mRandom.nextFloat() * 10000;
+        float y = mRandom.nextFloat() * 10000 - 5000;
+        int[] coordinates = new int[points * 2];
+        for (int i = 0; i < points; i++) {
+            coordinates[i * 2] = StrokeLog.quantise(x + mRandom.nextFloat() * spread);
+            coordinates[i * 2 + 1] = StrokeLog.quantise(y + mRandom.nextFloat() * spread);
+        }
+        mHistory.add(0, 0xff000000, 1 + mRandom.nextFloat() * 40, coordinates, null, points * 2);
+    }
+
+    // the shown strokes that may draw inside the area, looking at each
+    private int[] scan(float left, float top, float right, float bottom) {
+        StrokeLog log = mHistory.getStrokeLog();
+        int[] strokes = new int[mHistory.getPosition()];
+        int count = 0;
+        for (int i = 0; i < mHistory.getPosition(); i++)
+            if(log.intersects(i, left, top, right, bottom))
+                strokes[count++] = i;
+        return Arrays.copyOf(strokes, count);
+    }
+
+    @Test
+    public void findsWhatAScanFinds() {
+        long found = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            // undoing a few strokes and drawing again drops them for good
+            if(mRandom.nextInt(4) == 0 && mHistory.canUndo())
+                for (int i = mRandom.nextInt(5); i >= 0 && mHistory.canUndo(); i--)
+                    mHistory.undo();
+            else
+                addStroke();
+
+            for (int q = 0; q < QUERIES; q++) {
+                // a tile at a level from zoomed far out to far in
+                float size = TILE_SIZE / (float)Math.pow(2, mRandom.nextInt(9) - 4);
+                float left = (float)Math.floor((mRandom.nextFloat() * 12000 - 1000) / size) * size;
+                float top = (float)Math.floor((mRandom.nextFloat() * 12000 - 6000) / size) * size;
+
+                StrokeIndex index = mHistory.getStrokeIndex();
+                int count = index.find(mHistory.getPosition(), left, top, left + size, top + size);
+                int[] expected = scan(left, top, left + size, top + size);
+                assertArrayEquals("round " + round + " query " + q, expected,
+                        Arrays.copyOf(index.getFound(), count));
+                found += count;
+            }
+        }
+
+        // the tiles must reach strokes often enough for this to mean anything
+        assertTrue(found > ROUNDS * QUERIES / 4);
+        assertEquals(mHistory.getStrokeLog().size(), mHistory.getStrokeIndex().size());
+    }
+
+    @Test
+    public void clearingForgetsEveryStroke() {
+        for (int i = 0; i < 100; i++)
+            addStroke();
+        assertEquals(100, mHistory.getStrokeIndex().size());
+
+        mHistory.clear();
+        StrokeIndex index = mHistory.getStrokeIndex();
+        assertEquals(0, index.size());
+        assertEquals(0, index.find(Integer.MAX_VALUE, -1e6f, -1e6f, 1e6f, 1e6f));
+    }
+}
@@ -0,0 +1,199 @@
+// StrokeInputTest.java
+// Checks that taking touch samples allocates nothing once strokes are drawn
+package me.seet.doodlz;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StrokeInputTest {
+    private static final int FINGERS = 10;
+    private static final int EVENTS = 10000;
+    private static final int STROKE_EVENTS = 500;   // events before each finger lifts
+
+    // counts what a curve is built from without keeping any of it
+    private static class CountingSink implements StrokeCurve.Sink {
+        long resets;
+        long moves;
+        long cubics;
+
+        @Override
+        public void reset() {
+            ++resets;
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            ++moves;
+        }
+
+        @Override
+        public void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+            ++cubics;
+        }
+    }
+
+    private final Viewport mViewport = new Viewport();
+    private final CountingSink[] mSinks = new CountingSink[StrokeInput.MAX_POINTERS];
+    private final StrokeInput mInput;
+    private final float[] mBounds = new float[4];
+    private long mStamps;
+    private long mTime; // of the last event, in milliseconds
+
+    public StrokeInputTest() {
+        for (int i = 0; i < mSinks.length; i++)
+            mSinks[i] = new CountingSink();
+        mInput = new StrokeInput(mViewport, mSinks);
+        mInput.setSmoothing(StrokeSmoother.Mode.ONE_EURO);
+        mViewport.zoom(2, 100, 100);
+    }
+
+    // one event moving every finger around its own circle, the odd ones
+    // with the brush, lifting and putting them down again now and then;
+    // then the frame takes the stamps and the changed area as onDraw does
+    private void event(int event) {
+        long time = mTime += 8;   // runs on across both passes, as a clock would
+        for (int finger = 0; finger < FINGERS; finger++) {
+            double angle = event * 0.05 + finger;
+            float x = 200 + finger * 80 + (float)Math.cos(angle) * 60;
+            float y = 400 + (float)Math.sin(angle) * 60;
+            float pressure = 0.5f + 0.5f * (float)Math.sin(angle * 3);
+
+            int step = (event + finger * 37) % STROKE_EVENTS;
+            if(step == 0)
+                mInput.begin(finger, x, y, time, pressure, finger % 2 == 1, 0xff000000 | finger, 5);
+            else if(step == STROKE_EVENTS - 1)
+                mInput.end(finger, x, y, time, pressure);
+            else
+                mInput.add(finger, x, y, time, pressure);
+        }
+
+        mInput.getChangedBounds(mBounds);
+        mStamps += mInput.getStamps().size();
+        mInput.getStamps().reset();
+    }
+
+    // every finger lifted, then EVENTS events; each pass draws the same strokes
+    private void pass() {
+        mInput.cancelAll();
+        for (int i = 0; i < EVENTS; i++)
+            event(i);
+    }
+
+    @Test
+    public void samplesDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        // load every class, grow the point and stamp arrays to their
+        // largest and let the JIT settle first
+        pass();
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        pass();
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals("bytes allocated by " + FINGERS + " fingers over " + EVENTS + " events", 0, allocated);
+
+        // the line fingers built curves and the brush fingers stamped
+        assertTrue(mSinks[0].cubics > 0 && mSinks[0].moves > 0);
+        assertEquals(0, mSinks[1].cubics);
+        assertTrue(mStamps > 0);
+    }
+
+    @Test
+    public void endedStrokeKeepsItsPoints() {
+        mInput.begin(3, 10, 10, 0, 1, false, 0xff112233, 4);
+        for (int i = 1; i <= 20; i++)
+            mInput.add(3, 10 + i * 10, 10, i * 16, 1);
+        mInput.end(3, 220, 10, 21 * 16, 1);
+
+        assertTrue(!mInput.isDrawing(3));
+        assertEquals(0xff112233, mInput.getColor(3));
+        assertTrue(mInput.getPoints(3).size() > 10);
+        assertTrue(mInput.getChangedBounds(mBounds));
+        assertTrue(mBounds[0] < mBounds[2]);
+    }
+
+    // the stamps in the batch, each as the x, y of its six vertices
+    private List<List<Float>> takeStamps() {
+        StampBatch stamps = mInput.getStamps();
+        float[] vertices = stamps.getVertices();
+        List<List<Float>> result = new ArrayList<List<Float>>();
+        for (int i = 0; i < stamps.size(); i++) {
+            List<Float> stamp = new ArrayList<Float>();
+            for (int v = 0; v < 12; v++)
+                stamp.add(vertices[i * 12 + v]);
+            result.add(stamp);
+        }
+        stamps.reset();
+        return result;
+    }
+
+    private static boolean reaches(List<Float> stamp, float[] area) {
+        float left = Float.POSITIVE_INFINITY, top = Float.POSITIVE_INFINITY;
+        float right = Float.NEGATIVE_INFINITY, bottom = Float.NEGATIVE_INFINITY;
+        for (int v = 0; v < 12; v += 2) {
+            left = Math.min(left, stamp.get(v));
+            right = Math.max(right, stamp.get(v));
+            top = Math.min(top, stamp.get(v + 1));
+            bottom = Math.max(bottom, stamp.get(v + 1));
+        }
+        return left <= area[2] && right >= area[0] && top <= area[3] && bottom >= area[1];
+    }
+
+    @Test
+    public void liftRestampsOnlyTheLiftedArea() {
+        mViewport.zoom(0.5f, 0, 0);  // back to one drawing pixel per screen pixel
+        // a lifted brush stroke across the top, one still drawn crossing
+        // it and one still drawn far away
+        mInput.begin(1, 0, 100, 0, 1, true, 0xff000001, 20);
+        mInput.begin(2, 150, 0, 0, 1, true, 0xff000002, 20);
+        mInput.begin(3, 800, 800, 0, 1, true, 0xff000003, 20);
+        for (int i = 1; i <= 30; i++) {
+            mInput.add(1, i * 10, 100, i * 16, 1);
+            mInput.add(2, 150, i * 10, i * 16, 1);
+            mInput.add(3, 800 + i * 5, 800, i * 16, 1);
+        }
+        mInput.end(1, 310, 100, 31 * 16, 1);
+        takeStamps();
+
+        float[] lifted = new float[4];
+        assertTrue(mInput.getStampBounds(1, lifted));
+        assertTrue(!mInput.getStampBounds(0, lifted.clone()));    // never drew a brush stroke
+
+        mInput.restamp();
+        List<List<Float>> all = takeStamps();
+        mInput.restamp(lifted[0], lifted[1], lifted[2], lifted[3]);
+        List<List<Float>> area = takeStamps();
+
+        // the same stamps a full restamp makes, less those outside the area
+        assertTrue(area.size() > 0 && area.size() < all.size());
+        assertTrue(all.containsAll(area));
+        for (List<Float> stamp : all) {
+            if(reaches(stamp, lifted))
+                assertTrue(Arrays.toString(lifted), area.contains(stamp));
+        }
+
+        // and only while restamping: new stamps go anywhere again
+        mInput.add(3, 1000, 800, 32 * 16, 1);
+        assertTrue(!mInput.getStamps().isEmpty());
+    }
+
+    @Test
+    public void pointersBeyondTheLimitAreIgnored() {
+        mInput.begin(StrokeInput.MAX_POINTERS, 10, 10, 0, 1, true, 0xff000000, 4);
+        mInput.add(StrokeInput.MAX_POINTERS, 50, 50, 16, 1);
+
+        assertTrue(!mInput.isDrawing(StrokeInput.MAX_POINTERS));
+        assertTrue(mInput.getStamps().isEmpty());
+    }
+}